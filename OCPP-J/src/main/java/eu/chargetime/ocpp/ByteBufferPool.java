@@ -0,0 +1,80 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import java.nio.ByteBuffer;
+
+/**
+ * Per-thread pool of heap buffers used to encode outgoing frames. A thread keeps at most one idle
+ * buffer, so encoding a frame and handing it to the transport allocates nothing once the thread has
+ * seen its largest message.
+ */
+final class ByteBufferPool {
+
+  private final int initialSize;
+  private final int maxRetainedSize;
+  private final ThreadLocal<ByteBuffer> idle = new ThreadLocal<>();
+
+  /**
+   * @param initialSize size of newly allocated buffers.
+   * @param maxRetainedSize buffers larger than this are left to the garbage collector.
+   */
+  ByteBufferPool(int initialSize, int maxRetainedSize) {
+    this.initialSize = initialSize;
+    this.maxRetainedSize = maxRetainedSize;
+  }
+
+  /**
+   * Take a cleared buffer of at least the initial size.
+   *
+   * @return a buffer owned by the caller until it is released.
+   */
+  ByteBuffer acquire() {
+    ByteBuffer buffer = idle.get();
+    if (buffer == null) {
+      return ByteBuffer.allocate(initialSize);
+    }
+    idle.set(null);
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * Hand a buffer back to the pool of the current thread. The larger of the idle and the released
+   * buffer is kept.
+   *
+   * @param buffer a buffer no longer used by the caller.
+   */
+  void release(ByteBuffer buffer) {
+    if (buffer.capacity() > maxRetainedSize) {
+      return;
+    }
+    ByteBuffer current = idle.get();
+    if (current == null || current.capacity() < buffer.capacity()) {
+      idle.set(buffer);
+    }
+  }
+}
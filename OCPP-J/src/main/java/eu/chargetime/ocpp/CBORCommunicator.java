@@ -0,0 +1,262 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import com.google.gson.JsonElement;
+import eu.chargetime.ocpp.model.CallErrorMessage;
+import eu.chargetime.ocpp.model.CallMessage;
+import eu.chargetime.ocpp.model.CallResultMessage;
+import eu.chargetime.ocpp.model.Confirmation;
+import eu.chargetime.ocpp.model.Message;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Communicator for OCPP-J messages framed as CBOR instead of JSON text.
+ *
+ * <p>A message is the CBOR array of the JSON message, {@code [2, id, action, payload]} for a
+ * call, and payloads are mapped the same way the default codec maps them to JSON. Both ends of the
+ * connection must agree on the framing by negotiating a sub protocol made with {@link
+ * #subProtocolName(String)}, so this is meant for links where both ends run this library.
+ */
+public class CBORCommunicator extends Communicator {
+
+  private static final Logger logger = LoggerFactory.getLogger(CBORCommunicator.class);
+
+  /** Appended to an OCPP sub protocol name to ask for CBOR framing of that OCPP version. */
+  public static final String SUB_PROTOCOL_SUFFIX = "+cbor";
+
+  private static final int TYPENUMBER_CALL = 2;
+  private static final int TYPENUMBER_CALLRESULT = 3;
+  private static final int TYPENUMBER_CALLERROR = 4;
+
+  private static final GsonPayloadCodec codec = new GsonPayloadCodec();
+  // Only used within parse, which doesn't call out while reading the envelope.
+  private static final ThreadLocal<CborReader> envelopeReaders =
+      ThreadLocal.withInitial(() -> new CborReader(new byte[0]));
+
+  /**
+   * Handle required injections.
+   *
+   * @param radio instance of the {@link Radio}.
+   */
+  public CBORCommunicator(Radio radio) {
+    this(radio, true);
+  }
+
+  /**
+   * Handle required injections.
+   *
+   * @param radio instance of the {@link Radio}.
+   * @param enableTransactionQueue true if transaction queue should be enabled.
+   */
+  public CBORCommunicator(Radio radio, boolean enableTransactionQueue) {
+    super(radio, enableTransactionQueue);
+  }
+
+  /**
+   * Handle required injections.
+   *
+   * @param radio instance of the {@link Radio}.
+   * @param transactionQueue stores transaction-related requests while offline, null to disable.
+   */
+  public CBORCommunicator(Radio radio, TransactionQueue transactionQueue) {
+    super(radio, transactionQueue);
+  }
+
+  /**
+   * Get the name of the sub protocol for CBOR framing of an OCPP version.
+   *
+   * @param ocppSubProtocol the OCPP sub protocol name, ie. ocpp1.6.
+   * @return the sub protocol name with {@link #SUB_PROTOCOL_SUFFIX} appended.
+   */
+  public static String subProtocolName(String ocppSubProtocol) {
+    return ocppSubProtocol + SUB_PROTOCOL_SUFFIX;
+  }
+
+  /**
+   * Check whether a negotiated sub protocol asks for CBOR framing.
+   *
+   * @param subProtocol the negotiated sub protocol name, may be null.
+   * @return true if messages are framed as CBOR.
+   */
+  public static boolean isCBORSubProtocol(String subProtocol) {
+    return subProtocol != null && subProtocol.endsWith(SUB_PROTOCOL_SUFFIX);
+  }
+
+  /**
+   * Get the OCPP sub protocol a negotiated sub protocol stands for.
+   *
+   * @param subProtocol the negotiated sub protocol name.
+   * @return the name without {@link #SUB_PROTOCOL_SUFFIX}.
+   */
+  public static String ocppSubProtocolName(String subProtocol) {
+    return isCBORSubProtocol(subProtocol)
+        ? subProtocol.substring(0, subProtocol.length() - SUB_PROTOCOL_SUFFIX.length())
+        : subProtocol;
+  }
+
+  @Override
+  public <T> T unpackPayload(Object payload, Class<T> type) throws Exception {
+    return codec.read(new CborReader((byte[]) payload), type);
+  }
+
+  @Override
+  public Object packPayload(Object payload) {
+    CborWriter writer = new CborWriter();
+    try {
+      codec.write(payload, writer);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return writer.toByteArray();
+  }
+
+  /** All CBOR communicators pack with the same codec, and the packed bytes are only read. */
+  @Override
+  protected Object getPayloadFormat() {
+    return CBORCommunicator.class;
+  }
+
+  @Override
+  protected Object makeCallResult(String uniqueId, String action, Object payload) {
+    CborWriter message = new CborWriter();
+    message.beginArray().value(TYPENUMBER_CALLRESULT).value(uniqueId);
+    message.rawValue((byte[]) payload).endArray();
+    return message.toByteArray();
+  }
+
+  @Override
+  protected Object makeCall(String uniqueId, String action, Object payload) {
+    CborWriter message = new CborWriter();
+    message.beginArray().value(TYPENUMBER_CALL).value(uniqueId).value(action);
+    message.rawValue((byte[]) payload).endArray();
+    return message.toByteArray();
+  }
+
+  @Override
+  protected Object makeCallError(
+      String uniqueId, String action, String errorCode, String errorDescription) {
+    CborWriter message = new CborWriter();
+    message
+        .beginArray()
+        .value(TYPENUMBER_CALLERROR)
+        .value(uniqueId)
+        .value(String.valueOf(errorCode))
+        .value(String.valueOf(errorDescription))
+        .beginObject()
+        .endObject()
+        .endArray();
+    return message.toByteArray();
+  }
+
+  /** Encode the payload straight into the message, skipping the intermediate payload bytes. */
+  @Override
+  protected void transmitCallResult(String uniqueId, String action, Confirmation confirmation)
+      throws NotConnectedException {
+    CborWriter message = new CborWriter();
+    try {
+      message.beginArray().value(TYPENUMBER_CALLRESULT).value(uniqueId);
+      codec.write(confirmation, message);
+      message.endArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    radio.send(message.toByteArray());
+  }
+
+  /** Reads the id only, a malformed call is not answered with a CallError like in parse. */
+  @Override
+  protected String uniqueIdOf(Object call) {
+    try {
+      CborReader reader = new CborReader(toBytes(call));
+      reader.beginArray();
+      reader.nextInt();
+      return reader.nextString();
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  @Override
+  protected Message parse(Object cbor) {
+    Message message;
+    String messageId = "-1";
+
+    try {
+      CborReader reader = envelopeReaders.get().reset(toBytes(cbor));
+      reader.beginArray();
+      int messageType = reader.nextInt();
+      messageId = reader.nextString();
+
+      if (messageType == TYPENUMBER_CALL) {
+        message = new CallMessage();
+        message.setAction(reader.nextString());
+        message.setPayload(reader.nextRawValue());
+      } else if (messageType == TYPENUMBER_CALLRESULT) {
+        message = new CallResultMessage();
+        message.setPayload(reader.nextRawValue());
+      } else if (messageType == TYPENUMBER_CALLERROR) {
+        message = new CallErrorMessage();
+        ((CallErrorMessage) message).setErrorCode(reader.nextString());
+        ((CallErrorMessage) message).setErrorDescription(reader.nextString());
+        byte[] details = reader.nextRawValue();
+        ((CallErrorMessage) message)
+            .setRawPayload(codec.read(new CborReader(details), JsonElement.class).toString());
+      } else {
+        logger.error("Unknown message type of message: {}", messageType);
+        sendCallError(messageId, null, "MessageTypeNotSupported", null);
+        return null;
+      }
+
+      while (reader.hasNext()) {
+        reader.skipValue();
+      }
+      reader.endArray();
+    } catch (Exception e) {
+      logger.error("Exception while parsing message with id: {}", messageId);
+      sendCallError(messageId, null, "RpcFrameworkError", e.getMessage());
+      return null;
+    }
+
+    message.setId(messageId);
+
+    return message;
+  }
+
+  private static byte[] toBytes(Object cbor) {
+    if (cbor instanceof ByteBuffer) {
+      ByteBuffer buffer = ((ByteBuffer) cbor).duplicate();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return bytes;
+    }
+    return (byte[]) cbor;
+  }
+}
@@ -0,0 +1,600 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * {@link JsonReader} over CBOR (RFC 8949) instead of JSON text, the counterpart of {@link
+ * CborWriter}. Gson type adapters read models from it as they would from JSON.
+ *
+ * <p>Only the subset of CBOR that maps onto JSON is accepted: integers, floating point numbers,
+ * text strings, arrays, maps with text keys, booleans and null. Tags are skipped.
+ */
+final class CborReader extends JsonReader {
+
+  private static final Reader UNREADABLE_READER =
+      new Reader() {
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+          throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+          throw new AssertionError();
+        }
+      };
+
+  private static final int MAJOR_UNSIGNED = 0;
+  private static final int MAJOR_NEGATIVE = 1;
+  private static final int MAJOR_BYTES = 2;
+  private static final int MAJOR_TEXT = 3;
+  private static final int MAJOR_ARRAY = 4;
+  private static final int MAJOR_MAP = 5;
+  private static final int MAJOR_TAG = 6;
+  private static final int MAJOR_SIMPLE = 7;
+  private static final int INDEFINITE = 31;
+  private static final int BREAK = 0xff;
+
+  private byte[] data;
+  private int position;
+  private int limit;
+
+  // Per open container: items left (-1 when indefinite), whether it is a map and path info.
+  private long[] remaining = new long[8];
+  private boolean[] isMap = new boolean[8];
+  private String[] names = new String[8];
+  private int[] indices = new int[8];
+  private int depth;
+  private boolean expectingName;
+
+  CborReader(byte[] data) {
+    this(data, 0, data.length);
+  }
+
+  CborReader(byte[] data, int offset, int length) {
+    super(UNREADABLE_READER);
+    this.data = data;
+    this.position = offset;
+    this.limit = offset + length;
+  }
+
+  /**
+   * Start reading another input, so that a reader can be reused for many small messages.
+   *
+   * @param data the CBOR to read.
+   * @return this reader.
+   */
+  CborReader reset(byte[] data) {
+    this.data = data;
+    this.position = 0;
+    this.limit = data.length;
+    this.depth = 0;
+    this.expectingName = false;
+    return this;
+  }
+
+  /**
+   * Read the next value as undecoded CBOR.
+   *
+   * @return a copy of the bytes of the next complete data item.
+   * @throws IOException if the input is malformed.
+   */
+  byte[] nextRawValue() throws IOException {
+    skipTags();
+    int start = position;
+    skipItem();
+    valueConsumed();
+    return Arrays.copyOfRange(data, start, position);
+  }
+
+  @Override
+  public JsonToken peek() throws IOException {
+    if (depth > 0 && isEndOfContainer()) {
+      return isMap[depth - 1] ? JsonToken.END_OBJECT : JsonToken.END_ARRAY;
+    }
+    if (depth == 0 && position >= limit) {
+      return JsonToken.END_DOCUMENT;
+    }
+    if (expectingName) {
+      return JsonToken.NAME;
+    }
+    skipTags();
+    int initial = byteAt(position);
+    switch (initial >>> 5) {
+      case MAJOR_UNSIGNED:
+      case MAJOR_NEGATIVE:
+        return JsonToken.NUMBER;
+      case MAJOR_TEXT:
+        return JsonToken.STRING;
+      case MAJOR_ARRAY:
+        return JsonToken.BEGIN_ARRAY;
+      case MAJOR_MAP:
+        return JsonToken.BEGIN_OBJECT;
+      case MAJOR_SIMPLE:
+        switch (initial & 0x1f) {
+          case 20:
+          case 21:
+            return JsonToken.BOOLEAN;
+          case 22:
+          case 23:
+            return JsonToken.NULL;
+          case 25:
+          case 26:
+          case 27:
+            return JsonToken.NUMBER;
+          default:
+            throw syntaxError("Unsupported simple value " + initial);
+        }
+      default:
+        throw syntaxError("Unsupported major type " + (initial >>> 5));
+    }
+  }
+
+  @Override
+  public void beginArray() throws IOException {
+    expect(JsonToken.BEGIN_ARRAY);
+    push(false);
+  }
+
+  @Override
+  public void endArray() throws IOException {
+    expect(JsonToken.END_ARRAY);
+    pop();
+  }
+
+  @Override
+  public void beginObject() throws IOException {
+    expect(JsonToken.BEGIN_OBJECT);
+    push(true);
+  }
+
+  @Override
+  public void endObject() throws IOException {
+    expect(JsonToken.END_OBJECT);
+    pop();
+  }
+
+  @Override
+  public boolean hasNext() throws IOException {
+    JsonToken token = peek();
+    return token != JsonToken.END_OBJECT
+        && token != JsonToken.END_ARRAY
+        && token != JsonToken.END_DOCUMENT;
+  }
+
+  @Override
+  public String nextName() throws IOException {
+    expect(JsonToken.NAME);
+    skipTags();
+    if (byteAt(position) >>> 5 != MAJOR_TEXT) {
+      throw syntaxError("Expected a text key");
+    }
+    String name = readText();
+    names[depth - 1] = name;
+    expectingName = false;
+    return name;
+  }
+
+  @Override
+  public String nextString() throws IOException {
+    JsonToken token = peek();
+    String value;
+    if (token == JsonToken.STRING) {
+      value = readText();
+    } else if (token == JsonToken.NUMBER) {
+      value = readNumberText();
+    } else {
+      throw unexpected("a string", token);
+    }
+    valueConsumed();
+    return value;
+  }
+
+  @Override
+  public boolean nextBoolean() throws IOException {
+    expect(JsonToken.BOOLEAN);
+    boolean value = (data[position++] & 0x1f) == 21;
+    valueConsumed();
+    return value;
+  }
+
+  @Override
+  public void nextNull() throws IOException {
+    expect(JsonToken.NULL);
+    position++;
+    valueConsumed();
+  }
+
+  @Override
+  public double nextDouble() throws IOException {
+    JsonToken token = peek();
+    double value;
+    if (token == JsonToken.NUMBER) {
+      value = isFloat() ? readFloat() : readInteger();
+    } else if (token == JsonToken.STRING) {
+      value = parseDouble(readText());
+    } else {
+      throw unexpected("a double", token);
+    }
+    if (!isLenient() && (Double.isNaN(value) || Double.isInfinite(value))) {
+      throw new MalformedJsonException(
+          "JSON forbids NaN and infinities: " + value + locationString());
+    }
+    valueConsumed();
+    return value;
+  }
+
+  @Override
+  public long nextLong() throws IOException {
+    JsonToken token = peek();
+    long value;
+    if (token == JsonToken.NUMBER) {
+      if (isFloat()) {
+        double number = readFloat();
+        value = (long) number;
+        if (value != number) {
+          throw new NumberFormatException("Expected a long but was " + number + locationString());
+        }
+      } else {
+        value = readInteger();
+      }
+    } else if (token == JsonToken.STRING) {
+      String text = readText();
+      try {
+        value = Long.parseLong(text);
+      } catch (NumberFormatException e) {
+        double number = parseDouble(text);
+        value = (long) number;
+        if (value != number) {
+          throw new NumberFormatException("Expected a long but was " + text + locationString());
+        }
+      }
+    } else {
+      throw unexpected("a long", token);
+    }
+    valueConsumed();
+    return value;
+  }
+
+  @Override
+  public int nextInt() throws IOException {
+    long value = nextLong();
+    if ((int) value != value) {
+      throw new NumberFormatException("Expected an int but was " + value + locationString());
+    }
+    return (int) value;
+  }
+
+  @Override
+  public void skipValue() throws IOException {
+    JsonToken token = peek();
+    switch (token) {
+      case NAME:
+        nextName();
+        skipValue();
+        return;
+      case END_ARRAY:
+      case END_OBJECT:
+      case END_DOCUMENT:
+        throw unexpected("a value", token);
+      default:
+        skipItem();
+        valueConsumed();
+    }
+  }
+
+  @Override
+  public void close() {
+    depth = 0;
+    position = limit;
+  }
+
+  @Override
+  public String getPath() {
+    StringBuilder path = new StringBuilder("$");
+    for (int i = 0; i < depth; i++) {
+      if (isMap[i]) {
+        path.append('.');
+        if (names[i] != null) {
+          path.append(names[i]);
+        }
+      } else {
+        path.append('[').append(indices[i]).append(']');
+      }
+    }
+    return path.toString();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + locationString();
+  }
+
+  private void push(boolean map) throws IOException {
+    int initial = data[position] & 0xff;
+    long count;
+    if ((initial & 0x1f) == INDEFINITE) {
+      position++;
+      count = -1;
+    } else {
+      count = readArgument();
+      if (count < 0) {
+        throw syntaxError("Container too large");
+      }
+    }
+    if (depth == remaining.length) {
+      remaining = Arrays.copyOf(remaining, depth * 2);
+      isMap = Arrays.copyOf(isMap, depth * 2);
+      names = Arrays.copyOf(names, depth * 2);
+      indices = Arrays.copyOf(indices, depth * 2);
+    }
+    remaining[depth] = count;
+    isMap[depth] = map;
+    names[depth] = null;
+    indices[depth] = 0;
+    depth++;
+    expectingName = map;
+  }
+
+  private void pop() {
+    if (remaining[depth - 1] < 0) {
+      position++;
+    }
+    depth--;
+    valueConsumed();
+  }
+
+  private boolean isEndOfContainer() throws IOException {
+    long left = remaining[depth - 1];
+    if (left >= 0) {
+      return left == 0 && !(isMap[depth - 1] && !expectingName);
+    }
+    return !(isMap[depth - 1] && !expectingName) && byteAt(position) == BREAK;
+  }
+
+  private void valueConsumed() {
+    if (depth == 0) {
+      expectingName = false;
+      return;
+    }
+    int top = depth - 1;
+    expectingName = isMap[top];
+    if (!isMap[top]) {
+      indices[top]++;
+    }
+    if (remaining[top] > 0) {
+      remaining[top]--;
+    }
+  }
+
+  private void expect(JsonToken expected) throws IOException {
+    JsonToken token = peek();
+    if (token != expected) {
+      throw unexpected(expected.toString(), token);
+    }
+  }
+
+  private void skipTags() throws IOException {
+    while (byteAt(position) >>> 5 == MAJOR_TAG) {
+      readArgument();
+    }
+  }
+
+  private void skipItem() throws IOException {
+    int initial = byteAt(position);
+    int major = initial >>> 5;
+    if ((initial & 0x1f) == INDEFINITE && major != MAJOR_SIMPLE) {
+      position++;
+      while (byteAt(position) != BREAK) {
+        skipItem();
+      }
+      position++;
+      return;
+    }
+    long argument = readArgument();
+    switch (major) {
+      case MAJOR_BYTES:
+      case MAJOR_TEXT:
+        if (argument < 0 || argument > limit - position) {
+          throw syntaxError("Truncated string");
+        }
+        position += (int) argument;
+        break;
+      case MAJOR_ARRAY:
+        for (long i = 0; i < argument; i++) {
+          skipItem();
+        }
+        break;
+      case MAJOR_MAP:
+        for (long i = 0; i < argument; i++) {
+          skipItem();
+          skipItem();
+        }
+        break;
+      case MAJOR_TAG:
+        skipItem();
+        break;
+      default:
+        break;
+    }
+  }
+
+  private String readText() throws IOException {
+    int initial = byteAt(position);
+    if ((initial & 0x1f) == INDEFINITE) {
+      position++;
+      StringBuilder text = new StringBuilder();
+      while (byteAt(position) != BREAK) {
+        text.append(readText());
+      }
+      position++;
+      return text.toString();
+    }
+    long length = readArgument();
+    if (length < 0 || length > limit - position) {
+      throw syntaxError("Truncated string");
+    }
+    int start = position;
+    int end = start + (int) length;
+    position = end;
+    for (int i = start; i < end; i++) {
+      if (data[i] < 0) {
+        return new String(data, start, end - start, StandardCharsets.UTF_8);
+      }
+    }
+    char[] chars = new char[end - start];
+    for (int i = start; i < end; i++) {
+      chars[i - start] = (char) data[i];
+    }
+    return new String(chars);
+  }
+
+  private boolean isFloat() {
+    return (data[position] & 0xff) >>> 5 == MAJOR_SIMPLE;
+  }
+
+  private long readInteger() throws IOException {
+    int major = byteAt(position) >>> 5;
+    long argument = readArgument();
+    if (argument < 0) {
+      throw new NumberFormatException("Integer out of range" + locationString());
+    }
+    return major == MAJOR_NEGATIVE ? -1 - argument : argument;
+  }
+
+  private String readNumberText() throws IOException {
+    if (isFloat()) {
+      double value = readFloat();
+      long integral = (long) value;
+      return integral == value ? Long.toString(integral) : Double.toString(value);
+    }
+    int major = byteAt(position) >>> 5;
+    long argument = readArgument();
+    if (argument < 0) {
+      String unsigned = Long.toUnsignedString(argument);
+      return major == MAJOR_NEGATIVE
+          ? new BigInteger(unsigned).negate().subtract(BigInteger.ONE).toString()
+          : unsigned;
+    }
+    return Long.toString(major == MAJOR_NEGATIVE ? -1 - argument : argument);
+  }
+
+  private double readFloat() throws IOException {
+    int additional = byteAt(position) & 0x1f;
+    position++;
+    switch (additional) {
+      case 25:
+        return halfToDouble((int) readBytes(2));
+      case 26:
+        return Float.intBitsToFloat((int) readBytes(4));
+      default:
+        return Double.longBitsToDouble(readBytes(8));
+    }
+  }
+
+  private static double halfToDouble(int bits) {
+    int exponent = (bits >>> 10) & 0x1f;
+    int mantissa = bits & 0x3ff;
+    double value;
+    if (exponent == 0) {
+      value = mantissa * Math.pow(2, -24);
+    } else if (exponent == 31) {
+      value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+    } else {
+      value = (mantissa + 1024) * Math.pow(2, exponent - 25);
+    }
+    return (bits & 0x8000) != 0 ? -value : value;
+  }
+
+  /** Read the head of the item at the current position and return its argument. */
+  private long readArgument() throws IOException {
+    int additional = byteAt(position) & 0x1f;
+    position++;
+    if (additional < 24) {
+      return additional;
+    }
+    switch (additional) {
+      case 24:
+        return readBytes(1);
+      case 25:
+        return readBytes(2);
+      case 26:
+        return readBytes(4);
+      case 27:
+        return readBytes(8);
+      default:
+        throw syntaxError("Unsupported additional information " + additional);
+    }
+  }
+
+  private long readBytes(int count) throws IOException {
+    if (limit - position < count) {
+      throw syntaxError("Unexpected end of input");
+    }
+    long value = 0;
+    for (int i = 0; i < count; i++) {
+      value = (value << 8) | (data[position++] & 0xff);
+    }
+    return value;
+  }
+
+  private int byteAt(int index) throws IOException {
+    if (index >= limit) {
+      throw syntaxError("Unexpected end of input");
+    }
+    return data[index] & 0xff;
+  }
+
+  private double parseDouble(String text) {
+    try {
+      return Double.parseDouble(text);
+    } catch (NumberFormatException e) {
+      throw new NumberFormatException("Expected a number but was " + text + locationString());
+    }
+  }
+
+  private IllegalStateException unexpected(String expected, JsonToken token) {
+    return new IllegalStateException(
+        "Expected " + expected + " but was " + token + locationString());
+  }
+
+  private MalformedJsonException syntaxError(String message) {
+    return new MalformedJsonException(message + locationString());
+  }
+
+  private String locationString() {
+    return " at offset " + position + " path " + getPath();
+  }
+}
@@ -0,0 +1,330 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * {@link JsonWriter} producing CBOR (RFC 8949) instead of JSON text, so that Gson type adapters,
+ * including the precompiled ones, encode models straight to CBOR.
+ *
+ * <p>Objects and arrays are written with indefinite length. Integers use the shortest encoding,
+ * doubles are written as single precision when that is exact. Like Gson's own writer, a property
+ * with a null value is dropped unless null values are serialized.
+ */
+final class CborWriter extends JsonWriter {
+
+  private static final Writer UNWRITABLE_WRITER =
+      new Writer() {
+        @Override
+        public void write(char[] buffer, int offset, int counter) {
+          throw new AssertionError();
+        }
+
+        @Override
+        public void flush() {
+          throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+          throw new AssertionError();
+        }
+      };
+
+  private static final int MAJOR_UNSIGNED = 0;
+  private static final int MAJOR_NEGATIVE = 1 << 5;
+  private static final int MAJOR_TEXT = 3 << 5;
+  private static final int INDEFINITE_ARRAY = 0x9f;
+  private static final int INDEFINITE_MAP = 0xbf;
+  private static final int BREAK = 0xff;
+  private static final int FALSE = 0xf4;
+  private static final int TRUE = 0xf5;
+  private static final int NULL = 0xf6;
+  private static final int FLOAT = 0xfa;
+  private static final int DOUBLE = 0xfb;
+
+  private byte[] buffer;
+  private int size;
+  private String pendingName;
+
+  CborWriter() {
+    this(256);
+  }
+
+  CborWriter(int initialCapacity) {
+    super(UNWRITABLE_WRITER);
+    buffer = new byte[initialCapacity];
+    setSerializeNulls(false);
+  }
+
+  /**
+   * The CBOR written so far.
+   *
+   * @return a copy of the encoded bytes.
+   */
+  byte[] toByteArray() {
+    if (pendingName != null) {
+      throw new IllegalStateException("Dangling name: " + pendingName);
+    }
+    return Arrays.copyOf(buffer, size);
+  }
+
+  /**
+   * Write an already encoded CBOR value.
+   *
+   * @param value a single complete CBOR data item.
+   * @return this writer.
+   */
+  CborWriter rawValue(byte[] value) {
+    writePendingName();
+    ensureCapacity(value.length);
+    System.arraycopy(value, 0, buffer, size, value.length);
+    size += value.length;
+    return this;
+  }
+
+  @Override
+  public CborWriter beginArray() {
+    writePendingName();
+    put(INDEFINITE_ARRAY);
+    return this;
+  }
+
+  @Override
+  public CborWriter endArray() {
+    put(BREAK);
+    return this;
+  }
+
+  @Override
+  public CborWriter beginObject() {
+    writePendingName();
+    put(INDEFINITE_MAP);
+    return this;
+  }
+
+  @Override
+  public CborWriter endObject() {
+    if (pendingName != null) {
+      throw new IllegalStateException("Dangling name: " + pendingName);
+    }
+    put(BREAK);
+    return this;
+  }
+
+  @Override
+  public CborWriter name(String name) {
+    if (name == null) {
+      throw new NullPointerException("name == null");
+    }
+    if (pendingName != null) {
+      throw new IllegalStateException("Already wrote a name, expecting a value.");
+    }
+    pendingName = name;
+    return this;
+  }
+
+  @Override
+  public CborWriter value(String value) {
+    if (value == null) {
+      return nullValue();
+    }
+    writePendingName();
+    writeText(value);
+    return this;
+  }
+
+  @Override
+  public CborWriter jsonValue(String value) {
+    throw new UnsupportedOperationException("Raw JSON values can't be written as CBOR");
+  }
+
+  @Override
+  public CborWriter nullValue() {
+    if (pendingName != null) {
+      if (!getSerializeNulls()) {
+        pendingName = null;
+        return this;
+      }
+      writePendingName();
+    }
+    put(NULL);
+    return this;
+  }
+
+  @Override
+  public CborWriter value(boolean value) {
+    writePendingName();
+    put(value ? TRUE : FALSE);
+    return this;
+  }
+
+  @Override
+  public CborWriter value(Boolean value) {
+    if (value == null) {
+      return nullValue();
+    }
+    return value(value.booleanValue());
+  }
+
+  @Override
+  public CborWriter value(float value) {
+    return value((double) value);
+  }
+
+  @Override
+  public CborWriter value(double value) {
+    if (!isLenient() && (Double.isNaN(value) || Double.isInfinite(value))) {
+      throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+    }
+    writePendingName();
+    float single = (float) value;
+    if (single == value || Double.isNaN(value)) {
+      ensureCapacity(5);
+      buffer[size++] = (byte) FLOAT;
+      putInt(Float.floatToIntBits(single));
+    } else {
+      ensureCapacity(9);
+      buffer[size++] = (byte) DOUBLE;
+      long bits = Double.doubleToLongBits(value);
+      putInt((int) (bits >>> 32));
+      putInt((int) bits);
+    }
+    return this;
+  }
+
+  @Override
+  public CborWriter value(long value) {
+    writePendingName();
+    if (value >= 0) {
+      writeHead(MAJOR_UNSIGNED, value);
+    } else {
+      writeHead(MAJOR_NEGATIVE, -1 - value);
+    }
+    return this;
+  }
+
+  @Override
+  public CborWriter value(Number value) {
+    if (value == null) {
+      return nullValue();
+    }
+    if (value instanceof Integer
+        || value instanceof Long
+        || value instanceof Short
+        || value instanceof Byte) {
+      return value(value.longValue());
+    }
+    if (value instanceof Double || value instanceof Float) {
+      return value(value.doubleValue());
+    }
+    String text = value.toString();
+    try {
+      return value(Long.parseLong(text));
+    } catch (NumberFormatException e) {
+      return value(Double.parseDouble(text));
+    }
+  }
+
+  @Override
+  public void flush() {}
+
+  @Override
+  public void close() throws IOException {}
+
+  private void writePendingName() {
+    if (pendingName != null) {
+      String name = pendingName;
+      pendingName = null;
+      writeText(name);
+    }
+  }
+
+  private void writeText(String text) {
+    int length = text.length();
+    boolean ascii = true;
+    for (int i = 0; i < length && ascii; i++) {
+      ascii = text.charAt(i) < 0x80;
+    }
+    if (ascii) {
+      writeHead(MAJOR_TEXT, length);
+      ensureCapacity(length);
+      for (int i = 0; i < length; i++) {
+        buffer[size++] = (byte) text.charAt(i);
+      }
+    } else {
+      byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+      writeHead(MAJOR_TEXT, encoded.length);
+      ensureCapacity(encoded.length);
+      System.arraycopy(encoded, 0, buffer, size, encoded.length);
+      size += encoded.length;
+    }
+  }
+
+  private void writeHead(int majorType, long argument) {
+    ensureCapacity(9);
+    if (argument < 24) {
+      buffer[size++] = (byte) (majorType | argument);
+    } else if (argument < 0x100) {
+      buffer[size++] = (byte) (majorType | 24);
+      buffer[size++] = (byte) argument;
+    } else if (argument < 0x10000) {
+      buffer[size++] = (byte) (majorType | 25);
+      buffer[size++] = (byte) (argument >>> 8);
+      buffer[size++] = (byte) argument;
+    } else if (argument < 0x100000000L) {
+      buffer[size++] = (byte) (majorType | 26);
+      putInt((int) argument);
+    } else {
+      buffer[size++] = (byte) (majorType | 27);
+      putInt((int) (argument >>> 32));
+      putInt((int) argument);
+    }
+  }
+
+  private void putInt(int value) {
+    buffer[size++] = (byte) (value >>> 24);
+    buffer[size++] = (byte) (value >>> 16);
+    buffer[size++] = (byte) (value >>> 8);
+    buffer[size++] = (byte) value;
+  }
+
+  private void put(int value) {
+    ensureCapacity(1);
+    buffer[size++] = (byte) value;
+  }
+
+  private void ensureCapacity(int length) {
+    if (buffer.length - size < length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+    }
+  }
+}
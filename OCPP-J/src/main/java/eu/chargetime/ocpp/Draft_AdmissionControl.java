@@ -0,0 +1,289 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.enums.CloseHandshakeType;
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.handshake.Handshakedata;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.server.WebSocketServer;
+
+/**
+ * A {@link Draft_6455} that can refuse a handshake with 503 Service Unavailable and a Retry-After
+ * header. Java-WebSocket answers a handshake refused by an exception with a bare 404 or 500, so
+ * the listener marks the draft of the connection as refused instead, and closes the connection
+ * once the response is written.
+ *
+ * <p>The draft also answers a handshake after its authentication completes. Java-WebSocket writes
+ * the response as soon as the listener returns from the handshake callback, so the draft keeps the
+ * response of a handshake that is still being authenticated, and the listener writes it, or a
+ * refusal, when the authentication completes.
+ */
+class Draft_AdmissionControl extends Draft_6455 {
+
+  static final int HANDSHAKE_REFUSED_CLOSE_CODE = 10503;
+
+  private int retryAfter;
+  private volatile boolean refused;
+  private CompletionStage<Void> authentication;
+  private List<ByteBuffer> deferredResponse;
+
+  private Draft_AdmissionControl(Draft_6455 draft) {
+    super(copyExtensions(draft), copyProtocols(draft), draft.getMaxFrameSize());
+  }
+
+  /**
+   * Replace the plain {@link Draft_6455} drafts of a listener by drafts that can refuse a
+   * handshake. Without drafts Java-WebSocket uses a plain {@link Draft_6455}, which is replaced
+   * the same way.
+   *
+   * @param drafts the drafts of the listener.
+   * @return the drafts to give to the server.
+   */
+  static List<Draft> wrap(List<Draft> drafts) {
+    if (drafts.isEmpty()) {
+      return Collections.singletonList(new Draft_AdmissionControl(new Draft_6455()));
+    }
+    List<Draft> wrapped = new ArrayList<>(drafts.size());
+    for (Draft draft : drafts) {
+      wrapped.add(
+          draft.getClass() == Draft_6455.class
+              ? new Draft_AdmissionControl((Draft_6455) draft)
+              : draft);
+    }
+    return wrapped;
+  }
+
+  /**
+   * Admit a handshake, or refuse it before any authentication work. A handshake matched by one of
+   * these drafts is answered with 503 once the listener returns the handshake response.
+   *
+   * @param admission the admission control of the listener.
+   * @param webSocket the connection of the handshake.
+   * @param draft the draft that matched the handshake.
+   * @return true if admitted, the caller must {@link HandshakeAdmission#release() release} it.
+   * @throws InvalidDataException if refused and the draft can't answer with 503.
+   */
+  static boolean admit(HandshakeAdmission admission, WebSocket webSocket, Draft draft)
+      throws InvalidDataException {
+    InetSocketAddress remote = webSocket.getRemoteSocketAddress();
+    int retryAfter = admission.tryAdmit(remote != null ? remote.getAddress() : null);
+    if (retryAfter == HandshakeAdmission.ADMITTED) {
+      return true;
+    }
+    if (!(draft instanceof Draft_AdmissionControl)) {
+      throw new InvalidDataException(503, "Too many handshakes, retry after " + retryAfter + "s");
+    }
+    ((Draft_AdmissionControl) draft).retryAfter = retryAfter;
+    return false;
+  }
+
+  /**
+   * Answer a handshake once its authentication completes, rather than when the listener returns
+   * the handshake response. The listener must then open the connection with {@link
+   * #whenAuthenticated(WebSocketServer, WebSocket, Runnable)}.
+   *
+   * @param draft the draft that matched the handshake.
+   * @param authentication the authentication of the handshake.
+   * @return true if deferred, false if the authentication already completed or the draft can't
+   *     defer, the caller must then wait for the authentication before answering.
+   */
+  static boolean defer(Draft draft, CompletionStage<Void> authentication) {
+    if (!(draft instanceof Draft_AdmissionControl)
+        || authentication.toCompletableFuture().isDone()) {
+      return false;
+    }
+    ((Draft_AdmissionControl) draft).authentication = authentication;
+    return true;
+  }
+
+  /**
+   * Wait for the authentication of a handshake that can't be deferred.
+   *
+   * @param authentication the authentication of the handshake.
+   * @throws InvalidDataException if the handshake is refused.
+   */
+  static void awaitAuthentication(CompletionStage<Void> authentication)
+      throws InvalidDataException {
+    try {
+      authentication.toCompletableFuture().join();
+    } catch (CompletionException | CancellationException e) {
+      Throwable cause = e.getCause() != null ? e.getCause() : e;
+      if (cause instanceof AuthenticationException) {
+        throw new InvalidDataException(
+            ((AuthenticationException) cause).getErrorCode(), cause.getMessage());
+      }
+      throw new InvalidDataException(401, cause.getMessage());
+    }
+  }
+
+  /**
+   * Open a connection once its handshake is authenticated. The deferred response is queued before
+   * the connection is opened, so it is written before anything the new session sends. A refused
+   * handshake is answered with the error code of its {@link AuthenticationException}, or 401, and
+   * the connection is closed without opening it.
+   *
+   * @param server the server of the connection.
+   * @param webSocket the connection, of which {@code onOpen} is called.
+   * @param open opens the session of the connection.
+   */
+  static void whenAuthenticated(WebSocketServer server, WebSocket webSocket, Runnable open) {
+    Draft draft = webSocket.getDraft();
+    if (!(draft instanceof Draft_AdmissionControl)
+        || ((Draft_AdmissionControl) draft).authentication == null) {
+      open.run();
+      return;
+    }
+    Draft_AdmissionControl deferred = (Draft_AdmissionControl) draft;
+    deferred.authentication.whenComplete(
+        (ignored, failure) -> {
+          if (!webSocket.isOpen()) {
+            // the client hung up while waiting
+            return;
+          }
+          WebSocketImpl connection = (WebSocketImpl) webSocket;
+          if (failure == null) {
+            connection.outQueue.addAll(deferred.deferredResponse);
+            open.run();
+            server.onWriteDemand(webSocket);
+          } else {
+            deferred.refused = true;
+            connection.outQueue.add(refusal(failure));
+            server.onWriteDemand(webSocket);
+            webSocket.close(HANDSHAKE_REFUSED_CLOSE_CODE);
+          }
+        });
+  }
+
+  /**
+   * Check if the handshake of a connection was refused.
+   *
+   * @param webSocket the connection.
+   * @return true if the connection must be closed without a session.
+   */
+  static boolean isRefused(WebSocket webSocket) {
+    Draft draft = webSocket.getDraft();
+    return draft instanceof Draft_AdmissionControl
+        && ((Draft_AdmissionControl) draft).retryAfter > 0;
+  }
+
+  @Override
+  public Draft copyInstance() {
+    return new Draft_AdmissionControl(this);
+  }
+
+  @Override
+  public List<ByteBuffer> createHandshake(Handshakedata handshakedata, boolean withcontent) {
+    if (retryAfter == 0) {
+      List<ByteBuffer> response = super.createHandshake(handshakedata, withcontent);
+      if (authentication == null) {
+        return response;
+      }
+      deferredResponse = response;
+      return Collections.emptyList();
+    }
+    String response =
+        "HTTP/1.1 503 Service Unavailable\r\n"
+            + "Retry-After: "
+            + retryAfter
+            + "\r\n"
+            + "Content-Length: 0\r\n"
+            + "Connection: close\r\n"
+            + "\r\n";
+    return Collections.singletonList(ByteBuffer.wrap(response.getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  /** A refused connection is closed without a closing handshake, there is no WebSocket to close. */
+  @Override
+  public CloseHandshakeType getCloseHandshakeType() {
+    return retryAfter > 0 || refused ? CloseHandshakeType.NONE : super.getCloseHandshakeType();
+  }
+
+  private static ByteBuffer refusal(Throwable failure) {
+    if (failure instanceof CompletionException && failure.getCause() != null) {
+      failure = failure.getCause();
+    }
+    int code =
+        failure instanceof AuthenticationException
+            ? ((AuthenticationException) failure).getErrorCode()
+            : 401;
+    String response =
+        "HTTP/1.1 "
+            + code
+            + " "
+            + reasonPhrase(code)
+            + "\r\n"
+            + "Content-Length: 0\r\n"
+            + "Connection: close\r\n"
+            + "\r\n";
+    return ByteBuffer.wrap(response.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static String reasonPhrase(int code) {
+    switch (code) {
+      case 401:
+        return "Unauthorized";
+      case 403:
+        return "Forbidden";
+      case 409:
+        return "Conflict";
+      case 503:
+        return "Service Unavailable";
+      default:
+        return "Refused";
+    }
+  }
+
+  private static List<IExtension> copyExtensions(Draft_6455 draft) {
+    List<IExtension> extensions = new ArrayList<>();
+    for (IExtension extension : draft.getKnownExtensions()) {
+      extensions.add(extension.copyInstance());
+    }
+    return extensions;
+  }
+
+  private static List<IProtocol> copyProtocols(Draft_6455 draft) {
+    List<IProtocol> protocols = new ArrayList<>();
+    for (IProtocol protocol : draft.getKnownProtocols()) {
+      protocols.add(protocol.copyInstance());
+    }
+    return protocols;
+  }
+}
@@ -0,0 +1,309 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import eu.chargetime.ocpp.utilities.HashedWheelTimer;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.extensions.DefaultExtension;
+import org.java_websocket.framing.BinaryFrame;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.TextFrame;
+
+/**
+ * Writes the messages of one connection, coalescing the frames queued while a write is in
+ * progress into a single buffer, so they are written and flushed to the socket at once.
+ *
+ * <p>There is no writer thread and no linger: the first sender to find the writer idle writes its
+ * own frame and any frames queued meanwhile. A lone frame is written right away, frames sent in a
+ * burst share a write.
+ *
+ * <p>The future of a frame completes once it is handed to the socket, or exceptionally with a
+ * {@link NotConnectedException} if the connection is gone. While more than {@link
+ * #MAX_BUFFERED_BYTES} wait in the socket's write queue, ie. because the peer reads slower than it
+ * is sent to, the futures are held back until the socket has written enough of them, so senders
+ * waiting for their futures slow down with the connection. Java-WebSocket has no write callback;
+ * the queue is checked again on each write and on the shared timer.
+ *
+ * <p>Connections using an extension, such as permessage-deflate, are written frame by frame.
+ */
+final class FrameWriter {
+
+  /** Futures are held back while more than this many bytes wait to be written to the socket. */
+  static final int MAX_BUFFERED_BYTES = 256 * 1024;
+
+  /** Frames are coalesced up to this many bytes of payload per write. */
+  static final int MAX_BATCH_BYTES = 64 * 1024;
+
+  private static final long BUFFER_CHECK_MILLIS = 100;
+
+  private final WebSocket socket;
+  private final HashedWheelTimer timer;
+  private final Executor executor;
+  private final ConcurrentLinkedQueue<Pending> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean writing = new AtomicBoolean();
+  private final ArrayDeque<Pending> held = new ArrayDeque<>();
+  private boolean checkScheduled;
+
+  /**
+   * Create a writer for a connection.
+   *
+   * @param socket the connection, a {@link WebSocketClient} or a connection of a server.
+   */
+  FrameWriter(WebSocket socket) {
+    this(socket, RequestTimeouts.sharedTimer(), RequestTimeouts.sharedExecutor());
+  }
+
+  FrameWriter(WebSocket socket, HashedWheelTimer timer, Executor executor) {
+    this.socket = socket;
+    this.timer = timer;
+    this.executor = executor;
+  }
+
+  /**
+   * Write a message, a byte array as a binary frame or anything else as a text frame.
+   *
+   * @param message the message.
+   * @return completes when the frame is handed to the socket.
+   * @throws NotConnectedException the connection isn't open.
+   */
+  CompletableFuture<Void> write(Object message) throws NotConnectedException {
+    if (message instanceof byte[]) {
+      return enqueue(new Pending(true, ByteBuffer.wrap((byte[]) message)));
+    }
+    return enqueue(
+        new Pending(
+            false, ByteBuffer.wrap(message.toString().getBytes(StandardCharsets.UTF_8))));
+  }
+
+  /**
+   * Write a UTF-8 encoded text frame. The text is no longer used once this method returns, so
+   * the caller may reuse the buffer.
+   *
+   * @param text the encoded text, from its position to its limit.
+   * @return completes when the frame is handed to the socket.
+   * @throws NotConnectedException the connection isn't open.
+   */
+  CompletableFuture<Void> writeText(ByteBuffer text) throws NotConnectedException {
+    if (!socket.isOpen()) {
+      throw new NotConnectedException();
+    }
+    if (pending.isEmpty() && writing.compareAndSet(false, true)) {
+      // nothing is queued ahead, so the frame is encoded straight from the caller's buffer
+      Pending frame = new Pending(false, text.duplicate());
+      try {
+        writeBatch(Collections.singletonList(frame));
+      } finally {
+        writing.set(false);
+      }
+      drain();
+      return frame.written;
+    }
+    // queued behind another sender, which may write it after the caller reused the buffer
+    ByteBuffer copy = ByteBuffer.allocate(text.remaining());
+    copy.put(text.duplicate());
+    ((Buffer) copy).flip();
+    return enqueue(new Pending(false, copy));
+  }
+
+  private CompletableFuture<Void> enqueue(Pending frame) throws NotConnectedException {
+    if (!socket.isOpen()) {
+      throw new NotConnectedException();
+    }
+    pending.add(frame);
+    drain();
+    return frame.written;
+  }
+
+  /**
+   * Write the queued frames if no other sender does. Whoever finds the writer idle writes;
+   * checking again after letting go catches the frames queued by senders that found it busy.
+   */
+  private void drain() {
+    while (!pending.isEmpty() && writing.compareAndSet(false, true)) {
+      try {
+        List<Pending> batch = new ArrayList<>();
+        int bytes = 0;
+        Pending frame;
+        while (bytes < MAX_BATCH_BYTES && (frame = pending.poll()) != null) {
+          batch.add(frame);
+          bytes += frame.payload.remaining();
+        }
+        writeBatch(batch);
+      } finally {
+        writing.set(false);
+      }
+    }
+  }
+
+  private void writeBatch(List<Pending> batch) {
+    WebSocketImpl connection;
+    try {
+      if (!socket.isOpen()) {
+        throw new WebsocketNotConnectedException();
+      }
+      connection = connection();
+      if (connection != null && isPlain(connection.getDraft())) {
+        writeCoalesced(connection, batch);
+      } else {
+        for (Pending each : batch) {
+          if (each.binary) {
+            socket.send(each.payload);
+          } else {
+            TextFrames.send(socket, each.payload);
+          }
+        }
+      }
+    } catch (RuntimeException ex) {
+      Throwable cause =
+          ex instanceof WebsocketNotConnectedException ? new NotConnectedException() : ex;
+      for (Pending each : batch) {
+        each.written.completeExceptionally(cause);
+      }
+      return;
+    }
+    written(connection, batch);
+  }
+
+  /** Complete the futures of written frames, or hold them back while the socket is behind. */
+  private void written(WebSocketImpl connection, List<Pending> batch) {
+    List<Pending> done;
+    synchronized (held) {
+      held.addAll(batch);
+      if (connection != null && isBehind(connection)) {
+        scheduleCheck();
+        return;
+      }
+      done = new ArrayList<>(held);
+      held.clear();
+    }
+    for (Pending each : done) {
+      each.written.complete(null);
+    }
+  }
+
+  private void scheduleCheck() {
+    if (!checkScheduled) {
+      checkScheduled = true;
+      timer.newTimeout(
+          () -> executor.execute(this::checkHeld), BUFFER_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void checkHeld() {
+    synchronized (held) {
+      checkScheduled = false;
+    }
+    if (!socket.isOpen()) {
+      List<Pending> failed;
+      synchronized (held) {
+        failed = new ArrayList<>(held);
+        held.clear();
+      }
+      for (Pending each : failed) {
+        each.written.completeExceptionally(new NotConnectedException());
+      }
+      return;
+    }
+    written(connection(), Collections.emptyList());
+  }
+
+  /** Check if more than {@link #MAX_BUFFERED_BYTES} wait in the write queue of the socket. */
+  private static boolean isBehind(WebSocketImpl connection) {
+    long bytes = 0;
+    for (ByteBuffer buffer : connection.outQueue) {
+      bytes += buffer.remaining();
+      if (bytes > MAX_BUFFERED_BYTES) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void writeCoalesced(WebSocketImpl connection, List<Pending> batch) {
+    Draft draft = connection.getDraft();
+    ByteBuffer[] frames = new ByteBuffer[batch.size()];
+    int size = 0;
+    for (int i = 0; i < frames.length; i++) {
+      Pending each = batch.get(i);
+      DataFrame frame = each.binary ? new BinaryFrame() : new TextFrame();
+      frame.setPayload(each.payload);
+      frames[i] = draft.createBinaryFrame(frame);
+      size += frames[i].remaining();
+    }
+    ByteBuffer buffer;
+    if (frames.length == 1) {
+      buffer = frames[0];
+    } else {
+      buffer = ByteBuffer.allocate(size);
+      for (ByteBuffer frame : frames) {
+        buffer.put(frame);
+      }
+      ((Buffer) buffer).flip();
+    }
+    connection.outQueue.add(buffer);
+    connection.getWebSocketListener().onWriteDemand(connection);
+  }
+
+  private WebSocketImpl connection() {
+    WebSocket connection =
+        socket instanceof WebSocketClient ? ((WebSocketClient) socket).getConnection() : socket;
+    return connection instanceof WebSocketImpl ? (WebSocketImpl) connection : null;
+  }
+
+  private static boolean isPlain(Draft draft) {
+    return draft instanceof Draft_6455
+        && ((Draft_6455) draft).getExtension().getClass() == DefaultExtension.class;
+  }
+
+  private static class Pending {
+    private final boolean binary;
+    private final ByteBuffer payload;
+    private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+    private Pending(boolean binary, ByteBuffer payload) {
+      this.binary = binary;
+      this.payload = payload;
+    }
+  }
+}
@@ -0,0 +1,511 @@
+package eu.chargetime.ocpp;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+/**
+ * Base class of the type adapters emitted by the OCPP-J type adapter generator.
+ *
+ * <p>Generated adapters bind model fields through {@link MethodHandle}s resolved once per class,
+ * so no reflective field access or primitive boxing happens per message. The produced JSON is the
+ * same as Gson's reflective adapter would produce for the model.
+ *
+ * <p>Adapters of models with field validators also validate the model right after binding it, when
+ * reading from a {@link ValidatingJsonReader}. Nested models are validated by their own adapters
+ * as they are read, so the model is never walked a second time.
+ *
+ * <p>Reading from a {@link StrictJsonReader} adds structural checks to the model validation:
+ * values must have the JSON type of the field, null values are rejected and properties the model
+ * doesn't declare are rejected, unless the model is open for extensions. Lengths, ranges and
+ * formats are left to the model validation.
+ *
+ * @param <T> the model type.
+ */
+public abstract class GeneratedTypeAdapter<T> extends TypeAdapter<T> {
+
+  private static final JsonObject EMPTY_OBJECT = new JsonObject();
+
+  private final Gson gson;
+  private final TypeAdapterFactory factory;
+  private final Class<T> type;
+  private volatile TypeAdapter<T> delegate;
+
+  protected GeneratedTypeAdapter(Gson gson, TypeAdapterFactory factory, Class<T> type) {
+    this.gson = gson;
+    this.factory = factory;
+    this.type = type;
+  }
+
+  /**
+   * Write all serialized fields of the model. The enclosing object is handled by the caller.
+   *
+   * @param out writer positioned inside the JSON object.
+   * @param value the model, never null.
+   * @throws Throwable error while writing or while accessing a field.
+   */
+  protected abstract void writeFields(JsonWriter out, T value) throws Throwable;
+
+  /**
+   * Read a single property into the model. Unknown properties must be skipped.
+   *
+   * @param in reader positioned at the property value.
+   * @param name the property name.
+   * @param target the model being bound.
+   * @throws Throwable error while reading or while accessing a field.
+   */
+  protected abstract void readField(JsonReader in, String name, T target) throws Throwable;
+
+  /**
+   * Create an empty model instance to bind to.
+   *
+   * @return a new model instance.
+   * @throws Throwable error while creating the instance.
+   */
+  protected abstract T newInstance() throws Throwable;
+
+  /**
+   * Tell if this adapter validates the models it reads.
+   *
+   * @return true if {@link #isValid(Object)} is implemented.
+   */
+  protected boolean validatesWhileReading() {
+    return false;
+  }
+
+  /**
+   * Validate a model right after it was bound. Nested models were already validated by their own
+   * adapters.
+   *
+   * @param target the bound model.
+   * @return true if the model is valid.
+   * @throws Throwable error while accessing a field.
+   */
+  protected boolean isValid(T target) throws Throwable {
+    return true;
+  }
+
+  @Override
+  public void write(JsonWriter out, T value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    try {
+      writeFields(out, value);
+    } catch (IOException | RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new JsonIOException(e);
+    }
+    out.endObject();
+  }
+
+  @Override
+  public T read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      readNull(in);
+      return null;
+    }
+    try {
+      T target = newInstance();
+      in.beginObject();
+      while (in.hasNext()) {
+        readField(in, in.nextName(), target);
+      }
+      in.endObject();
+      if (in instanceof ValidatingJsonReader && validatesWhileReading() && !isValid(target)) {
+        throw ConstraintViolation.INSTANCE;
+      }
+      return target;
+    } catch (IllegalStateException e) {
+      throw new JsonSyntaxException(e);
+    } catch (IOException | RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new JsonIOException(e);
+    }
+  }
+
+  /**
+   * Create an instance of a model without a no-argument constructor. The instance is created the
+   * same way Gson's reflective adapter creates it, without running any constructor.
+   *
+   * @return a new model instance.
+   */
+  protected T allocate() {
+    TypeAdapter<T> reflective = delegate;
+    if (reflective == null) {
+      reflective = gson.getDelegateAdapter(factory, TypeToken.get(type));
+      delegate = reflective;
+    }
+    return reflective.fromJsonTree(EMPTY_OBJECT);
+  }
+
+  /**
+   * Write a value, honoring the runtime type of the value like Gson's reflective adapter does.
+   *
+   * @param out writer positioned at the property value.
+   * @param declared adapter of the declared field type.
+   * @param declaredType the declared field type.
+   * @param value the value to write, never null.
+   * @throws IOException error while writing.
+   */
+  @SuppressWarnings("unchecked")
+  protected void writeValue(JsonWriter out, TypeAdapter<?> declared, Class<?> declaredType, Object value)
+      throws IOException {
+    TypeAdapter<Object> adapter =
+        (TypeAdapter<Object>)
+            (value.getClass() == declaredType ? declared : gson.getAdapter(value.getClass()));
+    adapter.write(out, value);
+  }
+
+  protected static void writeDouble(JsonWriter out, double value) throws IOException {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new IllegalArgumentException(
+          value + " is not a valid double value as per JSON specification.");
+    }
+    out.value(value);
+  }
+
+  protected static int nextInt(JsonReader in) throws IOException {
+    expect(in, JsonToken.NUMBER);
+    try {
+      return in.nextInt();
+    } catch (NumberFormatException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
+
+  protected static long nextLong(JsonReader in) throws IOException {
+    expect(in, JsonToken.NUMBER);
+    try {
+      return in.nextLong();
+    } catch (NumberFormatException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
+
+  protected static double nextDouble(JsonReader in) throws IOException {
+    expect(in, JsonToken.NUMBER);
+    return in.nextDouble();
+  }
+
+  protected static boolean nextBoolean(JsonReader in) throws IOException {
+    expect(in, JsonToken.BOOLEAN);
+    if (in.peek() == JsonToken.STRING) {
+      return Boolean.parseBoolean(in.nextString());
+    }
+    return in.nextBoolean();
+  }
+
+  protected static String readString(JsonReader in) throws IOException {
+    JsonToken token = in.peek();
+    if (token == JsonToken.NULL) {
+      readNull(in);
+      return null;
+    }
+    expect(in, JsonToken.STRING);
+    if (token == JsonToken.BOOLEAN) {
+      return Boolean.toString(in.nextBoolean());
+    }
+    return in.nextString();
+  }
+
+  protected static Integer readInteger(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      readNull(in);
+      return null;
+    }
+    return nextInt(in);
+  }
+
+  protected static Long readLong(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      readNull(in);
+      return null;
+    }
+    return nextLong(in);
+  }
+
+  protected static Double readDouble(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      readNull(in);
+      return null;
+    }
+    return nextDouble(in);
+  }
+
+  protected static Boolean readBoolean(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      readNull(in);
+      return null;
+    }
+    return nextBoolean(in);
+  }
+
+  /**
+   * Consume a null value. Strict decoding rejects it, as OCPP omits absent values instead.
+   *
+   * @param in reader positioned at a null value.
+   * @throws IOException error while reading.
+   */
+  protected static void readNull(JsonReader in) throws IOException {
+    if (in instanceof StrictJsonReader) {
+      throw new PropertyConstraintException(null, "null is not allowed at " + in.getPath());
+    }
+    in.nextNull();
+  }
+
+  /**
+   * Skip the value of a property the model doesn't declare. Strict decoding rejects it.
+   *
+   * @param in reader positioned at the property value.
+   * @param name the property name.
+   * @throws IOException error while reading.
+   */
+  protected static void skipUnknown(JsonReader in, String name) throws IOException {
+    if (in instanceof StrictJsonReader) {
+      throw new JsonSyntaxException("Unknown property " + name + " at " + in.getPath());
+    }
+    in.skipValue();
+  }
+
+  private static void expect(JsonReader in, JsonToken expected) throws IOException {
+    if (in instanceof StrictJsonReader) {
+      JsonToken token = in.peek();
+      if (token != expected) {
+        throw new PropertyConstraintException(token, expected + " expected at " + in.getPath());
+      }
+    }
+  }
+
+  /**
+   * Resolve the no-argument constructor of a model.
+   *
+   * @param type the model type.
+   * @return a handle of type {@code ()type}.
+   */
+  protected static MethodHandle constructor(Class<?> type) {
+    try {
+      Constructor<?> constructor = type.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      return MethodHandles.lookup().unreflectConstructor(constructor);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Unable to access constructor of " + type.getName(), e);
+    }
+  }
+
+  /**
+   * Resolve a field read handle.
+   *
+   * @param type the model type.
+   * @param declaringType the type declaring the field, the model type or one of its superclasses.
+   * @param name the field name.
+   * @return a handle of type {@code (type)fieldType}.
+   */
+  protected static MethodHandle getter(Class<?> type, Class<?> declaringType, String name) {
+    Field field = field(declaringType, name);
+    try {
+      return MethodHandles.lookup()
+          .unreflectGetter(field)
+          .asType(MethodType.methodType(field.getType(), type));
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Unable to access field " + name, e);
+    }
+  }
+
+  /**
+   * Resolve a field write handle.
+   *
+   * @param type the model type.
+   * @param declaringType the type declaring the field, the model type or one of its superclasses.
+   * @param name the field name.
+   * @return a handle of type {@code (type, fieldType)void}.
+   */
+  protected static MethodHandle setter(Class<?> type, Class<?> declaringType, String name) {
+    Field field = field(declaringType, name);
+    try {
+      return MethodHandles.lookup()
+          .unreflectSetter(field)
+          .asType(MethodType.methodType(void.class, type, field.getType()));
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Unable to access field " + name, e);
+    }
+  }
+
+  /**
+   * Resolve a field validator, a {@code boolean isValid<Field>(<field type>)} method of the model.
+   *
+   * @param type the model type.
+   * @param name the validator name.
+   * @param fieldType the field type.
+   * @return a handle of type {@code (type, fieldType)boolean}.
+   */
+  protected static MethodHandle validator(Class<?> type, String name, Class<?> fieldType) {
+    try {
+      Method method = type.getDeclaredMethod(name, fieldType);
+      method.setAccessible(true);
+      return MethodHandles.lookup()
+          .unreflect(method)
+          .asType(MethodType.methodType(boolean.class, type, fieldType));
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Unable to access validator " + name, e);
+    }
+  }
+
+  /**
+   * Wrap the validator of a field holding a nested model, or an array of nested models.
+   *
+   * @param gson the Gson instance resolving the adapter of the nested model.
+   * @param validator the field validator.
+   * @param nestedType the nested model type.
+   * @return the nested validator.
+   */
+  protected static NestedValidator nestedValidator(
+      Gson gson, MethodHandle validator, Class<?> nestedType) {
+    return new NestedValidator(gson, validator, nestedType);
+  }
+
+  private static Field field(Class<?> declaringType, String name) {
+    try {
+      Field field = declaringType.getDeclaredField(name);
+      field.setAccessible(true);
+      return field;
+    } catch (NoSuchFieldException e) {
+      throw new IllegalStateException(
+          "Field " + name + " not found in " + declaringType.getName(), e);
+    }
+  }
+
+  /**
+   * Validator of a field holding a nested model or an array of nested models.
+   *
+   * <p>When the nested model is bound by a validating adapter, any nested model read from a {@link
+   * ValidatingJsonReader} is already known to be valid. The outcome of the field validator then
+   * only depends on whether the field is null or, for arrays, on the array length. Those outcomes
+   * are computed once with the field validator and cached, so nested models are not validated
+   * again.
+   */
+  protected static final class NestedValidator {
+
+    private static final int CACHED_LENGTHS = 64;
+    private static final byte UNKNOWN = 0;
+    private static final byte VALID = 1;
+    private static final byte INVALID = 2;
+
+    private final Gson gson;
+    private final MethodHandle validator;
+    private final Class<?> nestedType;
+    private final byte[] arrayOutcomes = new byte[CACHED_LENGTHS];
+    private volatile Boolean nestedValidating;
+    private volatile byte objectOutcome;
+
+    private NestedValidator(Gson gson, MethodHandle validator, Class<?> nestedType) {
+      this.gson = gson;
+      this.validator =
+          validator.asType(MethodType.methodType(boolean.class, Object.class, Object.class));
+      this.nestedType = nestedType;
+    }
+
+    public boolean isValid(Object target, Object value) throws Throwable {
+      if (value == null || !isNestedValidating()) {
+        return (boolean) validator.invokeExact(target, value);
+      }
+      if (!value.getClass().isArray()) {
+        byte outcome = objectOutcome;
+        if (outcome == UNKNOWN) {
+          outcome = outcome((boolean) validator.invokeExact(target, value));
+          objectOutcome = outcome;
+        }
+        return outcome == VALID;
+      }
+      Object[] array = (Object[]) value;
+      if (array.length >= CACHED_LENGTHS || containsNull(array)) {
+        return (boolean) validator.invokeExact(target, value);
+      }
+      byte outcome = arrayOutcomes[array.length];
+      if (outcome == UNKNOWN) {
+        outcome = outcome((boolean) validator.invokeExact(target, value));
+        arrayOutcomes[array.length] = outcome;
+      }
+      return outcome == VALID;
+    }
+
+    private boolean isNestedValidating() {
+      Boolean validating = nestedValidating;
+      if (validating == null) {
+        TypeAdapter<?> adapter = gson.getAdapter(nestedType);
+        validating =
+            adapter instanceof GeneratedTypeAdapter
+                && ((GeneratedTypeAdapter<?>) adapter).validatesWhileReading();
+        nestedValidating = validating;
+      }
+      return validating;
+    }
+
+    private static boolean containsNull(Object[] array) {
+      for (Object item : array) {
+        if (item == null) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static byte outcome(boolean valid) {
+      return valid ? VALID : INVALID;
+    }
+  }
+
+  /** Thrown by a validating adapter when a bound model is invalid. */
+  static final class ConstraintViolation extends RuntimeException {
+
+    static final ConstraintViolation INSTANCE = new ConstraintViolation();
+
+    private ConstraintViolation() {
+      super("Model is invalid", null, false, false);
+    }
+  }
+}
@@ -0,0 +1,221 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import eu.chargetime.ocpp.model.Exclude;
+import eu.chargetime.ocpp.model.Validatable;
+import eu.chargetime.ocpp.utilities.Timestamps;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.time.ZonedDateTime;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link PayloadCodec} backed by Gson. Dates are written as ISO-8601 instants, fields annotated
+ * with {@link Exclude} are not written and the precompiled type adapters of the model packages are
+ * used when present.
+ */
+public class GsonPayloadCodec implements PayloadCodec {
+
+  private static final Logger logger = LoggerFactory.getLogger(GsonPayloadCodec.class);
+
+  private final Gson gson;
+
+  public GsonPayloadCodec() {
+    GsonBuilder builder = new GsonBuilder();
+    builder.registerTypeAdapter(ZonedDateTime.class, new ZonedDateTimeAdapter().nullSafe());
+    builder.registerTypeAdapterFactory(new StrictEnumTypeAdapterFactory());
+    builder.addSerializationExclusionStrategy(
+        new ExclusionStrategy() {
+          @Override
+          public boolean shouldSkipClass(Class<?> clazz) {
+            return false;
+          }
+
+          @Override
+          public boolean shouldSkipField(FieldAttributes field) {
+            return field.getAnnotation(Exclude.class) != null;
+          }
+        });
+    registerGeneratedTypeAdapters(builder);
+
+    gson = builder.disableHtmlEscaping().create();
+  }
+
+  @Override
+  public <T> T decode(String payload, Class<T> type) {
+    return gson.fromJson(payload, type);
+  }
+
+  /** Bind the payload straight from the message. */
+  @Override
+  public <T> T decode(JSONPayload payload, Class<T> type) {
+    return gson.fromJson(payload.reader(), type);
+  }
+
+  /**
+   * Bind and validate a model. Models with validating precompiled adapters are validated while
+   * they are bound, others are validated after binding.
+   */
+  @Override
+  public <T extends Validatable> T decodeValid(String payload, Class<T> type) throws Exception {
+    return decodeValid(new StringReader(payload), type);
+  }
+
+  @Override
+  public <T extends Validatable> T decodeValid(JSONPayload payload, Class<T> type)
+      throws Exception {
+    return decodeValid(payload.reader(), type);
+  }
+
+  /**
+   * Bind and validate a model, rejecting values of the wrong JSON type, unknown enum values, null
+   * values and undeclared properties. These checks are done by the precompiled adapters while
+   * binding, so models without a precompiled adapter only get their enum values checked.
+   */
+  @Override
+  public <T extends Validatable> T decodeStrict(String payload, Class<T> type) throws Exception {
+    return decodeStrict(new StringReader(payload), type);
+  }
+
+  @Override
+  public <T extends Validatable> T decodeStrict(JSONPayload payload, Class<T> type)
+      throws Exception {
+    return decodeStrict(payload.reader(), type);
+  }
+
+  private <T extends Validatable> T decodeValid(Reader payload, Class<T> type) throws Exception {
+    if (!validatesWhileReading(type)) {
+      T model = gson.fromJson(payload, type);
+      if (!model.validate()) {
+        throw new OccurenceConstraintException();
+      }
+      return model;
+    }
+    JsonReader reader = new ValidatingJsonReader(payload);
+    reader.setLenient(true);
+    return read(reader, type);
+  }
+
+  private <T extends Validatable> T decodeStrict(Reader payload, Class<T> type) throws Exception {
+    T model = read(new StrictJsonReader(payload), type);
+    if (!validatesWhileReading(type) && !model.validate()) {
+      throw new OccurenceConstraintException();
+    }
+    return model;
+  }
+
+  private boolean validatesWhileReading(Class<?> type) {
+    TypeAdapter<?> adapter = gson.getAdapter(type);
+    return adapter instanceof GeneratedTypeAdapter
+        && ((GeneratedTypeAdapter<?>) adapter).validatesWhileReading();
+  }
+
+  /**
+   * Read a complete payload from a stream, as {@link #decode(String, Class)} does from a string.
+   *
+   * @param reader the payload stream, which must hold nothing but the payload.
+   * @param type the type of the payload.
+   * @return the payload.
+   * @throws OccurenceConstraintException the payload fails the checks done while reading.
+   */
+  <T> T read(JsonReader reader, Class<T> type) throws OccurenceConstraintException {
+    try {
+      T model = gson.getAdapter(type).read(reader);
+      if (reader.peek() != JsonToken.END_DOCUMENT) {
+        throw new JsonSyntaxException("JSON document was not fully consumed.");
+      }
+      if (model == null) {
+        throw new JsonSyntaxException("Payload is null.");
+      }
+      return model;
+    } catch (GeneratedTypeAdapter.ConstraintViolation e) {
+      throw new OccurenceConstraintException();
+    } catch (IllegalStateException | IOException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
+
+  @Override
+  public void encode(Object payload, Writer writer) {
+    gson.toJson(payload, writer);
+  }
+
+  /**
+   * Write a payload to a stream, using the adapter of its runtime class.
+   *
+   * @param payload the payload to write.
+   * @param writer the stream to write to.
+   * @throws IOException the stream failed.
+   */
+  @SuppressWarnings("unchecked")
+  void write(Object payload, JsonWriter writer) throws IOException {
+    TypeAdapter<Object> adapter = (TypeAdapter<Object>) gson.getAdapter(payload.getClass());
+    adapter.write(writer, payload);
+  }
+
+  @Override
+  public String encode(Object payload) {
+    return gson.toJson(payload);
+  }
+
+  /**
+   * Register the precompiled type adapters of all model packages found on the class path. Models
+   * without a generated adapter keep using Gson's reflective binding.
+   */
+  private static void registerGeneratedTypeAdapters(GsonBuilder builder) {
+    try {
+      for (TypeAdapterFactory factory :
+          ServiceLoader.load(TypeAdapterFactory.class, GsonPayloadCodec.class.getClassLoader())) {
+        builder.registerTypeAdapterFactory(factory);
+      }
+    } catch (ServiceConfigurationError e) {
+      logger.warn("Unable to load generated type adapters, falling back to reflection", e);
+    }
+  }
+
+  private static class ZonedDateTimeAdapter extends TypeAdapter<ZonedDateTime> {
+
+    @Override
+    public void write(JsonWriter out, ZonedDateTime zonedDateTime) throws IOException {
+      out.value(Timestamps.formatInstant(zonedDateTime));
+    }
+
+    @Override
+    public ZonedDateTime read(JsonReader in) throws IOException {
+      return Timestamps.parse(in.nextString());
+    }
+  }
+}
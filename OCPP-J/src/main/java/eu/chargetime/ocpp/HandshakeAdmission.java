@@ -0,0 +1,358 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import eu.chargetime.ocpp.utilities.MoreObjects;
+import java.net.InetAddress;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control of WebSocket handshakes, to ride out reconnect storms. A handshake is admitted
+ * while fewer than a maximum number are in progress, and both the global and the per source
+ * address token bucket hold a token. A refused handshake is answered with 503 Service Unavailable
+ * and a Retry-After header, before the credentials are decoded or authenticated.
+ *
+ * <p>Every limit is off until it is set. One instance may be shared by the listeners of a node,
+ * see {@link JSONConfiguration#HANDSHAKE_ADMISSION_PARAMETER}.
+ */
+public class HandshakeAdmission {
+
+  /** Returned by {@link #tryAdmit(InetAddress)} for an admitted handshake. */
+  public static final int ADMITTED = 0;
+
+  private static final int DEFAULT_MAX_SOURCES = 65536;
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  /** Stands in for the bucket of a source that can't be tracked for lack of room. */
+  private static final TokenBucket NO_ROOM = new TokenBucket(1, 1, 0);
+
+  /** Source buckets, least recently used first. Guarded by itself. */
+  private final LinkedHashMap<InetAddress, TokenBucket> sources =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private final AtomicInteger inProgress = new AtomicInteger();
+  private final LongAdder admitted = new LongAdder();
+  private final LongAdder rejectedInProgress = new LongAdder();
+  private final LongAdder rejectedGlobalRate = new LongAdder();
+  private final LongAdder rejectedSourceRate = new LongAdder();
+  private final LongAdder rejectedSourceLimit = new LongAdder();
+
+  private volatile TokenBucket global;
+  private volatile double sourceRate;
+  private volatile int sourceBurst;
+  private volatile int maxInProgress = Integer.MAX_VALUE;
+  private volatile int maxSources = DEFAULT_MAX_SOURCES;
+  private volatile int retryAfterJitter;
+
+  /**
+   * Limit the rate of handshakes of all sources together.
+   *
+   * @param perSecond handshakes admitted per second.
+   * @param burst handshakes admitted at once after a quiet period.
+   * @return this instance.
+   */
+  public HandshakeAdmission setGlobalRate(double perSecond, int burst) {
+    global = new TokenBucket(perSecond, burst, System.nanoTime());
+    return this;
+  }
+
+  /**
+   * Limit the rate of handshakes of each source address.
+   *
+   * @param perSecond handshakes admitted per second and source.
+   * @param burst handshakes admitted at once from a source after a quiet period.
+   * @return this instance.
+   */
+  public HandshakeAdmission setSourceRate(double perSecond, int burst) {
+    if (perSecond <= 0 || burst < 1) {
+      throw new IllegalArgumentException("Rate and burst must be positive");
+    }
+    sourceRate = perSecond;
+    sourceBurst = burst;
+    synchronized (sources) {
+      sources.clear();
+    }
+    return this;
+  }
+
+  /**
+   * Limit the number of handshakes in progress, from admission until the session is accepted or
+   * refused.
+   *
+   * @param maxInProgress the number of handshakes in progress at once.
+   * @return this instance.
+   */
+  public HandshakeAdmission setMaxInProgress(int maxInProgress) {
+    if (maxInProgress < 1) {
+      throw new IllegalArgumentException("maxInProgress must be positive: " + maxInProgress);
+    }
+    this.maxInProgress = maxInProgress;
+    return this;
+  }
+
+  /**
+   * Bound the number of source addresses tracked, defaults to 65536. When the bound is reached, the
+   * least recently seen source is forgotten if it is idle; otherwise handshakes from new sources
+   * are refused until it is.
+   *
+   * @param maxSources the number of source addresses tracked.
+   * @return this instance.
+   */
+  public HandshakeAdmission setMaxSources(int maxSources) {
+    this.maxSources = maxSources;
+    return this;
+  }
+
+  /**
+   * Add up to a number of seconds at random to the Retry-After of refused handshakes, so refused
+   * clients don't all come back at once. Defaults to 0.
+   *
+   * @param seconds the largest number of seconds added.
+   * @return this instance.
+   */
+  public HandshakeAdmission setRetryAfterJitter(int seconds) {
+    this.retryAfterJitter = seconds;
+    return this;
+  }
+
+  /**
+   * Decide on a handshake. An admitted handshake must be {@link #release() released} once the
+   * session is accepted or refused.
+   *
+   * @param source the address the handshake came from, null if unknown.
+   * @return {@link #ADMITTED}, or the number of seconds the client should wait before retrying.
+   */
+  public int tryAdmit(InetAddress source) {
+    if (inProgress.incrementAndGet() > maxInProgress) {
+      inProgress.decrementAndGet();
+      rejectedInProgress.increment();
+      return retryAfter(1);
+    }
+
+    long now = System.nanoTime();
+    TokenBucket bucket = sourceBucket(source, now);
+    if (bucket == NO_ROOM) {
+      inProgress.decrementAndGet();
+      rejectedSourceLimit.increment();
+      return retryAfter(1);
+    }
+    if (bucket != null) {
+      long waitNanos = bucket.tryTake(now);
+      if (waitNanos > 0) {
+        inProgress.decrementAndGet();
+        rejectedSourceRate.increment();
+        return retryAfter(waitNanos);
+      }
+    }
+    TokenBucket global = this.global;
+    if (global != null) {
+      long waitNanos = global.tryTake(now);
+      if (waitNanos > 0) {
+        inProgress.decrementAndGet();
+        rejectedGlobalRate.increment();
+        return retryAfter(waitNanos);
+      }
+    }
+
+    admitted.increment();
+    return ADMITTED;
+  }
+
+  /** End an admitted handshake. */
+  public void release() {
+    inProgress.decrementAndGet();
+  }
+
+  /**
+   * Get the number of handshakes in progress.
+   *
+   * @return the handshakes admitted and not released yet.
+   */
+  public int getInProgress() {
+    return inProgress.get();
+  }
+
+  /**
+   * Get the number of admitted handshakes.
+   *
+   * @return the number of admitted handshakes.
+   */
+  public long getAdmittedCount() {
+    return admitted.sum();
+  }
+
+  /**
+   * Get the number of refused handshakes.
+   *
+   * @return the number of refused handshakes, for any reason.
+   */
+  public long getRejectedCount() {
+    return rejectedInProgress.sum()
+        + rejectedGlobalRate.sum()
+        + rejectedSourceRate.sum()
+        + rejectedSourceLimit.sum();
+  }
+
+  /**
+   * Get the number of handshakes refused because too many were in progress.
+   *
+   * @return the number of refused handshakes.
+   */
+  public long getRejectedInProgressCount() {
+    return rejectedInProgress.sum();
+  }
+
+  /**
+   * Get the number of handshakes refused by the global rate.
+   *
+   * @return the number of refused handshakes.
+   */
+  public long getRejectedGlobalRateCount() {
+    return rejectedGlobalRate.sum();
+  }
+
+  /**
+   * Get the number of handshakes refused by the rate of their source.
+   *
+   * @return the number of refused handshakes.
+   */
+  public long getRejectedSourceRateCount() {
+    return rejectedSourceRate.sum();
+  }
+
+  /**
+   * Get the number of handshakes from new sources refused because the most source addresses were
+   * tracked, see {@link #setMaxSources(int)}.
+   *
+   * @return the number of refused handshakes.
+   */
+  public long getRejectedSourceLimitCount() {
+    return rejectedSourceLimit.sum();
+  }
+
+  /**
+   * Get the number of source addresses tracked.
+   *
+   * @return the number of source addresses.
+   */
+  public int getSourceCount() {
+    synchronized (sources) {
+      return sources.size();
+    }
+  }
+
+  /** Get the bucket of a source, or {@link #NO_ROOM} if it can't be tracked. */
+  private TokenBucket sourceBucket(InetAddress source, long now) {
+    if (source == null || sourceBurst == 0) {
+      return null;
+    }
+    synchronized (sources) {
+      TokenBucket bucket = sources.get(source);
+      if (bucket != null) {
+        return bucket;
+      }
+      if (sources.size() >= maxSources) {
+        Iterator<TokenBucket> eldest = sources.values().iterator();
+        if (eldest.hasNext()) {
+          TokenBucket candidate = eldest.next();
+          if (!candidate.isFull(now)) {
+            return NO_ROOM;
+          }
+          eldest.remove();
+        }
+        if (sources.size() >= maxSources) {
+          return NO_ROOM;
+        }
+      }
+      bucket = new TokenBucket(sourceRate, sourceBurst, now);
+      sources.put(source, bucket);
+      return bucket;
+    }
+  }
+
+  private int retryAfter(long waitNanos) {
+    long seconds = Math.max(1, (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+    int jitter = retryAfterJitter;
+    if (jitter > 0) {
+      seconds += ThreadLocalRandom.current().nextInt(jitter + 1);
+    }
+    return (int) Math.min(seconds, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("inProgress", getInProgress())
+        .add("admitted", getAdmittedCount())
+        .add("rejected", getRejectedCount())
+        .add("sources", getSourceCount())
+        .toString();
+  }
+
+  /** Tokens refill continuously at the rate, up to the burst. */
+  private static class TokenBucket {
+    private final double tokensPerNano;
+    private final double burst;
+    private double tokens;
+    private long refilledAt;
+
+    private TokenBucket(double perSecond, int burst, long now) {
+      if (perSecond <= 0 || burst < 1) {
+        throw new IllegalArgumentException("Rate and burst must be positive");
+      }
+      this.tokensPerNano = perSecond / NANOS_PER_SECOND;
+      this.burst = burst;
+      this.tokens = burst;
+      this.refilledAt = now;
+    }
+
+    /** Take a token, or get the nanoseconds until one is available. */
+    private synchronized long tryTake(long now) {
+      refill(now);
+      if (tokens >= 1) {
+        tokens -= 1;
+        return 0;
+      }
+      return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    private synchronized boolean isFull(long now) {
+      refill(now);
+      return tokens >= burst;
+    }
+
+    private void refill(long now) {
+      if (now > refilledAt) {
+        tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+      }
+    }
+  }
+}
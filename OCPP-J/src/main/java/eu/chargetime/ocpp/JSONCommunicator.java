@@ -1,14 +1,15 @@
 package eu.chargetime.ocpp;
 
-import com.google.gson.*;
 import eu.chargetime.ocpp.model.CallErrorMessage;
 import eu.chargetime.ocpp.model.CallMessage;
 import eu.chargetime.ocpp.model.CallResultMessage;
-import eu.chargetime.ocpp.model.Exclude;
+import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.Message;
-import java.lang.reflect.Type;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import eu.chargetime.ocpp.model.Validatable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,28 +47,33 @@ public class JSONCommunicator extends Communicator {
 
   private static final Logger logger = LoggerFactory.getLogger(JSONCommunicator.class);
 
-  private static final int INDEX_MESSAGEID = 0;
   private static final int TYPENUMBER_CALL = 2;
-  private static final int INDEX_CALL_ACTION = 2;
-  private static final int INDEX_CALL_PAYLOAD = 3;
-
   private static final int TYPENUMBER_CALLRESULT = 3;
-  private static final int INDEX_CALLRESULT_PAYLOAD = 2;
-
   private static final int TYPENUMBER_CALLERROR = 4;
-  private static final int INDEX_CALLERROR_ERRORCODE = 2;
-  private static final int INDEX_CALLERROR_DESCRIPTION = 3;
-  private static final int INDEX_CALLERROR_PAYLOAD = 4;
 
-  private static final int INDEX_UNIQUEID = 1;
-  private static final String CALL_FORMAT = "[2,\"%s\",\"%s\",%s]";
-  private static final String CALLRESULT_FORMAT = "[3,\"%s\",%s]";
-  private static final String CALLERROR_FORMAT = "[4,\"%s\",\"%s\",\"%s\",%s]";
-  private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
-  private static final String DATE_FORMAT_WITH_MS = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
-  private static final int DATE_FORMAT_WITH_MS_LENGTH = 24;
+  private static final int FRAME_BUFFER_SIZE = 8 * 1024;
+  private static final int FRAME_BUFFER_MAX_RETAINED_SIZE = 1024 * 1024;
+
+  private static final String[] ESCAPED_CHARACTERS = new String[128];
+
+  static {
+    for (int i = 0; i < 0x20; i++) {
+      ESCAPED_CHARACTERS[i] = String.format("\\u%04x", i);
+    }
+    ESCAPED_CHARACTERS['"'] = "\\\"";
+    ESCAPED_CHARACTERS['\\'] = "\\\\";
+    ESCAPED_CHARACTERS['\t'] = "\\t";
+    ESCAPED_CHARACTERS['\b'] = "\\b";
+    ESCAPED_CHARACTERS['\n'] = "\\n";
+    ESCAPED_CHARACTERS['\r'] = "\\r";
+    ESCAPED_CHARACTERS['\f'] = "\\f";
+  }
+
+  private static final PayloadCodec defaultCodec = new GsonPayloadCodec();
+  private static final ByteBufferPool frameBuffers =
+      new ByteBufferPool(FRAME_BUFFER_SIZE, FRAME_BUFFER_MAX_RETAINED_SIZE);
 
-  private boolean hasLongDateFormat = false;
+  private final PayloadCodec codec;
 
   /**
    * Handle required injections.
@@ -75,7 +81,7 @@ public class JSONCommunicator extends Communicator {
    * @param radio instance of the {@link Radio}.
    */
   public JSONCommunicator(Radio radio) {
-    super(radio);
+    this(radio, true);
   }
 
   /**
@@ -85,100 +91,247 @@ public class JSONCommunicator extends Communicator {
    * @param enableTransactionQueue true if transaction queue should be enabled.
    */
   public JSONCommunicator(Radio radio, boolean enableTransactionQueue) {
-    super(radio, enableTransactionQueue);
+    this(radio, enableTransactionQueue, defaultCodec);
   }
 
-  private static class ZonedDateTimeSerializer
-      implements JsonSerializer<ZonedDateTime>, JsonDeserializer<ZonedDateTime> {
-
-    @Override
-    public JsonElement serialize(
-        ZonedDateTime zonedDateTime, Type type, JsonSerializationContext jsonSerializationContext) {
-      return new JsonPrimitive(zonedDateTime.format(DateTimeFormatter.ISO_INSTANT));
-    }
-
-    @Override
-    public ZonedDateTime deserialize(
-        JsonElement jsonElement, Type type, JsonDeserializationContext jsonDeserializationContext)
-        throws JsonParseException {
-      return ZonedDateTime.parse(jsonElement.getAsJsonPrimitive().getAsString());
-    }
+  /**
+   * Handle required injections.
+   *
+   * @param radio instance of the {@link Radio}.
+   * @param enableTransactionQueue true if transaction queue should be enabled.
+   * @param codec converts payloads to and from JSON.
+   */
+  public JSONCommunicator(Radio radio, boolean enableTransactionQueue, PayloadCodec codec) {
+    super(radio, enableTransactionQueue);
+    this.codec = codec;
   }
 
-  private static Gson gson;
+  /**
+   * Handle required injections.
+   *
+   * @param radio instance of the {@link Radio}.
+   * @param transactionQueue stores transaction-related requests while offline, null to disable.
+   * @param codec converts payloads to and from JSON.
+   */
+  public JSONCommunicator(Radio radio, TransactionQueue transactionQueue, PayloadCodec codec) {
+    super(radio, transactionQueue);
+    this.codec = codec;
+  }
 
-  static {
-    GsonBuilder builder = new GsonBuilder();
-    builder.registerTypeAdapter(ZonedDateTime.class, new ZonedDateTimeSerializer());
-    builder.addSerializationExclusionStrategy(
-        new ExclusionStrategy() {
-          @Override
-          public boolean shouldSkipClass(Class<?> clazz) {
-            return false;
-          }
+  /**
+   * Get the codec selected in the configuration, or the default Gson codec.
+   *
+   * @param configuration the client or server configuration.
+   * @return the codec to use for payloads.
+   */
+  public static PayloadCodec codecOf(JSONConfiguration configuration) {
+    return configuration.getParameter(JSONConfiguration.PAYLOAD_CODEC_PARAMETER, defaultCodec);
+  }
 
-          @Override
-          public boolean shouldSkipField(FieldAttributes field) {
-            return field.getAnnotation(Exclude.class) != null;
-          }
-        });
+  @Override
+  public <T> T unpackPayload(Object payload, Class<T> type) throws Exception {
+    return payload instanceof JSONPayload
+        ? codec.decode((JSONPayload) payload, type)
+        : codec.decode(payload.toString(), type);
+  }
 
-    gson = builder.disableHtmlEscaping().create();
+  @Override
+  public <T extends Validatable> T unpackValidPayload(Object payload, Class<T> type)
+      throws Exception {
+    return payload instanceof JSONPayload
+        ? codec.decodeValid((JSONPayload) payload, type)
+        : codec.decodeValid(payload.toString(), type);
   }
 
   @Override
-  public <T> T unpackPayload(Object payload, Class<T> type) throws Exception {
-    return gson.fromJson(payload.toString(), type);
+  public <T extends Validatable> T unpackStrictPayload(Object payload, Class<T> type)
+      throws Exception {
+    return payload instanceof JSONPayload
+        ? codec.decodeStrict((JSONPayload) payload, type)
+        : codec.decodeStrict(payload.toString(), type);
   }
 
   @Override
   public Object packPayload(Object payload) {
-    return gson.toJson(payload);
+    return codec.encode(payload);
+  }
+
+  /** Payloads are packed by the codec alone, so communicators sharing a codec share payloads. */
+  @Override
+  protected Object getPayloadFormat() {
+    return codec;
   }
 
   @Override
   protected Object makeCallResult(String uniqueId, String action, Object payload) {
-    return String.format(CALLRESULT_FORMAT, uniqueId, payload);
+    StringWriter message = new StringWriter();
+    try {
+      beginEnvelope(message, TYPENUMBER_CALLRESULT, uniqueId);
+      message.write(payload.toString());
+      message.write(']');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return message.toString();
   }
 
   @Override
   protected Object makeCall(String uniqueId, String action, Object payload) {
-    return String.format(CALL_FORMAT, uniqueId, action, payload);
+    StringWriter message = new StringWriter();
+    try {
+      beginEnvelope(message, TYPENUMBER_CALL, uniqueId);
+      writeString(message, action);
+      message.write(',');
+      message.write(payload.toString());
+      message.write(']');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return message.toString();
   }
 
   @Override
   protected Object makeCallError(
       String uniqueId, String action, String errorCode, String errorDescription) {
-    return String.format(CALLERROR_FORMAT, uniqueId, errorCode, errorDescription, "{}");
+    StringWriter message = new StringWriter();
+    try {
+      writeCallError(message, uniqueId, errorCode, errorDescription);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return message.toString();
+  }
+
+  /**
+   * Encode the call result straight into a pooled buffer when the radio accepts encoded frames,
+   * skipping the intermediate payload and message strings.
+   */
+  @Override
+  protected void transmitCallResult(String uniqueId, String action, Confirmation confirmation)
+      throws NotConnectedException {
+    if (!(radio instanceof TextFrameRadio)) {
+      super.transmitCallResult(uniqueId, action, confirmation);
+      return;
+    }
+
+    try (Utf8BufferWriter frame = new Utf8BufferWriter(frameBuffers)) {
+      try {
+        beginEnvelope(frame, TYPENUMBER_CALLRESULT, uniqueId);
+        codec.encode(confirmation, frame);
+        frame.write(']');
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      ((TextFrameRadio) radio).send(frame.toByteBuffer());
+    }
+  }
+
+  /** Encode the call error straight into a pooled buffer when the radio accepts encoded frames. */
+  @Override
+  protected void transmitCallError(
+      String uniqueId, String action, String errorCode, String errorDescription)
+      throws NotConnectedException {
+    if (!(radio instanceof TextFrameRadio)) {
+      super.transmitCallError(uniqueId, action, errorCode, errorDescription);
+      return;
+    }
+
+    try (Utf8BufferWriter frame = new Utf8BufferWriter(frameBuffers)) {
+      try {
+        writeCallError(frame, uniqueId, errorCode, errorDescription);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      ((TextFrameRadio) radio).send(frame.toByteBuffer());
+    }
+  }
+
+  private static void beginEnvelope(Writer writer, int messageType, String uniqueId)
+      throws IOException {
+    writer.write('[');
+    writer.write('0' + messageType);
+    writer.write(',');
+    writeString(writer, uniqueId);
+    writer.write(',');
+  }
+
+  private static void writeCallError(
+      Writer writer, String uniqueId, String errorCode, String errorDescription)
+      throws IOException {
+    beginEnvelope(writer, TYPENUMBER_CALLERROR, uniqueId);
+    writeString(writer, errorCode);
+    writer.write(',');
+    writeString(writer, errorDescription);
+    writer.write(",{}]");
+  }
+
+  /** Write a JSON string, escaped the same way as the payloads of the default codec. */
+  private static void writeString(Writer writer, String value) throws IOException {
+    String text = String.valueOf(value);
+    writer.write('"');
+    int last = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      String replacement;
+      if (c < ESCAPED_CHARACTERS.length) {
+        replacement = ESCAPED_CHARACTERS[c];
+      } else if (c == '\u2028') {
+        replacement = "\\u2028";
+      } else if (c == '\u2029') {
+        replacement = "\\u2029";
+      } else {
+        continue;
+      }
+      if (replacement == null) {
+        continue;
+      }
+      writer.write(text, last, i - last);
+      writer.write(replacement);
+      last = i + 1;
+    }
+    writer.write(text, last, text.length() - last);
+    writer.write('"');
+  }
+
+  /** Reads the id only, a malformed call is not answered with a CallError like in parse. */
+  @Override
+  protected String uniqueIdOf(Object call) {
+    return call != null ? JSONFrameReader.uniqueIdOf(call.toString()) : null;
   }
 
   @Override
   protected Message parse(Object json) {
     Message message;
-    JsonParser parser = new JsonParser();
-    JsonArray array = parser.parse(json.toString()).getAsJsonArray();
     String messageId = "-1";
 
     try {
-      messageId = array.get(INDEX_UNIQUEID).getAsString();
-      if (array.get(INDEX_MESSAGEID).getAsInt() == TYPENUMBER_CALL) {
+      JSONFrameReader reader = new JSONFrameReader(json.toString());
+      reader.beginArray();
+      int messageType = reader.nextInt();
+      messageId = reader.nextString();
+
+      if (messageType == TYPENUMBER_CALL) {
         message = new CallMessage();
-        message.setAction(array.get(INDEX_CALL_ACTION).getAsString());
-        message.setPayload(array.get(INDEX_CALL_PAYLOAD).toString());
-      } else if (array.get(INDEX_MESSAGEID).getAsInt() == TYPENUMBER_CALLRESULT) {
+        message.setAction(reader.nextString());
+        message.setPayload(reader.nextPayload());
+      } else if (messageType == TYPENUMBER_CALLRESULT) {
         message = new CallResultMessage();
-        message.setPayload(array.get(INDEX_CALLRESULT_PAYLOAD).toString());
-      } else if (array.get(INDEX_MESSAGEID).getAsInt() == TYPENUMBER_CALLERROR) {
+        message.setPayload(reader.nextPayload());
+      } else if (messageType == TYPENUMBER_CALLERROR) {
         message = new CallErrorMessage();
-        ((CallErrorMessage) message).setErrorCode(array.get(INDEX_CALLERROR_ERRORCODE).getAsString());
-        ((CallErrorMessage) message)
-            .setErrorDescription(array.get(INDEX_CALLERROR_DESCRIPTION).getAsString());
-        ((CallErrorMessage) message).setRawPayload(array.get(INDEX_CALLERROR_PAYLOAD).toString());
+        ((CallErrorMessage) message).setErrorCode(reader.nextString());
+        ((CallErrorMessage) message).setErrorDescription(reader.nextString());
+        ((CallErrorMessage) message).setRawPayload(reader.nextRawValue());
       } else {
         logger.error("Unknown message type of message: {}", json.toString());
         sendCallError(messageId, null, "MessageTypeNotSupported", null);
         return null;
       }
+
+      while (reader.hasNext()) {
+        reader.skipValue();
+      }
+      reader.endArray();
     } catch (Exception e) {
       logger.error("Exception while parsing message: {}", json.toString());
       sendCallError(messageId, null, "RpcFrameworkError", e.getMessage());
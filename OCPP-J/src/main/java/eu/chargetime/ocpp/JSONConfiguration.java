@@ -44,6 +44,42 @@ public class JSONConfiguration {
   public static final String OCPPJ_CP_MAX_PASSWORD_LENGTH = "OCPPJ_CP_MAX_PASSWORD_LENGTH";
   public static final String OCPP2J_CP_MIN_PASSWORD_LENGTH = "OCPP2J_CP_MIN_PASSWORD_LENGTH";
   public static final String OCPP2J_CP_MAX_PASSWORD_LENGTH = "OCPP2J_CP_MAX_PASSWORD_LENGTH";
+  /** The {@link PayloadCodec} used to convert payloads, defaults to {@link GsonPayloadCodec}. */
+  public static final String PAYLOAD_CODEC_PARAMETER = "PAYLOAD_CODEC";
+  /**
+   * Frame messages as CBOR, using {@link CBORCommunicator}. A server offers the CBOR sub protocols
+   * next to the JSON ones, a client asks for the CBOR sub protocols only. Defaults to false.
+   */
+  public static final String CBOR_FRAMING_PARAMETER = "CBOR_FRAMING";
+  /** The {@link RequestTimeouts} of outgoing requests, requests have no timeout by default. */
+  public static final String REQUEST_TIMEOUTS_PARAMETER = "REQUEST_TIMEOUTS";
+  /**
+   * The {@link TransactionQueue} a client keeps transaction-related requests in while offline, ie.
+   * a {@link MappedFileTransactionQueue} to keep them across restarts. Defaults to a {@link
+   * MemoryTransactionQueue}.
+   */
+  public static final String TRANSACTION_QUEUE_PARAMETER = "TRANSACTION_QUEUE";
+  /**
+   * The number of queued transaction-related requests a client replays before waiting for their
+   * results, defaults to 1.
+   */
+  public static final String TRANSACTION_REPLAY_WINDOW_PARAMETER = "TRANSACTION_REPLAY_WINDOW";
+  /**
+   * The {@link java.util.concurrent.ExecutorService} a server handles requests from charge points
+   * on, ie. one made by {@link RequestExecutors#newBlockingHandlerExecutor(int)}. Defaults to the
+   * pool shared by all servers.
+   */
+  public static final String REQUEST_EXECUTOR_PARAMETER = "REQUEST_EXECUTOR";
+  /**
+   * The {@link MessageTracer} sampling the messages of a server's sessions, or of a client. Not
+   * set by default.
+   */
+  public static final String MESSAGE_TRACER_PARAMETER = "MESSAGE_TRACER";
+  /**
+   * The {@link HandshakeAdmission} a server's WebSocket listener admits handshakes by, refusing
+   * the others with 503 and Retry-After. Every handshake is admitted by default.
+   */
+  public static final String HANDSHAKE_ADMISSION_PARAMETER = "HANDSHAKE_ADMISSION";
 
   private final HashMap<String, Object> parameters = new HashMap<>();
 
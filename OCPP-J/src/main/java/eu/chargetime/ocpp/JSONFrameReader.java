@@ -0,0 +1,262 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * Reads the envelope of an OCPP-J message, an array of strings, numbers and one payload value. The
+ * payload is not parsed, {@link #nextPayload()} only finds where it ends, so the {@link
+ * PayloadCodec} binds it straight from the message.
+ */
+final class JSONFrameReader {
+
+  private final String frame;
+  private int position;
+  private boolean first;
+
+  JSONFrameReader(String frame) {
+    this.frame = frame;
+  }
+
+  /**
+   * Read the unique id of a message, without reading past it.
+   *
+   * @param frame the message.
+   * @return the unique id, null if the message doesn't start with a type and an id.
+   */
+  static String uniqueIdOf(String frame) {
+    try {
+      JSONFrameReader reader = new JSONFrameReader(frame);
+      reader.beginArray();
+      reader.nextInt();
+      return reader.nextString();
+    } catch (MalformedJsonException e) {
+      return null;
+    }
+  }
+
+  void beginArray() throws MalformedJsonException {
+    expect('[');
+    first = true;
+  }
+
+  boolean hasNext() throws MalformedJsonException {
+    skipWhitespace();
+    return position < frame.length() && frame.charAt(position) != ']';
+  }
+
+  void endArray() throws MalformedJsonException {
+    expect(']');
+    skipWhitespace();
+    if (position != frame.length()) {
+      throw syntaxError("Unexpected content after message");
+    }
+  }
+
+  int nextInt() throws MalformedJsonException {
+    String literal = nextRawValue();
+    try {
+      return Integer.parseInt(literal);
+    } catch (NumberFormatException e) {
+      throw syntaxError("Expected a number but was " + literal);
+    }
+  }
+
+  String nextString() throws MalformedJsonException {
+    beginValue();
+    if (position >= frame.length() || frame.charAt(position) != '"') {
+      throw syntaxError("Expected a string");
+    }
+    int start = ++position;
+    StringBuilder unescaped = null;
+    while (position < frame.length()) {
+      char c = frame.charAt(position);
+      if (c == '"') {
+        String text =
+            unescaped == null
+                ? frame.substring(start, position)
+                : unescaped.append(frame, start, position).toString();
+        position++;
+        return text;
+      }
+      if (c == '\\') {
+        if (unescaped == null) {
+          unescaped = new StringBuilder();
+        }
+        unescaped.append(frame, start, position);
+        unescaped.append(readEscape());
+        start = position;
+      } else {
+        position++;
+      }
+    }
+    throw syntaxError("Unterminated string");
+  }
+
+  /**
+   * Skip over the next value and return its text.
+   *
+   * @return the JSON text of the value, without surrounding whitespace.
+   * @throws MalformedJsonException the value isn't terminated.
+   */
+  String nextRawValue() throws MalformedJsonException {
+    int start = skipRawValue();
+    return frame.substring(start, position);
+  }
+
+  /**
+   * Skip over the next value and return where it is in the message, without copying it.
+   *
+   * @return the value, without surrounding whitespace.
+   * @throws MalformedJsonException the value isn't terminated.
+   */
+  JSONPayload nextPayload() throws MalformedJsonException {
+    int start = skipRawValue();
+    return new JSONPayload(frame, start, position);
+  }
+
+  void skipValue() throws MalformedJsonException {
+    skipRawValue();
+  }
+
+  /** Move past the next value and return where it starts. */
+  private int skipRawValue() throws MalformedJsonException {
+    beginValue();
+    int start = position;
+    int depth = 0;
+    while (position < frame.length()) {
+      char c = frame.charAt(position);
+      if (c == '"') {
+        skipString();
+        if (depth == 0) {
+          return start;
+        }
+        continue;
+      }
+      if (c == '{' || c == '[') {
+        depth++;
+      } else if (c == '}' || c == ']') {
+        if (depth == 0) {
+          break;
+        }
+        if (--depth == 0) {
+          position++;
+          return start;
+        }
+      } else if (depth == 0 && (c == ',' || isWhitespace(c))) {
+        break;
+      }
+      position++;
+    }
+    if (depth != 0 || position == start) {
+      throw syntaxError("Expected a value");
+    }
+    return start;
+  }
+
+  private void beginValue() throws MalformedJsonException {
+    skipWhitespace();
+    if (!first) {
+      expect(',');
+      skipWhitespace();
+    }
+    first = false;
+  }
+
+  private void skipString() throws MalformedJsonException {
+    position++;
+    while (position < frame.length()) {
+      char c = frame.charAt(position++);
+      if (c == '"') {
+        return;
+      }
+      if (c == '\\') {
+        position++;
+      }
+    }
+    throw syntaxError("Unterminated string");
+  }
+
+  private char readEscape() throws MalformedJsonException {
+    position++;
+    if (position >= frame.length()) {
+      throw syntaxError("Unterminated escape sequence");
+    }
+    char c = frame.charAt(position++);
+    switch (c) {
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 't':
+        return '\t';
+      case 'u':
+        if (position + 4 > frame.length()) {
+          throw syntaxError("Unterminated escape sequence");
+        }
+        try {
+          char unicode = (char) Integer.parseInt(frame.substring(position, position + 4), 16);
+          position += 4;
+          return unicode;
+        } catch (NumberFormatException e) {
+          throw syntaxError("Malformed unicode escape");
+        }
+      case '"':
+      case '\\':
+      case '/':
+        return c;
+      default:
+        throw syntaxError("Invalid escape sequence");
+    }
+  }
+
+  private void expect(char expected) throws MalformedJsonException {
+    skipWhitespace();
+    if (position >= frame.length() || frame.charAt(position) != expected) {
+      throw syntaxError("Expected '" + expected + "'");
+    }
+    position++;
+  }
+
+  private void skipWhitespace() {
+    while (position < frame.length() && isWhitespace(frame.charAt(position))) {
+      position++;
+    }
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+  }
+
+  private MalformedJsonException syntaxError(String message) {
+    return new MalformedJsonException(message + " at position " + position);
+  }
+}
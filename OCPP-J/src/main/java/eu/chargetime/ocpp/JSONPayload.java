@@ -0,0 +1,103 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import java.io.Reader;
+
+/**
+ * The payload of a received OCPP-J message, as a range of the message text. The payload is not
+ * copied out of the message: a {@link PayloadCodec} binds it through {@link #reader()}, and the
+ * text is only copied when {@link #toString()} is called.
+ */
+public final class JSONPayload implements CharSequence {
+
+  private final String frame;
+  private final int start;
+  private final int end;
+  private String text;
+
+  JSONPayload(String frame, int start, int end) {
+    this.frame = frame;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Read the payload text straight from the message.
+   *
+   * @return a reader over the payload only.
+   */
+  public Reader reader() {
+    return new Reader() {
+      private int position = start;
+
+      @Override
+      public int read(char[] buffer, int offset, int length) {
+        if (position >= end) {
+          return -1;
+        }
+        int count = Math.min(length, end - position);
+        frame.getChars(position, position + count, buffer, offset);
+        position += count;
+        return count;
+      }
+
+      @Override
+      public int read() {
+        return position < end ? frame.charAt(position++) : -1;
+      }
+
+      @Override
+      public void close() {}
+    };
+  }
+
+  @Override
+  public int length() {
+    return end - start;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length()) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+    }
+    return frame.charAt(start + index);
+  }
+
+  @Override
+  public CharSequence subSequence(int from, int to) {
+    return toString().subSequence(from, to);
+  }
+
+  @Override
+  public String toString() {
+    if (text == null) {
+      text = frame.substring(start, end);
+    }
+    return text;
+  }
+}
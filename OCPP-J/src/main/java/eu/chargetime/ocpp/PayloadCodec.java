@@ -0,0 +1,161 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import eu.chargetime.ocpp.model.Validatable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Converts OCPP-J payloads between their JSON text and their {@link
+ * eu.chargetime.ocpp.model.Request}/{@link eu.chargetime.ocpp.model.Confirmation} models. The
+ * envelope around the payload is handled by {@link JSONCommunicator}.
+ *
+ * <p>A codec is shared by all sessions of a client or server and must be thread safe. Select one
+ * through {@link JSONConfiguration#PAYLOAD_CODEC_PARAMETER}; {@link GsonPayloadCodec} is used by
+ * default.
+ */
+public interface PayloadCodec {
+
+  /**
+   * Bind a JSON payload to a model.
+   *
+   * @param payload the payload as JSON text.
+   * @param type the model type.
+   * @param <T> the model type.
+   * @return the bound model.
+   * @throws Exception the payload is malformed or doesn't fit the model.
+   */
+  <T> T decode(String payload, Class<T> type) throws Exception;
+
+  /**
+   * Bind a JSON payload to a model and validate the model. Codecs able to validate while binding
+   * override this to avoid walking the bound model again.
+   *
+   * @param payload the payload as JSON text.
+   * @param type the model type.
+   * @param <T> the model type.
+   * @return the bound and valid model.
+   * @throws OccurenceConstraintException the bound model is invalid.
+   * @throws Exception the payload is malformed or doesn't fit the model.
+   */
+  default <T extends Validatable> T decodeValid(String payload, Class<T> type) throws Exception {
+    T model = decode(payload, type);
+    if (!model.validate()) {
+      throw new OccurenceConstraintException();
+    }
+    return model;
+  }
+
+  /**
+   * Bind a JSON payload to a model, rejecting values of the wrong JSON type, unknown enum values,
+   * null values and undeclared properties, and validate the model. Codecs without a strict mode
+   * only validate the model.
+   *
+   * @param payload the payload as JSON text.
+   * @param type the model type.
+   * @param <T> the model type.
+   * @return the bound and valid model.
+   * @throws OccurenceConstraintException the bound model is invalid.
+   * @throws PropertyConstraintException a value has the wrong type or isn't allowed.
+   * @throws Exception the payload is malformed or doesn't fit the model.
+   */
+  default <T extends Validatable> T decodeStrict(String payload, Class<T> type) throws Exception {
+    return decodeValid(payload, type);
+  }
+
+  /**
+   * Bind a payload read from a message. Codecs able to read from a stream override this to bind the
+   * payload without copying it out of the message.
+   *
+   * @param payload the payload as a range of the message.
+   * @param type the model type.
+   * @param <T> the model type.
+   * @return the bound model.
+   * @throws Exception the payload is malformed or doesn't fit the model.
+   */
+  default <T> T decode(JSONPayload payload, Class<T> type) throws Exception {
+    return decode(payload.toString(), type);
+  }
+
+  /**
+   * Bind and validate a payload read from a message, as {@link #decodeValid(String, Class)} does.
+   *
+   * @param payload the payload as a range of the message.
+   * @param type the model type.
+   * @param <T> the model type.
+   * @return the bound and valid model.
+   * @throws OccurenceConstraintException the bound model is invalid.
+   * @throws Exception the payload is malformed or doesn't fit the model.
+   */
+  default <T extends Validatable> T decodeValid(JSONPayload payload, Class<T> type)
+      throws Exception {
+    return decodeValid(payload.toString(), type);
+  }
+
+  /**
+   * Strictly bind and validate a payload read from a message, as {@link #decodeStrict(String,
+   * Class)} does.
+   *
+   * @param payload the payload as a range of the message.
+   * @param type the model type.
+   * @param <T> the model type.
+   * @return the bound and valid model.
+   * @throws OccurenceConstraintException the bound model is invalid.
+   * @throws PropertyConstraintException a value has the wrong type or isn't allowed.
+   * @throws Exception the payload is malformed or doesn't fit the model.
+   */
+  default <T extends Validatable> T decodeStrict(JSONPayload payload, Class<T> type)
+      throws Exception {
+    return decodeStrict(payload.toString(), type);
+  }
+
+  /**
+   * Write a model as JSON text.
+   *
+   * @param payload the model.
+   * @param writer destination of the JSON text.
+   * @throws IOException error while writing.
+   */
+  void encode(Object payload, Writer writer) throws IOException;
+
+  /**
+   * Convert a model to JSON text.
+   *
+   * @param payload the model.
+   * @return the JSON text.
+   */
+  default String encode(Object payload) {
+    StringWriter writer = new StringWriter();
+    try {
+      encode(payload, writer);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return writer.toString();
+  }
+}
@@ -0,0 +1,98 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import com.google.gson.Gson;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Wraps Gson's enum adapters so that strict decoding rejects unknown enum values. Gson silently
+ * reads them as null, which would only be noticed for required fields.
+ */
+class StrictEnumTypeAdapterFactory implements TypeAdapterFactory {
+
+  @Override
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    Class<? super T> rawType = type.getRawType();
+    if (!Enum.class.isAssignableFrom(rawType) || rawType == Enum.class) {
+      return null;
+    }
+    if (!rawType.isEnum()) {
+      rawType = rawType.getSuperclass();
+    }
+    return new StrictEnumTypeAdapter(gson.getDelegateAdapter(this, type), rawType);
+  }
+
+  private static final class StrictEnumTypeAdapter<T> extends TypeAdapter<T> {
+
+    private final TypeAdapter<T> delegate;
+    private final Map<String, T> constants = new HashMap<>();
+
+    StrictEnumTypeAdapter(TypeAdapter<T> delegate, Class<T> type) {
+      this.delegate = delegate;
+      for (T constant : type.getEnumConstants()) {
+        constants.put(delegate.toJsonTree(constant).getAsString(), constant);
+      }
+    }
+
+    @Override
+    public void write(JsonWriter out, T value) throws IOException {
+      delegate.write(out, value);
+    }
+
+    @Override
+    public T read(JsonReader in) throws IOException {
+      if (!(in instanceof StrictJsonReader)) {
+        return delegate.read(in);
+      }
+      JsonToken token = in.peek();
+      if (token != JsonToken.STRING) {
+        throw new PropertyConstraintException(token, "STRING expected at " + in.getPath());
+      }
+      String path = in.getPath();
+      String name = in.nextString();
+      T value = constants.get(name);
+      if (value == null) {
+        // alternate names are only known to the delegate
+        value = delegate.fromJsonTree(new JsonPrimitive(name));
+      }
+      if (value == null) {
+        throw new PropertyConstraintException(name, "unknown value at " + path);
+      }
+      return value;
+    }
+  }
+}
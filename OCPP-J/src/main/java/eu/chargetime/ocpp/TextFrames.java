@@ -0,0 +1,60 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.DefaultExtension;
+import org.java_websocket.framing.TextFrame;
+
+/** Sends UTF-8 encoded text frames over a {@link WebSocket}. */
+final class TextFrames {
+
+  private TextFrames() {}
+
+  /**
+   * Send an encoded text frame. The frame is copied into the socket's own buffer before this
+   * method returns. Extensions such as permessage-deflate read the whole backing array of the
+   * payload, so those connections get the text decoded into a {@link String} instead.
+   *
+   * @param socket the connection to send on.
+   * @param message the encoded text, from its position to its limit.
+   */
+  static void send(WebSocket socket, ByteBuffer message) {
+    Draft draft = socket.getDraft();
+    if (draft instanceof Draft_6455
+        && ((Draft_6455) draft).getExtension().getClass() == DefaultExtension.class) {
+      TextFrame frame = new TextFrame();
+      frame.setPayload(message);
+      socket.sendFrame(frame);
+    } else {
+      socket.send(StandardCharsets.UTF_8.decode(message).toString());
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link Writer} encoding characters as UTF-8 straight into a pooled {@link ByteBuffer}. The buffer
+ * grows as needed and is returned to the pool on {@link #close()}. Unpaired surrogates are encoded
+ * as '?', like {@link String#getBytes(java.nio.charset.Charset)} does.
+ */
+final class Utf8BufferWriter extends Writer {
+
+  private final ByteBufferPool pool;
+  private ByteBuffer buffer;
+  private char highSurrogate;
+
+  Utf8BufferWriter(ByteBufferPool pool) {
+    this.pool = pool;
+    this.buffer = pool.acquire();
+  }
+
+  @Override
+  public void write(int c) {
+    encode((char) c);
+  }
+
+  @Override
+  public void write(char[] chars, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      encode(chars[i]);
+    }
+  }
+
+  @Override
+  public void write(String text) {
+    write(text, 0, text.length());
+  }
+
+  @Override
+  public void write(String text, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      encode(text.charAt(i));
+    }
+  }
+
+  @Override
+  public Writer append(CharSequence text) {
+    for (int i = 0; i < text.length(); i++) {
+      encode(text.charAt(i));
+    }
+    return this;
+  }
+
+  @Override
+  public void flush() {}
+
+  /**
+   * Get the encoded text. The buffer stays owned by this writer and must not be used after {@link
+   * #close()}.
+   *
+   * @return the buffer, flipped for reading.
+   */
+  ByteBuffer toByteBuffer() {
+    if (highSurrogate != 0) {
+      highSurrogate = 0;
+      put('?');
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  @Override
+  public void close() {
+    if (buffer != null) {
+      pool.release(buffer);
+      buffer = null;
+    }
+  }
+
+  private void encode(char c) {
+    if (highSurrogate != 0) {
+      char high = highSurrogate;
+      highSurrogate = 0;
+      if (Character.isLowSurrogate(c)) {
+        int codePoint = Character.toCodePoint(high, c);
+        ensureRemaining(4);
+        buffer.put((byte) (0xF0 | (codePoint >> 18)));
+        buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+        buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+        return;
+      }
+      put('?');
+    }
+
+    if (c < 0x80) {
+      put(c);
+    } else if (c < 0x800) {
+      ensureRemaining(2);
+      buffer.put((byte) (0xC0 | (c >> 6)));
+      buffer.put((byte) (0x80 | (c & 0x3F)));
+    } else if (Character.isHighSurrogate(c)) {
+      highSurrogate = c;
+    } else if (Character.isLowSurrogate(c)) {
+      put('?');
+    } else {
+      ensureRemaining(3);
+      buffer.put((byte) (0xE0 | (c >> 12)));
+      buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+      buffer.put((byte) (0x80 | (c & 0x3F)));
+    }
+  }
+
+  private void put(char ascii) {
+    ensureRemaining(1);
+    buffer.put((byte) ascii);
+  }
+
+  private void ensureRemaining(int length) {
+    if (buffer.remaining() >= length) {
+      return;
+    }
+    ByteBuffer grown =
+        ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+    buffer.flip();
+    grown.put(buffer);
+    pool.release(buffer);
+    buffer = grown;
+  }
+}
@@ -29,15 +29,18 @@ import eu.chargetime.ocpp.model.SessionInformation;
 import eu.chargetime.ocpp.wss.WssFactoryBuilder;
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import org.java_websocket.WebSocket;
 import org.java_websocket.drafts.Draft;
 import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
 import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.handshake.ServerHandshakeBuilder;
 import org.java_websocket.server.WebSocketServer;
@@ -59,6 +62,7 @@ public class WebSocketListener implements Listener {
   private final List<Draft> drafts;
 
   private final JSONConfiguration configuration;
+  private final HandshakeAdmission admission;
   private volatile WebSocketServer server;
   private WssFactoryBuilder wssFactoryBuilder;
   private final Map<WebSocket, WebSocketReceiver> sockets;
@@ -69,7 +73,8 @@ public class WebSocketListener implements Listener {
       ISessionFactory sessionFactory, JSONConfiguration configuration, Draft... drafts) {
     this.sessionFactory = sessionFactory;
     this.configuration = configuration;
-    this.drafts = Arrays.asList(drafts);
+    this.admission = configuration.getParameter(JSONConfiguration.HANDSHAKE_ADMISSION_PARAMETER);
+    this.drafts = Draft_AdmissionControl.wrap(Arrays.asList(drafts));
     this.sockets = new ConcurrentHashMap<>();
   }
 
@@ -92,6 +97,15 @@ public class WebSocketListener implements Listener {
               webSocket.close(Draft_HttpHealthCheck.HTTP_HEALTH_CHECK_CLOSE_CODE);
               return;
             }
+            if (Draft_AdmissionControl.isRefused(webSocket)) {
+              webSocket.close(Draft_AdmissionControl.HANDSHAKE_REFUSED_CLOSE_CODE);
+              return;
+            }
+            Draft_AdmissionControl.whenAuthenticated(
+                this, webSocket, () -> openSession(webSocket, clientHandshake));
+          }
+
+          private void openSession(WebSocket webSocket, ClientHandshake clientHandshake) {
             logger.debug(
                 "On connection open (resource descriptor: {})",
                 clientHandshake.getResourceDescriptor());
@@ -99,6 +113,8 @@ public class WebSocketListener implements Listener {
             WebSocketReceiver receiver =
                 new WebSocketReceiver(
                     new WebSocketReceiverEvents() {
+                      private final FrameWriter writer = new FrameWriter(webSocket);
+
                       @Override
                       public boolean isClosed() {
                         return closed;
@@ -111,7 +127,35 @@ public class WebSocketListener implements Listener {
 
                       @Override
                       public void relay(String message) {
-                        webSocket.send(message);
+                        relayQuietly(message);
+                      }
+
+                      @Override
+                      public void relay(ByteBuffer message) {
+                        try {
+                          writer.writeText(message);
+                        } catch (NotConnectedException ex) {
+                          throw new WebsocketNotConnectedException();
+                        }
+                      }
+
+                      @Override
+                      public void relay(byte[] message) {
+                        relayQuietly(message);
+                      }
+
+                      @Override
+                      public CompletionStage<Void> relayAsync(Object message)
+                          throws NotConnectedException {
+                        return writer.write(message);
+                      }
+
+                      private void relayQuietly(Object message) {
+                        try {
+                          writer.write(message);
+                        } catch (NotConnectedException ex) {
+                          throw new WebsocketNotConnectedException();
+                        }
                       }
                     });
 
@@ -131,54 +175,79 @@ public class WebSocketListener implements Listener {
                     .ProxiedAddress(proxiedAddress)
                     .build();
 
-            handler.newSession(
-                sessionFactory.createSession(new JSONCommunicator(receiver)), information);
+            Communicator communicator = createCommunicator(webSocket, receiver);
+            MessageTracer tracer =
+                configuration.getParameter(JSONConfiguration.MESSAGE_TRACER_PARAMETER);
+            if (tracer != null) {
+              communicator.setMessageTap(tracer.tap(information.getIdentifier()));
+            }
+            handler.newSession(sessionFactory.createSession(communicator), information);
           }
 
           @Override
           public ServerHandshakeBuilder onWebsocketHandshakeReceivedAsServer(
               WebSocket webSocket, Draft draft, ClientHandshake clientHandshake)
               throws InvalidDataException {
-            SessionInformation information =
-                new SessionInformation.Builder()
-                    .Identifier(clientHandshake.getResourceDescriptor())
-                    .InternetAddress(webSocket.getRemoteSocketAddress())
-                    .build();
-
-            String username = null;
-            String password = null;
-            if (clientHandshake.hasFieldValue("Authorization")) {
-              String authorization = clientHandshake.getFieldValue("Authorization");
-              if (authorization != null && authorization.toLowerCase().startsWith("basic")) {
-                // Authorization: Basic base64credentials
-                String base64Credentials = authorization.substring("Basic".length()).trim();
-                byte[] credDecoded = Base64.getDecoder().decode(base64Credentials);
-                // split credentials on username and password
-                for (int i = 0; i < credDecoded.length; i++) {
-                  if (credDecoded[i] == ':') {
-                    username =
-                        new String(Arrays.copyOfRange(credDecoded, 0, i), StandardCharsets.UTF_8);
-                    if (i + 1 < credDecoded.length) {
-                      password = new String(Arrays.copyOfRange(credDecoded, i + 1, credDecoded.length));
+            boolean controlled = admission != null && !(draft instanceof Draft_HttpHealthCheck);
+            if (controlled && !Draft_AdmissionControl.admit(admission, webSocket, draft)) {
+              // refused before any authentication work, answered with 503
+              return super.onWebsocketHandshakeReceivedAsServer(webSocket, draft, clientHandshake);
+            }
+            boolean deferred = false;
+            try {
+              SessionInformation information =
+                  new SessionInformation.Builder()
+                      .Identifier(clientHandshake.getResourceDescriptor())
+                      .InternetAddress(webSocket.getRemoteSocketAddress())
+                      .build();
+
+              String username = null;
+              String password = null;
+              if (clientHandshake.hasFieldValue("Authorization")) {
+                String authorization = clientHandshake.getFieldValue("Authorization");
+                if (authorization != null && authorization.toLowerCase().startsWith("basic")) {
+                  // Authorization: Basic base64credentials
+                  String base64Credentials = authorization.substring("Basic".length()).trim();
+                  byte[] credDecoded = Base64.getDecoder().decode(base64Credentials);
+                  // split credentials on username and password
+                  for (int i = 0; i < credDecoded.length; i++) {
+                    if (credDecoded[i] == ':') {
+                      username =
+                          new String(Arrays.copyOfRange(credDecoded, 0, i), StandardCharsets.UTF_8);
+                      if (i + 1 < credDecoded.length) {
+                        password = new String(Arrays.copyOfRange(credDecoded, i + 1, credDecoded.length));
+                      }
+                      break;
                     }
-                    break;
                   }
                 }
+                if (password == null
+                    || password.length() < configuration.getParameter(JSONConfiguration.OCPPJ_CP_MIN_PASSWORD_LENGTH, OCPPJ_CP_MIN_PASSWORD_LENGTH)
+                    || password.length() > configuration.getParameter(JSONConfiguration.OCPPJ_CP_MAX_PASSWORD_LENGTH, OCPPJ_CP_MAX_PASSWORD_LENGTH))
+                  throw new InvalidDataException(401, "Invalid password length");
               }
-              if (password == null
-                  || password.length() < configuration.getParameter(JSONConfiguration.OCPPJ_CP_MIN_PASSWORD_LENGTH, OCPPJ_CP_MIN_PASSWORD_LENGTH)
-                  || password.length() > configuration.getParameter(JSONConfiguration.OCPPJ_CP_MAX_PASSWORD_LENGTH, OCPPJ_CP_MAX_PASSWORD_LENGTH))
-                throw new InvalidDataException(401, "Invalid password length");
-            }
 
-            try {
-              handler.authenticateSession(information, username, password);
-            } catch (AuthenticationException e) {
-              throw new InvalidDataException(e.getErrorCode(), e.getMessage());
-            } catch (Exception e) {
-              throw new InvalidDataException(401, e.getMessage());
+              CompletionStage<Void> authentication;
+              try {
+                authentication = handler.authenticateSessionAsync(information, username, password);
+              } catch (Exception e) {
+                throw new InvalidDataException(401, e.getMessage());
+              }
+              // answered when the authentication completes, without holding up this worker
+              deferred = Draft_AdmissionControl.defer(draft, authentication);
+              if (deferred) {
+                if (controlled) {
+                  authentication.whenComplete((ignored, failure) -> admission.release());
+                }
+              } else {
+                Draft_AdmissionControl.awaitAuthentication(authentication);
+              }
+              return super.onWebsocketHandshakeReceivedAsServer(webSocket, draft, clientHandshake);
+            } finally {
+              if (controlled && !deferred) {
+                admission.release();
+              }
             }
-            return super.onWebsocketHandshakeReceivedAsServer(webSocket, draft, clientHandshake);
           }
 
           @Override
@@ -192,6 +261,7 @@ public class WebSocketListener implements Listener {
 
             if(code == Draft_HttpHealthCheck.HTTP_HEALTH_CHECK_CLOSE_CODE)
               return;
+            if (code == Draft_AdmissionControl.HANDSHAKE_REFUSED_CLOSE_CODE) return;
 
             WebSocketReceiver receiver = sockets.get(webSocket);
             if (receiver != null) {
@@ -207,6 +277,13 @@ public class WebSocketListener implements Listener {
             sockets.get(webSocket).relay(message);
           }
 
+          @Override
+          public void onMessage(WebSocket webSocket, ByteBuffer message) {
+            byte[] bytes = new byte[message.remaining()];
+            message.get(bytes);
+            sockets.get(webSocket).relay(bytes);
+          }
+
           @Override
           public void onError(WebSocket webSocket, Exception ex) {
             String resourceDescriptor =
@@ -255,6 +332,14 @@ public class WebSocketListener implements Listener {
     this.wssFactoryBuilder = wssFactoryBuilder;
   }
 
+  private Communicator createCommunicator(WebSocket webSocket, WebSocketReceiver receiver) {
+    if (webSocket.getProtocol() != null
+        && CBORCommunicator.isCBORSubProtocol(webSocket.getProtocol().toString())) {
+      return new CBORCommunicator(receiver, true);
+    }
+    return new JSONCommunicator(receiver, true, JSONCommunicator.codecOf(configuration));
+  }
+
   @Override
   public void close() {
 
@@ -25,7 +25,11 @@ package eu.chargetime.ocpp;
    SOFTWARE.
 */
 
-public class WebSocketReceiver implements Receiver {
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+public class WebSocketReceiver implements Receiver, TextFrameRadio {
 
   private RadioEvents handler;
   private WebSocketReceiverEvents receiverEvents;
@@ -44,9 +48,33 @@ public class WebSocketReceiver implements Receiver {
     handler.receivedMessage(message);
   }
 
+  void relay(byte[] message) {
+    handler.receivedMessage(message);
+  }
+
   @Override
   public void send(Object message) {
-    receiverEvents.relay(message.toString());
+    if (message instanceof byte[]) {
+      receiverEvents.relay((byte[]) message);
+    } else {
+      receiverEvents.relay(message.toString());
+    }
+  }
+
+  @Override
+  public CompletionStage<Void> sendAsync(Object message) {
+    try {
+      return receiverEvents.relayAsync(message);
+    } catch (NotConnectedException ex) {
+      CompletableFuture<Void> failed = new CompletableFuture<>();
+      failed.completeExceptionally(ex);
+      return failed;
+    }
+  }
+
+  @Override
+  public void send(ByteBuffer frame) {
+    receiverEvents.relay(frame);
   }
 
   @Override
@@ -24,6 +24,11 @@ package eu.chargetime.ocpp; /*
                                SOFTWARE.
                             */
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 public interface WebSocketReceiverEvents {
   /** @return true if connection is closed (either not connected or was disconnected) */
   boolean isClosed();
@@ -37,4 +42,38 @@ public interface WebSocketReceiverEvents {
    * @param message message to send
    */
   void relay(String message);
+
+  /**
+   * Send a UTF-8 encoded text message. The buffer is only read during the call.
+   *
+   * @param message encoded message to send
+   */
+  default void relay(ByteBuffer message) {
+    relay(StandardCharsets.UTF_8.decode(message).toString());
+  }
+
+  /**
+   * Send a binary message.
+   *
+   * @param message message to send
+   */
+  default void relay(byte[] message) {
+    throw new UnsupportedOperationException("Binary messages are not supported");
+  }
+
+  /**
+   * Send a message, learning when it is written. A byte array is sent as a binary message.
+   *
+   * @param message message to send
+   * @return completes when the message is written.
+   * @throws NotConnectedException the connection isn't open.
+   */
+  default CompletionStage<Void> relayAsync(Object message) throws NotConnectedException {
+    if (message instanceof byte[]) {
+      relay((byte[]) message);
+    } else {
+      relay(message.toString());
+    }
+    return CompletableFuture.completedFuture(null);
+  }
 }
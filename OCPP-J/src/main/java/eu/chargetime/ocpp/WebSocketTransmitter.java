@@ -31,19 +31,21 @@ import java.io.IOException;
 import java.net.ConnectException;
 import java.net.Proxy;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CompletableFuture;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.drafts.Draft;
-import org.java_websocket.exceptions.WebsocketNotConnectedException;
 import org.java_websocket.handshake.ServerHandshake;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /** Web Socket implementation of the Transmitter. */
-public class WebSocketTransmitter implements Transmitter {
+public class WebSocketTransmitter implements Transmitter, TextFrameRadio {
   private static final Logger logger = LoggerFactory.getLogger(WebSocketTransmitter.class);
 
   public static final String WSS_SCHEME = "wss";
@@ -52,6 +54,7 @@ public class WebSocketTransmitter implements Transmitter {
   private final JSONConfiguration configuration;
   private volatile boolean closed = true;
   private volatile WebSocketClient client;
+  private volatile FrameWriter writer;
   private WssSocketBuilder wssSocketBuilder;
 
   public WebSocketTransmitter(JSONConfiguration configuration, Draft draft) {
@@ -100,6 +103,13 @@ public class WebSocketTransmitter implements Transmitter {
             events.receivedMessage(message);
           }
 
+          @Override
+          public void onMessage(ByteBuffer message) {
+            byte[] bytes = new byte[message.remaining()];
+            message.get(bytes);
+            events.receivedMessage(bytes);
+          }
+
           @Override
           public void onClose(int code, String reason, boolean remote) {
             logger.debug(
@@ -117,6 +127,7 @@ public class WebSocketTransmitter implements Transmitter {
             }
           }
         };
+    writer = new FrameWriter(client);
 
     if (WSS_SCHEME.equals(resource.getScheme())) {
 
@@ -219,15 +230,38 @@ public class WebSocketTransmitter implements Transmitter {
 
   @Override
   public void send(Object request) throws NotConnectedException {
-    if (client == null) {
-      throw new NotConnectedException();
-    }
+    writer().write(request);
+  }
 
+  /**
+   * Send a message, coalesced with the messages sent while it waits to be written.
+   *
+   * @param request the message to send.
+   * @return completes when the message is handed to the socket, held back while the socket is
+   *     behind on writing.
+   */
+  @Override
+  public CompletionStage<Void> sendAsync(Object request) {
     try {
-      client.send(request.toString());
-    } catch (WebsocketNotConnectedException ex) {
+      return writer().write(request);
+    } catch (NotConnectedException ex) {
+      CompletableFuture<Void> failed = new CompletableFuture<>();
+      failed.completeExceptionally(ex);
+      return failed;
+    }
+  }
+
+  @Override
+  public void send(ByteBuffer frame) throws NotConnectedException {
+    writer().writeText(frame);
+  }
+
+  private FrameWriter writer() throws NotConnectedException {
+    FrameWriter frameWriter = writer;
+    if (frameWriter == null) {
       throw new NotConnectedException();
     }
+    return frameWriter;
   }
 
   public boolean isClosed() {
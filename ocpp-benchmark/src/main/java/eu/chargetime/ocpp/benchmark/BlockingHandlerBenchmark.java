@@ -0,0 +1,117 @@
+package eu.chargetime.ocpp.benchmark;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import eu.chargetime.ocpp.AsyncPromiseFulfillerDecorator;
+import eu.chargetime.ocpp.PromiseFulfiller;
+import eu.chargetime.ocpp.RequestExecutors;
+import eu.chargetime.ocpp.model.Confirmation;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Handles one request from each of 10k charge points at once, with a handler that blocks for 10
+ * ms like a database lookup in {@code handleAuthorizeRequest}. Compares a pool of platform threads
+ * with a virtual thread per session, both limited to {@code maxConcurrency} handlers at a time.
+ *
+ * <p>Virtual threads need Java 21, older runtimes run both variants on platform threads. Run with
+ * {@code java -jar ocpp-benchmark/target/benchmarks.jar BlockingHandlerBenchmark} on a JDK 21.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockingHandlerBenchmark {
+
+  private static final int CHARGE_POINTS = 10_000;
+  private static final long HANDLER_MILLIS = 10;
+
+  @Param({"platform", "virtual"})
+  public String threads;
+
+  @Param({"256", "10000"})
+  public int maxConcurrency;
+
+  private ExecutorService executor;
+  private AsyncPromiseFulfillerDecorator[] sessions;
+  private CountDownLatch done;
+
+  @Setup(Level.Trial)
+  public void createSessions() {
+    executor =
+        "virtual".equals(threads)
+            ? RequestExecutors.newBlockingHandlerExecutor(maxConcurrency)
+            : RequestExecutors.newPlatformThreadPool(maxConcurrency);
+    PromiseFulfiller blockingHandler =
+        (promise, eventHandler, request) -> {
+          try {
+            Thread.sleep(HANDLER_MILLIS);
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+          promise.complete(null);
+          done.countDown();
+        };
+    sessions = new AsyncPromiseFulfillerDecorator[CHARGE_POINTS];
+    for (int i = 0; i < CHARGE_POINTS; i++) {
+      sessions[i] = new AsyncPromiseFulfillerDecorator(blockingHandler, executor);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void shutdown() throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+  }
+
+  @Benchmark
+  public CountDownLatch handleConcurrentRequests() throws InterruptedException {
+    done = new CountDownLatch(CHARGE_POINTS);
+    for (AsyncPromiseFulfillerDecorator session : sessions) {
+      session.fulfill(new CompletableFuture<Confirmation>(), null, null);
+    }
+    done.await();
+    return done;
+  }
+}
@@ -0,0 +1,180 @@
+package eu.chargetime.ocpp.benchmark;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+import eu.chargetime.ocpp.CBORCommunicator;
+import eu.chargetime.ocpp.Communicator;
+import eu.chargetime.ocpp.CommunicatorEvents;
+import eu.chargetime.ocpp.JSONCommunicator;
+import eu.chargetime.ocpp.RadioEvents;
+import eu.chargetime.ocpp.Transmitter;
+import eu.chargetime.ocpp.model.Request;
+import eu.chargetime.ocpp.model.core.BootNotificationRequest;
+import eu.chargetime.ocpp.model.core.MeterValue;
+import eu.chargetime.ocpp.model.core.MeterValuesRequest;
+import eu.chargetime.ocpp.model.core.SampledValue;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the JSON framing of {@link JSONCommunicator} with the CBOR framing of {@link
+ * CBORCommunicator}, sending and receiving a call through a radio that keeps the last frame. The
+ * size of each frame is printed during setup.
+ *
+ * <p>Run with {@code java -jar ocpp-benchmark/target/benchmarks.jar FramingBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FramingBenchmark {
+
+  @Param({"json", "cbor"})
+  public String framing;
+
+  @Param({"BootNotification", "MeterValues"})
+  public String action;
+
+  private Communicator communicator;
+  private RadioEvents radioEvents;
+  private Request request;
+  private Class<? extends Request> requestType;
+  private Object frame;
+  private Object sent;
+  private Object received;
+
+  @Setup
+  public void setup() {
+    Transmitter radio =
+        new Transmitter() {
+          @Override
+          public void connect(String uri, RadioEvents events) {
+            radioEvents = events;
+          }
+
+          @Override
+          public void send(Object message) {
+            sent = message;
+          }
+
+          @Override
+          public void disconnect() {}
+
+          @Override
+          public boolean isClosed() {
+            return false;
+          }
+        };
+    communicator =
+        "cbor".equals(framing)
+            ? new CBORCommunicator(radio, false)
+            : new JSONCommunicator(radio, false);
+    communicator.connect("ws://localhost", new UnpackingEvents());
+
+    if ("MeterValues".equals(action)) {
+      request = meterValues();
+      requestType = MeterValuesRequest.class;
+    } else {
+      request = new BootNotificationRequest("VendorX", "SingleSocketCharger");
+      requestType = BootNotificationRequest.class;
+    }
+    communicator.sendCall("42", action, request);
+    frame = sent;
+    int size =
+        frame instanceof byte[]
+            ? ((byte[]) frame).length
+            : frame.toString().getBytes(StandardCharsets.UTF_8).length;
+    System.out.printf("%n%s %s frame: %d bytes%n", framing, action, size);
+  }
+
+  @Benchmark
+  public Object send() {
+    communicator.sendCall("42", action, request);
+    return sent;
+  }
+
+  @Benchmark
+  public Object receive() {
+    radioEvents.receivedMessage(frame);
+    return received;
+  }
+
+  private static MeterValuesRequest meterValues() {
+    String[] measurands = {
+      "Energy.Active.Import.Register", "Power.Active.Import", "Current.Import", "Voltage"
+    };
+    SampledValue[] sampledValues = new SampledValue[measurands.length];
+    for (int i = 0; i < measurands.length; i++) {
+      sampledValues[i] = new SampledValue("1234" + i);
+      sampledValues[i].setMeasurand(measurands[i]);
+    }
+    MeterValuesRequest meterValues = new MeterValuesRequest(1);
+    meterValues.setTransactionId(1337);
+    meterValues.setMeterValue(
+        new MeterValue[] {
+          new MeterValue(ZonedDateTime.parse("2018-01-01T01:01:01.988Z"), sampledValues)
+        });
+    return meterValues;
+  }
+
+  private class UnpackingEvents implements CommunicatorEvents {
+
+    @Override
+    public void onCall(String id, String action, Object payload) {
+      try {
+        received = communicator.unpackPayload(payload, requestType);
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public void onCallResult(String id, String action, Object payload) {}
+
+    @Override
+    public void onError(String id, String errorCode, String errorDescription, Object payload) {}
+
+    @Override
+    public void onDisconnected() {}
+
+    @Override
+    public void onConnected() {}
+  }
+}
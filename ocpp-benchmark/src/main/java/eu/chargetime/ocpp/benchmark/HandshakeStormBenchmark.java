@@ -0,0 +1,209 @@
+package eu.chargetime.ocpp.benchmark;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+import eu.chargetime.ocpp.HandshakeAdmission;
+import eu.chargetime.ocpp.JSONConfiguration;
+import eu.chargetime.ocpp.JSONServer;
+import eu.chargetime.ocpp.ServerEvents;
+import eu.chargetime.ocpp.feature.profile.ServerCoreEventHandler;
+import eu.chargetime.ocpp.feature.profile.ServerCoreProfile;
+import eu.chargetime.ocpp.model.SessionInformation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A reconnect storm against the WebSocket listener of a {@link JSONServer}: {@code STORM} charge
+ * points send their handshake at once, {@code CLIENT_THREADS} at a time, and authenticating one
+ * takes {@code AUTHENTICATION_MILLIS} like a call to a credential service would. The time is until
+ * every charge point has an answer, either 101 Switching Protocols or 503 Service Unavailable.
+ *
+ * <p>With {@code admission=on} the listener admits {@code ADMITTED_PER_SECOND} handshakes per
+ * second and refuses the others before authenticating them. The admitted and refused counts are
+ * printed after each trial. Run with {@code java -jar ocpp-benchmark/target/benchmarks.jar
+ * HandshakeStormBenchmark}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HandshakeStormBenchmark {
+
+  private static final String HOST = "127.0.0.1";
+  private static final int STORM = 2_000;
+  private static final int CLIENT_THREADS = 200;
+  private static final long AUTHENTICATION_MILLIS = 2;
+  private static final int ADMITTED_PER_SECOND = 500;
+  private static final int ADMITTED_BURST = 100;
+
+  @Param({"off", "on"})
+  public String admission;
+
+  private final AtomicInteger upgraded = new AtomicInteger();
+  private final AtomicInteger refused = new AtomicInteger();
+  private HandshakeAdmission handshakeAdmission;
+  private JSONServer server;
+  private ExecutorService clients;
+  private int port;
+
+  @Setup(Level.Trial)
+  public void openServer() throws Exception {
+    JSONConfiguration configuration = JSONConfiguration.get();
+    if ("on".equals(admission)) {
+      handshakeAdmission =
+          new HandshakeAdmission().setGlobalRate(ADMITTED_PER_SECOND, ADMITTED_BURST);
+      configuration.setParameter(
+          JSONConfiguration.HANDSHAKE_ADMISSION_PARAMETER, handshakeAdmission);
+    }
+    ServerCoreEventHandler handler =
+        (ServerCoreEventHandler)
+            Proxy.newProxyInstance(
+                ServerCoreEventHandler.class.getClassLoader(),
+                new Class<?>[] {ServerCoreEventHandler.class},
+                (proxy, method, args) -> null);
+    server = new JSONServer(new ServerCoreProfile(handler), configuration);
+    configuration.setParameter(JSONConfiguration.HANDSHAKE_ADMISSION_PARAMETER, null);
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    server.open(HOST, port, new SlowAuthentication());
+    // the WebSocket listener binds on a thread of its own
+    Thread.sleep(500);
+    clients = Executors.newFixedThreadPool(CLIENT_THREADS);
+  }
+
+  @TearDown(Level.Trial)
+  public void closeServer() {
+    clients.shutdownNow();
+    server.close();
+    System.out.printf(
+        "%nadmission %s: %d upgraded, %d refused, %s%n",
+        admission,
+        upgraded.get(),
+        refused.get(),
+        handshakeAdmission);
+  }
+
+  @Setup(Level.Iteration)
+  public void refillBuckets() throws InterruptedException {
+    // let the global bucket fill up again between storms
+    Thread.sleep(1000L * ADMITTED_BURST / ADMITTED_PER_SECOND + 100);
+  }
+
+  @Benchmark
+  public int storm() throws Exception {
+    List<Future<String>> answers = new ArrayList<>(STORM);
+    for (int i = 0; i < STORM; i++) {
+      String path = "/CP_" + i;
+      answers.add(clients.submit(() -> handshake(path)));
+    }
+    int answered = 0;
+    for (Future<String> answer : answers) {
+      String status = answer.get();
+      if (status.startsWith("HTTP/1.1 101")) {
+        upgraded.incrementAndGet();
+      } else if (status.startsWith("HTTP/1.1 503")) {
+        refused.incrementAndGet();
+      }
+      answered++;
+    }
+    return answered;
+  }
+
+  /** Send a WebSocket upgrade request and read the status line of the response. */
+  private String handshake(String path) throws IOException {
+    try (Socket socket = new Socket(HOST, port)) {
+      OutputStream out = socket.getOutputStream();
+      out.write(
+          ("GET "
+                  + path
+                  + " HTTP/1.1\r\n"
+                  + "Host: "
+                  + HOST
+                  + "\r\n"
+                  + "Upgrade: websocket\r\n"
+                  + "Connection: Upgrade\r\n"
+                  + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                  + "Sec-WebSocket-Version: 13\r\n"
+                  + "Sec-WebSocket-Protocol: ocpp1.6\r\n"
+                  + "\r\n")
+              .getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+      String status =
+          new BufferedReader(
+                  new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))
+              .readLine();
+      return status != null ? status : "";
+    }
+  }
+
+  private static class SlowAuthentication implements ServerEvents {
+    @Override
+    public void authenticateSession(
+        SessionInformation information, String username, String password) {
+      try {
+        Thread.sleep(AUTHENTICATION_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public void newSession(UUID sessionIndex, SessionInformation information) {}
+
+    @Override
+    public void lostSession(UUID sessionIndex) {}
+  }
+}
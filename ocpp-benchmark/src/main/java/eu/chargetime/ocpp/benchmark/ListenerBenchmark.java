@@ -0,0 +1,403 @@
+package eu.chargetime.ocpp.benchmark;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import eu.chargetime.ocpp.Client;
+import eu.chargetime.ocpp.ClientEvents;
+import eu.chargetime.ocpp.FeatureRepository;
+import eu.chargetime.ocpp.JSONCommunicator;
+import eu.chargetime.ocpp.JSONConfiguration;
+import eu.chargetime.ocpp.JSONServer;
+import eu.chargetime.ocpp.PromiseRepository;
+import eu.chargetime.ocpp.RadioEvents;
+import eu.chargetime.ocpp.ServerEvents;
+import eu.chargetime.ocpp.SessionFactory;
+import eu.chargetime.ocpp.feature.profile.ClientCoreEventHandler;
+import eu.chargetime.ocpp.feature.profile.ClientCoreProfile;
+import eu.chargetime.ocpp.feature.profile.ServerCoreEventHandler;
+import eu.chargetime.ocpp.feature.profile.ServerCoreProfile;
+import eu.chargetime.ocpp.model.SessionInformation;
+import eu.chargetime.ocpp.model.core.AuthorizeConfirmation;
+import eu.chargetime.ocpp.model.core.AuthorizeRequest;
+import eu.chargetime.ocpp.model.core.BootNotificationConfirmation;
+import eu.chargetime.ocpp.model.core.BootNotificationRequest;
+import eu.chargetime.ocpp.model.core.ChangeAvailabilityConfirmation;
+import eu.chargetime.ocpp.model.core.ChangeAvailabilityRequest;
+import eu.chargetime.ocpp.model.core.ChangeConfigurationConfirmation;
+import eu.chargetime.ocpp.model.core.ChangeConfigurationRequest;
+import eu.chargetime.ocpp.model.core.ClearCacheConfirmation;
+import eu.chargetime.ocpp.model.core.ClearCacheRequest;
+import eu.chargetime.ocpp.model.core.DataTransferConfirmation;
+import eu.chargetime.ocpp.model.core.DataTransferRequest;
+import eu.chargetime.ocpp.model.core.GetConfigurationConfirmation;
+import eu.chargetime.ocpp.model.core.GetConfigurationRequest;
+import eu.chargetime.ocpp.model.core.HeartbeatConfirmation;
+import eu.chargetime.ocpp.model.core.HeartbeatRequest;
+import eu.chargetime.ocpp.model.core.MeterValuesConfirmation;
+import eu.chargetime.ocpp.model.core.MeterValuesRequest;
+import eu.chargetime.ocpp.model.core.RemoteStartTransactionConfirmation;
+import eu.chargetime.ocpp.model.core.RemoteStartTransactionRequest;
+import eu.chargetime.ocpp.model.core.RemoteStopTransactionConfirmation;
+import eu.chargetime.ocpp.model.core.RemoteStopTransactionRequest;
+import eu.chargetime.ocpp.model.core.ResetConfirmation;
+import eu.chargetime.ocpp.model.core.ResetRequest;
+import eu.chargetime.ocpp.model.core.StartTransactionConfirmation;
+import eu.chargetime.ocpp.model.core.StartTransactionRequest;
+import eu.chargetime.ocpp.model.core.StatusNotificationConfirmation;
+import eu.chargetime.ocpp.model.core.StatusNotificationRequest;
+import eu.chargetime.ocpp.model.core.StopTransactionConfirmation;
+import eu.chargetime.ocpp.model.core.StopTransactionRequest;
+import eu.chargetime.ocpp.model.core.UnlockConnectorConfirmation;
+import eu.chargetime.ocpp.model.core.UnlockConnectorRequest;
+import eu.chargetime.ocpp.netty.NettyWebSocketListener;
+import eu.chargetime.ocpp.netty.NettyWebSocketTransmitter;
+import java.net.ServerSocket;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the WebSocket listener with the Netty listener behind a {@link JSONServer}. {@code
+ * connect} opens 2k charge point connections, {@code CONNECT_BATCH} handshakes at a time, and
+ * waits for all their sessions. {@code heartbeats} sends 100 heartbeats at once over each of 100
+ * open connections, then waits for all the confirmations.
+ *
+ * <p>The charge points always connect with the Netty transmitter, so the load is generated the
+ * same way for both listeners. Run with {@code java -jar ocpp-benchmark/target/benchmarks.jar
+ * ListenerBenchmark}, the open file limit must allow two sockets per connection.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListenerBenchmark {
+
+  private static final String HOST = "127.0.0.1";
+  private static final int CONNECTIONS = 2_000;
+  private static final int THROUGHPUT_CONNECTIONS = 100;
+  private static final int REQUESTS_PER_CONNECTION = 100;
+  /** Handshakes in flight, the WebSocket listener drops connections beyond its accept backlog. */
+  private static final int CONNECT_BATCH = 50;
+  private static final long TIMEOUT_MILLIS = 60_000;
+
+  @Param({"websocket", "netty"})
+  public String listener;
+
+  private final AtomicInteger openSessions = new AtomicInteger();
+  private JSONConfiguration configuration;
+  private JSONServer server;
+  private int port;
+  private List<NettyWebSocketTransmitter> transmitters;
+  private int sessionsBefore;
+
+  @Setup(Level.Trial)
+  public void openServer() throws Exception {
+    configuration = JSONConfiguration.get();
+    configuration.setParameter(JSONConfiguration.CONNECT_NON_BLOCKING_PARAMETER, true);
+    ServerCoreProfile coreProfile = new ServerCoreProfile(new HeartbeatHandler());
+    if ("netty".equals(listener)) {
+      server =
+          new JSONServer(
+              coreProfile,
+              configuration,
+              sessionFactory ->
+                  new NettyWebSocketListener(sessionFactory, configuration, "ocpp1.6", ""));
+    } else {
+      server = new JSONServer(coreProfile, configuration);
+    }
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    server.open(HOST, port, new SessionCounter());
+    // the WebSocket listener binds on a thread of its own
+    Thread.sleep(500);
+  }
+
+  @TearDown(Level.Trial)
+  public void closeServer() {
+    server.close();
+  }
+
+  @Setup(Level.Invocation)
+  public void prepareConnections() {
+    sessionsBefore = openSessions.get();
+    transmitters = new ArrayList<>();
+  }
+
+  @TearDown(Level.Invocation)
+  public void closeConnections() throws InterruptedException {
+    for (NettyWebSocketTransmitter transmitter : transmitters) {
+      transmitter.disconnect();
+    }
+    awaitCount(openSessions, sessionsBefore);
+  }
+
+  @Benchmark
+  public int connect() throws InterruptedException {
+    RadioEvents events = new IgnoredRadioEvents();
+    for (int i = 0; i < CONNECTIONS; i++) {
+      NettyWebSocketTransmitter transmitter =
+          new NettyWebSocketTransmitter(configuration, "ocpp1.6");
+      transmitter.connect(url(i), events);
+      transmitters.add(transmitter);
+      if ((i + 1) % CONNECT_BATCH == 0) {
+        awaitCount(openSessions, i + 1);
+      }
+    }
+    awaitCount(openSessions, CONNECTIONS);
+    return openSessions.get();
+  }
+
+  @Benchmark
+  public int heartbeats(ChargePoints chargePoints) throws Exception {
+    List<CompletableFuture<?>> confirmations = new ArrayList<>();
+    for (int request = 0; request < REQUESTS_PER_CONNECTION; request++) {
+      for (Client client : chargePoints.clients) {
+        confirmations.add(client.send(new HeartbeatRequest()).toCompletableFuture());
+      }
+    }
+    CompletableFuture.allOf(confirmations.toArray(new CompletableFuture<?>[0]))
+        .get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    return confirmations.size();
+  }
+
+  /** Charge points connected for the whole trial of {@code heartbeats}. */
+  @State(Scope.Benchmark)
+  public static class ChargePoints {
+    private final AtomicInteger openClients = new AtomicInteger();
+      private final List<Client> clients = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void connect(ListenerBenchmark benchmark) throws InterruptedException {
+      for (int i = 0; i < THROUGHPUT_CONNECTIONS; i++) {
+        FeatureRepository featureRepository = new FeatureRepository();
+        featureRepository.addFeatureProfile(
+            new ClientCoreProfile(new IgnoredClientCoreEventHandler()));
+        Client client =
+            new Client(
+                new SessionFactory(featureRepository)
+                    .createSession(
+                        new JSONCommunicator(
+                            new NettyWebSocketTransmitter(benchmark.configuration, "ocpp1.6"))),
+                new PromiseRepository());
+        client.connect(benchmark.url(i), new ClientCounter(openClients));
+        clients.add(client);
+        if ((i + 1) % CONNECT_BATCH == 0) {
+          awaitCount(openClients, i + 1);
+        }
+      }
+      awaitCount(openClients, THROUGHPUT_CONNECTIONS);
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() {
+      for (Client client : clients) {
+        client.disconnect();
+      }
+    }
+  }
+
+  private String url(int chargePoint) {
+    return "ws://" + HOST + ":" + port + "/CP_" + chargePoint;
+  }
+
+  private static void awaitCount(AtomicInteger count, int expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (count.get() != expected) {
+      if (System.currentTimeMillis() > deadline) {
+        throw new IllegalStateException("Expected " + expected + " connections, have " + count);
+      }
+      Thread.sleep(1);
+    }
+  }
+
+  private class SessionCounter implements ServerEvents {
+    @Override
+    public void authenticateSession(
+        SessionInformation information, String username, String password) {}
+
+    @Override
+    public void newSession(UUID sessionIndex, SessionInformation information) {
+      openSessions.incrementAndGet();
+    }
+
+    @Override
+    public void lostSession(UUID sessionIndex) {
+      openSessions.decrementAndGet();
+    }
+  }
+
+  private static class IgnoredRadioEvents implements RadioEvents {
+    @Override
+    public void connected() {}
+
+    @Override
+    public void receivedMessage(Object message) {}
+
+    @Override
+    public void disconnected() {}
+  }
+
+  private static class ClientCounter implements ClientEvents {
+    private final AtomicInteger openClients;
+
+    ClientCounter(AtomicInteger openClients) {
+      this.openClients = openClients;
+    }
+
+    @Override
+    public void connectionOpened() {
+      openClients.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed() {}
+  }
+
+  private static class HeartbeatHandler implements ServerCoreEventHandler {
+    @Override
+    public HeartbeatConfirmation handleHeartbeatRequest(
+        UUID sessionIndex, HeartbeatRequest request) {
+      return new HeartbeatConfirmation(ZonedDateTime.now());
+    }
+
+    @Override
+    public AuthorizeConfirmation handleAuthorizeRequest(
+        UUID sessionIndex, AuthorizeRequest request) {
+      return null;
+    }
+
+    @Override
+    public BootNotificationConfirmation handleBootNotificationRequest(
+        UUID sessionIndex, BootNotificationRequest request) {
+      return null;
+    }
+
+    @Override
+    public DataTransferConfirmation handleDataTransferRequest(
+        UUID sessionIndex, DataTransferRequest request) {
+      return null;
+    }
+
+    @Override
+    public MeterValuesConfirmation handleMeterValuesRequest(
+        UUID sessionIndex, MeterValuesRequest request) {
+      return null;
+    }
+
+    @Override
+    public StartTransactionConfirmation handleStartTransactionRequest(
+        UUID sessionIndex, StartTransactionRequest request) {
+      return null;
+    }
+
+    @Override
+    public StatusNotificationConfirmation handleStatusNotificationRequest(
+        UUID sessionIndex, StatusNotificationRequest request) {
+      return null;
+    }
+
+    @Override
+    public StopTransactionConfirmation handleStopTransactionRequest(
+        UUID sessionIndex, StopTransactionRequest request) {
+      return null;
+    }
+  }
+
+  private static class IgnoredClientCoreEventHandler implements ClientCoreEventHandler {
+    @Override
+    public ChangeAvailabilityConfirmation handleChangeAvailabilityRequest(
+        ChangeAvailabilityRequest request) {
+      return null;
+    }
+
+    @Override
+    public GetConfigurationConfirmation handleGetConfigurationRequest(
+        GetConfigurationRequest request) {
+      return null;
+    }
+
+    @Override
+    public ChangeConfigurationConfirmation handleChangeConfigurationRequest(
+        ChangeConfigurationRequest request) {
+      return null;
+    }
+
+    @Override
+    public ClearCacheConfirmation handleClearCacheRequest(ClearCacheRequest request) {
+      return null;
+    }
+
+    @Override
+    public DataTransferConfirmation handleDataTransferRequest(DataTransferRequest request) {
+      return null;
+    }
+
+    @Override
+    public RemoteStartTransactionConfirmation handleRemoteStartTransactionRequest(
+        RemoteStartTransactionRequest request) {
+      return null;
+    }
+
+    @Override
+    public RemoteStopTransactionConfirmation handleRemoteStopTransactionRequest(
+        RemoteStopTransactionRequest request) {
+      return null;
+    }
+
+    @Override
+    public ResetConfirmation handleResetRequest(ResetRequest request) {
+      return null;
+    }
+
+    @Override
+    public UnlockConnectorConfirmation handleUnlockConnectorRequest(
+        UnlockConnectorRequest request) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package eu.chargetime.ocpp.benchmark;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import eu.chargetime.ocpp.utilities.Timestamps;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link Timestamps} with the {@link DateTimeFormatter} path it replaced.
+ *
+ * <p>Run with {@code java -jar ocpp-benchmark/target/benchmarks.jar TimestampBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimestampBenchmark {
+
+  @Param({"2018-01-01T01:01:01Z", "2018-01-01T01:01:01.988Z", "2018-01-01T02:01:01.988+01:00"})
+  public String text;
+
+  private ZonedDateTime value;
+
+  @Setup
+  public void setup() {
+    value = ZonedDateTime.parse(text);
+  }
+
+  @Benchmark
+  public ZonedDateTime parseJdk() {
+    return ZonedDateTime.parse(text);
+  }
+
+  @Benchmark
+  public ZonedDateTime parseTimestamps() {
+    return Timestamps.parse(text);
+  }
+
+  @Benchmark
+  public String formatInstantJdk() {
+    return value.format(DateTimeFormatter.ISO_INSTANT);
+  }
+
+  @Benchmark
+  public String formatInstantTimestamps() {
+    return Timestamps.formatInstant(value);
+  }
+
+  @Benchmark
+  public String formatWithOffsetJdk() {
+    return value.toString();
+  }
+
+  @Benchmark
+  public String formatWithOffsetTimestamps() {
+    return Timestamps.formatWithOffset(value);
+  }
+}
@@ -0,0 +1,160 @@
+package eu.chargetime.ocpp.benchmark;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import eu.chargetime.ocpp.MappedFileTransactionQueue;
+import eu.chargetime.ocpp.MemoryTransactionQueue;
+import eu.chargetime.ocpp.TransactionQueue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Queues a million MeterValues frames in a {@link MemoryTransactionQueue} and a {@link
+ * MappedFileTransactionQueue}, and replays them. The mapped replay includes reopening the queue,
+ * as after a restart.
+ *
+ * <p>Run with {@code java -jar ocpp-benchmark/target/benchmarks.jar TransactionQueueBenchmark}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransactionQueueBenchmark {
+
+  private static final int FRAMES = 1_000_000;
+  private static final String FRAME =
+      "[2,\"1337\",\"MeterValues\",{\"connectorId\":1,\"transactionId\":1337,\"meterValue\":"
+          + "[{\"timestamp\":\"2018-01-01T01:01:01.988Z\",\"sampledValue\":[{\"value\":\"12340\","
+          + "\"measurand\":\"Energy.Active.Import.Register\"}]}]}]";
+
+  @Benchmark
+  @OperationsPerInvocation(FRAMES)
+  public TransactionQueue enqueue(Empty empty) {
+    for (int i = 0; i < FRAMES; i++) {
+      empty.queue.add(FRAME);
+    }
+    return empty.queue;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(FRAMES)
+  public int replay(Backlog backlog) throws IOException {
+    TransactionQueue queue = backlog.reopen();
+    int length = 0;
+    Object frame;
+    while ((frame = queue.peek()) != null) {
+      length += ((String) frame).length();
+      queue.remove();
+    }
+    return length;
+  }
+
+  /** A new, empty queue. */
+  @State(Scope.Thread)
+  public static class Empty {
+
+    @Param({"memory", "mapped"})
+    public String store;
+
+    private Path directory;
+    private TransactionQueue queue;
+
+    @Setup(Level.Invocation)
+    public void open() throws IOException {
+      directory = Files.createTempDirectory("ocpp-transaction-queue");
+      queue = newQueue(store, directory);
+    }
+
+    @TearDown(Level.Invocation)
+    public void delete() throws IOException {
+      deleteDirectory(directory);
+    }
+  }
+
+  /** A queue of a million frames, closed to be replayed from the files as after a restart. */
+  @State(Scope.Thread)
+  public static class Backlog {
+
+    @Param({"memory", "mapped"})
+    public String store;
+
+    private Path directory;
+    private TransactionQueue queue;
+
+    @Setup(Level.Invocation)
+    public void fill() throws IOException {
+      directory = Files.createTempDirectory("ocpp-transaction-queue");
+      queue = newQueue(store, directory);
+      for (int i = 0; i < FRAMES; i++) {
+        queue.add(FRAME);
+      }
+      if (queue instanceof MappedFileTransactionQueue) {
+        ((MappedFileTransactionQueue) queue).close();
+      }
+    }
+
+    @TearDown(Level.Invocation)
+    public void delete() throws IOException {
+      deleteDirectory(directory);
+    }
+
+    TransactionQueue reopen() throws IOException {
+      return queue instanceof MappedFileTransactionQueue ? newQueue(store, directory) : queue;
+    }
+  }
+
+  private static TransactionQueue newQueue(String store, Path directory) throws IOException {
+    return "mapped".equals(store)
+        ? new MappedFileTransactionQueue(directory, 64 * 1024 * 1024)
+        : new MemoryTransactionQueue();
+  }
+
+  private static void deleteDirectory(Path directory) throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+}
@@ -0,0 +1,321 @@
+package eu.chargetime.ocpp.codegen;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/** Writes the source of a generated type adapter factory for one model package. */
+class FactoryWriter {
+
+  private static final String GSON = "com.google.gson.Gson";
+  private static final String TYPE_ADAPTER = "com.google.gson.TypeAdapter";
+  private static final String TYPE_ADAPTER_FACTORY = "com.google.gson.TypeAdapterFactory";
+  private static final String TYPE_TOKEN = "com.google.gson.reflect.TypeToken";
+  private static final String JSON_READER = "com.google.gson.stream.JsonReader";
+  private static final String JSON_WRITER = "com.google.gson.stream.JsonWriter";
+  private static final String JSON_TOKEN = "com.google.gson.stream.JsonToken";
+  private static final String METHOD_HANDLE = "java.lang.invoke.MethodHandle";
+  private static final String GENERATED_TYPE_ADAPTER = "eu.chargetime.ocpp.GeneratedTypeAdapter";
+
+  private final Writer writer;
+  private final String packageName;
+  private final List<ModelType> models;
+
+  FactoryWriter(Writer writer, String packageName, List<ModelType> models) {
+    this.writer = writer;
+    this.packageName = packageName;
+    this.models = models;
+  }
+
+  void write() throws IOException {
+    line("package " + packageName + ";");
+    line("");
+    line("/**");
+    line(" * Precompiled type adapters for the models of this package.");
+    line(" *");
+    line(" * <p>Generated by eu.chargetime.ocpp.codegen.TypeAdapterProcessor, do not edit.");
+    line(" */");
+    line("public final class " + TypeAdapterProcessor.FACTORY_NAME + " implements "
+        + TYPE_ADAPTER_FACTORY + " {");
+    line("");
+    line("  @Override");
+    line("  @SuppressWarnings(\"unchecked\")");
+    line("  public <T> " + TYPE_ADAPTER + "<T> create(" + GSON + " gson, " + TYPE_TOKEN
+        + "<T> type) {");
+    line("    Class<? super T> rawType = type.getRawType();");
+    for (ModelType model : models) {
+      line("    if (rawType == " + model.qualifiedName + ".class) {");
+      line("      return (" + TYPE_ADAPTER + "<T>) new " + model.adapterName() + "(gson, this);");
+      line("    }");
+    }
+    line("    return null;");
+    line("  }");
+    for (ModelType model : models) {
+      line("");
+      writeAdapter(model);
+    }
+    line("}");
+  }
+
+  private void writeAdapter(ModelType model) throws IOException {
+    String type = model.qualifiedName;
+    line("  private static final class " + model.adapterName() + " extends "
+        + GENERATED_TYPE_ADAPTER + "<" + type + "> {");
+    if (model.hasNoArgConstructor) {
+      line("    private static final " + METHOD_HANDLE + " NEW = constructor(" + type + ".class);");
+    }
+    for (ModelField field : model.fields) {
+      if (!field.excluded) {
+        line("    private static final " + METHOD_HANDLE + " GET_" + field.javaName + " =");
+        line("        getter(" + type + ".class, " + field.declaringType + ".class, \""
+            + field.javaName + "\");");
+      }
+      line("    private static final " + METHOD_HANDLE + " SET_" + field.javaName + " =");
+      line("        setter(" + type + ".class, " + field.declaringType + ".class, \""
+          + field.javaName + "\");");
+      if (validated(model, field)) {
+        line("    private static final " + METHOD_HANDLE + " IS_VALID_" + field.javaName + " =");
+        line("        validator(" + type + ".class, \"" + field.validator + "\", " + field.erasure
+            + ".class);");
+      }
+    }
+    line("");
+    for (ModelField field : model.fields) {
+      if (field.isDelegated()) {
+        line("    private final " + TYPE_ADAPTER + "<" + boxed(field.type) + "> " + field.javaName
+            + "Adapter;");
+      }
+      if (validated(model, field) && field.nestedModel != null) {
+        line("    private final NestedValidator " + field.javaName + "Validator;");
+      }
+    }
+    line("");
+
+    line("    " + model.adapterName() + "(" + GSON + " gson, " + TYPE_ADAPTER_FACTORY
+        + " factory) {");
+    line("      super(gson, factory, " + type + ".class);");
+    for (ModelField field : model.fields) {
+      if (field.isDelegated()) {
+        line("      this." + field.javaName + "Adapter = " + adapterLookup(field) + ";");
+      }
+      if (validated(model, field) && field.nestedModel != null) {
+        line("      this." + field.javaName + "Validator = nestedValidator(gson, IS_VALID_"
+            + field.javaName + ", " + field.nestedModel + ".class);");
+      }
+    }
+    line("    }");
+    line("");
+
+    line("    @Override");
+    line("    protected " + type + " newInstance() throws Throwable {");
+    if (model.hasNoArgConstructor) {
+      line("      return (" + type + ") NEW.invokeExact();");
+    } else {
+      line("      return allocate();");
+    }
+    line("    }");
+    line("");
+
+    line("    @Override");
+    line("    @SuppressWarnings(\"unchecked\")");
+    line("    protected void writeFields(" + JSON_WRITER + " out, " + type
+        + " value) throws Throwable {");
+    for (ModelField field : model.fields) {
+      if (!field.excluded) {
+        writeField(field);
+      }
+    }
+    line("    }");
+    line("");
+
+    line("    @Override");
+    line("    @SuppressWarnings(\"unchecked\")");
+    line("    protected void readField(" + JSON_READER + " in, String name, " + type
+        + " target) throws Throwable {");
+    line("      switch (name) {");
+    for (ModelField field : model.fields) {
+      line("        case \"" + field.jsonName + "\":");
+      for (String alternateName : field.alternateNames) {
+        line("        case \"" + alternateName + "\":");
+      }
+      readField(field);
+      line("          return;");
+    }
+    line("        default:");
+    line(model.open ? "          in.skipValue();" : "          skipUnknown(in, name);");
+    line("      }");
+    line("    }");
+    if (model.validating) {
+      line("");
+      writeIsValid(model);
+    }
+    line("  }");
+  }
+
+  private void writeIsValid(ModelType model) throws IOException {
+    line("    @Override");
+    line("    protected boolean validatesWhileReading() {");
+    line("      return true;");
+    line("    }");
+    line("");
+    line("    @Override");
+    line("    protected boolean isValid(" + model.qualifiedName + " target) throws Throwable {");
+    for (ModelField field : model.fields) {
+      if (!validated(model, field)) {
+        continue;
+      }
+      String local = "_" + field.javaName;
+      line("      " + field.erasure + " " + local + " = (" + field.erasure + ") GET_"
+          + field.javaName + ".invokeExact(target);");
+      if (field.nestedModel != null) {
+        line("      if (!" + field.javaName + "Validator.isValid(target, " + local + ")) {");
+      } else {
+        line("      if (!(boolean) IS_VALID_" + field.javaName + ".invokeExact(target, " + local
+            + ")) {");
+      }
+      line("        return false;");
+      line("      }");
+    }
+    line("      return true;");
+    line("    }");
+  }
+
+  private static boolean validated(ModelType model, ModelField field) {
+    return model.validating && field.validator != null;
+  }
+
+  private void writeField(ModelField field) throws IOException {
+    String get = "GET_" + field.javaName + ".invokeExact(value)";
+    String local = "_" + field.javaName;
+    String name = "out.name(\"" + field.jsonName + "\");";
+    switch (field.kind) {
+      case INT:
+      case LONG:
+      case BOOLEAN:
+        line("      " + name);
+        line("      out.value((" + field.type + ") " + get + ");");
+        return;
+      case DOUBLE:
+        line("      " + name);
+        line("      writeDouble(out, (double) " + get + ");");
+        return;
+      case BOXED_DOUBLE:
+        line("      " + field.type + " " + local + " = (" + field.erasure + ") " + get + ";");
+        line("      if (" + local + " != null) {");
+        line("        " + name);
+        line("        writeDouble(out, " + local + ");");
+        line("      }");
+        return;
+      case STRING:
+      case BOXED_INTEGER:
+      case BOXED_LONG:
+      case BOXED_BOOLEAN:
+        line("      " + field.type + " " + local + " = (" + field.erasure + ") " + get + ";");
+        line("      if (" + local + " != null) {");
+        line("        " + name);
+        line("        out.value(" + local + ");");
+        line("      }");
+        return;
+      default:
+        line("      " + field.type + " " + local + " = (" + field.erasure + ") " + get + ";");
+        line("      if (" + local + " != null && (Object) " + local + " != value) {");
+        line("        " + name);
+        if (field.kind == ModelField.Kind.DELEGATE_RUNTIME_TYPE) {
+          line("        writeValue(out, " + field.javaName + "Adapter, " + field.erasure
+              + ".class, " + local + ");");
+        } else {
+          line("        " + field.javaName + "Adapter.write(out, " + local + ");");
+        }
+        line("      }");
+    }
+  }
+
+  private void readField(ModelField field) throws IOException {
+    String set = "SET_" + field.javaName + ".invokeExact(target, ";
+    switch (field.kind) {
+      case INT:
+      case LONG:
+      case DOUBLE:
+      case BOOLEAN:
+        String reader = "next" + Character.toUpperCase(field.type.charAt(0))
+            + field.type.substring(1);
+        line("          if (in.peek() == " + JSON_TOKEN + ".NULL) {");
+        line("            readNull(in);");
+        line("          } else {");
+        line("            " + set + reader + "(in));");
+        line("          }");
+        return;
+      case STRING:
+        line("          " + set + "readString(in));");
+        return;
+      case BOXED_INTEGER:
+        line("          " + set + "readInteger(in));");
+        return;
+      case BOXED_LONG:
+        line("          " + set + "readLong(in));");
+        return;
+      case BOXED_DOUBLE:
+        line("          " + set + "readDouble(in));");
+        return;
+      case BOXED_BOOLEAN:
+        line("          " + set + "readBoolean(in));");
+        return;
+      default:
+        line("          " + set + "(" + field.erasure + ") " + field.javaName
+            + "Adapter.read(in));");
+    }
+  }
+
+  private String adapterLookup(ModelField field) {
+    if (field.type.equals(field.erasure)) {
+      return "gson.getAdapter(" + field.erasure + ".class)";
+    }
+    return "gson.getAdapter(new " + TYPE_TOKEN + "<" + field.type + ">() {})";
+  }
+
+  private static String boxed(String type) {
+    switch (type) {
+      case "int":
+        return "Integer";
+      case "long":
+        return "Long";
+      case "double":
+        return "Double";
+      case "boolean":
+        return "Boolean";
+      default:
+        return type;
+    }
+  }
+
+  private void line(String line) throws IOException {
+    writer.write(line);
+    writer.write('\n');
+  }
+}
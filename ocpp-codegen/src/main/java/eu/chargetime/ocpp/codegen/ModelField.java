@@ -0,0 +1,94 @@
+package eu.chargetime.ocpp.codegen;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import java.util.List;
+
+/** A serialized field of a model, as seen by the type adapter generator. */
+class ModelField {
+
+  /** How a field value is read and written by the generated adapter. */
+  enum Kind {
+    /** Primitive int, written and read without boxing. */
+    INT,
+    /** Primitive long, written and read without boxing. */
+    LONG,
+    /** Primitive double, written and read without boxing. */
+    DOUBLE,
+    /** Primitive boolean, written and read without boxing. */
+    BOOLEAN,
+    STRING,
+    BOXED_INTEGER,
+    BOXED_LONG,
+    BOXED_DOUBLE,
+    BOXED_BOOLEAN,
+    /** Any other type, delegated to the adapter Gson resolves for the declared type. */
+    DELEGATE,
+    /** Like {@link #DELEGATE}, but the runtime type of the value selects the adapter. */
+    DELEGATE_RUNTIME_TYPE
+  }
+
+  final String javaName;
+  final String jsonName;
+  final List<String> alternateNames;
+  final String declaringType;
+  final String type;
+  final String erasure;
+  final Kind kind;
+  final boolean excluded;
+  /** Name of the {@code isValid<Field>} validator of the model, null if the field has none. */
+  final String validator;
+  /** Erasure of the model class held by the field or its array elements, null for other types. */
+  final String nestedModel;
+
+  ModelField(
+      String javaName,
+      String jsonName,
+      List<String> alternateNames,
+      String declaringType,
+      String type,
+      String erasure,
+      Kind kind,
+      boolean excluded,
+      String validator,
+      String nestedModel) {
+    this.javaName = javaName;
+    this.jsonName = jsonName;
+    this.alternateNames = alternateNames;
+    this.declaringType = declaringType;
+    this.type = type;
+    this.erasure = erasure;
+    this.kind = kind;
+    this.excluded = excluded;
+    this.validator = validator;
+    this.nestedModel = nestedModel;
+  }
+
+  boolean isDelegated() {
+    return kind == Kind.DELEGATE || kind == Kind.DELEGATE_RUNTIME_TYPE;
+  }
+}
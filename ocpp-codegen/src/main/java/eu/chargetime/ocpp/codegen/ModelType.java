@@ -0,0 +1,61 @@
+package eu.chargetime.ocpp.codegen;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import java.util.List;
+
+/** A model class the type adapter generator emits an adapter for. */
+class ModelType {
+
+  final String qualifiedName;
+  final String simpleName;
+  final List<ModelField> fields;
+  final boolean hasNoArgConstructor;
+  /** The adapter validates the model while reading, using the field validators of the model. */
+  final boolean validating;
+  /** The model accepts properties it doesn't declare, even when decoding strictly. */
+  final boolean open;
+
+  ModelType(
+      String qualifiedName,
+      String simpleName,
+      List<ModelField> fields,
+      boolean hasNoArgConstructor,
+      boolean validating,
+      boolean open) {
+    this.qualifiedName = qualifiedName;
+    this.simpleName = simpleName;
+    this.fields = fields;
+    this.hasNoArgConstructor = hasNoArgConstructor;
+    this.validating = validating;
+    this.open = open;
+  }
+
+  String adapterName() {
+    return simpleName + "Adapter";
+  }
+}
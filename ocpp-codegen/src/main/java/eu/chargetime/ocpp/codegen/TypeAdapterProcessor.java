@@ -0,0 +1,480 @@
+package eu.chargetime.ocpp.codegen;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates precompiled Gson type adapters for the model classes of packages annotated with
+ * {@code eu.chargetime.ocpp.model.GenerateTypeAdapters}.
+ *
+ * <p>For each annotated package a {@code GeneratedTypeAdapterFactory} is emitted, holding one
+ * adapter per concrete class of the package, and the factory is listed in {@code
+ * META-INF/services/com.google.gson.TypeAdapterFactory}. Classes the generator can't bind with the
+ * exact semantics of Gson's reflective adapter (generic classes, final fields, Gson annotations
+ * other than {@code SerializedName}) are left to the reflective adapter.
+ *
+ * <p>For packages with {@code fieldValidators = true} the adapters also validate each model while
+ * reading it, by calling the {@code isValid<Field>} validators the model declares for its fields.
+ *
+ * <p>The adapters also implement strict decoding: when reading from a strict reader they reject
+ * JSON values of the wrong type, null values and, unless the model is listed in {@code
+ * openModels}, properties the model doesn't declare.
+ */
+@SupportedAnnotationTypes(TypeAdapterProcessor.GENERATE_TYPE_ADAPTERS)
+public class TypeAdapterProcessor extends AbstractProcessor {
+
+  static final String GENERATE_TYPE_ADAPTERS = "eu.chargetime.ocpp.model.GenerateTypeAdapters";
+  static final String FACTORY_NAME = "GeneratedTypeAdapterFactory";
+
+  private static final String EXCLUDE = "eu.chargetime.ocpp.model.Exclude";
+  private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+  private static final String GSON_ANNOTATIONS = "com.google.gson.annotations.";
+  private static final String SERVICE_FILE =
+      "META-INF/services/com.google.gson.TypeAdapterFactory";
+
+  private final Set<String> factories = new TreeSet<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (roundEnv.processingOver()) {
+      writeServiceFile();
+      return false;
+    }
+
+    TypeElement annotation = processingEnv.getElementUtils().getTypeElement(GENERATE_TYPE_ADAPTERS);
+    if (annotation == null) {
+      return false;
+    }
+
+    for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+      if (element.getKind() == ElementKind.PACKAGE) {
+        generate((PackageElement) element);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Read an attribute of the {@code GenerateTypeAdapters} annotation of a package.
+   *
+   * @return the attribute value, or null if the attribute has its default value.
+   */
+  private static Object attribute(Element packageElement, String name) {
+    for (AnnotationMirror mirror : packageElement.getAnnotationMirrors()) {
+      if (annotationName(mirror).equals(GENERATE_TYPE_ADAPTERS)) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+            mirror.getElementValues().entrySet()) {
+          if (entry.getKey().getSimpleName().contentEquals(name)) {
+            return entry.getValue().getValue();
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  private void generate(PackageElement packageElement) {
+    boolean fieldValidators = Boolean.TRUE.equals(attribute(packageElement, "fieldValidators"));
+    Set<String> openModels = new HashSet<>();
+    Object open = attribute(packageElement, "openModels");
+    if (open instanceof List) {
+      for (Object openModel : (List<?>) open) {
+        openModels.add((String) ((AnnotationValue) openModel).getValue());
+      }
+    }
+
+    List<ModelType> models = new ArrayList<>();
+    for (TypeElement type : ElementFilter.typesIn(packageElement.getEnclosedElements())) {
+      ModelType model =
+          analyze(type, fieldValidators, openModels.contains(type.getSimpleName().toString()));
+      if (model != null) {
+        models.add(model);
+      }
+    }
+
+    String packageName = packageElement.getQualifiedName().toString();
+    String factoryName = packageName + "." + FACTORY_NAME;
+    try {
+      Writer writer =
+          processingEnv
+              .getFiler()
+              .createSourceFile(factoryName, packageElement)
+              .openWriter();
+      try {
+        new FactoryWriter(writer, packageName, models).write();
+      } finally {
+        writer.close();
+      }
+      factories.add(factoryName);
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.ERROR, "Unable to write " + factoryName + ": " + e, packageElement);
+    }
+  }
+
+  private ModelType analyze(TypeElement type, boolean fieldValidators, boolean open) {
+    if (type.getKind() != ElementKind.CLASS
+        || type.getModifiers().contains(Modifier.ABSTRACT)
+        || !type.getTypeParameters().isEmpty()) {
+      return null;
+    }
+
+    boolean hasNoArgConstructor = false;
+    for (ExecutableElement constructor :
+        ElementFilter.constructorsIn(type.getEnclosedElements())) {
+      if (constructor.getParameters().isEmpty()) {
+        hasNoArgConstructor = true;
+      }
+    }
+
+    List<ModelField> fields = new ArrayList<>();
+    Set<String> javaNames = new HashSet<>();
+    Set<String> jsonNames = new HashSet<>();
+    TypeElement current = type;
+    while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+      for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+          continue;
+        }
+        String reason = unsupportedReason(field);
+        if (reason != null) {
+          skip(type, reason);
+          return null;
+        }
+        ModelField modelField = analyze(type, current, field, fieldValidators);
+        if (modelField == null) {
+          skip(type, "field " + field.getSimpleName() + " has an unsupported type");
+          return null;
+        }
+        boolean unique = javaNames.add(modelField.javaName) && jsonNames.add(modelField.jsonName);
+        for (String alternateName : modelField.alternateNames) {
+          unique &= jsonNames.add(alternateName);
+        }
+        if (!unique) {
+          skip(type, "duplicate field name " + modelField.javaName);
+          return null;
+        }
+        fields.add(modelField);
+      }
+      current = superclass(current);
+    }
+
+    return new ModelType(
+        type.getQualifiedName().toString(),
+        type.getSimpleName().toString(),
+        fields,
+        hasNoArgConstructor,
+        fieldValidators && declaresValidate(type),
+        open);
+  }
+
+  private String unsupportedReason(VariableElement field) {
+    if (field.getModifiers().contains(Modifier.FINAL)) {
+      return "field " + field.getSimpleName() + " is final";
+    }
+    for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+      String name = annotationName(mirror);
+      if (name.startsWith(GSON_ANNOTATIONS) && !name.equals(SERIALIZED_NAME)) {
+        return "field " + field.getSimpleName() + " is annotated with " + name;
+      }
+    }
+    return null;
+  }
+
+  private ModelField analyze(
+      TypeElement modelType,
+      TypeElement declaringType,
+      VariableElement field,
+      boolean fieldValidators) {
+    TypeMirror type = field.asType();
+    String rendered = render(type);
+    if (rendered == null) {
+      return null;
+    }
+
+    String javaName = field.getSimpleName().toString();
+    String jsonName = javaName;
+    List<String> alternateNames = Collections.emptyList();
+    boolean excluded = false;
+    for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+      String name = annotationName(mirror);
+      if (name.equals(EXCLUDE)) {
+        excluded = true;
+      } else if (name.equals(SERIALIZED_NAME)) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+            mirror.getElementValues().entrySet()) {
+          String key = entry.getKey().getSimpleName().toString();
+          if (key.equals("value")) {
+            jsonName = (String) entry.getValue().getValue();
+          } else if (key.equals("alternate")) {
+            alternateNames = new ArrayList<>();
+            for (Object alternate : (List<?>) entry.getValue().getValue()) {
+              alternateNames.add((String) ((AnnotationValue) alternate).getValue());
+            }
+          }
+        }
+      }
+    }
+
+    return new ModelField(
+        javaName,
+        jsonName,
+        alternateNames,
+        declaringType.getQualifiedName().toString(),
+        rendered,
+        render(processingEnv.getTypeUtils().erasure(type)),
+        kind(type),
+        excluded,
+        fieldValidators && !excluded ? validator(modelType, javaName, type) : null,
+        nestedModel(type));
+  }
+
+  private static boolean declaresValidate(TypeElement type) {
+    for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+      if (method.getSimpleName().contentEquals("validate") && method.getParameters().isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Find the validator of a field: a {@code boolean isValid<Field>(<field type>)} method declared
+   * by the model class.
+   */
+  private String validator(TypeElement modelType, String javaName, TypeMirror fieldType) {
+    String name = "isValid" + Character.toUpperCase(javaName.charAt(0)) + javaName.substring(1);
+    Types types = processingEnv.getTypeUtils();
+    for (ExecutableElement method : ElementFilter.methodsIn(modelType.getEnclosedElements())) {
+      if (method.getSimpleName().contentEquals(name)
+          && method.getReturnType().getKind() == TypeKind.BOOLEAN
+          && method.getParameters().size() == 1
+          && types.isSameType(
+              types.erasure(method.getParameters().get(0).asType()), types.erasure(fieldType))) {
+        return name;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The model class held by a field, directly or as array elements.
+   *
+   * @return the erasure of the model class, or null if the field holds something else.
+   */
+  private String nestedModel(TypeMirror type) {
+    TypeMirror element =
+        type.getKind() == TypeKind.ARRAY ? ((ArrayType) type).getComponentType() : type;
+    if (element.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+    TypeElement typeElement = (TypeElement) ((DeclaredType) element).asElement();
+    if (typeElement.getKind() != ElementKind.CLASS
+        || typeElement.getQualifiedName().toString().startsWith("java.")) {
+      return null;
+    }
+    return render(processingEnv.getTypeUtils().erasure(element));
+  }
+
+  private ModelField.Kind kind(TypeMirror type) {
+    switch (type.getKind()) {
+      case INT:
+        return ModelField.Kind.INT;
+      case LONG:
+        return ModelField.Kind.LONG;
+      case DOUBLE:
+        return ModelField.Kind.DOUBLE;
+      case BOOLEAN:
+        return ModelField.Kind.BOOLEAN;
+      case DECLARED:
+        break;
+      default:
+        return ModelField.Kind.DELEGATE;
+    }
+
+    DeclaredType declaredType = (DeclaredType) type;
+    TypeElement element = (TypeElement) declaredType.asElement();
+    switch (element.getQualifiedName().toString()) {
+      case "java.lang.String":
+        return ModelField.Kind.STRING;
+      case "java.lang.Integer":
+        return ModelField.Kind.BOXED_INTEGER;
+      case "java.lang.Long":
+        return ModelField.Kind.BOXED_LONG;
+      case "java.lang.Double":
+        return ModelField.Kind.BOXED_DOUBLE;
+      case "java.lang.Boolean":
+        return ModelField.Kind.BOXED_BOOLEAN;
+      case "java.lang.Object":
+        return ModelField.Kind.DELEGATE;
+      default:
+        break;
+    }
+
+    boolean exactType =
+        !declaredType.getTypeArguments().isEmpty()
+            || element.getKind() == ElementKind.ENUM
+            || element.getModifiers().contains(Modifier.FINAL);
+    return exactType ? ModelField.Kind.DELEGATE : ModelField.Kind.DELEGATE_RUNTIME_TYPE;
+  }
+
+  /**
+   * Render a type as source code, without type annotations.
+   *
+   * @param type the type to render.
+   * @return the source representation, or null if the type isn't supported.
+   */
+  private String render(TypeMirror type) {
+    switch (type.getKind()) {
+      case INT:
+      case LONG:
+      case DOUBLE:
+      case BOOLEAN:
+        return type.getKind().name().toLowerCase();
+      case ARRAY:
+        String component = render(((ArrayType) type).getComponentType());
+        return component == null ? null : component + "[]";
+      case DECLARED:
+        DeclaredType declaredType = (DeclaredType) type;
+        StringBuilder builder =
+            new StringBuilder(
+                ((TypeElement) declaredType.asElement()).getQualifiedName().toString());
+        List<? extends TypeMirror> arguments = declaredType.getTypeArguments();
+        if (!arguments.isEmpty()) {
+          builder.append('<');
+          for (int i = 0; i < arguments.size(); i++) {
+            String argument = render(arguments.get(i));
+            if (argument == null) {
+              return null;
+            }
+            builder.append(i == 0 ? "" : ", ").append(argument);
+          }
+          builder.append('>');
+        }
+        return builder.toString();
+      case WILDCARD:
+        WildcardType wildcard = (WildcardType) type;
+        if (wildcard.getExtendsBound() != null) {
+          String bound = render(wildcard.getExtendsBound());
+          return bound == null ? null : "? extends " + bound;
+        }
+        if (wildcard.getSuperBound() != null) {
+          String bound = render(wildcard.getSuperBound());
+          return bound == null ? null : "? super " + bound;
+        }
+        return "?";
+      default:
+        return null;
+    }
+  }
+
+  private TypeElement superclass(TypeElement type) {
+    TypeMirror superclass = type.getSuperclass();
+    if (superclass.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+    return (TypeElement) ((DeclaredType) superclass).asElement();
+  }
+
+  private static String annotationName(AnnotationMirror mirror) {
+    return ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+  }
+
+  private void skip(TypeElement type, String reason) {
+    processingEnv
+        .getMessager()
+        .printMessage(
+            Diagnostic.Kind.NOTE,
+            "No type adapter generated for " + type.getQualifiedName() + ": " + reason,
+            type);
+  }
+
+  private void writeServiceFile() {
+    if (factories.isEmpty()) {
+      return;
+    }
+    try {
+      FileObject file =
+          processingEnv
+              .getFiler()
+              .createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+      Writer writer = file.openWriter();
+      try {
+        for (String factory : factories) {
+          writer.write(factory);
+          writer.write('\n');
+        }
+      } finally {
+        writer.close();
+      }
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(Diagnostic.Kind.ERROR, "Unable to write " + SERVICE_FILE + ": " + e);
+    }
+  }
+}
@@ -25,30 +25,123 @@ package eu.chargetime.ocpp;
    SOFTWARE.
 */
 
+
 import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.Request;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Fulfills requests on a worker pool shared by all sessions, while keeping the requests of a
+ * session in order.
+ *
+ * <p>Each decorator is a mailbox for the session it was created for: requests are queued and
+ * handled one at a time, in the order they were received, so a charge point's StartTransaction,
+ * MeterValues and StopTransaction never overtake each other. Different sessions are handled in
+ * parallel. A session hands its worker back to the pool after a batch of requests, so a busy
+ * session can't starve the others.
+ *
+ * <p>Asynchronous handlers, see {@link eu.chargetime.ocpp.feature.Feature#handleRequestAsync}, are
+ * started in order; the next request is handled once the previous handler has returned its stage,
+ * not once the stage completes.
+ */
 public class AsyncPromiseFulfillerDecorator implements PromiseFulfiller {
 
-  private final PromiseFulfiller promiseFulfiller;
+  private static final Logger logger =
+      LoggerFactory.getLogger(AsyncPromiseFulfillerDecorator.class);
+
+  /** Requests handled before a session hands its worker back to the pool. */
+  private static final int BATCH_SIZE = 16;
 
-  private static ExecutorService executor = Executors.newCachedThreadPool();
+  private static ExecutorService executor =
+      RequestExecutors.newPlatformThreadPool(Runtime.getRuntime().availableProcessors());
+
+  private final PromiseFulfiller promiseFulfiller;
+  private final ExecutorService pool;
+  private final ConcurrentLinkedQueue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queueDepth = new AtomicInteger();
 
+  /**
+   * Replace the worker pool shared by all sessions. The default pool has one worker per available
+   * processor; if the request handlers block, use {@link
+   * RequestExecutors#newBlockingHandlerExecutor(int)}, or give each server its own executor.
+   *
+   * @param newExecutor the pool to handle requests on.
+   */
   public static void setExecutor(ExecutorService newExecutor) {
     executor = newExecutor;
   }
 
+  public AsyncPromiseFulfillerDecorator(PromiseFulfiller promiseFulfiller) {
+    this(promiseFulfiller, null);
+  }
+
+  /**
+   * Decorate a fulfiller to handle requests on a given worker pool instead of the shared one.
+   *
+   * @param promiseFulfiller the fulfiller to decorate.
+   * @param pool the pool to handle requests on, null for the pool shared by all sessions.
+   */
+  public AsyncPromiseFulfillerDecorator(PromiseFulfiller promiseFulfiller, ExecutorService pool) {
+    this.promiseFulfiller = promiseFulfiller;
+    this.pool = pool;
+  }
+
   @Override
   public void fulfill(
       CompletableFuture<Confirmation> promise, SessionEvents eventHandler, Request request) {
-    executor.submit(() -> promiseFulfiller.fulfill(promise, eventHandler, request));
+    mailbox.add(() -> promiseFulfiller.fulfill(promise, eventHandler, request));
+    if (queueDepth.getAndIncrement() == 0) {
+      schedule();
+    }
   }
 
-  public AsyncPromiseFulfillerDecorator(PromiseFulfiller promiseFulfiller) {
+  /**
+   * Get the number of requests of this session waiting to be handled, including the one being
+   * handled.
+   *
+   * @return the queue depth.
+   */
+  @Override
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
 
-    this.promiseFulfiller = promiseFulfiller;
+  private void schedule() {
+    try {
+      (pool != null ? pool : executor).execute(this::drain);
+    } catch (RejectedExecutionException ex) {
+      logger.warn("Request handler pool rejected the session, handling requests in place", ex);
+      drain();
+    }
+  }
+
+  private void drain() {
+    for (int handled = 1; ; handled++) {
+      Runnable task = mailbox.poll();
+      try {
+        task.run();
+      } catch (RuntimeException ex) {
+        logger.warn("fulfill() failed", ex);
+      } catch (Error error) {
+        // Hand the rest of the mailbox to another worker before this one unwinds.
+        if (queueDepth.decrementAndGet() > 0) {
+          schedule();
+        }
+        throw error;
+      }
+      if (queueDepth.decrementAndGet() == 0) {
+        return;
+      }
+      if (handled == BATCH_SIZE) {
+        schedule();
+        return;
+      }
+    }
   }
 }
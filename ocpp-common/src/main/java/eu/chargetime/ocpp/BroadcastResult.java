@@ -0,0 +1,181 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import eu.chargetime.ocpp.model.Confirmation;
+import eu.chargetime.ocpp.utilities.MoreObjects;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The outcome of a {@link eu.chargetime.ocpp.model.Request} broadcast to many sessions. Each
+ * session gets its own result, which completes with the {@link Confirmation} of the session, or
+ * exceptionally if the session was not connected, doesn't support the feature, failed or timed
+ * out.
+ *
+ * @see Server#broadcast(Collection, eu.chargetime.ocpp.model.Request, int)
+ */
+public final class BroadcastResult {
+
+  private final Map<UUID, CompletableFuture<Confirmation>> results;
+  private final Map<UUID, Throwable> failures = new ConcurrentHashMap<>();
+  private final AtomicInteger confirmed = new AtomicInteger();
+  private final AtomicInteger remaining;
+  private final CompletableFuture<BroadcastResult> completion = new CompletableFuture<>();
+
+  BroadcastResult(Collection<UUID> sessionIndexes) {
+    Map<UUID, CompletableFuture<Confirmation>> results = new LinkedHashMap<>();
+    for (UUID sessionIndex : sessionIndexes) {
+      results.put(sessionIndex, new CompletableFuture<>());
+    }
+    this.results = Collections.unmodifiableMap(results);
+    this.remaining = new AtomicInteger(results.size());
+
+    if (results.isEmpty()) {
+      completion.complete(this);
+    }
+    results.forEach(
+        (sessionIndex, result) ->
+            result.whenComplete(
+                (confirmation, failure) -> {
+                  if (failure == null) {
+                    confirmed.incrementAndGet();
+                  } else {
+                    failures.put(sessionIndex, unwrap(failure));
+                  }
+                  if (remaining.decrementAndGet() == 0) {
+                    completion.complete(this);
+                  }
+                }));
+  }
+
+  /**
+   * Get the result of every session, in the order the sessions were given.
+   *
+   * @return the results by session index.
+   */
+  public Map<UUID, CompletableFuture<Confirmation>> getResults() {
+    return results;
+  }
+
+  /**
+   * Get the result of a session.
+   *
+   * @param sessionIndex the session index.
+   * @return the result, null if the session was not part of the broadcast.
+   */
+  public CompletableFuture<Confirmation> getResult(UUID sessionIndex) {
+    return results.get(sessionIndex);
+  }
+
+  /**
+   * Get a stage that completes once every session has a result.
+   *
+   * @return completes with this instance, never exceptionally.
+   */
+  public CompletionStage<BroadcastResult> whenDone() {
+    return completion;
+  }
+
+  /**
+   * Check if every session has a result.
+   *
+   * @return true if the broadcast is done.
+   */
+  public boolean isDone() {
+    return completion.isDone();
+  }
+
+  /**
+   * Get the number of sessions in the broadcast.
+   *
+   * @return the number of sessions.
+   */
+  public int size() {
+    return results.size();
+  }
+
+  /**
+   * Get the number of sessions that confirmed the request.
+   *
+   * @return the number of confirmations.
+   */
+  public int getConfirmedCount() {
+    return confirmed.get();
+  }
+
+  /**
+   * Get the number of sessions the request failed for.
+   *
+   * @return the number of failures.
+   */
+  public int getFailedCount() {
+    return failures.size();
+  }
+
+  /**
+   * Get the number of sessions without a result yet.
+   *
+   * @return the number of pending sessions.
+   */
+  public int getPendingCount() {
+    return remaining.get();
+  }
+
+  /**
+   * Get the cause of every failure so far.
+   *
+   * @return the causes by session index.
+   */
+  public Map<UUID, Throwable> getFailures() {
+    return Collections.unmodifiableMap(failures);
+  }
+
+  private static Throwable unwrap(Throwable failure) {
+    return failure instanceof CompletionException && failure.getCause() != null
+        ? failure.getCause()
+        : failure;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("size", size())
+        .add("confirmed", getConfirmedCount())
+        .add("failed", getFailedCount())
+        .add("pending", getPendingCount())
+        .toString();
+  }
+}
@@ -0,0 +1,216 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import eu.chargetime.ocpp.model.SessionInformation;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the credentials a {@link SessionAuthenticator} accepted, so a charge box reconnecting
+ * with the same credentials is accepted without asking the credential store again. Only accepted
+ * credentials are cached, by charge box identity, and only as a salted hash of the password.
+ * Entries expire after a fixed time, and the least recently used entry is dropped when the cache
+ * is full.
+ *
+ * <p>Call {@link #invalidate(String)} when the credentials of a charge box change, or it may be
+ * accepted with its old password until the entry expires.
+ */
+public class CachingSessionAuthenticator implements SessionAuthenticator {
+
+  private final SessionAuthenticator delegate;
+  private final long timeToLiveNanos;
+  private final int maxSize;
+  private final byte[] salt = new byte[16];
+  private final Map<String, Entry> entries;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private long generation;
+
+  /**
+   * @param delegate the authenticator asked when the credentials are not cached.
+   * @param timeToLive how long accepted credentials are remembered.
+   * @param unit the unit of timeToLive.
+   * @param maxSize the maximum number of cached charge boxes.
+   */
+  public CachingSessionAuthenticator(
+      SessionAuthenticator delegate, long timeToLive, TimeUnit unit, int maxSize) {
+    if (timeToLive <= 0) {
+      throw new IllegalArgumentException("timeToLive must be positive, was " + timeToLive);
+    }
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be at least 1, was " + maxSize);
+    }
+    this.delegate = Objects.requireNonNull(delegate, "delegate");
+    this.timeToLiveNanos = unit.toNanos(timeToLive);
+    this.maxSize = maxSize;
+    new SecureRandom().nextBytes(salt);
+    this.entries =
+        new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > CachingSessionAuthenticator.this.maxSize;
+          }
+        };
+  }
+
+  @Override
+  public CompletionStage<Void> authenticate(
+      SessionInformation information, String username, String password) {
+    String identity = Server.identityOf(information.getIdentifier());
+    if (identity == null) {
+      return delegate.authenticate(information, username, password);
+    }
+    byte[] passwordHash = hash(password);
+    if (isCached(identity, username, passwordHash)) {
+      hitCount.incrementAndGet();
+      return CompletableFuture.completedFuture(null);
+    }
+    missCount.incrementAndGet();
+    long verifiedAt = System.nanoTime();
+    long startedIn = generation();
+    CompletionStage<Void> authentication = delegate.authenticate(information, username, password);
+    authentication.thenRun(
+        () ->
+            put(
+                identity,
+                new Entry(username, passwordHash, verifiedAt + timeToLiveNanos),
+                startedIn));
+    return authentication;
+  }
+
+  /**
+   * Forget the credentials cached for a charge box. Authentications still pending when this is
+   * called are not cached when they complete, as they may have checked the old credentials.
+   *
+   * @param identity the identity of the charge box.
+   */
+  public synchronized void invalidate(String identity) {
+    generation++;
+    entries.remove(identity);
+  }
+
+  /** Forget all cached credentials, and don't cache authentications still pending. */
+  public synchronized void invalidateAll() {
+    generation++;
+    entries.clear();
+  }
+
+  /**
+   * Number of cached charge boxes, including entries that expired but were not looked up since.
+   *
+   * @return the number of entries.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Number of handshakes accepted from the cache.
+   *
+   * @return the number of hits.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Number of handshakes passed to the delegate.
+   *
+   * @return the number of misses.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  private synchronized boolean isCached(String identity, String username, byte[] passwordHash) {
+    Entry entry = entries.get(identity);
+    if (entry == null) {
+      return false;
+    }
+    if (System.nanoTime() - entry.expiresAt >= 0) {
+      entries.remove(identity);
+      return false;
+    }
+    return entry.matches(username, passwordHash);
+  }
+
+  private synchronized long generation() {
+    return generation;
+  }
+
+  /** Cache an entry, unless the cache was invalidated since the authentication started. */
+  private synchronized void put(String identity, Entry entry, long startedIn) {
+    if (startedIn == generation && System.nanoTime() - entry.expiresAt < 0) {
+      entries.put(identity, entry);
+    }
+  }
+
+  private byte[] hash(String password) {
+    if (password == null) {
+      return null;
+    }
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(salt);
+      return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform implements SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class Entry {
+    private final String username;
+    private final byte[] passwordHash;
+    private final long expiresAt;
+
+    private Entry(String username, byte[] passwordHash, long expiresAt) {
+      this.username = username;
+      this.passwordHash = passwordHash;
+      this.expiresAt = expiresAt;
+    }
+
+    private boolean matches(String username, byte[] passwordHash) {
+      if (!Objects.equals(this.username, username)) {
+        return false;
+      }
+      if (this.passwordHash == null || passwordHash == null) {
+        return this.passwordHash == passwordHash;
+      }
+      return MessageDigest.isEqual(this.passwordHash, passwordHash);
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import eu.chargetime.ocpp.model.CallErrorMessage;
+import eu.chargetime.ocpp.utilities.SugarUtil;
+import javax.xml.soap.SOAPMessage;
+import org.w3c.dom.Document;
+
+/** A message captured by a {@link MessageTracer}. */
+public final class CapturedMessage {
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final long timestamp;
+  private final String session;
+  private final MessageTap.Direction direction;
+  private final String uniqueId;
+  private final String action;
+  private final Object message;
+
+  CapturedMessage(
+      long timestamp,
+      String session,
+      MessageTap.Direction direction,
+      String uniqueId,
+      String action,
+      Object message) {
+    this.timestamp = timestamp;
+    this.session = session;
+    this.direction = direction;
+    this.uniqueId = uniqueId;
+    this.action = action;
+    this.message = message;
+  }
+
+  /**
+   * Get the time the message was captured.
+   *
+   * @return milliseconds since the epoch.
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * Get the session the message belongs to.
+   *
+   * @return the name the session was tapped with.
+   */
+  public String getSession() {
+    return session;
+  }
+
+  public MessageTap.Direction getDirection() {
+    return direction;
+  }
+
+  public String getUniqueId() {
+    return uniqueId;
+  }
+
+  /**
+   * Get the action of the call the message belongs to.
+   *
+   * @return the action name, null if unknown.
+   */
+  public String getAction() {
+    return action;
+  }
+
+  /**
+   * Get the captured message, as handed to {@link MessageTap#capture}.
+   *
+   * @return the message.
+   */
+  public Object getMessage() {
+    return message;
+  }
+
+  /**
+   * Format the message. CBOR frames are written in hex.
+   *
+   * @return the message as text.
+   */
+  public String getText() {
+    if (message instanceof byte[]) {
+      byte[] bytes = (byte[]) message;
+      char[] hex = new char[bytes.length * 2];
+      for (int i = 0; i < bytes.length; i++) {
+        hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+        hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+      }
+      return new String(hex);
+    }
+    if (message instanceof SOAPMessage) {
+      return SugarUtil.soapMessageToString((SOAPMessage) message);
+    }
+    if (message instanceof Document) {
+      return SugarUtil.docToString((Document) message);
+    }
+    if (message instanceof CallErrorMessage) {
+      CallErrorMessage error = (CallErrorMessage) message;
+      return error.getErrorCode() + ": " + error.getErrorDescription();
+    }
+    return String.valueOf(message);
+  }
+
+  @Override
+  public String toString() {
+    return session + " " + direction + " " + uniqueId + " " + action + " " + getText();
+  }
+}
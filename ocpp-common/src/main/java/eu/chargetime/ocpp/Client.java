@@ -32,6 +32,7 @@ import eu.chargetime.ocpp.model.Request;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,6 +47,7 @@ public class Client {
 
   private final ISession session;
   private final IPromiseRepository promiseRepository;
+  private volatile RequestTimeouts requestTimeouts = new RequestTimeouts();
 
   /**
    * Handle required injections.
@@ -61,6 +63,29 @@ public class Client {
     this.promiseRepository = promiseRepository;
   }
 
+  /**
+   * Set the timeouts of requests sent to the server. Requests have no timeout by default.
+   *
+   * @param requestTimeouts the timeouts by action.
+   */
+  public void setRequestTimeouts(RequestTimeouts requestTimeouts) {
+    this.requestTimeouts = requestTimeouts;
+  }
+
+  public RequestTimeouts getRequestTimeouts() {
+    return requestTimeouts;
+  }
+
+  /**
+   * Get the scheduler of requests to the server, to set priorities or read its queue depth and
+   * wait times.
+   *
+   * @return the {@link OutboundScheduler} of the session, empty if requests are sent right away.
+   */
+  public Optional<OutboundScheduler> getOutboundScheduler() {
+    return session.getOutboundScheduler();
+  }
+
   /**
    * Connect to server
    *
@@ -86,12 +111,21 @@ public class Client {
 
           @Override
           public Confirmation handleRequest(Request request) throws UnsupportedFeatureException {
+            return findFeature(request).handleRequest(getSessionId(), request);
+          }
+
+          @Override
+          public CompletionStage<Confirmation> handleRequestAsync(Request request)
+              throws UnsupportedFeatureException {
+            return findFeature(request).handleRequestAsync(getSessionId(), request);
+          }
+
+          private Feature findFeature(Request request) throws UnsupportedFeatureException {
             Optional<Feature> featureOptional = session.getFeatureRepository().findFeature(request);
-            if (featureOptional.isPresent()) {
-              return featureOptional.get().handleRequest(getSessionId(), request);
-            } else {
+            if (!featureOptional.isPresent()) {
               throw new UnsupportedFeatureException();
             }
+            return featureOptional.get();
           }
 
           @Override
@@ -158,10 +192,24 @@ public class Client {
       throw new OccurenceConstraintException();
     }
 
+    String action = featureOptional.get().getAction();
     String id = session.storeRequest(request);
     CompletableFuture<Confirmation> promise = promiseRepository.createPromise(id);
+    Runnable evict =
+        () -> {
+          promiseRepository.removePromise(id);
+          session.removeRequest(id);
+        };
+    requestTimeouts.watch(action, id, promise, evict);
+    // a cancelled request is not waited for, so it must not hold back the requests after it
+    promise.whenComplete(
+        (confirmation, throwable) -> {
+          if (promise.isCancelled()) {
+            evict.run();
+          }
+        });
 
-    session.sendRequest(featureOptional.get().getAction(), request, id);
+    session.sendRequest(action, request, id);
     return promise;
   }
 
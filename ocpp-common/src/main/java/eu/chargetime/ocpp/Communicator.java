@@ -29,7 +29,9 @@ SOFTWARE.
 
 import eu.chargetime.ocpp.model.*;
 import eu.chargetime.ocpp.utilities.SugarUtil;
-import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import javax.xml.soap.SOAPMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,11 +46,11 @@ import org.w3c.dom.Document;
 public abstract class Communicator {
   private static final Logger logger = LoggerFactory.getLogger(Communicator.class);
 
-  private RetryRunner retryRunner;
   protected Radio radio;
-  private ArrayDeque<Object> transactionQueue;
+  private TransactionQueue transactionQueue;
+  private TransactionReplayer transactionReplayer;
   private CommunicatorEvents events;
-  private boolean failedFlag;
+  private volatile MessageTap messageTap;
 
   /**
    * Convert a formatted string into a {@link Request}/{@link Confirmation}. This is useful for call
@@ -61,6 +63,42 @@ public abstract class Communicator {
    */
   public abstract <T> T unpackPayload(Object payload, Class<T> type) throws Exception;
 
+  /**
+   * Convert a formatted string into a valid {@link Request}/{@link Confirmation}. Formats able to
+   * validate the payload while converting it should override this.
+   *
+   * @param payload the raw formatted payload.
+   * @param type the expected return type.
+   * @return the unpacked and valid payload.
+   * @throws OccurenceConstraintException the unpacked payload is invalid.
+   * @throws Exception error occurred while converting.
+   */
+  public <T extends Validatable> T unpackValidPayload(Object payload, Class<T> type)
+      throws Exception {
+    T unpacked = unpackPayload(payload, type);
+    if (!unpacked.validate()) {
+      throw new OccurenceConstraintException();
+    }
+    return unpacked;
+  }
+
+  /**
+   * Convert a formatted string into a valid {@link Request}/{@link Confirmation}, rejecting values
+   * of the wrong type, unknown enum values, null values and undeclared properties. Formats without
+   * a strict mode only validate the payload.
+   *
+   * @param payload the raw formatted payload.
+   * @param type the expected return type.
+   * @return the unpacked and valid payload.
+   * @throws OccurenceConstraintException the unpacked payload is invalid.
+   * @throws PropertyConstraintException a value has the wrong type or isn't allowed.
+   * @throws Exception error occurred while converting.
+   */
+  public <T extends Validatable> T unpackStrictPayload(Object payload, Class<T> type)
+      throws Exception {
+    return unpackValidPayload(payload, type);
+  }
+
   /**
    * Convert a {@link Request}/{@link Confirmation} into a formatted string.
    *
@@ -69,6 +107,16 @@ public abstract class Communicator {
    */
   public abstract Object packPayload(Object payload);
 
+  /**
+   * Get the format payloads are packed in. Communicators of the same non-null format pack a payload
+   * to the same value, so a {@link SharedPayload} is packed once for all of them.
+   *
+   * @return the payload format, null if packed payloads can't be shared.
+   */
+  protected Object getPayloadFormat() {
+    return null;
+  }
+
   /**
    * Create a call result envelope to transmit.
    *
@@ -126,10 +174,33 @@ public abstract class Communicator {
    *     processing
    */
   public Communicator(Radio transmitter, boolean enableTransactionQueue) {
+    this(transmitter, enableTransactionQueue ? new MemoryTransactionQueue() : null);
+  }
+
+  /**
+   * Handle required injections.
+   *
+   * @param transmitter Injected {@link Transmitter}
+   * @param transactionQueue stores transaction-related requests while offline, null to disable
+   *     the transaction queue and associated processing
+   */
+  public Communicator(Radio transmitter, TransactionQueue transactionQueue) {
     this.radio = transmitter;
-    this.transactionQueue = enableTransactionQueue ? new ArrayDeque<>() : null;
-    this.retryRunner = enableTransactionQueue ? new RetryRunner() : null;
-    this.failedFlag = false;
+    this.transactionQueue = transactionQueue;
+    this.transactionReplayer =
+        transactionQueue != null
+            ? new TransactionReplayer(transactionQueue, transmitter, this::uniqueIdOf)
+            : null;
+  }
+
+  /**
+   * Get the replayer of the transaction queue, to set its window, timeout and backoff or to follow
+   * its progress.
+   *
+   * @return the {@link TransactionReplayer}, null if the transaction queue is disabled.
+   */
+  public TransactionReplayer getTransactionReplayer() {
+    return transactionReplayer;
   }
 
   /**
@@ -161,53 +232,157 @@ public abstract class Communicator {
    * @param uniqueId the id the receiver should use to reply.
    * @param action action name of the {@link eu.chargetime.ocpp.feature.Feature}.
    * @param request the outgoing {@link Request}
+   * @return true if the call was written to the connection, false if it was stored or rejected.
    */
-  public synchronized void sendCall(String uniqueId, String action, Request request) {
-    Object call = makeCall(uniqueId, action, packPayload(request));
+  public boolean sendCall(String uniqueId, String action, Request request) {
+    return sendCall(uniqueId, action, request, null);
+  }
 
-    if (call != null) {
-      if (call instanceof SOAPMessage) {
-        logger.trace("Send a message: {}", SugarUtil.soapMessageToString((SOAPMessage) call));
-      } else {
-        logger.trace("Send a message: {}", call);
-      }
-    }
+  /**
+   * Send a new {@link Request} like {@link #sendCall(String, String, Request)}, reusing the payload
+   * packed for other sessions.
+   *
+   * @param uniqueId the id the receiver should use to reply.
+   * @param action action name of the {@link eu.chargetime.ocpp.feature.Feature}.
+   * @param request the outgoing {@link Request}
+   * @param payload the payload shared with other sessions, null to pack the request.
+   * @return true if the call was written to the connection, false if it was stored or rejected.
+   */
+  public synchronized boolean sendCall(
+      String uniqueId, String action, Request request, SharedPayload payload) {
+    Object packed = payload != null ? payload.packFor(this) : packPayload(request);
+    Object call = makeCall(uniqueId, action, packed);
+    traceCall(call);
+    tap(MessageTap.Direction.OUTBOUND, uniqueId, action, call);
 
     try {
       if (radio.isClosed()) {
-        if (request.transactionRelated() && transactionQueue != null) {
-          logger.warn("Not connected: storing request to queue: {}", request);
-          transactionQueue.add(call);
-        } else {
-          logger.warn("Not connected: can't send request: {}", request);
-          events.onError(
-              uniqueId,
-              "Not connected",
-              "The request can't be sent due to the lack of connection",
-              request);
-        }
-      } else if (request.transactionRelated()
-          && transactionQueue != null
-          && transactionQueue.size() > 0) {
+        storeOrReject(uniqueId, call, request);
+      } else if (isBehindTransactionQueue(request)) {
         transactionQueue.add(call);
         processTransactionQueue();
       } else {
         radio.send(call);
+        return true;
       }
     } catch (NotConnectedException ex) {
       logger.warn("sendCall() failed: not connected");
-      if (request.transactionRelated() && transactionQueue != null) {
-        transactionQueue.add(call);
+      storeOrReject(uniqueId, call, request);
+    }
+    return false;
+  }
+
+  /**
+   * Write a call packed earlier as is, ie. one replayed from the transaction queue.
+   *
+   * @param uniqueId the id of the call.
+   * @param call the packed call.
+   * @return true if the call was written to the connection.
+   */
+  boolean resendCall(String uniqueId, Object call) {
+    try {
+      radio.send(call);
+      return true;
+    } catch (NotConnectedException ex) {
+      logger.debug("Replayed call {} not sent: not connected", uniqueId);
+      return false;
+    }
+  }
+
+  /**
+   * Send a new {@link Request} like {@link #sendCall(String, String, Request)}, learning when it
+   * has been written to the connection.
+   *
+   * <p>The returned stage completes once the call is handed to the socket, or stored in the
+   * transaction queue. It completes exceptionally with a {@link NotConnectedException} if the call
+   * could neither be sent nor stored, after {@link CommunicatorEvents#onError} has been raised.
+   *
+   * @param uniqueId the id the receiver should use to reply.
+   * @param action action name of the {@link eu.chargetime.ocpp.feature.Feature}.
+   * @param request the outgoing {@link Request}
+   * @return completes when the call is written or stored.
+   */
+  public synchronized CompletionStage<Void> sendCallAsync(
+      String uniqueId, String action, Request request) {
+    Object call = makeCall(uniqueId, action, packPayload(request));
+    traceCall(call);
+    tap(MessageTap.Direction.OUTBOUND, uniqueId, action, call);
+
+    if (radio.isClosed()) {
+      return storedOrFailed(storeOrReject(uniqueId, call, request));
+    }
+    if (isBehindTransactionQueue(request)) {
+      transactionQueue.add(call);
+      processTransactionQueue();
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<Void> written = new CompletableFuture<>();
+    radio
+        .sendAsync(call)
+        .whenComplete(
+            (ignored, failure) -> {
+              if (failure == null) {
+                written.complete(null);
+                return;
+              }
+              Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+              if (!(cause instanceof NotConnectedException)) {
+                written.completeExceptionally(cause);
+                return;
+              }
+              logger.warn("sendCallAsync() failed: not connected");
+              boolean stored;
+              synchronized (Communicator.this) {
+                stored = storeOrReject(uniqueId, call, request);
+              }
+              if (stored) {
+                written.complete(null);
+              } else {
+                written.completeExceptionally(cause);
+              }
+            });
+    return written;
+  }
+
+  private void traceCall(Object call) {
+    if (call != null && logger.isTraceEnabled()) {
+      if (call instanceof SOAPMessage) {
+        logger.trace("Send a message: {}", SugarUtil.soapMessageToString((SOAPMessage) call));
       } else {
-        events.onError(
-            uniqueId,
-            "Not connected",
-            "The request can't be sent due to the lack of connection",
-            request);
+        logger.trace("Send a message: {}", call);
       }
     }
   }
 
+  private boolean isBehindTransactionQueue(Request request) {
+    return request.transactionRelated()
+        && transactionQueue != null
+        && transactionQueue.size() > 0;
+  }
+
+  /** Stores a transaction-related call for later, or reports that it couldn't be sent. */
+  private boolean storeOrReject(String uniqueId, Object call, Request request) {
+    if (request.transactionRelated() && transactionQueue != null) {
+      logger.warn("Not connected: storing request to queue: {}", request);
+      transactionQueue.add(call);
+      return true;
+    }
+    logger.warn("Not connected: can't send request: {}", request);
+    events.onError(
+        uniqueId, "Not connected", "The request can't be sent due to the lack of connection", request);
+    return false;
+  }
+
+  private static CompletionStage<Void> storedOrFailed(boolean stored) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    if (stored) {
+      future.complete(null);
+    } else {
+      future.completeExceptionally(new NotConnectedException());
+    }
+    return future;
+  }
+
   /**
    * Send a {@link Confirmation} reply to a {@link Request}.
    *
@@ -215,8 +390,9 @@ public abstract class Communicator {
    * @param confirmation the outgoing {@link Confirmation}
    */
   public void sendCallResult(String uniqueId, String action, Confirmation confirmation) {
+    tap(MessageTap.Direction.OUTBOUND, uniqueId, action, confirmation);
     try {
-      radio.send(makeCallResult(uniqueId, action, packPayload(confirmation)));
+      transmitCallResult(uniqueId, action, confirmation);
 
       ConfirmationCompletedHandler completedHandler = confirmation.getCompletedHandler();
 
@@ -250,14 +426,23 @@ public abstract class Communicator {
    */
   public void sendCallError(
       String uniqueId, String action, String errorCode, String errorDescription) {
-    logger.error(
-        "An error occurred. Sending this information: uniqueId {}: action: {}, errorCore: {}, errorDescription: {}",
+    logger.debug(
+        "Sending call error: uniqueId: {}, action: {}, errorCode: {}, errorDescription: {}",
         uniqueId,
         action,
         errorCode,
         errorDescription);
+    MessageTap tap = messageTap;
+    if (tap != null) {
+      CallErrorMessage error = new CallErrorMessage();
+      error.setId(uniqueId);
+      error.setAction(action);
+      error.setErrorCode(errorCode);
+      error.setErrorDescription(errorDescription);
+      tap.capture(MessageTap.Direction.OUTBOUND, uniqueId, action, error);
+    }
     try {
-      radio.send(makeCallError(uniqueId, action, errorCode, errorDescription));
+      transmitCallError(uniqueId, action, errorCode, errorDescription);
     } catch (NotConnectedException ex) {
       logger.warn("sendCallError() failed", ex);
       events.onError(
@@ -268,20 +453,82 @@ public abstract class Communicator {
     }
   }
 
+  /**
+   * Pack and send a call result. Implementations may override this to encode the {@link
+   * Confirmation} straight into the transport instead of going through {@link
+   * #makeCallResult(String, String, Object)}.
+   *
+   * @param uniqueId the id the receiver expects.
+   * @param action action name of the feature.
+   * @param confirmation the outgoing {@link Confirmation}.
+   * @throws NotConnectedException the message couldn't be sent due to the lack of connection.
+   */
+  protected void transmitCallResult(String uniqueId, String action, Confirmation confirmation)
+      throws NotConnectedException {
+    radio.send(makeCallResult(uniqueId, action, packPayload(confirmation)));
+  }
+
+  /**
+   * Pack and send a call error. Implementations may override this to encode the error straight
+   * into the transport instead of going through {@link #makeCallError(String, String, String,
+   * String)}.
+   *
+   * @param uniqueId the id the receiver expects a response to.
+   * @param action action name of the feature.
+   * @param errorCode an OCPP error code.
+   * @param errorDescription an associated error description.
+   * @throws NotConnectedException the message couldn't be sent due to the lack of connection.
+   */
+  protected void transmitCallError(
+      String uniqueId, String action, String errorCode, String errorDescription)
+      throws NotConnectedException {
+    radio.send(makeCallError(uniqueId, action, errorCode, errorDescription));
+  }
+
+  /**
+   * Tap the messages sent and received, ie. with a {@link MessageTracer}. Without a tap, this costs
+   * a field read per message.
+   *
+   * @param messageTap the tap, null to remove it.
+   */
+  public void setMessageTap(MessageTap messageTap) {
+    this.messageTap = messageTap;
+  }
+
+  public MessageTap getMessageTap() {
+    return messageTap;
+  }
+
+  private void tap(MessageTap.Direction direction, String uniqueId, String action, Object message) {
+    MessageTap tap = messageTap;
+    if (tap != null) {
+      tap.capture(direction, uniqueId, action, message);
+    }
+  }
+
   /** Close down the connection. Uses the {@link Transmitter}. */
   public void disconnect() {
     radio.disconnect();
   }
 
-  private synchronized void processTransactionQueue() {
-    if (retryRunner != null && !retryRunner.isAlive()) {
-      if (retryRunner.getState() != Thread.State.NEW) {
-        retryRunner = new RetryRunner();
-      }
-      retryRunner.start();
+  private void processTransactionQueue() {
+    if (transactionReplayer != null) {
+      transactionReplayer.start();
     }
   }
 
+  /**
+   * Get the id of a packed call. The default parses the call; framings whose {@link
+   * #parse(Object)} answers malformed messages override it with a reader without side effects.
+   *
+   * @param call a call made by {@link #makeCall(String, String, Object)}.
+   * @return the unique id of the call, null if it can't be read.
+   */
+  protected String uniqueIdOf(Object call) {
+    Message message = parse(call);
+    return message != null ? message.getId() : null;
+  }
+
   private class EventHandler implements RadioEvents {
     private final CommunicatorEvents events;
 
@@ -299,6 +546,9 @@ public abstract class Communicator {
     public void receivedMessage(Object input) {
       Message message = parse(input);
       if (message != null) {
+        tap(MessageTap.Direction.INBOUND, message.getId(), message.getAction(), input);
+      }
+      if (message != null && logger.isTraceEnabled()) {
         Object payload = message.getPayload();
         if (payload instanceof Document) {
           logger.trace("Receive a message: {}", SugarUtil.docToString((Document) payload));
@@ -307,10 +557,21 @@ public abstract class Communicator {
         }
       }
       if (message instanceof CallResultMessage) {
-        events.onCallResult(message.getId(), message.getAction(), message.getPayload());
+        boolean recovered = false;
+        if (transactionReplayer != null) {
+          recovered = transactionReplayer.isRecovered(message.getId());
+          transactionReplayer.acknowledge(message.getId());
+        }
+        if (recovered) {
+          events.onRecoveredCallResult(message.getId(), message.getAction(), message.getPayload());
+        } else {
+          events.onCallResult(message.getId(), message.getAction(), message.getPayload());
+        }
       } else if (message instanceof CallErrorMessage) {
-        failedFlag = true;
         CallErrorMessage call = (CallErrorMessage) message;
+        if (transactionReplayer != null) {
+          transactionReplayer.fail(call.getId(), call.getErrorCode());
+        }
         events.onError(
             call.getId(), call.getErrorCode(), call.getErrorDescription(), call.getRawPayload());
       } else if (message instanceof CallMessage) {
@@ -321,51 +582,10 @@ public abstract class Communicator {
 
     @Override
     public void disconnected() {
-      events.onDisconnected();
-    }
-  }
-
-  /**
-   * Get queued transaction related request.
-   *
-   * @return request or null if queue is empty.
-   */
-  private Object getRetryMessage() {
-    Object result = null;
-    if (transactionQueue != null && !transactionQueue.isEmpty()) result = transactionQueue.peek();
-    return result;
-  }
-
-  /**
-   * Check if a error message was received.
-   *
-   * @return whether a fail flag has been raised.
-   */
-  private boolean hasFailed() {
-    return failedFlag;
-  }
-
-  private void popRetryMessage() {
-    if (transactionQueue != null && !transactionQueue.isEmpty()) transactionQueue.pop();
-  }
-
-  /** Will resend transaction related requests. */
-  private class RetryRunner extends Thread {
-    private static final long DELAY_IN_MILLISECONDS = 1000;
-
-    @Override
-    public void run() {
-      Object call;
-      try {
-        while ((call = getRetryMessage()) != null) {
-          failedFlag = false;
-          radio.send(call);
-          Thread.sleep(DELAY_IN_MILLISECONDS);
-          if (!hasFailed()) popRetryMessage();
-        }
-      } catch (Exception ex) {
-        logger.warn("RetryRunner::run() failed", ex);
+      if (transactionReplayer != null) {
+        transactionReplayer.stop();
       }
+      events.onDisconnected();
     }
   }
 }
@@ -41,6 +41,17 @@ public interface CommunicatorEvents {
    */
   void onCallResult(String id, String action, Object payload);
 
+  /**
+   * Handle the result of a call replayed from a transaction queue that was filled by an earlier
+   * run, ie. recovered from a {@link MappedFileTransactionQueue} after a restart. No request of
+   * this run waits for it.
+   *
+   * @param id unique id of the replayed call.
+   * @param action Optional. The action.
+   * @param payload raw payload.
+   */
+  default void onRecoveredCallResult(String id, String action, Object payload) {}
+
   /**
    * Handle call.
    *
@@ -27,6 +27,7 @@ package eu.chargetime.ocpp;
 */
 
 import eu.chargetime.ocpp.model.Confirmation;
+import java.util.concurrent.CompletionException;
 import java.util.function.BiConsumer;
 
 class ConfirmationHandler implements BiConsumer<Confirmation, Throwable> {
@@ -44,7 +45,15 @@ class ConfirmationHandler implements BiConsumer<Confirmation, Throwable> {
 
   @Override
   public void accept(Confirmation confirmation, Throwable throwable) {
-    if (throwable != null) {
+    Throwable cause = throwable;
+    while (cause instanceof CompletionException && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    if (cause instanceof CallErrorException) {
+      CallErrorException callError = (CallErrorException) cause;
+      communicator.sendCallError(
+          id, action, callError.getErrorCode(), callError.getErrorDescription());
+    } else if (throwable != null) {
       communicator.sendCallError(
           id,
           action,
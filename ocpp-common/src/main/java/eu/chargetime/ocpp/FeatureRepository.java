@@ -39,6 +39,7 @@ public class FeatureRepository implements IFeatureRepository {
   private final ProtocolVersion protocolVersion;
   private final Map<String, Feature> actionMap = new HashMap<>();
   private final Map<Class<?>, Feature> classMap = new HashMap<>();
+  private volatile boolean strictDecoding;
 
   public FeatureRepository() {
     this(ProtocolVersion.OCPP1_6);
@@ -53,6 +54,23 @@ public class FeatureRepository implements IFeatureRepository {
     return protocolVersion;
   }
 
+  @Override
+  public boolean isStrictDecoding() {
+    return strictDecoding;
+  }
+
+  /**
+   * Decode incoming payloads strictly. Besides the model validation, values must then have the
+   * JSON type of their field, enum values must be known, and null values and undeclared properties
+   * are rejected. This is not validation against the OCPP JSON schemas: lengths, ranges and formats
+   * are only checked as far as the model validation checks them.
+   *
+   * @param strictDecoding true for strict decoding, false by default.
+   */
+  public void setStrictDecoding(boolean strictDecoding) {
+    this.strictDecoding = strictDecoding;
+  }
+
   /**
    * Add {@link Profile} to support a group of features.
    *
@@ -81,8 +99,8 @@ public class FeatureRepository implements IFeatureRepository {
    * {@link Optional#empty()} is returned
    *
    * <p>Can take multiple inputs: {@link String}, search for the action name of the feature. {@link
-   * Request}/{@link Confirmation}, search for a feature that matches. Anything else will return
-   * {@link Optional#empty()}.
+   * Request}/{@link Confirmation}, search for a feature that matches. A {@link LazyRequest} matches
+   * by its request type. Anything else will return {@link Optional#empty()}.
    *
    * @param needle Object supports {@link String}, {@link Request} or {@link Confirmation}
    * @return Optional of instance of the supported Feature
@@ -93,6 +111,10 @@ public class FeatureRepository implements IFeatureRepository {
       return Optional.ofNullable(actionMap.get(needle));
     }
 
+    if (needle instanceof LazyRequest) {
+      return Optional.ofNullable(classMap.get(((LazyRequest<?>) needle).getRequestType()));
+    }
+
     if ((needle instanceof Request) || (needle instanceof Confirmation)) {
       return Optional.ofNullable(classMap.get((needle.getClass())));
     }
@@ -104,6 +126,7 @@ public class FeatureRepository implements IFeatureRepository {
   public String toString() {
     return MoreObjects.toStringHelper("FeatureRepository")
         .add("protocolVersion", protocolVersion)
+        .add("strictDecoding", strictDecoding)
         .add("actionMap", actionMap)
         .add("classMap", classMap)
         .toString();
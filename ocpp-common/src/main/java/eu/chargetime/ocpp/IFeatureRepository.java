@@ -32,4 +32,14 @@ public interface IFeatureRepository {
   ProtocolVersion getProtocolVersion();
 
   Optional<Feature> findFeature(Object needle);
+
+  /**
+   * Tell if incoming payloads are decoded strictly, rejecting values of the wrong JSON type,
+   * unknown enum values, null values and undeclared properties.
+   *
+   * @return true for strict decoding.
+   */
+  default boolean isStrictDecoding() {
+    return false;
+  }
 }
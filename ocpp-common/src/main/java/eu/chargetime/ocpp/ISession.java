@@ -2,6 +2,7 @@ package eu.chargetime.ocpp;
 
 import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.Request;
+import java.util.Optional;
 import java.util.UUID;
 
 /*
@@ -42,7 +43,44 @@ public interface ISession {
 
   void sendRequest(String action, Request payload, String uuid);
 
+  /**
+   * Send a {@link Request} whose payload is shared with other sessions, so it is packed once.
+   *
+   * @param action action name to identify the feature.
+   * @param payload the {@link Request} payload to send.
+   * @param uuid the id returned by {@link #storeRequest(Request)}.
+   * @param shared the packed payload shared with other sessions.
+   */
+  default void sendRequest(String action, Request payload, String uuid, SharedPayload shared) {
+    sendRequest(action, payload, uuid);
+  }
+
+  /**
+   * Forget a stored {@link Request} that will not be answered.
+   *
+   * @param uniqueId the id returned by {@link #storeRequest(Request)}.
+   */
+  default void removeRequest(String uniqueId) {}
+
   boolean completePendingPromise(String id, Confirmation confirmation) throws UnsupportedFeatureException, OccurenceConstraintException;
 
   void close();
+
+  /**
+   * Get the number of incoming requests waiting to be handled.
+   *
+   * @return the queue depth of the session.
+   */
+  default int getQueueDepth() {
+    return 0;
+  }
+
+  /**
+   * Get the scheduler that sends the outgoing requests of the session one at a time.
+   *
+   * @return the {@link OutboundScheduler}, empty if requests are sent right away.
+   */
+  default Optional<OutboundScheduler> getOutboundScheduler() {
+    return Optional.empty();
+  }
 }
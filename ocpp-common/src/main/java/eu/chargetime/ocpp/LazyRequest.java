@@ -0,0 +1,183 @@
+package eu.chargetime.ocpp;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import eu.chargetime.ocpp.model.Request;
+import eu.chargetime.ocpp.utilities.MoreObjects;
+
+/**
+ * A received {@link Request} of which only the envelope has been decoded. It is handed to {@link
+ * eu.chargetime.ocpp.feature.PassThroughFeature} handlers, which often only forward the payload.
+ *
+ * <p>The raw payload is available as received, for OCPP-J that is the JSON text of the payload.
+ * Binding to the request type and validating it only happens on the first call to {@link #get()}.
+ *
+ * @param <T> the type of the request.
+ */
+public final class LazyRequest<T extends Request> implements Request {
+
+  private static final String OCCURRENCE_CONSTRAINT_VIOLATION =
+      "Payload for Action is syntactically correct but at least one of the fields violates occurrence constraints";
+  private static final String UNABLE_TO_PROCESS = "Unable to process action";
+
+  private final Class<T> requestType;
+  private final Object rawPayload;
+  private final Communicator communicator;
+  private final boolean legacyRpc;
+  private final boolean strict;
+  private String ocppMessageId;
+  private volatile T request;
+
+  LazyRequest(
+      Class<T> requestType,
+      Object rawPayload,
+      Communicator communicator,
+      boolean legacyRpc,
+      boolean strict) {
+    this.requestType = requestType;
+    this.rawPayload = rawPayload;
+    this.communicator = communicator;
+    this.legacyRpc = legacyRpc;
+    this.strict = strict;
+  }
+
+  /**
+   * The type the payload binds to.
+   *
+   * @return the request type of the feature.
+   */
+  public Class<T> getRequestType() {
+    return requestType;
+  }
+
+  /**
+   * The payload as received, without binding it.
+   *
+   * @return the raw payload, for OCPP-J a range of the message whose {@code toString()} is the
+   *     JSON text of the payload.
+   */
+  public Object getRawPayload() {
+    return rawPayload;
+  }
+
+  /**
+   * Whether the payload has been bound by a call to {@link #get()}.
+   *
+   * @return true if the payload has been bound.
+   */
+  public boolean isBound() {
+    return request != null;
+  }
+
+  /**
+   * Bind and validate the payload. The first call does the work, later calls return the same
+   * request.
+   *
+   * @return the bound and validated request.
+   * @throws CallErrorException the payload could not be bound or is not valid, the error code and
+   *     description are the ones to reply with.
+   */
+  public T get() throws CallErrorException {
+    T bound = request;
+    if (bound == null) {
+      synchronized (this) {
+        bound = request;
+        if (bound == null) {
+          bound = bind();
+          request = bound;
+        }
+      }
+    }
+    return bound;
+  }
+
+  private T bind() throws CallErrorException {
+    try {
+      T bound =
+          strict
+              ? communicator.unpackStrictPayload(rawPayload, requestType)
+              : communicator.unpackValidPayload(rawPayload, requestType);
+      bound.setOcppMessageId(ocppMessageId);
+      return bound;
+    } catch (OccurenceConstraintException ex) {
+      throw new CallErrorException(
+          legacyRpc ? "OccurenceConstraintViolation" : "OccurrenceConstraintViolation",
+          OCCURRENCE_CONSTRAINT_VIOLATION,
+          rawPayload);
+    } catch (PropertyConstraintException ex) {
+      throw new CallErrorException("TypeConstraintViolation", ex.getMessage(), rawPayload);
+    } catch (Exception ex) {
+      throw new CallErrorException(
+          legacyRpc ? "FormationViolation" : "FormatViolation", UNABLE_TO_PROCESS, rawPayload);
+    }
+  }
+
+  /**
+   * Binds and validates the payload.
+   *
+   * @return true if the payload binds and is valid.
+   */
+  @Override
+  public boolean validate() {
+    try {
+      get();
+      return true;
+    } catch (CallErrorException ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Received requests are never queued, so this is always false.
+   *
+   * @return false.
+   */
+  @Override
+  public boolean transactionRelated() {
+    return false;
+  }
+
+  @Override
+  public String getOcppMessageId() {
+    return ocppMessageId;
+  }
+
+  @Override
+  public void setOcppMessageId(String id) {
+    this.ocppMessageId = id;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("requestType", requestType.getSimpleName())
+        .add("ocppMessageId", ocppMessageId)
+        .add("rawPayload", rawPayload)
+        .add("isBound", isBound())
+        .toString();
+  }
+}
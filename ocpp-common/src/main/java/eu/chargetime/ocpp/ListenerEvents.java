@@ -26,10 +26,35 @@ package eu.chargetime.ocpp;
 */
 
 import eu.chargetime.ocpp.model.SessionInformation;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 public interface ListenerEvents {
   void authenticateSession(SessionInformation information, String username, String password)
       throws AuthenticationException;
 
+  /**
+   * Authenticate a handshake without blocking the listener. Listeners that can answer a handshake
+   * later call this instead of {@link #authenticateSession(SessionInformation, String, String)},
+   * which it calls by default.
+   *
+   * @param information information about the connecting client.
+   * @param username the username of the basic authentication, null if none was given.
+   * @param password the password of the basic authentication, null if none was given.
+   * @return a stage that completes normally to accept the connection, or exceptionally with an
+   *     {@link AuthenticationException} to refuse it.
+   */
+  default CompletionStage<Void> authenticateSessionAsync(
+      SessionInformation information, String username, String password) {
+    CompletableFuture<Void> authentication = new CompletableFuture<>();
+    try {
+      authenticateSession(information, username, password);
+      authentication.complete(null);
+    } catch (AuthenticationException | RuntimeException e) {
+      authentication.completeExceptionally(e);
+    }
+    return authentication;
+  }
+
   void newSession(ISession session, SessionInformation information);
 }
@@ -0,0 +1,394 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link TransactionQueue} kept in memory-mapped segment files, so queued calls survive a restart
+ * of the process and a long outage doesn't grow the heap.
+ *
+ * <p>Calls are appended to the last segment of a directory; when it is full, a new one is started.
+ * Removing a call marks it as acknowledged in place. Segments that hold only acknowledged calls are
+ * deleted, so the directory holds the backlog plus at most one segment. Only the segments being
+ * read and written are mapped.
+ *
+ * <p>Each record is checksummed. When the queue is opened, the segments are scanned and the calls
+ * that weren't acknowledged are queued again in order; a record torn by a crash ends its segment.
+ * A call removed right before a crash may be sent again. Writes survive a crash of the process;
+ * call {@link #sync()} to also survive a power loss.
+ *
+ * <p>Only String and byte array calls can be stored, as packed by the JSON and CBOR framings.
+ * Recovered calls keep the id they were queued with; no request of the new run waits for their
+ * results, see {@link TransactionReplayer}.
+ */
+public class MappedFileTransactionQueue implements TransactionQueue, Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(MappedFileTransactionQueue.class);
+
+  public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+  private static final String SEGMENT_SUFFIX = ".segment";
+
+  // record: int length, byte type, byte state, int crc of the payload, payload
+  private static final int HEADER_SIZE = 10;
+  private static final int STATE_OFFSET = 5;
+  private static final int CRC_OFFSET = 6;
+  private static final byte TYPE_STRING = 1;
+  private static final byte TYPE_BYTES = 2;
+  private static final byte STATE_QUEUED = 0;
+  private static final byte STATE_ACKNOWLEDGED = 1;
+
+  private final Path directory;
+  private final int segmentSize;
+  private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+  private final CRC32 crc = new CRC32();
+  private int size;
+  private Object head;
+
+  /**
+   * Open or create a queue in a directory, with segments of {@link #DEFAULT_SEGMENT_SIZE} bytes.
+   *
+   * @param directory the directory of the segment files.
+   * @throws IOException the directory can't be read or written.
+   */
+  public MappedFileTransactionQueue(Path directory) throws IOException {
+    this(directory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * Open or create a queue in a directory. The segment size only applies to new segments.
+   *
+   * @param directory the directory of the segment files.
+   * @param segmentSize the size of a segment file in bytes, which bounds the size of a call.
+   * @throws IOException the directory can't be read or written.
+   */
+  public MappedFileTransactionQueue(Path directory, int segmentSize) throws IOException {
+    if (segmentSize <= HEADER_SIZE) {
+      throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    Files.createDirectories(directory);
+    recover();
+  }
+
+  @Override
+  public synchronized void add(Object call) {
+    byte type;
+    byte[] payload;
+    if (call instanceof String) {
+      type = TYPE_STRING;
+      payload = ((String) call).getBytes(StandardCharsets.UTF_8);
+    } else if (call instanceof byte[]) {
+      type = TYPE_BYTES;
+      payload = (byte[]) call;
+    } else {
+      throw new IllegalArgumentException(
+          "Only String and byte[] calls can be stored, not " + call.getClass().getName());
+    }
+    if (payload.length == 0) {
+      throw new IllegalArgumentException("Empty calls can't be stored");
+    }
+    int recordSize = HEADER_SIZE + payload.length;
+    if (recordSize > segmentSize) {
+      throw new IllegalArgumentException(
+          "Call of " + payload.length + " bytes doesn't fit a segment of " + segmentSize);
+    }
+
+    try {
+      Segment tail = segments.peekLast();
+      if (tail == null || tail.writePosition + recordSize > tail.capacity) {
+        tail = roll();
+      }
+      MappedByteBuffer buffer = tail.map();
+      int position = tail.writePosition;
+      crc.reset();
+      crc.update(payload, 0, payload.length);
+      buffer.put(position + 4, type);
+      buffer.put(position + STATE_OFFSET, STATE_QUEUED);
+      buffer.putInt(position + CRC_OFFSET, (int) crc.getValue());
+      ByteBuffer target = buffer.duplicate();
+      // cast to Buffer, ByteBuffer.position(int) doesn't exist on Java 8
+      ((Buffer) target).position(position + HEADER_SIZE);
+      target.put(payload);
+      // the length goes in last, a record without one isn't there
+      buffer.putInt(position, payload.length);
+      tail.writePosition += recordSize;
+      size++;
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public synchronized Object peek(int index) {
+    if (index >= size) {
+      return null;
+    }
+    if (index == 0) {
+      if (head == null) {
+        Segment segment = headSegment();
+        head = read(segment, segment.readPosition);
+      }
+      return head;
+    }
+    headSegment();
+    int skipped = 0;
+    for (Segment segment : segments) {
+      int position = segment.readPosition;
+      while (position < segment.writePosition) {
+        if (skipped == index) {
+          return read(segment, position);
+        }
+        position += HEADER_SIZE + segment.map().getInt(position);
+        skipped++;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public synchronized void remove() {
+    if (size == 0) {
+      return;
+    }
+    Segment segment = headSegment();
+    MappedByteBuffer buffer = segment.map();
+    int position = segment.readPosition;
+    buffer.put(position + STATE_OFFSET, STATE_ACKNOWLEDGED);
+    segment.readPosition += HEADER_SIZE + buffer.getInt(position);
+    head = null;
+    size--;
+    if (segment.readPosition >= segment.writePosition && segment != segments.peekLast()) {
+      delete(segments.pollFirst());
+    }
+  }
+
+  @Override
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Get the number of segment files in use.
+   *
+   * @return the number of segments.
+   */
+  public synchronized int getSegmentCount() {
+    return segments.size();
+  }
+
+  /** Write the mapped segments through to the storage device. */
+  public synchronized void sync() {
+    for (Segment segment : segments) {
+      if (segment.buffer != null) {
+        segment.buffer.force();
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    sync();
+    for (Segment segment : segments) {
+      segment.buffer = null;
+    }
+  }
+
+  private static Object read(Segment segment, int position) {
+    MappedByteBuffer buffer = segment.map();
+    byte[] payload = new byte[buffer.getInt(position)];
+    ByteBuffer source = buffer.duplicate();
+    ((Buffer) source).position(position + HEADER_SIZE);
+    source.get(payload);
+    return buffer.get(position + 4) == TYPE_STRING
+        ? new String(payload, StandardCharsets.UTF_8)
+        : payload;
+  }
+
+  /** The segment of the oldest call, after deleting the acknowledged segments before it. */
+  private Segment headSegment() {
+    Segment segment = segments.peekFirst();
+    while (segment.readPosition >= segment.writePosition && segment != segments.peekLast()) {
+      delete(segments.pollFirst());
+      segment = segments.peekFirst();
+    }
+    return segment;
+  }
+
+  private Segment roll() throws IOException {
+    Segment last = segments.peekLast();
+    long sequence = last != null ? last.sequence + 1 : 0;
+    if (last != null) {
+      if (last.readPosition >= last.writePosition) {
+        delete(segments.pollLast());
+      } else if (last != segments.peekFirst()) {
+        // only the head and the tail stay mapped
+        last.buffer = null;
+      }
+    }
+    Segment segment = new Segment(sequence, segmentPath(sequence), segmentSize);
+    segments.add(segment);
+    return segment;
+  }
+
+  private void delete(Segment segment) {
+    segment.buffer = null;
+    try {
+      Files.deleteIfExists(segment.path);
+    } catch (IOException ex) {
+      logger.warn("Unable to delete acknowledged segment {}", segment.path, ex);
+    }
+  }
+
+  private Path segmentPath(long sequence) {
+    return directory.resolve(String.format("%020d%s", sequence, SEGMENT_SUFFIX));
+  }
+
+  private void recover() throws IOException {
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+      for (Path path : stream) {
+        paths.add(path);
+      }
+    }
+    Collections.sort(paths);
+
+    for (int i = 0; i < paths.size(); i++) {
+      Path path = paths.get(i);
+      String name = path.getFileName().toString();
+      long sequence = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+      Segment segment = new Segment(sequence, path, (int) Files.size(path));
+      boolean last = i == paths.size() - 1;
+      int queued = scan(segment, last);
+      if (queued == 0 && !last) {
+        delete(segment);
+        continue;
+      }
+      size += queued;
+      segments.add(segment);
+      if (segments.size() > 1 && !last) {
+        segment.buffer = null;
+      }
+    }
+    if (size > 0) {
+      logger.info("Recovered {} queued transaction-related calls from {}", size, directory);
+    }
+  }
+
+  /** Finds the write position and the first queued record of a segment, counting the queued. */
+  private int scan(Segment segment, boolean tail) {
+    MappedByteBuffer buffer = segment.map();
+    int position = 0;
+    int queued = 0;
+    boolean torn = false;
+    segment.readPosition = -1;
+    while (position + HEADER_SIZE <= segment.capacity) {
+      int length = buffer.getInt(position);
+      if (length <= 0 || length > segment.capacity - position - HEADER_SIZE) {
+        break;
+      }
+      ByteBuffer payload = buffer.duplicate();
+      ((Buffer) payload).limit(position + HEADER_SIZE + length);
+      ((Buffer) payload).position(position + HEADER_SIZE);
+      crc.reset();
+      crc.update(payload);
+      if ((int) crc.getValue() != buffer.getInt(position + CRC_OFFSET)) {
+        logger.warn("Torn record at {} of {}, ignoring the rest", position, segment.path);
+        torn = true;
+        break;
+      }
+      if (buffer.get(position + STATE_OFFSET) == STATE_QUEUED) {
+        if (segment.readPosition < 0) {
+          segment.readPosition = position;
+        }
+        queued++;
+      }
+      position += HEADER_SIZE + length;
+    }
+    segment.writePosition = position;
+    if (segment.readPosition < 0) {
+      segment.readPosition = position;
+    }
+    if (tail && torn) {
+      // clear what's left of the torn record, so it isn't read behind new appends
+      for (int i = position; i < segment.capacity; i++) {
+        buffer.put(i, (byte) 0);
+      }
+    }
+    return queued;
+  }
+
+  private static class Segment {
+    private final long sequence;
+    private final Path path;
+    private final int capacity;
+    private MappedByteBuffer buffer;
+    private int readPosition;
+    private int writePosition;
+
+    private Segment(long sequence, Path path, int capacity) {
+      this.sequence = sequence;
+      this.path = path;
+      this.capacity = capacity;
+    }
+
+    private MappedByteBuffer map() {
+      if (buffer == null) {
+        try (FileChannel channel =
+            FileChannel.open(
+                path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+          buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+      }
+      return buffer;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+/** A {@link TransactionQueue} on the heap, lost when the process stops. */
+public class MemoryTransactionQueue implements TransactionQueue {
+
+  private Object[] calls = new Object[16];
+  private int head;
+  private int size;
+
+  @Override
+  public synchronized void add(Object call) {
+    if (size == calls.length) {
+      Object[] grown = new Object[calls.length * 2];
+      for (int i = 0; i < size; i++) {
+        grown[i] = calls[(head + i) & (calls.length - 1)];
+      }
+      calls = grown;
+      head = 0;
+    }
+    calls[(head + size) & (calls.length - 1)] = call;
+    size++;
+  }
+
+  @Override
+  public synchronized Object peek(int index) {
+    return index < size ? calls[(head + index) & (calls.length - 1)] : null;
+  }
+
+  @Override
+  public synchronized void remove() {
+    if (size > 0) {
+      calls[head] = null;
+      head = (head + 1) & (calls.length - 1);
+      size--;
+    }
+  }
+
+  @Override
+  public synchronized int size() {
+    return size;
+  }
+}
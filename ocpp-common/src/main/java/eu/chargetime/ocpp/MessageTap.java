@@ -0,0 +1,53 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+/**
+ * Tap on the messages a {@link Communicator} sends and receives, see {@link
+ * Communicator#setMessageTap(MessageTap)}. It is called on the thread sending or receiving the
+ * message, so it must neither block nor format the message.
+ */
+public interface MessageTap {
+
+  /** Whether a message was received or sent. */
+  enum Direction {
+    INBOUND,
+    OUTBOUND
+  }
+
+  /**
+   * Capture a message.
+   *
+   * @param direction whether the message was received or sent.
+   * @param uniqueId the unique id of the call the message belongs to.
+   * @param action action name of the call, null if unknown.
+   * @param message the frame as received, the packed call, the outgoing {@link
+   *     eu.chargetime.ocpp.model.Confirmation} or the outgoing {@link
+   *     eu.chargetime.ocpp.model.CallErrorMessage}.
+   */
+  void capture(Direction direction, String uniqueId, String action, Object message);
+}
@@ -0,0 +1,313 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import eu.chargetime.ocpp.model.CallErrorMessage;
+import eu.chargetime.ocpp.model.Confirmation;
+import java.io.Closeable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples the messages of sessions into a bounded ring buffer, and hands them to a {@link Sink} on
+ * a background thread. Capturing a message only stores a reference to it; all formatting happens on
+ * the tracer thread. When the ring is full, messages are dropped rather than slowing down the
+ * connection.
+ *
+ * <p>Messages can be sampled by session, by action and by rate. Rate sampling picks calls by their
+ * unique id, so a sampled call is captured together with its result. Set the tracer on a server or
+ * client with {@code JSONConfiguration.MESSAGE_TRACER_PARAMETER}, or tap a {@link Communicator}
+ * with {@link #tap(String)}.
+ */
+public class MessageTracer implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(MessageTracer.class);
+
+  /** Default number of captured messages waiting to be written. */
+  public static final int DEFAULT_CAPACITY = 8192;
+
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /** Destination of captured messages, called on the tracer thread. */
+  public interface Sink {
+    /**
+     * Write a captured message.
+     *
+     * @param message the captured message.
+     * @throws Exception the message couldn't be written, it is logged and skipped.
+     */
+    void write(CapturedMessage message) throws Exception;
+  }
+
+  private final Sink sink;
+  private final int mask;
+  private final AtomicReferenceArray<CapturedMessage> slots;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final Thread writer;
+  private long head;
+  private volatile long written;
+
+  private volatile boolean closed;
+  private volatile Predicate<String> sessionFilter;
+  private volatile Predicate<String> actionFilter;
+  private volatile int sampleRate = 1;
+
+  /** Log captured messages at info level to the {@code eu.chargetime.ocpp.wire} logger. */
+  public MessageTracer() {
+    this(new LogSink(), DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Write captured messages to a sink.
+   *
+   * @param sink destination of the captured messages.
+   * @param capacity number of captured messages that can wait to be written, rounded up to a power
+   *     of two.
+   */
+  public MessageTracer(Sink sink, int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity - 1) << 1;
+    if (size < 2) {
+      size = 2;
+    }
+    this.sink = sink;
+    this.mask = size - 1;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+    writer = new Thread(this::writeLoop, "ocpp-message-tracer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Only trace sessions with a matching name. Applies to taps created after this call.
+   *
+   * @param sessionFilter accepts session names, null to trace all sessions.
+   * @return this tracer.
+   */
+  public MessageTracer setSessionFilter(Predicate<String> sessionFilter) {
+    this.sessionFilter = sessionFilter;
+    return this;
+  }
+
+  /**
+   * Only trace calls of matching actions, with their results and errors.
+   *
+   * @param actionFilter accepts action names, null to trace all actions.
+   * @return this tracer.
+   */
+  public MessageTracer setActionFilter(Predicate<String> actionFilter) {
+    this.actionFilter = actionFilter;
+    return this;
+  }
+
+  /**
+   * Trace one in every {@code oneIn} calls.
+   *
+   * @param oneIn the sampling rate, 1 to trace every call.
+   * @return this tracer.
+   */
+  public MessageTracer setSampleRate(int oneIn) {
+    if (oneIn < 1) {
+      throw new IllegalArgumentException("oneIn must be positive: " + oneIn);
+    }
+    this.sampleRate = oneIn;
+    return this;
+  }
+
+  /**
+   * Create a tap for the messages of a session.
+   *
+   * @param session name of the session, ie. the identity of the charge point.
+   * @return the tap, null if the session isn't traced.
+   */
+  public MessageTap tap(String session) {
+    Predicate<String> filter = sessionFilter;
+    if (closed || (filter != null && !filter.test(session))) {
+      return null;
+    }
+    return new SessionTap(session);
+  }
+
+  /**
+   * Get the number of messages dropped because the ring buffer was full.
+   *
+   * @return the number of dropped messages.
+   */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * Get the number of messages handed to the sink.
+   *
+   * @return the number of written messages.
+   */
+  public long getWrittenCount() {
+    return written;
+  }
+
+  /** Stop capturing, and write the messages already captured. */
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(writer);
+    try {
+      writer.join();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private boolean isSampled(String uniqueId) {
+    int rate = sampleRate;
+    int hash = uniqueId != null ? uniqueId.hashCode() : 0;
+    return rate == 1 || Math.floorMod(hash * 0x9E3779B9, rate) == 0;
+  }
+
+  /** Multi-producer ring buffer offer, see Vyukov's bounded queue. */
+  private void offer(CapturedMessage message) {
+    long position = tail.get();
+    while (true) {
+      int index = (int) position & mask;
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          slots.lazySet(index, message);
+          sequences.lazySet(index, position + 1);
+          return;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        dropped.incrementAndGet();
+        return;
+      } else {
+        position = tail.get();
+      }
+    }
+  }
+
+  private CapturedMessage poll() {
+    int index = (int) head & mask;
+    if (sequences.get(index) != head + 1) {
+      return null;
+    }
+    CapturedMessage message = slots.get(index);
+    slots.lazySet(index, null);
+    sequences.lazySet(index, head + mask + 1);
+    head++;
+    return message;
+  }
+
+  private void writeLoop() {
+    while (true) {
+      boolean stopping = closed;
+      CapturedMessage message = poll();
+      if (message == null) {
+        if (stopping) {
+          return;
+        }
+        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        continue;
+      }
+      try {
+        sink.write(message);
+      } catch (Exception ex) {
+        logger.warn("Failed to write captured message {}", message.getUniqueId(), ex);
+      }
+      written++;
+    }
+  }
+
+  private class SessionTap implements MessageTap {
+    private final String session;
+    /** Sampled calls of which the result, without an action, is still expected. */
+    private final Set<String> sampledCalls = ConcurrentHashMap.newKeySet();
+
+    SessionTap(String session) {
+      this.session = session;
+    }
+
+    @Override
+    public void capture(Direction direction, String uniqueId, String action, Object message) {
+      if (closed || !isSampled(uniqueId)) {
+        return;
+      }
+      Predicate<String> filter = actionFilter;
+      if (filter != null) {
+        if (action == null) {
+          if (uniqueId == null || !sampledCalls.remove(uniqueId)) {
+            return;
+          }
+        } else if (!filter.test(action)) {
+          return;
+        } else if (direction == Direction.OUTBOUND && uniqueId != null && isCall(message)) {
+          sampledCalls.add(uniqueId);
+        }
+      }
+      offer(
+          new CapturedMessage(
+              System.currentTimeMillis(), session, direction, uniqueId, action, message));
+    }
+  }
+
+  private static boolean isCall(Object message) {
+    return !(message instanceof Confirmation) && !(message instanceof CallErrorMessage);
+  }
+
+  private static class LogSink implements Sink {
+    private static final Logger wire = LoggerFactory.getLogger("eu.chargetime.ocpp.wire");
+
+    @Override
+    public void write(CapturedMessage message) {
+      if (wire.isInfoEnabled()) {
+        wire.info(
+            "{} {} {} {} {}",
+            message.getSession(),
+            message.getDirection(),
+            message.getUniqueId(),
+            message.getAction(),
+            message.getText());
+      }
+    }
+  }
+}
@@ -0,0 +1,508 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import eu.chargetime.ocpp.model.Request;
+import eu.chargetime.ocpp.utilities.HashedWheelTimer;
+import eu.chargetime.ocpp.utilities.MoreObjects;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the outgoing calls of a session one at a time. OCPP-J allows a single unanswered call per
+ * direction, so a call is held back until the previous one is answered, fails or times out.
+ *
+ * <p>Held back calls wait in one of three lanes by {@link Priority}, and are sent in order within
+ * a lane. Actions are {@link Priority#NORMAL} unless set otherwise; stopping a transaction is
+ * {@link Priority#HIGH} and bulk reads like GetConfiguration are {@link Priority#LOW} by default.
+ *
+ * <p>Calls replayed from the transaction queue of the session go before all lanes, so a replayed
+ * and a live call are never unanswered at the same time.
+ *
+ * <p>A call left unanswered for longer than the in-flight timeout, 30 seconds by default, no longer
+ * holds back the calls after it. Its promise is left alone; see {@link RequestTimeouts} to fail it.
+ * The timer only frees the lane, the next call is sent from the pool shared with {@link
+ * RequestTimeouts}.
+ */
+public class OutboundScheduler {
+  private static final Logger logger = LoggerFactory.getLogger(OutboundScheduler.class);
+
+  /** Lanes of held back calls, highest priority first. */
+  public enum Priority {
+    HIGH,
+    NORMAL,
+    LOW
+  }
+
+  /** Writes a call to the connection. */
+  public interface Sender {
+    void send(String uniqueId, String action, Request request);
+
+    /** Writes a call whose payload is shared with other sessions. */
+    default void send(String uniqueId, String action, Request request, SharedPayload payload) {
+      send(uniqueId, action, request);
+    }
+
+    /** Writes a call packed earlier, ie. one replayed from the transaction queue. */
+    void resend(String uniqueId, Object call);
+  }
+
+  private static final Map<String, Priority> defaultPriorities = new ConcurrentHashMap<>();
+
+  static {
+    setDefaultPriority("RemoteStopTransaction", Priority.HIGH);
+    setDefaultPriority("RequestStopTransaction", Priority.HIGH);
+    setDefaultPriority("GetConfiguration", Priority.LOW);
+    setDefaultPriority("GetBaseReport", Priority.LOW);
+    setDefaultPriority("GetReport", Priority.LOW);
+    setDefaultPriority("GetMonitoringReport", Priority.LOW);
+    setDefaultPriority("GetDiagnostics", Priority.LOW);
+    setDefaultPriority("GetLog", Priority.LOW);
+  }
+
+  private final Sender sender;
+  private final HashedWheelTimer timer;
+  private final Executor executor;
+  private final Map<String, Priority> priorities = new ConcurrentHashMap<>();
+  private final ArrayDeque<Call>[] lanes;
+  private final ArrayDeque<Call> replays = new ArrayDeque<>();
+
+  private long inFlightTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+
+  private boolean busy;
+  private String inFlightId;
+  private HashedWheelTimer.Timeout inFlightTimeout;
+  private boolean sending;
+  private int queueDepth;
+  private long sentCount;
+  private long totalWaitNanos;
+  private long maxWaitNanos;
+  private long expiredCount;
+
+  public OutboundScheduler(Sender sender) {
+    this(sender, RequestTimeouts.sharedTimer());
+  }
+
+  /**
+   * Run the in-flight timeouts on a given timer.
+   *
+   * @param sender writes calls to the connection.
+   * @param timer the timer to run the in-flight timeouts on.
+   */
+  public OutboundScheduler(Sender sender, HashedWheelTimer timer) {
+    this(sender, timer, RequestTimeouts.sharedExecutor());
+  }
+
+  /**
+   * Run the in-flight timeouts on a given timer, sending the call after an expired one on a given
+   * executor.
+   *
+   * @param sender writes calls to the connection.
+   * @param timer the timer to run the in-flight timeouts on.
+   * @param executor sends the next call once an unanswered call expired.
+   */
+  @SuppressWarnings("unchecked")
+  public OutboundScheduler(Sender sender, HashedWheelTimer timer, Executor executor) {
+    this.sender = sender;
+    this.timer = timer;
+    this.executor = executor;
+    this.lanes = new ArrayDeque[Priority.values().length];
+    for (int i = 0; i < lanes.length; i++) {
+      lanes[i] = new ArrayDeque<>();
+    }
+  }
+
+  /**
+   * Set the priority of an action for schedulers that don't set their own.
+   *
+   * @param action the action name, ie. RemoteStopTransaction.
+   * @param priority the lane calls of the action wait in.
+   */
+  public static void setDefaultPriority(String action, Priority priority) {
+    defaultPriorities.put(action, priority);
+  }
+
+  /**
+   * Set the priority of an action for this scheduler.
+   *
+   * @param action the action name, ie. RemoteStopTransaction.
+   * @param priority the lane calls of the action wait in.
+   * @return this instance.
+   */
+  public OutboundScheduler setPriority(String action, Priority priority) {
+    priorities.put(action, priority);
+    return this;
+  }
+
+  /**
+   * Get the priority of an action.
+   *
+   * @param action the action name.
+   * @return the lane calls of the action wait in.
+   */
+  public Priority getPriority(String action) {
+    if (action == null) {
+      return Priority.NORMAL;
+    }
+    Priority priority = priorities.get(action);
+    if (priority == null) {
+      priority = defaultPriorities.get(action);
+    }
+    return priority != null ? priority : Priority.NORMAL;
+  }
+
+  /**
+   * Set how long an unanswered call holds back the calls after it.
+   *
+   * @param timeout the timeout, 0 to wait for ever.
+   * @param unit the unit of the timeout.
+   * @return this instance.
+   */
+  public synchronized OutboundScheduler setInFlightTimeout(long timeout, TimeUnit unit) {
+    inFlightTimeoutNanos = unit.toNanos(timeout);
+    return this;
+  }
+
+  /**
+   * Get how long an unanswered call holds back the calls after it.
+   *
+   * @param unit the unit to get the timeout in.
+   * @return the timeout, 0 for none.
+   */
+  public synchronized long getInFlightTimeout(TimeUnit unit) {
+    return unit.convert(inFlightTimeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Send a call now if none is unanswered, or once the calls before it are answered.
+   *
+   * @param uniqueId the id of the call.
+   * @param action the action of the call.
+   * @param request the payload of the call.
+   */
+  public void submit(String uniqueId, String action, Request request) {
+    submit(uniqueId, action, request, null);
+  }
+
+  /**
+   * Send a call like {@link #submit(String, String, Request)}, with a payload shared with other
+   * sessions.
+   *
+   * @param uniqueId the id of the call.
+   * @param action the action of the call.
+   * @param request the payload of the call.
+   * @param payload the packed payload shared with other sessions, null if not shared.
+   */
+  public void submit(String uniqueId, String action, Request request, SharedPayload payload) {
+    Call call = new Call(uniqueId, action, request, payload, null, System.nanoTime());
+    synchronized (this) {
+      lanes[getPriority(action).ordinal()].add(call);
+      queueDepth++;
+    }
+    dispatch(false);
+  }
+
+  /**
+   * Send a call replayed from the transaction queue before any other held back call. A call
+   * already held back with the same id is not added again.
+   *
+   * <p>Only replayed calls are sent from here, so a {@link TransactionReplayer} can hand over its
+   * calls while holding its own lock.
+   *
+   * @param uniqueId the id of the call.
+   * @param call the packed call.
+   */
+  void submitReplay(String uniqueId, Object call) {
+    synchronized (this) {
+      for (Call held : replays) {
+        if (Objects.equals(held.uniqueId, uniqueId)) {
+          return;
+        }
+      }
+      replays.add(new Call(uniqueId, null, null, null, call, System.nanoTime()));
+      queueDepth++;
+    }
+    dispatch(true);
+  }
+
+  /**
+   * Mark a call as answered, failed or timed out. If it was the unanswered call, the next call is
+   * sent. If it is still held back, it is dropped.
+   *
+   * @param uniqueId the id of the call.
+   * @return true if the call was unanswered or held back.
+   */
+  public boolean complete(String uniqueId) {
+    synchronized (this) {
+      if (!busy || !Objects.equals(inFlightId, uniqueId)) {
+        return drop(uniqueId);
+      }
+      release();
+    }
+    dispatch(false);
+    return true;
+  }
+
+  /**
+   * Give up on the unanswered call, ie. because the connection was lost. Replayed calls are
+   * dropped too; the transaction queue hands them over again once connected.
+   */
+  public void reset() {
+    synchronized (this) {
+      release();
+      queueDepth -= replays.size();
+      replays.clear();
+    }
+    dispatch(false);
+  }
+
+  /**
+   * Get the number of calls held back.
+   *
+   * @return the queue depth.
+   */
+  public synchronized int getQueueDepth() {
+    return queueDepth;
+  }
+
+  /**
+   * Get the number of calls held back in a lane.
+   *
+   * @param priority the lane.
+   * @return the queue depth of the lane.
+   */
+  public synchronized int getQueueDepth(Priority priority) {
+    return lanes[priority.ordinal()].size();
+  }
+
+  /**
+   * Check if a call is sent and not answered yet.
+   *
+   * @return true if a call is unanswered.
+   */
+  public synchronized boolean isCallInFlight() {
+    return busy;
+  }
+
+  /**
+   * Get the number of calls sent.
+   *
+   * @return the number of calls sent.
+   */
+  public synchronized long getSentCount() {
+    return sentCount;
+  }
+
+  /**
+   * Get the mean time calls were held back before being sent.
+   *
+   * @param unit the unit of the time.
+   * @return the mean wait time, 0 if no calls were sent.
+   */
+  public synchronized long getMeanWaitTime(TimeUnit unit) {
+    return sentCount == 0 ? 0 : unit.convert(totalWaitNanos / sentCount, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Get the longest time a call was held back before being sent.
+   *
+   * @param unit the unit of the time.
+   * @return the longest wait time.
+   */
+  public synchronized long getMaxWaitTime(TimeUnit unit) {
+    return unit.convert(maxWaitNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Get the number of calls that stopped holding back the calls after them because they were not
+   * answered within the in-flight timeout.
+   *
+   * @return the number of expired calls.
+   */
+  public synchronized long getExpiredCount() {
+    return expiredCount;
+  }
+
+  private boolean drop(String uniqueId) {
+    if (drop(replays, uniqueId)) {
+      return true;
+    }
+    for (ArrayDeque<Call> lane : lanes) {
+      if (drop(lane, uniqueId)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean drop(ArrayDeque<Call> lane, String uniqueId) {
+    Iterator<Call> calls = lane.iterator();
+    while (calls.hasNext()) {
+      if (Objects.equals(calls.next().uniqueId, uniqueId)) {
+        calls.remove();
+        queueDepth--;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Sends held back calls while none is unanswered. A sender that fails a call right away
+   * completes it from within {@link Sender#send}; the loop picks up the next call instead of
+   * recursing.
+   *
+   * @param replaysOnly stop at the first call that isn't replayed.
+   */
+  private void dispatch(boolean replaysOnly) {
+    while (true) {
+      Call call;
+      synchronized (this) {
+        if (sending || busy || (replaysOnly && replays.isEmpty())) {
+          return;
+        }
+        call = poll();
+        if (call == null) {
+          return;
+        }
+        busy = true;
+        inFlightId = call.uniqueId;
+        if (inFlightTimeoutNanos > 0) {
+          inFlightTimeout =
+              timer.newTimeout(
+                  () -> expire(call.uniqueId), inFlightTimeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        sending = true;
+        long waitNanos = System.nanoTime() - call.submittedAt;
+        sentCount++;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+      }
+      boolean sent = false;
+      try {
+        if (call.packed != null) {
+          sender.resend(call.uniqueId, call.packed);
+        } else if (call.payload != null) {
+          sender.send(call.uniqueId, call.action, call.request, call.payload);
+        } else {
+          sender.send(call.uniqueId, call.action, call.request);
+        }
+        sent = true;
+      } finally {
+        synchronized (this) {
+          sending = false;
+          if (!sent && busy && Objects.equals(inFlightId, call.uniqueId)) {
+            // the call never went out, so don't wait for an answer to it
+            release();
+          }
+        }
+      }
+    }
+  }
+
+  private void expire(String uniqueId) {
+    synchronized (this) {
+      if (!busy || !Objects.equals(inFlightId, uniqueId)) {
+        return;
+      }
+      logger.warn(
+          "No answer to call {} within {} ms, sending the next call",
+          uniqueId,
+          TimeUnit.NANOSECONDS.toMillis(inFlightTimeoutNanos));
+      inFlightTimeout = null;
+      release();
+      expiredCount++;
+    }
+    // called on the timer thread, which must not write to a socket
+    executor.execute(() -> dispatch(false));
+  }
+
+  private void release() {
+    busy = false;
+    inFlightId = null;
+    if (inFlightTimeout != null) {
+      inFlightTimeout.cancel();
+      inFlightTimeout = null;
+    }
+  }
+
+  private Call poll() {
+    Call replay = replays.poll();
+    if (replay != null) {
+      queueDepth--;
+      return replay;
+    }
+    for (ArrayDeque<Call> lane : lanes) {
+      Call call = lane.poll();
+      if (call != null) {
+        queueDepth--;
+        return call;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("inFlightId", inFlightId)
+        .add("queueDepth", queueDepth)
+        .add("sentCount", sentCount)
+        .toString();
+  }
+
+  private static class Call {
+    private final String uniqueId;
+    private final String action;
+    private final Request request;
+    private final SharedPayload payload;
+    private final Object packed;
+    private final long submittedAt;
+
+    private Call(
+        String uniqueId,
+        String action,
+        Request request,
+        SharedPayload payload,
+        Object packed,
+        long submittedAt) {
+      this.uniqueId = uniqueId;
+      this.action = action;
+      this.request = request;
+      this.payload = payload;
+      this.packed = packed;
+      this.submittedAt = submittedAt;
+    }
+  }
+}
@@ -32,4 +32,13 @@ import java.util.concurrent.CompletableFuture;
 public interface PromiseFulfiller {
   void fulfill(
       CompletableFuture<Confirmation> promise, SessionEvents eventHandler, Request request);
+
+  /**
+   * Get the number of requests waiting to be fulfilled.
+   *
+   * @return the queue depth, 0 if requests are fulfilled in place.
+   */
+  default int getQueueDepth() {
+    return 0;
+  }
 }
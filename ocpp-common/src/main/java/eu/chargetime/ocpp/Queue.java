@@ -2,13 +2,8 @@ package eu.chargetime.ocpp;
 
 import eu.chargetime.ocpp.model.Request;
 import eu.chargetime.ocpp.utilities.MoreObjects;
-import eu.chargetime.ocpp.utilities.Stopwatch;
-import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.ThreadLocalRandom;
 
 /*
 ChargeTime.eu - Java-OCA-OCPP
@@ -39,31 +34,54 @@ SOFTWARE.
 
 /** Class to store and restore requests based on a unique id. */
 public class Queue {
-  private static final Logger logger = LoggerFactory.getLogger(Queue.class);
+  /** @deprecated the store is sized to the number of requests in flight, this is unused. */
+  @Deprecated public static final int REQUEST_QUEUE_INITIAL_CAPACITY = 1000;
 
-  public static final int REQUEST_QUEUE_INITIAL_CAPACITY = 1000;
+  private static final int MIN_CAPACITY = 16;
+  private static final int MAX_ID_DIGITS = 18;
 
-  private Map<String, Request> requestQueue;
+  /** Slot keys, 0 marks a free slot. Ids start at 1 so a live key is never 0. */
+  private long[] keys;
+
+  private Request[] values;
+  private int mask;
+  private int size;
+  private long lastId;
+
+  /**
+   * Random per-queue prefix. The counter restarts with every queue, so without it a call replayed
+   * from a durable transaction queue after a restart could share its id with a live call.
+   */
+  private final String prefix;
 
   public Queue() {
-    requestQueue = new ConcurrentHashMap<>(REQUEST_QUEUE_INITIAL_CAPACITY);
+    prefix = Long.toString(ThreadLocalRandom.current().nextLong() >>> 16, 36) + '-';
+    allocate(MIN_CAPACITY);
   }
 
   /**
    * Store a {@link Request} and get a unique identifier to fetch it later on.
    *
+   * <p>Identifiers are a random prefix, picked when the queue is created, followed by an increasing
+   * decimal number. They are unique for the lifetime of this queue and, with overwhelming
+   * probability, across queues and process restarts.
+   *
    * @param request the {@link Request}.
    * @return a unique identifier used to fetch the request.
    */
-  public String store(Request request) {
-    Stopwatch stopwatch = Stopwatch.createStarted();
-
-    String ticket = UUID.randomUUID().toString();
-    requestQueue.put(ticket, request);
-
-    logger.debug("Queue size: {}, store time: {}", requestQueue.size(), stopwatch.stop());
-
-    return ticket;
+  public synchronized String store(Request request) {
+    long id = ++lastId;
+    if ((size + 1) * 2 > keys.length) {
+      resize(keys.length * 2);
+    }
+    int slot = (int) id & mask;
+    while (keys[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = id;
+    values[slot] = request;
+    size++;
+    return prefix + id;
   }
 
   /**
@@ -74,23 +92,109 @@ public class Queue {
    * @return the optional with stored {@link Request}
    */
   public Optional<Request> restoreRequest(String ticket) {
-    Stopwatch stopwatch = Stopwatch.createStarted();
+    long id = parseId(ticket);
+    if (id <= 0) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(remove(id));
+  }
 
-    try {
-      Request request = requestQueue.get(ticket);
-      requestQueue.remove(ticket);
+  /**
+   * Number of stored requests that have not been restored yet.
+   *
+   * @return the number of requests in flight.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  private synchronized Request remove(long id) {
+    int slot = (int) id & mask;
+    while (keys[slot] != id) {
+      if (keys[slot] == 0) {
+        return null;
+      }
+      slot = (slot + 1) & mask;
+    }
+    Request request = values[slot];
+    deleteSlot(slot);
+    size--;
+    if (keys.length > MIN_CAPACITY && size * 8 < keys.length) {
+      resize(keys.length / 2);
+    }
+    return request;
+  }
+
+  /** Backward-shift deletion, so probe chains never need tombstones. */
+  private void deleteSlot(int hole) {
+    int next = hole;
+    while (true) {
+      next = (next + 1) & mask;
+      long key = keys[next];
+      if (key == 0) {
+        break;
+      }
+      int home = (int) key & mask;
+      boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+      if (movable) {
+        keys[hole] = key;
+        values[hole] = values[next];
+        hole = next;
+      }
+    }
+    keys[hole] = 0;
+    values[hole] = null;
+  }
 
-      logger.debug("Queue size: {}, store time: {}", requestQueue.size(), stopwatch.stop());
+  private void resize(int capacity) {
+    long[] oldKeys = keys;
+    Request[] oldValues = values;
+    allocate(capacity);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != 0) {
+        int slot = (int) oldKeys[i] & mask;
+        while (keys[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
 
-      return Optional.ofNullable(request);
-    } catch (Exception ex) {
-      logger.warn("restoreRequest({}) failed", ticket, ex);
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new Request[capacity];
+    mask = capacity - 1;
+  }
+
+  /** Parses an id issued by {@link #store(Request)}, or returns -1 if it can't be one. */
+  private long parseId(String ticket) {
+    if (ticket == null || !ticket.startsWith(prefix)) {
+      return -1;
+    }
+    int start = prefix.length();
+    int length = ticket.length();
+    if (length == start || length - start > MAX_ID_DIGITS || ticket.charAt(start) == '0') {
+      return -1;
+    }
+    long id = 0;
+    for (int i = start; i < length; i++) {
+      char c = ticket.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      id = id * 10 + (c - '0');
     }
-    return Optional.empty();
+    return id;
   }
 
   @Override
-  public String toString() {
-    return MoreObjects.toStringHelper(this).add("requestQueue", requestQueue).toString();
+  public synchronized String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("prefix", prefix)
+        .add("size", size)
+        .add("lastId", lastId)
+        .toString();
   }
 }
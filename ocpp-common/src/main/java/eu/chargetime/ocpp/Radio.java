@@ -25,6 +25,9 @@ package eu.chargetime.ocpp;
    SOFTWARE.
 */
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 /** Interface containing common methods used for both server and client communication. */
 public interface Radio {
 
@@ -39,6 +42,25 @@ public interface Radio {
    */
   void send(Object message) throws NotConnectedException;
 
+  /**
+   * Send a message to a node, learning when it is written. Radios that don't write in the
+   * background send it right away.
+   *
+   * @param message the message to send.
+   * @return completes when the message is written, or exceptionally with a {@link
+   *     NotConnectedException} if it couldn't be sent due to the lack of connection.
+   */
+  default CompletionStage<Void> sendAsync(Object message) {
+    CompletableFuture<Void> written = new CompletableFuture<>();
+    try {
+      send(message);
+      written.complete(null);
+    } catch (NotConnectedException ex) {
+      written.completeExceptionally(ex);
+    }
+    return written;
+  }
+
   /**
    * If connection is closed.
    *
@@ -42,6 +42,10 @@ public class RequestDispatcher implements IRequestDispactcher {
     fulfiller.fulfill(promise, eventHandler, request);
   }
 
+  public int getQueueDepth() {
+    return fulfiller.getQueueDepth();
+  }
+
   public void setEventHandler(SessionEvents eventHandler) {
     this.eventHandler = eventHandler;
   }
@@ -0,0 +1,161 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory of executors to fulfill requests on, see {@link AsyncPromiseFulfillerDecorator}.
+ *
+ * <p>The library is built as a multi-release jar: on Java 21 and later {@link
+ * #newBlockingHandlerExecutor(int)} starts a virtual thread per session batch, so request handlers
+ * that block on a database or a remote service don't tie up a platform thread each. On older
+ * runtimes it falls back to a pool of platform threads.
+ */
+public final class RequestExecutors {
+
+  private static final String THREAD_NAME_PREFIX = "ocpp-request-handler-";
+
+  private RequestExecutors() {}
+
+  /**
+   * Whether {@link #newBlockingHandlerExecutor(int)} runs handlers on virtual threads.
+   *
+   * @return true on Java 21 and later.
+   */
+  public static boolean isVirtualThreadSupported() {
+    return VirtualThreads.isSupported();
+  }
+
+  /**
+   * Create an executor for request handlers that block, running at most {@code maxConcurrency} of
+   * them at a time. Further work waits for a permit without holding a platform thread on Java 21
+   * and later, and queues for a pool thread on older runtimes.
+   *
+   * @param maxConcurrency the number of handlers allowed to run at the same time, ie. the size of
+   *     the database connection pool they use.
+   * @return a new executor, shut it down when the server it's used by is closed.
+   */
+  public static ExecutorService newBlockingHandlerExecutor(int maxConcurrency) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+    }
+    ExecutorService virtualThreads = VirtualThreads.newThreadPerTaskExecutor(THREAD_NAME_PREFIX);
+    if (virtualThreads != null) {
+      return new BoundedExecutorService(virtualThreads, maxConcurrency);
+    }
+    return newPlatformThreadPool(maxConcurrency);
+  }
+
+  /**
+   * Create a pool of platform threads for request handlers. Idle threads are released after a
+   * minute.
+   *
+   * @param threads the number of threads in the pool.
+   * @return a new executor, shut it down when the server it's used by is closed.
+   */
+  public static ExecutorService newPlatformThreadPool(int threads) {
+    ThreadPoolExecutor pool =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactory() {
+              private final AtomicInteger count = new AtomicInteger();
+
+              @Override
+              public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, THREAD_NAME_PREFIX + count.incrementAndGet());
+              }
+            });
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  /**
+   * Starts every task right away, but lets only a fixed number of them past a semaphore. Meant for
+   * virtual threads, which are cheap to park while waiting for a permit.
+   */
+  private static class BoundedExecutorService extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+
+    BoundedExecutorService(ExecutorService delegate, int maxConcurrency) {
+      this.delegate = delegate;
+      this.permits = new Semaphore(maxConcurrency);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      delegate.execute(
+          () -> {
+            permits.acquireUninterruptibly();
+            try {
+              command.run();
+            } finally {
+              permits.release();
+            }
+          });
+    }
+
+    @Override
+    public void shutdown() {
+      delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      return delegate.awaitTermination(timeout, unit);
+    }
+  }
+}
@@ -0,0 +1,228 @@
+package eu.chargetime.ocpp;
+/*
+ChargeTime.eu - Java-OCA-OCPP
+Copyright (C) 2015-2016 Thomas Volden <tv@chargetime.eu>
+
+MIT License
+
+Copyright (C) 2016-2018 Thomas Volden
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import eu.chargetime.ocpp.model.Confirmation;
+import eu.chargetime.ocpp.utilities.HashedWheelTimer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timeouts for outgoing requests, by action. When a request isn't answered in time, its promise
+ * completes exceptionally with a {@link TimeoutException} and the request is forgotten, so a peer
+ * that never answers doesn't hold on to memory or callers.
+ *
+ * <p>All instances share one {@link HashedWheelTimer} with a precision of 100 milliseconds unless
+ * given another timer. Requests have no timeout unless configured.
+ *
+ * <p>Timer tasks must be short, so a task that is due only hands its work to a small shared pool:
+ * completing a promise runs the callbacks of the caller, and freeing an outbound lane writes the
+ * next call to a socket. A slow socket then doesn't hold up the timeouts of other sessions.
+ */
+public class RequestTimeouts {
+
+  private static final HashedWheelTimer sharedTimer =
+      new HashedWheelTimer(
+          100,
+          TimeUnit.MILLISECONDS,
+          512,
+          runnable -> {
+            Thread thread = new Thread(runnable, "ocpp-timer");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private static final Executor sharedExecutor = newSharedExecutor();
+
+  private final HashedWheelTimer timer;
+  private final Executor executor;
+  private final Map<String, Long> timeoutsByAction = new ConcurrentHashMap<>();
+  private volatile long defaultTimeoutNanos;
+  private final LongAdder pending = new LongAdder();
+  private final LongAdder expired = new LongAdder();
+
+  public RequestTimeouts() {
+    this(sharedTimer);
+  }
+
+  /** The timer shared by the timeouts and retries of all sessions. */
+  static HashedWheelTimer sharedTimer() {
+    return sharedTimer;
+  }
+
+  /**
+   * The pool the tasks of the shared timer hand their work to. It has a thread per processor, at
+   * least two, started when needed and released after a minute idle.
+   */
+  static Executor sharedExecutor() {
+    return sharedExecutor;
+  }
+
+  /**
+   * Run the timeouts on a given timer.
+   *
+   * @param timer the timer to run the timeouts on.
+   */
+  public RequestTimeouts(HashedWheelTimer timer) {
+    this(timer, sharedExecutor);
+  }
+
+  /**
+   * Run the timeouts on a given timer, failing requests on a given executor.
+   *
+   * @param timer the timer to run the timeouts on.
+   * @param executor completes the promises of timed out requests and forgets them.
+   */
+  public RequestTimeouts(HashedWheelTimer timer, Executor executor) {
+    this.timer = timer;
+    this.executor = executor;
+  }
+
+  /**
+   * Set the timeout of requests of actions without a timeout of their own.
+   *
+   * @param timeout the timeout, 0 for none.
+   * @param unit the unit of the timeout.
+   * @return this instance.
+   */
+  public RequestTimeouts setDefaultTimeout(long timeout, TimeUnit unit) {
+    defaultTimeoutNanos = unit.toNanos(timeout);
+    return this;
+  }
+
+  /**
+   * Set the timeout of requests of an action.
+   *
+   * @param action the action name, ie. MeterValues.
+   * @param timeout the timeout, 0 for none.
+   * @param unit the unit of the timeout.
+   * @return this instance.
+   */
+  public RequestTimeouts setTimeout(String action, long timeout, TimeUnit unit) {
+    timeoutsByAction.put(action, unit.toNanos(timeout));
+    return this;
+  }
+
+  /**
+   * Get the timeout of requests of an action.
+   *
+   * @param action the action name.
+   * @param unit the unit to get the timeout in.
+   * @return the timeout, 0 for none.
+   */
+  public long getTimeout(String action, TimeUnit unit) {
+    Long timeout = action != null ? timeoutsByAction.get(action) : null;
+    return unit.convert(timeout != null ? timeout : defaultTimeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Get the number of requests being timed that are not answered yet.
+   *
+   * @return the number of pending requests.
+   */
+  public long getPendingCount() {
+    return pending.sum();
+  }
+
+  /**
+   * Get the number of requests that were not answered in time.
+   *
+   * @return the number of expired requests.
+   */
+  public long getExpiredCount() {
+    return expired.sum();
+  }
+
+  /**
+   * Start timing a request.
+   *
+   * @param action the action of the request.
+   * @param uniqueId the id of the request.
+   * @param promise the promise of the request, completed exceptionally on timeout.
+   * @param evict forgets the request on timeout.
+   */
+  public void watch(
+      String action, String uniqueId, CompletableFuture<Confirmation> promise, Runnable evict) {
+    long timeout = getTimeout(action, TimeUnit.NANOSECONDS);
+    if (timeout <= 0) {
+      return;
+    }
+    pending.increment();
+    HashedWheelTimer.Timeout handle =
+        timer.newTimeout(
+            () ->
+                executor.execute(
+                    () -> {
+                      if (promise.completeExceptionally(
+                          new TimeoutException(
+                              "No response to "
+                                  + action
+                                  + " request "
+                                  + uniqueId
+                                  + " within "
+                                  + TimeUnit.NANOSECONDS.toMillis(timeout)
+                                  + " ms"))) {
+                        expired.increment();
+                      }
+                      evict.run();
+                    }),
+            timeout,
+            TimeUnit.NANOSECONDS);
+    promise.whenComplete(
+        (confirmation, throwable) -> {
+          pending.decrement();
+          handle.cancel();
+        });
+  }
+
+  private static Executor newSharedExecutor() {
+    int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    AtomicInteger count = new AtomicInteger();
+    ThreadPoolExecutor pool =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread = new Thread(runnable, "ocpp-timer-worker-" + count.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+}
@@ -29,10 +29,15 @@ import eu.chargetime.ocpp.feature.Feature;
 import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.Request;
 import eu.chargetime.ocpp.model.SessionInformation;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,9 +52,16 @@ public class Server {
 
   public static final int INITIAL_SESSIONS_NUMBER = 1000;
 
+  private static final int HTTP_CONFLICT = 409;
+
   private final Map<UUID, ISession> sessions;
+  private final ConcurrentHashMap<String, ISession> sessionsByIdentity;
   private final Listener listener;
   private final IPromiseRepository promiseRepository;
+  private volatile RequestTimeouts requestTimeouts = new RequestTimeouts();
+  private volatile DuplicateConnectionPolicy duplicateConnectionPolicy =
+      DuplicateConnectionPolicy.ALLOW;
+  private volatile SessionAuthenticator sessionAuthenticator;
 
   /**
    * Constructor. Handles the required injections.
@@ -63,6 +75,49 @@ public class Server {
     this.listener = listener;
     this.promiseRepository = promiseRepository;
     this.sessions = new ConcurrentHashMap<>(INITIAL_SESSIONS_NUMBER);
+    this.sessionsByIdentity = new ConcurrentHashMap<>(INITIAL_SESSIONS_NUMBER);
+  }
+
+  /**
+   * Set what happens when a charge box connects while a session with the same identity is open.
+   * By default a second session is opened and both are kept.
+   *
+   * @param duplicateConnectionPolicy the policy.
+   */
+  public void setDuplicateConnectionPolicy(DuplicateConnectionPolicy duplicateConnectionPolicy) {
+    this.duplicateConnectionPolicy = duplicateConnectionPolicy;
+  }
+
+  public DuplicateConnectionPolicy getDuplicateConnectionPolicy() {
+    return duplicateConnectionPolicy;
+  }
+
+  /**
+   * Authenticate handshakes with an asynchronous authenticator instead of {@link
+   * ServerEvents#authenticateSession(SessionInformation, String, String)}. Listeners that can
+   * answer a handshake later don't block while the authenticator works.
+   *
+   * @param sessionAuthenticator the authenticator, null to use the server events again.
+   */
+  public void setSessionAuthenticator(SessionAuthenticator sessionAuthenticator) {
+    this.sessionAuthenticator = sessionAuthenticator;
+  }
+
+  public SessionAuthenticator getSessionAuthenticator() {
+    return sessionAuthenticator;
+  }
+
+  /**
+   * Set the timeouts of requests sent to clients. Requests have no timeout by default.
+   *
+   * @param requestTimeouts the timeouts by action.
+   */
+  public void setRequestTimeouts(RequestTimeouts requestTimeouts) {
+    this.requestTimeouts = requestTimeouts;
+  }
+
+  public RequestTimeouts getRequestTimeouts() {
+    return requestTimeouts;
   }
 
   /**
@@ -83,11 +138,43 @@ public class Server {
           public void authenticateSession(
               SessionInformation information, String username, String password)
               throws AuthenticationException {
-            serverEvents.authenticateSession(information, username, password);
+            rejectDuplicate(information);
+            SessionAuthenticator authenticator = sessionAuthenticator;
+            if (authenticator == null) {
+              serverEvents.authenticateSession(information, username, password);
+              return;
+            }
+            try {
+              authenticator.authenticate(information, username, password).toCompletableFuture().join();
+            } catch (CompletionException e) {
+              if (e.getCause() instanceof AuthenticationException) {
+                throw (AuthenticationException) e.getCause();
+              }
+              throw e;
+            }
+          }
+
+          @Override
+          public CompletionStage<Void> authenticateSessionAsync(
+              SessionInformation information, String username, String password) {
+            SessionAuthenticator authenticator = sessionAuthenticator;
+            if (authenticator == null) {
+              return ListenerEvents.super.authenticateSessionAsync(information, username, password);
+            }
+            try {
+              rejectDuplicate(information);
+              return authenticator.authenticate(information, username, password);
+            } catch (AuthenticationException | RuntimeException e) {
+              CompletableFuture<Void> refused = new CompletableFuture<>();
+              refused.completeExceptionally(e);
+              return refused;
+            }
           }
 
           @Override
           public void newSession(ISession session, SessionInformation information) {
+            String identity = identityOf(information.getIdentifier());
+            boolean refused = identity != null && !indexIdentity(identity, session);
             session.accept(
                 new SessionEvents() {
                   @Override
@@ -106,22 +193,36 @@ public class Server {
                   @Override
                   public Confirmation handleRequest(Request request)
                       throws UnsupportedFeatureException {
-                    Optional<Feature> featureOptional = session.getFeatureRepository().findFeature(request);
-                    if (featureOptional.isPresent()) {
-                      Optional<UUID> sessionIdOptional = getSessionID(session);
-                      if (sessionIdOptional.isPresent()) {
-                        return featureOptional
-                            .get()
-                            .handleRequest(sessionIdOptional.get(), request);
-                      } else {
-                        logger.error(
-                            "Unable to handle request ({}), the active session was not found for {}.",
-                            request, session.getSessionId());
-                        throw new IllegalStateException("Active session not found");
-                      }
-                    } else {
+                    Feature feature = findFeature(request);
+                    return feature.handleRequest(activeSessionId(request), request);
+                  }
+
+                  @Override
+                  public CompletionStage<Confirmation> handleRequestAsync(Request request)
+                      throws UnsupportedFeatureException {
+                    Feature feature = findFeature(request);
+                    return feature.handleRequestAsync(activeSessionId(request), request);
+                  }
+
+                  private Feature findFeature(Request request)
+                      throws UnsupportedFeatureException {
+                    Optional<Feature> featureOptional =
+                        session.getFeatureRepository().findFeature(request);
+                    if (!featureOptional.isPresent()) {
                       throw new UnsupportedFeatureException();
                     }
+                    return featureOptional.get();
+                  }
+
+                  private UUID activeSessionId(Request request) {
+                    Optional<UUID> sessionIdOptional = getSessionID(session);
+                    if (!sessionIdOptional.isPresent()) {
+                      logger.error(
+                          "Unable to handle request ({}), the active session was not found for {}.",
+                          request, session.getSessionId());
+                      throw new IllegalStateException("Active session not found");
+                    }
+                    return sessionIdOptional.get();
                   }
 
                   @Override
@@ -147,6 +248,13 @@ public class Server {
 
                   @Override
                   public void handleConnectionClosed() {
+                    if (refused) {
+                      // Never indexed nor reported, there is nothing to forget.
+                      return;
+                    }
+                    if (identity != null) {
+                      sessionsByIdentity.remove(identity, session);
+                    }
                     Optional<UUID> sessionIdOptional = getSessionID(session);
                     if (sessionIdOptional.isPresent()) {
                       serverEvents.lostSession(sessionIdOptional.get());
@@ -160,6 +268,11 @@ public class Server {
                   public void handleConnectionOpened() {}
                 });
 
+            if (refused) {
+              logger.info("Refused a second session for {}", identity);
+              session.close();
+              return;
+            }
             sessions.put(session.getSessionId(), session);
 
             Optional<UUID> sessionIdOptional = getSessionID(session);
@@ -173,6 +286,53 @@ public class Server {
         });
   }
 
+  /** Refuse a handshake up front if the duplicate connection policy would refuse its session. */
+  private void rejectDuplicate(SessionInformation information) throws AuthenticationException {
+    String identity = identityOf(information.getIdentifier());
+    if (duplicateConnectionPolicy == DuplicateConnectionPolicy.REJECT
+        && identity != null
+        && sessionsByIdentity.containsKey(identity)) {
+      throw new AuthenticationException(HTTP_CONFLICT, "A session is already open for " + identity);
+    }
+  }
+
+  /**
+   * Index a new session by the identity of its charge box, applying the duplicate connection
+   * policy.
+   *
+   * @return false if the session is refused.
+   */
+  private boolean indexIdentity(String identity, ISession session) {
+    if (duplicateConnectionPolicy == DuplicateConnectionPolicy.REJECT) {
+      return sessionsByIdentity.putIfAbsent(identity, session) == null;
+    }
+    ISession replaced = sessionsByIdentity.put(identity, session);
+    if (replaced != null && duplicateConnectionPolicy == DuplicateConnectionPolicy.REPLACE) {
+      logger.info("Closing the session replaced by a new connection of {}", identity);
+      replaced.close();
+    }
+    return true;
+  }
+
+  /**
+   * Get the charge box identity a client connected with: the last segment of the path of the
+   * connection URL, or the whole identifier if it isn't a path.
+   *
+   * @param identifier the identifier of the {@link SessionInformation}.
+   * @return the identity, null if there is none.
+   */
+  static String identityOf(String identifier) {
+    if (identifier == null) {
+      return null;
+    }
+    int end = identifier.indexOf('?');
+    if (end < 0) {
+      end = identifier.length();
+    }
+    int start = identifier.lastIndexOf('/', end - 1) + 1;
+    return start < end ? identifier.substring(start, end) : null;
+  }
+
   private Optional<UUID> getSessionID(ISession session) {
     if (!sessions.containsKey(session.getSessionId())) {
       return Optional.empty();
@@ -216,12 +376,110 @@ public class Server {
       throw new OccurenceConstraintException();
     }
 
+    return dispatch(session, featureOptional.get().getAction(), request, null);
+  }
+
+  /**
+   * Send the same message to many clients. The request is validated and packed once, only the
+   * envelope with the message id is made per client.
+   *
+   * <p>At most maxConcurrency clients have the request unanswered at once, the next client is sent
+   * the request when one of them answers, fails or times out. A client that is not connected or
+   * doesn't support the feature fails without being sent anything.
+   *
+   * @param sessionIndexes Session indexes of the clients.
+   * @param request Request for the clients, it must not change until the broadcast is done.
+   * @param maxConcurrency the number of clients that may have the request unanswered at once.
+   * @return the result of every client.
+   * @throws OccurenceConstraintException Thrown if the request isn't valid.
+   */
+  public BroadcastResult broadcast(
+      Collection<UUID> sessionIndexes, Request request, int maxConcurrency)
+      throws OccurenceConstraintException {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+    }
+    if (!request.validate()) {
+      throw new OccurenceConstraintException();
+    }
+
+    BroadcastResult result = new BroadcastResult(sessionIndexes);
+    new Broadcast(request, result).start(maxConcurrency);
+    return result;
+  }
+
+  /**
+   * Send the same message to every connected client, see {@link #broadcast(Collection, Request,
+   * int)}.
+   *
+   * @param request Request for the clients, it must not change until the broadcast is done.
+   * @param maxConcurrency the number of clients that may have the request unanswered at once.
+   * @return the result of every client connected when called.
+   * @throws OccurenceConstraintException Thrown if the request isn't valid.
+   */
+  public BroadcastResult broadcast(Request request, int maxConcurrency)
+      throws OccurenceConstraintException {
+    return broadcast(new ArrayList<>(sessions.keySet()), request, maxConcurrency);
+  }
+
+  private CompletableFuture<Confirmation> dispatch(
+      ISession session, String action, Request request, SharedPayload payload) {
     String id = session.storeRequest(request);
     CompletableFuture<Confirmation> promise = promiseRepository.createPromise(id);
-    session.sendRequest(featureOptional.get().getAction(), request, id);
+    Runnable evict =
+        () -> {
+          promiseRepository.removePromise(id);
+          session.removeRequest(id);
+        };
+    requestTimeouts.watch(action, id, promise, evict);
+    // a cancelled request is not waited for, so it must not hold back the requests after it
+    promise.whenComplete(
+        (confirmation, throwable) -> {
+          if (promise.isCancelled()) {
+            evict.run();
+          }
+        });
+
+    if (payload != null) {
+      session.sendRequest(action, request, id, payload);
+    } else {
+      session.sendRequest(action, request, id);
+    }
     return promise;
   }
 
+  /**
+   * Send a message to a client by the identity of its charge box.
+   *
+   * @param identity the charge box identity, the last segment of the URL it connected to.
+   * @param request Request for the client.
+   * @return Callback handler for when the client responds.
+   * @throws UnsupportedFeatureException Thrown if the feature isn't among the list of supported
+   *     featured.
+   * @throws OccurenceConstraintException Thrown if the request isn't valid.
+   * @throws NotConnectedException Thrown if no session is open for the identity.
+   */
+  public CompletableFuture<Confirmation> send(String identity, Request request)
+      throws UnsupportedFeatureException, OccurenceConstraintException, NotConnectedException {
+    ISession session = identity != null ? sessionsByIdentity.get(identity) : null;
+    if (session == null) {
+      logger.warn("Session not found by identity: {}", identity);
+      throw new NotConnectedException();
+    }
+    return send(session.getSessionId(), request);
+  }
+
+  /**
+   * Get the session index of the open session of a charge box.
+   *
+   * @param identity the charge box identity, the last segment of the URL it connected to.
+   * @return the session index, null if no session is open for the identity.
+   */
+  public UUID getSessionId(String identity) {
+    ISession session = identity != null ? sessionsByIdentity.get(identity) : null;
+    return session != null ? session.getSessionId() : null;
+  }
+
   /**
    * Indicate completion of a pending request.
    *
@@ -249,6 +507,29 @@ public class Server {
     return sessions.containsKey(sessionIndex);
   }
 
+  /**
+   * Get the number of requests from a client waiting to be handled.
+   *
+   * @param sessionIndex Session index of the client.
+   * @return the queue depth of the session, 0 if the session is not found.
+   */
+  public int getQueueDepth(UUID sessionIndex) {
+    ISession session = sessions.get(sessionIndex);
+    return session != null ? session.getQueueDepth() : 0;
+  }
+
+  /**
+   * Get the scheduler of requests to a client, to set priorities or read its queue depth and wait
+   * times.
+   *
+   * @param sessionIndex Session index of the client.
+   * @return the {@link OutboundScheduler} of the session, empty if the session is not found.
+   */
+  public Optional<OutboundScheduler> getOutboundScheduler(UUID sessionIndex) {
+    ISession session = sessions.get(sessionIndex);
+    return session != null ? session.getOutboundScheduler() : Optional.empty();
+  }
+
   /**
    * Close connection to a client
    *
@@ -260,4 +541,80 @@ public class Server {
       session.close();
     }
   }
+
+  /** Sends a broadcast to its clients, keeping a window of them with the request unanswered. */
+  private class Broadcast {
+    private final Request request;
+    private final SharedPayload payload;
+    private final Iterator<Map.Entry<UUID, CompletableFuture<Confirmation>>> pending;
+    private final Map<IFeatureRepository, Optional<Feature>> features = new ConcurrentHashMap<>();
+
+    private Broadcast(Request request, BroadcastResult result) {
+      this.request = request;
+      this.payload = new SharedPayload(request);
+      this.pending = result.getResults().entrySet().iterator();
+    }
+
+    private void start(int window) {
+      for (int i = 0; i < window; i++) {
+        if (!sendNext()) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * Sends to the next client that doesn't fail right away, and sends on once it has a result.
+     *
+     * @return false if no client was left.
+     */
+    private boolean sendNext() {
+      Map.Entry<UUID, CompletableFuture<Confirmation>> next;
+      while ((next = poll()) != null) {
+        CompletableFuture<Confirmation> result = next.getValue();
+        sendTo(next.getKey(), result);
+        if (!result.isDone()) {
+          result.whenComplete((confirmation, failure) -> sendNext());
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private synchronized Map.Entry<UUID, CompletableFuture<Confirmation>> poll() {
+      return pending.hasNext() ? pending.next() : null;
+    }
+
+    private void sendTo(UUID sessionIndex, CompletableFuture<Confirmation> result) {
+      ISession session = sessions.get(sessionIndex);
+      if (session == null) {
+        logger.debug("Broadcast skips session not found by index: {}", sessionIndex);
+        result.completeExceptionally(new NotConnectedException());
+        return;
+      }
+
+      Optional<Feature> feature =
+          features.computeIfAbsent(
+              session.getFeatureRepository(), repository -> repository.findFeature(request));
+      if (!feature.isPresent()) {
+        result.completeExceptionally(new UnsupportedFeatureException());
+        return;
+      }
+
+      try {
+        dispatch(session, feature.get().getAction(), request, payload)
+            .whenComplete(
+                (confirmation, failure) -> {
+                  if (failure != null) {
+                    result.completeExceptionally(failure);
+                  } else {
+                    result.complete(confirmation);
+                  }
+                });
+      } catch (RuntimeException ex) {
+        logger.warn("Broadcast to session {} failed", sessionIndex, ex);
+        result.completeExceptionally(ex);
+      }
+    }
+  }
 }
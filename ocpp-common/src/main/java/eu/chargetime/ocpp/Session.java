@@ -29,15 +29,15 @@ SOFTWARE.
 import static eu.chargetime.ocpp.ProtocolVersion.OCPP1_6;
 
 import eu.chargetime.ocpp.feature.Feature;
+import eu.chargetime.ocpp.feature.PassThroughFeature;
 import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.Request;
+import eu.chargetime.ocpp.model.Validatable;
 import eu.chargetime.ocpp.utilities.MoreObjects;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.Map;
-import java.util.HashMap;
-import java.util.AbstractMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,8 +54,10 @@ public class Session implements ISession {
   private final Queue queue;
   private final RequestDispatcher dispatcher;
   private final IFeatureRepository featureRepository;
+  private final OutboundScheduler outboundScheduler;
   private SessionEvents events;
-  private final Map<String, AbstractMap.SimpleImmutableEntry<String, CompletableFuture<Confirmation>>> pendingPromises = new HashMap<>();
+  /** Incoming calls waiting for their confirmation, by unique id. */
+  private final ConcurrentHashMap<String, PendingCall> pendingCalls = new ConcurrentHashMap<>();
 
   /**
    * Handles required injections.
@@ -72,6 +74,36 @@ public class Session implements ISession {
     this.queue = queue;
     this.dispatcher = new RequestDispatcher(fulfiller);
     this.featureRepository = featureRepository;
+    this.outboundScheduler =
+        new OutboundScheduler(
+            new OutboundScheduler.Sender() {
+              // a call that was stored or rejected rather than sent is not waited for
+              @Override
+              public void send(String uniqueId, String action, Request request) {
+                if (!communicator.sendCall(uniqueId, action, request)) {
+                  outboundScheduler.complete(uniqueId);
+                }
+              }
+
+              @Override
+              public void send(
+                  String uniqueId, String action, Request request, SharedPayload payload) {
+                if (!communicator.sendCall(uniqueId, action, request, payload)) {
+                  outboundScheduler.complete(uniqueId);
+                }
+              }
+
+              @Override
+              public void resend(String uniqueId, Object call) {
+                if (!communicator.resendCall(uniqueId, call)) {
+                  outboundScheduler.complete(uniqueId);
+                }
+              }
+            });
+    TransactionReplayer replayer = communicator.getTransactionReplayer();
+    if (replayer != null) {
+      replayer.setOutboundScheduler(outboundScheduler);
+    }
   }
 
   /**
@@ -94,14 +126,48 @@ public class Session implements ISession {
   }
 
   /**
-   * Send a {@link Request}.
+   * Get the number of incoming requests waiting to be handled. Requests of a session are handled
+   * one at a time, in the order they were received.
+   *
+   * @return the queue depth of the session.
+   */
+  @Override
+  public int getQueueDepth() {
+    return dispatcher.getQueueDepth();
+  }
+
+  /**
+   * Get the scheduler of outgoing requests of this session.
+   *
+   * @return the {@link OutboundScheduler} of the session.
+   */
+  @Override
+  public Optional<OutboundScheduler> getOutboundScheduler() {
+    return Optional.of(outboundScheduler);
+  }
+
+  /**
+   * Send a {@link Request}. The request is held back while an earlier request is unanswered.
    *
    * @param action action name to identify the feature.
    * @param payload the {@link Request} payload to send
    * @param uuid unique identification to identify the request
    */
   public void sendRequest(String action, Request payload, String uuid) {
-    communicator.sendCall(uuid, action, payload);
+    outboundScheduler.submit(uuid, action, payload);
+  }
+
+  /**
+   * Send a {@link Request} whose payload is packed once for many sessions.
+   *
+   * @param action action name to identify the feature.
+   * @param payload the {@link Request} payload to send
+   * @param uuid unique identification to identify the request
+   * @param shared the packed payload shared with other sessions.
+   */
+  @Override
+  public void sendRequest(String action, Request payload, String uuid, SharedPayload shared) {
+    outboundScheduler.submit(uuid, action, payload, shared);
   }
 
   /**
@@ -114,6 +180,17 @@ public class Session implements ISession {
     return queue.store(payload);
   }
 
+  /**
+   * Forget a stored {@link Request} that will not be answered.
+   *
+   * @param uniqueId the id returned by {@link #storeRequest(Request)}.
+   */
+  @Override
+  public void removeRequest(String uniqueId) {
+    queue.restoreRequest(uniqueId);
+    outboundScheduler.complete(uniqueId);
+  }
+
   /**
    * Send a {@link Confirmation} to a {@link Request}
    *
@@ -176,22 +253,20 @@ public class Session implements ISession {
 
     @Override
     public void onCallResult(String id, String action, Object payload) {
+      outboundScheduler.complete(id);
       try {
         Optional<Class<? extends Confirmation>> confirmationTypeOptional = getConfirmationType(id);
 
         if (confirmationTypeOptional.isPresent()) {
-          Confirmation confirmation =
-              communicator.unpackPayload(payload, confirmationTypeOptional.get());
-          if (confirmation.validate()) {
-            events.handleConfirmation(id, confirmation);
-          } else {
-            communicator.sendCallError(id, action, isLegacyRPC() ? "OccurenceConstraintViolation" :
-                    "OccurrenceConstraintViolation", OCCURRENCE_CONSTRAINT_VIOLATION);
-          }
+          Confirmation confirmation = unpack(payload, confirmationTypeOptional.get());
+          events.handleConfirmation(id, confirmation);
         } else {
           logger.warn(INTERNAL_ERROR);
           communicator.sendCallError(id, action, "InternalError", INTERNAL_ERROR);
         }
+      } catch (OccurenceConstraintException ex) {
+        communicator.sendCallError(id, action, isLegacyRPC() ? "OccurenceConstraintViolation" :
+                "OccurrenceConstraintViolation", OCCURRENCE_CONSTRAINT_VIOLATION);
       } catch (PropertyConstraintException ex) {
         logger.warn(ex.getMessage(), ex);
         communicator.sendCallError(id, action, "TypeConstraintViolation", ex.getMessage());
@@ -206,25 +281,41 @@ public class Session implements ISession {
     }
 
     @Override
-    public synchronized void onCall(String id, String action, Object payload) {
+    public void onRecoveredCallResult(String id, String action, Object payload) {
+      outboundScheduler.complete(id);
+      logger.debug("Result of call {} queued by an earlier run", id);
+    }
+
+    @Override
+    public void onCall(String id, String action, Object payload) {
       Optional<Feature> featureOptional = featureRepository.findFeature(action);
       if (!featureOptional.isPresent()) {
         communicator.sendCallError(
             id, action, "NotImplemented", "Requested Action is not known by receiver");
       } else {
         try {
-          Request request =
-              communicator.unpackPayload(payload, featureOptional.get().getRequestType());
-          request.setOcppMessageId(id);
-          if (request.validate()) {
-            CompletableFuture<Confirmation> promise = new CompletableFuture<>();
-            promise.whenComplete(new ConfirmationHandler(id, action, communicator));
-            addPendingPromise(id, action, promise);
-            dispatcher.handleRequest(promise, request);
+          Feature feature = featureOptional.get();
+          Request request;
+          if (feature instanceof PassThroughFeature) {
+            // binding and validation is left to the handler
+            request =
+                new LazyRequest<>(
+                    feature.getRequestType(),
+                    payload,
+                    communicator,
+                    isLegacyRPC(),
+                    featureRepository.isStrictDecoding());
           } else {
-            communicator.sendCallError(id, action, isLegacyRPC() ? "OccurenceConstraintViolation" :
-                    "OccurrenceConstraintViolation", OCCURRENCE_CONSTRAINT_VIOLATION);
+            request = unpack(payload, feature.getRequestType());
           }
+          request.setOcppMessageId(id);
+          CompletableFuture<Confirmation> promise = new CompletableFuture<>();
+          promise.whenComplete(new ConfirmationHandler(id, action, communicator));
+          addPendingCall(id, feature, promise);
+          dispatcher.handleRequest(promise, request);
+        } catch (OccurenceConstraintException ex) {
+          communicator.sendCallError(id, action, isLegacyRPC() ? "OccurenceConstraintViolation" :
+                  "OccurrenceConstraintViolation", OCCURRENCE_CONSTRAINT_VIOLATION);
         } catch (PropertyConstraintException ex) {
           logger.warn(ex.getMessage(), ex);
           communicator.sendCallError(id, action, "TypeConstraintViolation", ex.getMessage());
@@ -238,11 +329,13 @@ public class Session implements ISession {
 
     @Override
     public void onError(String id, String errorCode, String errorDescription, Object payload) {
+      outboundScheduler.complete(id);
       events.handleError(id, errorCode, errorDescription, payload);
     }
 
     @Override
     public void onDisconnected() {
+      outboundScheduler.reset();
       events.handleConnectionClosed();
     }
 
@@ -251,42 +344,56 @@ public class Session implements ISession {
       events.handleConnectionOpened();
     }
 
+    private <T extends Validatable> T unpack(Object payload, Class<T> type) throws Exception {
+      return featureRepository.isStrictDecoding()
+          ? communicator.unpackStrictPayload(payload, type)
+          : communicator.unpackValidPayload(payload, type);
+    }
+
     private boolean isLegacyRPC() {
       ProtocolVersion protocolVersion = featureRepository.getProtocolVersion();
       return protocolVersion == null || protocolVersion.equals(OCPP1_6);
     }
   }
 
-  private void addPendingPromise(String id, String action, CompletableFuture<Confirmation> promise) {
-    synchronized (pendingPromises) {
-      pendingPromises.put(id, new AbstractMap.SimpleImmutableEntry<>(action, promise));
-    }
+  private void addPendingCall(String id, Feature feature, CompletableFuture<Confirmation> promise) {
+    PendingCall call = new PendingCall(feature, promise);
+    pendingCalls.put(id, call);
+    // a promise failed by the handler is never completed through completePendingPromise
+    promise.whenComplete(
+        (confirmation, throwable) -> {
+          if (throwable != null) {
+            pendingCalls.remove(id, call);
+          }
+        });
   }
 
   @Override
   public boolean completePendingPromise(String id, Confirmation confirmation) throws UnsupportedFeatureException, OccurenceConstraintException {
-    AbstractMap.SimpleImmutableEntry<String, CompletableFuture<Confirmation>> promiseAction = null;
-    // synchronization prevents from confirming one promise more than once, as we remove found promise
-    synchronized (pendingPromises) {
-      promiseAction = pendingPromises.get(id);
-      if (promiseAction == null) return false;
-      // remove promise from store
-      pendingPromises.remove(id);
+    // removing the call claims it, so a promise is never confirmed more than once
+    PendingCall call = pendingCalls.remove(id);
+    if (call == null) {
+      return false;
     }
     // check confirmation type, it has to correspond to original request type
-    Optional<Feature> featureOptional = featureRepository.findFeature(promiseAction.getKey());
-    if (featureOptional.isPresent()) {
-      if (!featureOptional.get().getConfirmationType().isInstance(confirmation)) {
-        throw new OccurenceConstraintException();
-      }
-    } else {
-      logger.debug("Feature for confirmation with id: {} not found in session: {}", id, this);
-      throw new UnsupportedFeatureException("Error with getting confirmation type by request id = " + id);
+    if (!call.feature.getConfirmationType().isInstance(confirmation)) {
+      throw new OccurenceConstraintException();
     }
-    promiseAction.getValue().complete(confirmation);
+    call.promise.complete(confirmation);
     return true;
   }
 
+  /** An incoming call with the feature it was resolved to, so completing it needs no lookup. */
+  private static final class PendingCall {
+    final Feature feature;
+    final CompletableFuture<Confirmation> promise;
+
+    PendingCall(Feature feature, CompletableFuture<Confirmation> promise) {
+      this.feature = feature;
+      this.promise = promise;
+    }
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -306,6 +413,7 @@ public class Session implements ISession {
         .add("sessionId", sessionId)
         .add("communicator", communicator)
         .add("queue", queue)
+        .add("outboundScheduler", outboundScheduler)
         .add("dispatcher", dispatcher)
         .add("featureRepository", featureRepository)
         .add("events", events)
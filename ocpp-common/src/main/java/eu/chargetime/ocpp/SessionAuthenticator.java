@@ -0,0 +1,53 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import eu.chargetime.ocpp.model.SessionInformation;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Authenticates the handshake of a new connection without blocking the thread that reads it. The
+ * handshake is answered once the returned stage completes, so a slow credential store only delays
+ * the connection being authenticated.
+ *
+ * <p>Set an authenticator on the server to use it instead of {@link
+ * ServerEvents#authenticateSession(SessionInformation, String, String)}.
+ */
+@FunctionalInterface
+public interface SessionAuthenticator {
+
+  /**
+   * Authenticate the handshake of a new connection.
+   *
+   * @param information information about the connecting client.
+   * @param username the username of the basic authentication, null if none was given.
+   * @param password the password of the basic authentication, null if none was given.
+   * @return a stage that completes normally to accept the connection, or exceptionally with an
+   *     {@link AuthenticationException} to refuse it with the error code of the exception.
+   */
+  CompletionStage<Void> authenticate(
+      SessionInformation information, String username, String password);
+}
@@ -2,6 +2,8 @@ package eu.chargetime.ocpp;
 
 import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.Request;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /*
 ChargeTime.eu - Java-OCA-OCPP
@@ -49,6 +51,18 @@ public interface SessionEvents {
    */
   Confirmation handleRequest(Request request) throws UnsupportedFeatureException;
 
+  /**
+   * Handle a incoming {@link Request} without waiting for its {@link Confirmation}.
+   *
+   * @param request the {@link Request}.
+   * @return completes with the {@link Confirmation} to send as a response, or null if the request
+   *     is completed with {@link #asyncCompleteRequest(String, Confirmation)}.
+   */
+  default CompletionStage<Confirmation> handleRequestAsync(Request request)
+      throws UnsupportedFeatureException {
+    return CompletableFuture.completedFuture(handleRequest(request));
+  }
+
   /**
    * Completes a pending request {@link Request}.
    *
@@ -25,19 +25,31 @@ package eu.chargetime.ocpp;
    SOFTWARE.
 */
 
+import java.util.concurrent.ExecutorService;
+
 public class SessionFactory implements ISessionFactory {
 
   private final IFeatureRepository featureRepository;
+  private volatile ExecutorService requestExecutor;
 
   public SessionFactory(IFeatureRepository featureRepository) {
 
     this.featureRepository = featureRepository;
   }
 
+  /**
+   * Set the executor new sessions fulfill incoming requests on.
+   *
+   * @param requestExecutor the executor, null for the pool shared by all sessions.
+   */
+  public void setRequestExecutor(ExecutorService requestExecutor) {
+    this.requestExecutor = requestExecutor;
+  }
+
   @Override
   public ISession createSession(Communicator communicator) {
     AsyncPromiseFulfillerDecorator promiseFulfiler =
-        new AsyncPromiseFulfillerDecorator(new SimplePromiseFulfiller());
+        new AsyncPromiseFulfillerDecorator(new SimplePromiseFulfiller(), requestExecutor);
     return new Session(communicator, new Queue(), promiseFulfiler, this.featureRepository);
   }
 }
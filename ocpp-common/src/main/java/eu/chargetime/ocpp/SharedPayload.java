@@ -0,0 +1,78 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import eu.chargetime.ocpp.model.Request;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link Request} sent to many sessions. The payload is packed once per payload format and the
+ * packed payload is shared by every session that writes the same format, so only the envelope
+ * with the id of the call is made per session.
+ */
+public final class SharedPayload {
+
+  private final Request request;
+  private final Map<Object, Object> packed = new ConcurrentHashMap<>(4);
+
+  /**
+   * Share the payload of a request.
+   *
+   * @param request the validated {@link Request}, it must not change while it is being sent.
+   */
+  public SharedPayload(Request request) {
+    this.request = request;
+  }
+
+  /**
+   * Get the shared request.
+   *
+   * @return the {@link Request}.
+   */
+  public Request getRequest() {
+    return request;
+  }
+
+  /**
+   * Get the payload packed by a communicator, packing it the first time its format is asked for.
+   *
+   * @param communicator the communicator that writes the call.
+   * @return the packed payload.
+   */
+  Object packFor(Communicator communicator) {
+    Object format = communicator.getPayloadFormat();
+    if (format == null) {
+      return communicator.packPayload(request);
+    }
+    Object payload = packed.get(format);
+    if (payload == null) {
+      payload = packed.computeIfAbsent(format, ignored -> communicator.packPayload(request));
+    }
+    return payload;
+  }
+}
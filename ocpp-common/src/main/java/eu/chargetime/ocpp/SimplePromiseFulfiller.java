@@ -28,6 +28,7 @@ package eu.chargetime.ocpp;
 import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.Request;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,14 +39,39 @@ public class SimplePromiseFulfiller implements PromiseFulfiller {
   public void fulfill(
       CompletableFuture<Confirmation> promise, SessionEvents eventHandler, Request request) {
     try {
-      Confirmation conf = eventHandler.handleRequest(request);
-      // Confirmation may be null, in this case asynchronous execution is assumed
-      if (conf != null) {
-        eventHandler.asyncCompleteRequest(request.getOcppMessageId(), conf);
+      CompletionStage<Confirmation> handled = eventHandler.handleRequestAsync(request);
+      if (handled == null) {
+        // handlers that don't implement the default method, like proxies, answer synchronously
+        handled = CompletableFuture.completedFuture(eventHandler.handleRequest(request));
       }
+      handled.whenComplete(
+          (conf, failure) -> {
+            if (failure != null) {
+              fail(promise, failure);
+            } else if (conf != null) {
+              complete(promise, eventHandler, request, conf);
+            }
+            // Confirmation may be null, in this case asynchronous execution is assumed
+          });
     } catch (Exception ex) {
-      logger.warn("fulfillPromis() failed", ex);
-      promise.completeExceptionally(ex);
+      fail(promise, ex);
     }
   }
+
+  private static void complete(
+      CompletableFuture<Confirmation> promise,
+      SessionEvents eventHandler,
+      Request request,
+      Confirmation conf) {
+    try {
+      eventHandler.asyncCompleteRequest(request.getOcppMessageId(), conf);
+    } catch (Exception ex) {
+      fail(promise, ex);
+    }
+  }
+
+  private static void fail(CompletableFuture<Confirmation> promise, Throwable failure) {
+    logger.warn("fulfillPromis() failed", failure);
+    promise.completeExceptionally(failure);
+  }
 }
@@ -0,0 +1,77 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+/**
+ * Stores packed transaction-related calls while the connection is down, to send them in order
+ * once it is up again. A call stays at the head of the queue until it is removed, which happens
+ * when it is answered.
+ *
+ * <p>Calls are the packed messages of the {@link Communicator}, ie. a String for JSON framing or a
+ * byte array for CBOR framing.
+ */
+public interface TransactionQueue {
+
+  /**
+   * Append a packed call.
+   *
+   * @param call the packed call.
+   */
+  void add(Object call);
+
+  /**
+   * Get the oldest call without removing it.
+   *
+   * @return the oldest call, or null if the queue is empty.
+   */
+  default Object peek() {
+    return peek(0);
+  }
+
+  /**
+   * Get a call without removing it, counting from the oldest. Calls are replayed a few at a time,
+   * so the index is small.
+   *
+   * @param index the position of the call, 0 for the oldest.
+   * @return the call, or null if fewer calls are queued.
+   */
+  Object peek(int index);
+
+  /** Remove the oldest call, if any. */
+  void remove();
+
+  /**
+   * Get the number of queued calls.
+   *
+   * @return the number of queued calls.
+   */
+  int size();
+
+  default boolean isEmpty() {
+    return size() == 0;
+  }
+}
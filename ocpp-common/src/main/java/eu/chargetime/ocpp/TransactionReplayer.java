@@ -0,0 +1,470 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import eu.chargetime.ocpp.utilities.HashedWheelTimer;
+import eu.chargetime.ocpp.utilities.MoreObjects;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the calls of a {@link TransactionQueue} once the connection is up, in order. The next call
+ * is sent as soon as an earlier one is answered, keeping up to a window of calls unanswered; the
+ * default window of 1 keeps to the single unanswered call OCPP-J allows.
+ *
+ * <p>The calls of a replayer owned by a {@link Session} are sent through the {@link
+ * OutboundScheduler} of the session, ahead of its held back calls, so a replayed and a live call
+ * are never unanswered at the same time.
+ *
+ * <p>A call is removed from the queue when it and all calls before it are answered. On an
+ * InternalError or GenericError CallError, or when no answer arrives in time, the call is sent again
+ * after a backoff that doubles with each failure, up to a maximum. Any other CallError means the
+ * receiver will never accept the call as it is, so it is dropped rather than blocking the calls
+ * after it. Timeouts and backoffs run on the timer shared with {@link
+ * RequestTimeouts}, which hands the sending to the pool shared with it; no thread is started per
+ * replay.
+ *
+ * <p>Calls already queued when the replayer is created were queued by an earlier run, ie.
+ * recovered by a {@link MappedFileTransactionQueue}. They keep the id they were queued with; ids
+ * issued by a {@link Queue} carry a random prefix per queue, so they don't collide with the calls
+ * of this run. No request of this run waits for their results.
+ */
+public class TransactionReplayer {
+  private static final Logger logger = LoggerFactory.getLogger(TransactionReplayer.class);
+
+  private static final Set<String> TRANSIENT_ERRORS =
+      new HashSet<>(Arrays.asList("InternalError", "GenericError"));
+
+  /** Told about the progress of a replay. Called with the lock of the replayer held. */
+  public interface ProgressListener {
+    /**
+     * A call was answered and removed from the queue.
+     *
+     * @param replayed the number of calls replayed so far.
+     * @param remaining the number of calls still queued.
+     */
+    void onProgress(long replayed, int remaining);
+  }
+
+  private final TransactionQueue queue;
+  private final Radio radio;
+  private final Function<Object, String> uniqueIdOf;
+  private final HashedWheelTimer timer;
+  private final Executor executor;
+  private final ArrayDeque<Entry> inFlight = new ArrayDeque<>();
+
+  private int window = 1;
+  private long responseTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+  private long initialBackoffNanos = TimeUnit.SECONDS.toNanos(1);
+  private long maxBackoffNanos = TimeUnit.SECONDS.toNanos(60);
+  private int maxAttempts;
+  private ProgressListener progressListener;
+  private OutboundScheduler scheduler;
+
+  private int recoveredCount;
+  private boolean running;
+  private long backoffNanos;
+  private HashedWheelTimer.Timeout backoff;
+  private long replayedCount;
+  private long retryCount;
+  private long droppedCount;
+
+  TransactionReplayer(TransactionQueue queue, Radio radio, Function<Object, String> uniqueIdOf) {
+    this(
+        queue, radio, uniqueIdOf, RequestTimeouts.sharedTimer(), RequestTimeouts.sharedExecutor());
+  }
+
+  /** Run the timeouts and backoffs on a timer, sending the calls they release on an executor. */
+  TransactionReplayer(
+      TransactionQueue queue,
+      Radio radio,
+      Function<Object, String> uniqueIdOf,
+      HashedWheelTimer timer,
+      Executor executor) {
+    this.queue = queue;
+    this.radio = radio;
+    this.uniqueIdOf = uniqueIdOf;
+    this.timer = timer;
+    this.executor = executor;
+    this.recoveredCount = queue.size();
+  }
+
+  /**
+   * Send calls through a scheduler rather than writing them to the connection directly.
+   *
+   * @param scheduler the scheduler of the session, null to write calls directly.
+   */
+  synchronized void setOutboundScheduler(OutboundScheduler scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Set the number of calls that may be unanswered at once. Calls sent through an {@link
+   * OutboundScheduler} still go out one at a time; the window then bounds how many are handed to
+   * the scheduler.
+   *
+   * @param window the pipeline window, at least 1.
+   * @return this instance.
+   */
+  public synchronized TransactionReplayer setWindow(int window) {
+    if (window < 1) {
+      throw new IllegalArgumentException("Window must be at least 1: " + window);
+    }
+    this.window = window;
+    return this;
+  }
+
+  public synchronized int getWindow() {
+    return window;
+  }
+
+  /**
+   * Set how long to wait for the answer to a call before sending it again.
+   *
+   * @param timeout the timeout, 0 to wait for ever.
+   * @param unit the unit of the timeout.
+   * @return this instance.
+   */
+  public synchronized TransactionReplayer setResponseTimeout(long timeout, TimeUnit unit) {
+    responseTimeoutNanos = unit.toNanos(timeout);
+    return this;
+  }
+
+  /**
+   * Set the backoff before sending a failed call again. It starts at the initial backoff and
+   * doubles with each failure in a row, up to the maximum.
+   *
+   * @param initial the first backoff.
+   * @param max the longest backoff.
+   * @param unit the unit of the backoffs.
+   * @return this instance.
+   */
+  public synchronized TransactionReplayer setBackoff(long initial, long max, TimeUnit unit) {
+    initialBackoffNanos = unit.toNanos(initial);
+    maxBackoffNanos = Math.max(initialBackoffNanos, unit.toNanos(max));
+    return this;
+  }
+
+  /**
+   * Set how many times a call is sent before it is dropped from the queue.
+   *
+   * @param maxAttempts the number of attempts, 0 to never drop a call.
+   * @return this instance.
+   */
+  public synchronized TransactionReplayer setMaxAttempts(int maxAttempts) {
+    this.maxAttempts = maxAttempts;
+    return this;
+  }
+
+  public synchronized TransactionReplayer setProgressListener(ProgressListener progressListener) {
+    this.progressListener = progressListener;
+    return this;
+  }
+
+  /**
+   * Get the number of calls answered and removed from the queue.
+   *
+   * @return the number of replayed calls.
+   */
+  public synchronized long getReplayedCount() {
+    return replayedCount;
+  }
+
+  /**
+   * Get the number of calls still queued, including those sent and not answered yet.
+   *
+   * @return the number of remaining calls.
+   */
+  public int getRemainingCount() {
+    return queue.size();
+  }
+
+  /**
+   * Get the number of calls sent and not answered yet.
+   *
+   * @return the number of unanswered calls.
+   */
+  public synchronized int getInFlightCount() {
+    int count = 0;
+    for (Entry entry : inFlight) {
+      if (entry.sent && !entry.answered) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Get the number of times a call was sent again after a CallError or a timeout.
+   *
+   * @return the number of retries.
+   */
+  public synchronized long getRetryCount() {
+    return retryCount;
+  }
+
+  /**
+   * Get the number of calls dropped after {@link #setMaxAttempts(int)} failed attempts, or on a
+   * CallError that sending again won't fix.
+   *
+   * @return the number of dropped calls.
+   */
+  public synchronized long getDroppedCount() {
+    return droppedCount;
+  }
+
+  /**
+   * Check if queued calls are being sent.
+   *
+   * @return true while connected and calls are queued.
+   */
+  public synchronized boolean isReplaying() {
+    return running && !queue.isEmpty();
+  }
+
+  /** Start or continue sending queued calls, ie. when connected or a call was queued. */
+  synchronized void start() {
+    running = true;
+    send();
+  }
+
+  /** Stop sending, ie. when disconnected. Unanswered calls are sent again on the next start. */
+  synchronized void stop() {
+    running = false;
+    for (Entry entry : inFlight) {
+      cancelTimeout(entry);
+      entry.sent = false;
+    }
+  }
+
+  /**
+   * Handle a CallResult.
+   *
+   * @param uniqueId the id of the answered call.
+   * @return true if the call was replayed by this replayer.
+   */
+  synchronized boolean acknowledge(String uniqueId) {
+    Entry entry = find(uniqueId);
+    if (entry == null) {
+      return false;
+    }
+    entry.answered = true;
+    cancelTimeout(entry);
+    backoffNanos = 0;
+    removeAnswered();
+    send();
+    return true;
+  }
+
+  /**
+   * Handle a CallError.
+   *
+   * @param uniqueId the id of the failed call.
+   * @param errorCode the error code of the CallError.
+   * @return true if the call was replayed by this replayer.
+   */
+  synchronized boolean fail(String uniqueId, String errorCode) {
+    Entry entry = find(uniqueId);
+    if (entry == null) {
+      return false;
+    }
+    if (TRANSIENT_ERRORS.contains(errorCode)) {
+      retry(entry);
+    } else {
+      logger.warn("Dropping replayed call {}: rejected with {}", uniqueId, errorCode);
+      drop(entry);
+    }
+    return true;
+  }
+
+  /**
+   * Check if an unanswered call was queued by an earlier run.
+   *
+   * @param uniqueId the id of the call.
+   * @return true if the call was queued before this replayer was created.
+   */
+  synchronized boolean isRecovered(String uniqueId) {
+    Entry entry = find(uniqueId);
+    return entry != null && entry.recovered;
+  }
+
+  private Entry find(String uniqueId) {
+    if (uniqueId == null) {
+      return null;
+    }
+    for (Entry entry : inFlight) {
+      if (!entry.answered && uniqueId.equals(entry.uniqueId)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  private void send() {
+    if (!running || backoff != null) {
+      return;
+    }
+    for (Entry entry : inFlight) {
+      if (!entry.sent && !entry.answered && !transmit(entry)) {
+        return;
+      }
+    }
+    while (inFlight.size() < window) {
+      Object call = queue.peek(inFlight.size());
+      if (call == null) {
+        return;
+      }
+      Entry entry = new Entry(call, uniqueIdOf.apply(call), inFlight.size() < recoveredCount);
+      inFlight.add(entry);
+      if (!transmit(entry)) {
+        return;
+      }
+    }
+  }
+
+  private boolean transmit(Entry entry) {
+    if (scheduler != null) {
+      scheduler.submitReplay(entry.uniqueId, entry.call);
+    } else {
+      try {
+        radio.send(entry.call);
+      } catch (NotConnectedException ex) {
+        logger.debug("Replay paused: not connected");
+        running = false;
+        return false;
+      }
+    }
+    entry.sent = true;
+    entry.attempts++;
+    if (responseTimeoutNanos > 0) {
+      entry.timeout =
+          timer.newTimeout(
+              () -> executor.execute(() -> timedOut(entry)),
+              responseTimeoutNanos,
+              TimeUnit.NANOSECONDS);
+    }
+    return true;
+  }
+
+  private synchronized void timedOut(Entry entry) {
+    entry.timeout = null;
+    if (entry.sent && !entry.answered && inFlight.contains(entry)) {
+      logger.warn("No answer to replayed call {}", entry.uniqueId);
+      retry(entry);
+    }
+  }
+
+  private void retry(Entry entry) {
+    cancelTimeout(entry);
+    entry.sent = false;
+    if (maxAttempts > 0 && entry.attempts >= maxAttempts) {
+      logger.warn("Dropping replayed call {} after {} attempts", entry.uniqueId, entry.attempts);
+      drop(entry);
+      return;
+    }
+    retryCount++;
+    backoffNanos =
+        backoffNanos == 0 ? initialBackoffNanos : Math.min(maxBackoffNanos, backoffNanos * 2);
+    if (backoff == null) {
+      backoff =
+          timer.newTimeout(
+              () -> executor.execute(this::resume), backoffNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private void drop(Entry entry) {
+    cancelTimeout(entry);
+    entry.sent = false;
+    entry.answered = true;
+    droppedCount++;
+    if (scheduler != null) {
+      scheduler.complete(entry.uniqueId);
+    }
+    removeAnswered();
+    send();
+  }
+
+  private synchronized void resume() {
+    backoff = null;
+    send();
+  }
+
+  private void removeAnswered() {
+    while (!inFlight.isEmpty() && inFlight.peek().answered) {
+      inFlight.poll();
+      queue.remove();
+      if (recoveredCount > 0) {
+        recoveredCount--;
+      }
+      replayedCount++;
+      if (progressListener != null) {
+        progressListener.onProgress(replayedCount, queue.size());
+      }
+    }
+  }
+
+  private static void cancelTimeout(Entry entry) {
+    if (entry.timeout != null) {
+      entry.timeout.cancel();
+      entry.timeout = null;
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("running", running)
+        .add("window", window)
+        .add("inFlight", inFlight.size())
+        .add("replayedCount", replayedCount)
+        .add("retryCount", retryCount)
+        .toString();
+  }
+
+  private static class Entry {
+    private final Object call;
+    private final String uniqueId;
+    private final boolean recovered;
+    private boolean sent;
+    private boolean answered;
+    private int attempts;
+    private HashedWheelTimer.Timeout timeout;
+
+    private Entry(Object call, String uniqueId, boolean recovered) {
+      this.call = call;
+      this.uniqueId = uniqueId;
+      this.recovered = recovered;
+    }
+  }
+}
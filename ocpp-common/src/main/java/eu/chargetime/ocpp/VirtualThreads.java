@@ -0,0 +1,52 @@
+package eu.chargetime.ocpp;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Virtual thread support, unavailable before Java 21. The multi-release jar replaces this class
+ * on Java 21 and later, see {@code src/main/java21}.
+ */
+final class VirtualThreads {
+
+  private VirtualThreads() {}
+
+  static boolean isSupported() {
+    return false;
+  }
+
+  /**
+   * Create an executor that starts a new virtual thread for each task.
+   *
+   * @param namePrefix prefix of the thread names, followed by a counter.
+   * @return the executor, or null if virtual threads aren't supported.
+   */
+  static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+    return null;
+  }
+}
@@ -1,5 +1,6 @@
 package eu.chargetime.ocpp;
 
+import eu.chargetime.ocpp.utilities.Timestamps;
 import java.time.ZonedDateTime;
 import javax.xml.bind.annotation.adapters.XmlAdapter;
 
@@ -33,11 +34,11 @@ public class ZonedDateTimeAdapter extends XmlAdapter<String, ZonedDateTime> {
 
   @Override
   public ZonedDateTime unmarshal(String string) throws Exception {
-    return ZonedDateTime.parse(string);
+    return Timestamps.parse(string);
   }
 
   @Override
   public String marshal(ZonedDateTime zonedDateTime) throws Exception {
-    return zonedDateTime.toString();
+    return Timestamps.formatWithOffset(zonedDateTime);
   }
 }
@@ -0,0 +1,111 @@
+package eu.chargetime.ocpp.feature;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import eu.chargetime.ocpp.model.Confirmation;
+import eu.chargetime.ocpp.model.Request;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Feature for asynchronous handlers, ie. of profiles or functional blocks whose event handlers
+ * return confirmations synchronously. The confirmation is sent back when the stage returned by the
+ * handler completes, without holding a thread in the meantime. Add it after the wrapped feature, in
+ * its own profile or with {@link eu.chargetime.ocpp.FeatureRepository#addFeature(Feature)}, so it
+ * replaces the wrapped feature.
+ *
+ * @param <T> the request type of the wrapped feature.
+ * @param <C> the confirmation type of the wrapped feature.
+ */
+public class AsyncFeature<T extends Request, C extends Confirmation> implements Feature {
+
+  /**
+   * Asynchronous handler of requests.
+   *
+   * @param <T> the request type.
+   * @param <C> the confirmation type.
+   */
+  public interface Handler<T extends Request, C extends Confirmation> {
+    /**
+     * Handle a request.
+     *
+     * @param sessionIndex source of the request.
+     * @param request the {@link Request} to be handled.
+     * @return completes with the {@link Confirmation} to be send back, or exceptionally with a
+     *     {@link eu.chargetime.ocpp.CallErrorException} to send back an error.
+     */
+    CompletionStage<C> handleRequest(UUID sessionIndex, T request);
+  }
+
+  private final Feature feature;
+  private final Handler<T, C> handler;
+
+  /**
+   * Wrap a feature.
+   *
+   * @param feature the feature supplying the action and payload types.
+   * @param handler handler of the received requests.
+   */
+  public AsyncFeature(Feature feature, Handler<T, C> handler) {
+    this.feature = feature;
+    this.handler = handler;
+  }
+
+  /**
+   * Calls the handler and waits for its confirmation.
+   *
+   * @param sessionIndex source of the request.
+   * @param request the {@link Request} to be handled.
+   * @return the {@link Confirmation} to be send back.
+   */
+  @Override
+  public Confirmation handleRequest(UUID sessionIndex, Request request) {
+    return handleRequestAsync(sessionIndex, request).toCompletableFuture().join();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public CompletionStage<Confirmation> handleRequestAsync(UUID sessionIndex, Request request) {
+    // The stage is only read from, so it can be widened to the confirmation supertype.
+    return (CompletionStage<Confirmation>) handler.handleRequest(sessionIndex, (T) request);
+  }
+
+  @Override
+  public Class<? extends Request> getRequestType() {
+    return feature.getRequestType();
+  }
+
+  @Override
+  public Class<? extends Confirmation> getConfirmationType() {
+    return feature.getConfirmationType();
+  }
+
+  @Override
+  public String getAction() {
+    return feature.getAction();
+  }
+}
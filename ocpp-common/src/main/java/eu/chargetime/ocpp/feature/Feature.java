@@ -29,6 +29,8 @@ SOFTWARE.
 import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.Request;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Abstract class. Feature ties {@link Request} and {@link Confirmation} types together with an
@@ -44,6 +46,18 @@ public interface Feature {
    */
   Confirmation handleRequest(UUID sessionIndex, Request request);
 
+  /**
+   * Handle request without holding a thread until its {@link Confirmation} is ready. Defaults to
+   * {@link #handleRequest(UUID, Request)}.
+   *
+   * @param sessionIndex source of the request.
+   * @param request the {@link Request} to be handled.
+   * @return completes with the {@link Confirmation} to be send back.
+   */
+  default CompletionStage<Confirmation> handleRequestAsync(UUID sessionIndex, Request request) {
+    return CompletableFuture.completedFuture(handleRequest(sessionIndex, request));
+  }
+
   /**
    * Get the {@link Request} {@link java.lang.reflect.Type} for the feature.
    *
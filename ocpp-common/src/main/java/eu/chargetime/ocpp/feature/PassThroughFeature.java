@@ -0,0 +1,111 @@
+package eu.chargetime.ocpp.feature;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import eu.chargetime.ocpp.CallErrorException;
+import eu.chargetime.ocpp.LazyRequest;
+import eu.chargetime.ocpp.model.Confirmation;
+import eu.chargetime.ocpp.model.Request;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Feature for forward-only handlers. Requests received for it are not bound or validated by the
+ * {@link eu.chargetime.ocpp.Session}, the handler is given a {@link LazyRequest} with the raw
+ * payload instead. Add it after the wrapped feature, in its own profile or with {@link
+ * eu.chargetime.ocpp.FeatureRepository#addFeature(Feature)}, so it replaces the wrapped feature.
+ *
+ * @param <T> the request type of the wrapped feature.
+ */
+public class PassThroughFeature<T extends Request> implements Feature {
+
+  /**
+   * Handler of pass-through requests.
+   *
+   * @param <T> the request type.
+   */
+  public interface Handler<T extends Request> {
+    /**
+     * Handle a request of which only the envelope has been decoded.
+     *
+     * @param sessionIndex source of the request.
+     * @param request the request with its raw payload.
+     * @return the {@link Confirmation} to be send back.
+     * @throws CallErrorException the request could not be handled, the error is sent back. Thrown
+     *     by {@link LazyRequest#get()} for payloads that do not bind or are invalid.
+     */
+    Confirmation handleRequest(UUID sessionIndex, LazyRequest<T> request)
+        throws CallErrorException;
+  }
+
+  private final Feature feature;
+  private final Handler<T> handler;
+
+  /**
+   * Wrap a feature.
+   *
+   * @param feature the feature supplying the action and payload types.
+   * @param handler handler of the received requests.
+   */
+  public PassThroughFeature(Feature feature, Handler<T> handler) {
+    this.feature = feature;
+    this.handler = handler;
+  }
+
+  /**
+   * Calls the handler with the {@link LazyRequest}.
+   *
+   * @param sessionIndex source of the request.
+   * @param request the {@link LazyRequest} to be handled.
+   * @return the {@link Confirmation} to be send back.
+   * @throws CompletionException wrapping the {@link CallErrorException} of the handler.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public Confirmation handleRequest(UUID sessionIndex, Request request) {
+    try {
+      return handler.handleRequest(sessionIndex, (LazyRequest<T>) request);
+    } catch (CallErrorException ex) {
+      throw new CompletionException(ex);
+    }
+  }
+
+  @Override
+  public Class<? extends Request> getRequestType() {
+    return feature.getRequestType();
+  }
+
+  @Override
+  public Class<? extends Confirmation> getConfirmationType() {
+    return feature.getConfirmationType();
+  }
+
+  @Override
+  public String getAction() {
+    return feature.getAction();
+  }
+}
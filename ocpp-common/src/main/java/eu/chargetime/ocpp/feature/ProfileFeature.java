@@ -29,6 +29,7 @@ import eu.chargetime.ocpp.feature.profile.Profile;
 import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.Request;
 import java.util.UUID;
+import java.util.concurrent.CompletionStage;
 
 public abstract class ProfileFeature implements Feature {
 
@@ -53,4 +54,16 @@ public abstract class ProfileFeature implements Feature {
   public Confirmation handleRequest(UUID sessionIndex, Request request) {
     return profile.handleRequest(sessionIndex, request);
   }
+
+  /**
+   * Calls {@link Profile} to handle a {@link Request} asynchronously.
+   *
+   * @param sessionIndex source of the request.
+   * @param request the {@link Request} to be handled.
+   * @return completes with the {@link Confirmation} to be send back.
+   */
+  @Override
+  public CompletionStage<Confirmation> handleRequestAsync(UUID sessionIndex, Request request) {
+    return profile.handleRequestAsync(sessionIndex, request);
+  }
 }
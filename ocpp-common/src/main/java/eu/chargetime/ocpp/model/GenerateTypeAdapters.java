@@ -0,0 +1,32 @@
+package eu.chargetime.ocpp.model;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a model package for the OCPP-J type adapter generator. Every concrete class of the package
+ * gets a precompiled JSON type adapter, registered automatically by the JSON communicator.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.PACKAGE)
+public @interface GenerateTypeAdapters {
+
+  /**
+   * Tell if the models validate each field with a private {@code boolean isValid<Field>(<field
+   * type>)} method, {@code validate()} being the conjunction of them. The adapters then validate
+   * the models while binding them.
+   *
+   * @return true if the models have field validators.
+   */
+  boolean fieldValidators() default false;
+
+  /**
+   * Simple names of the models accepting properties they don't declare, like vendor extension
+   * objects. Strict decoding rejects undeclared properties of all other models.
+   *
+   * @return the simple names of the open models.
+   */
+  String[] openModels() default {};
+}
@@ -0,0 +1,305 @@
+package eu.chargetime.ocpp.utilities;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Timer for a large number of timeouts that are mostly cancelled before they expire, such as
+ * request timeouts.
+ *
+ * <p>Timeouts are kept in a wheel of buckets, one per tick, so that scheduling and cancelling are
+ * constant time and a single thread serves any number of timeouts. A timeout expires within one
+ * tick after its delay. The thread is started with the first timeout.
+ */
+public class HashedWheelTimer {
+
+  private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+  /** Handle to a scheduled task. */
+  public interface Timeout {
+    /**
+     * Cancel the task, unless it has run or is running already.
+     *
+     * @return true if the task was cancelled.
+     */
+    boolean cancel();
+  }
+
+  /** New timeouts moved into the wheel per tick, so a burst can't stall expiry. */
+  private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+  private final long tickNanos;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final ThreadFactory threadFactory;
+  private final ConcurrentLinkedQueue<Entry> scheduled = new ConcurrentLinkedQueue<>();
+  private final ConcurrentLinkedQueue<Entry> cancelled = new ConcurrentLinkedQueue<>();
+  private final LongAdder pending = new LongAdder();
+
+  private volatile long startTime;
+  private volatile Thread worker;
+  private volatile boolean stopped;
+  private long tick;
+
+  /**
+   * Create a timer.
+   *
+   * @param tickDuration the duration of a tick, the precision of the timer.
+   * @param unit the unit of the tick duration.
+   * @param ticksPerWheel the number of buckets, rounded up to a power of two.
+   * @param threadFactory creates the thread that runs the tasks.
+   */
+  public HashedWheelTimer(
+      long tickDuration, TimeUnit unit, int ticksPerWheel, ThreadFactory threadFactory) {
+    if (tickDuration <= 0) {
+      throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration);
+    }
+    if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+      throw new IllegalArgumentException("ticksPerWheel out of range: " + ticksPerWheel);
+    }
+    this.tickNanos = Math.max(unit.toNanos(tickDuration), TimeUnit.MILLISECONDS.toNanos(1));
+    int size = 1;
+    while (size < ticksPerWheel) {
+      size <<= 1;
+    }
+    this.wheel = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = size - 1;
+    this.threadFactory = threadFactory;
+  }
+
+  /**
+   * Run a task once after a delay.
+   *
+   * @param task the task to run on the timer thread; it should be short.
+   * @param delay the delay.
+   * @param unit the unit of the delay.
+   * @return a handle to cancel the task.
+   */
+  public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+    if (stopped) {
+      throw new IllegalStateException("Timer is stopped");
+    }
+    start();
+    long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(delay, 0));
+    Entry entry = new Entry(task, deadline);
+    pending.increment();
+    scheduled.add(entry);
+    return entry;
+  }
+
+  /**
+   * Get the number of scheduled tasks that have neither run nor been cancelled.
+   *
+   * @return the number of pending tasks.
+   */
+  public long pendingTimeouts() {
+    return pending.sum();
+  }
+
+  /** Stop the timer thread. Pending tasks will not run. */
+  public void stop() {
+    stopped = true;
+    Thread thread = worker;
+    if (thread != null) {
+      thread.interrupt();
+    }
+  }
+
+  private void start() {
+    if (worker == null) {
+      synchronized (this) {
+        if (worker == null) {
+          startTime = System.nanoTime();
+          Thread thread = threadFactory.newThread(this::run);
+          thread.start();
+          worker = thread;
+        }
+      }
+    }
+  }
+
+  private void run() {
+    while (!stopped) {
+      if (!waitForNextTick()) {
+        return;
+      }
+      removeCancelled();
+      transferScheduled();
+      wheel[(int) (tick & mask)].expire();
+      tick++;
+    }
+  }
+
+  /** Sleep until the end of the current tick, return false if stopped meanwhile. */
+  private boolean waitForNextTick() {
+    long deadline = tickNanos * (tick + 1);
+    while (true) {
+      long now = System.nanoTime() - startTime;
+      long sleepMillis = (deadline - now + 999_999) / 1_000_000;
+      if (sleepMillis <= 0) {
+        return true;
+      }
+      try {
+        Thread.sleep(sleepMillis);
+      } catch (InterruptedException e) {
+        if (stopped) {
+          return false;
+        }
+      }
+    }
+  }
+
+  private void transferScheduled() {
+    for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+      Entry entry = scheduled.poll();
+      if (entry == null) {
+        return;
+      }
+      if (entry.state != Entry.PENDING) {
+        continue;
+      }
+      long expiryTick = entry.deadline / tickNanos;
+      entry.rounds = (expiryTick - tick) / wheel.length;
+      wheel[(int) (Math.max(expiryTick, tick) & mask)].add(entry);
+    }
+  }
+
+  private void removeCancelled() {
+    Entry entry;
+    while ((entry = cancelled.poll()) != null) {
+      if (entry.bucket != null) {
+        entry.bucket.remove(entry);
+      }
+    }
+  }
+
+  private final class Entry implements Timeout {
+    static final int PENDING = 0;
+    static final int CANCELLED = 1;
+    static final int EXPIRED = 2;
+
+    final Runnable task;
+    final long deadline;
+    long rounds;
+    Entry next;
+    Entry prev;
+    Bucket bucket;
+    volatile int state;
+
+    Entry(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public boolean cancel() {
+      if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+        return false;
+      }
+      pending.decrement();
+      cancelled.add(this);
+      return true;
+    }
+
+    void expire() {
+      if (!STATE.compareAndSet(this, PENDING, EXPIRED)) {
+        return;
+      }
+      pending.decrement();
+      try {
+        task.run();
+      } catch (Throwable t) {
+        logger.warn("Timeout task failed", t);
+      }
+    }
+  }
+
+  private static final AtomicIntegerFieldUpdater<Entry> STATE =
+      AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+  /** Doubly linked list of entries, only touched by the timer thread. */
+  private static final class Bucket {
+    private Entry head;
+    private Entry tail;
+
+    void add(Entry entry) {
+      entry.bucket = this;
+      if (head == null) {
+        head = tail = entry;
+      } else {
+        tail.next = entry;
+        entry.prev = tail;
+        tail = entry;
+      }
+    }
+
+    void expire() {
+      Entry entry = head;
+      while (entry != null) {
+        Entry next = entry.next;
+        if (entry.rounds <= 0) {
+          remove(entry);
+          entry.expire();
+        } else if (entry.state != Entry.PENDING) {
+          remove(entry);
+        } else {
+          entry.rounds--;
+        }
+        entry = next;
+      }
+    }
+
+    void remove(Entry entry) {
+      if (entry.bucket != this) {
+        return;
+      }
+      if (entry.prev != null) {
+        entry.prev.next = entry.next;
+      } else {
+        head = entry.next;
+      }
+      if (entry.next != null) {
+        entry.next.prev = entry.prev;
+      } else {
+        tail = entry.prev;
+      }
+      entry.next = null;
+      entry.prev = null;
+      entry.bucket = null;
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package eu.chargetime.ocpp.utilities;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Parser and formatter of the ISO-8601 timestamps used by OCPP.
+ *
+ * <p>Timestamps with a four digit year, seconds with up to nine fraction digits and a {@code Z} or
+ * {@code +hh:mm} offset are handled directly on the characters. Anything else falls back to {@link
+ * ZonedDateTime#parse(CharSequence)}, so results and errors are the same as with the JDK.
+ */
+public final class Timestamps {
+
+  private static final int NANOS_PER_MILLI = 1_000_000;
+  private static final int NANOS_PER_MICRO = 1_000;
+  private static final int[] NANO_SCALE = {
+    100_000_000, 10_000_000, 1_000_000, 100_000, 10_000, 1_000, 100, 10, 1
+  };
+
+  private Timestamps() {}
+
+  /**
+   * Parse a timestamp, same as {@link ZonedDateTime#parse(CharSequence)}.
+   *
+   * @param text the timestamp, for example {@code 2018-01-01T01:01:01.988Z}.
+   * @return the parsed timestamp.
+   * @throws java.time.format.DateTimeParseException the text is not a valid timestamp.
+   */
+  public static ZonedDateTime parse(CharSequence text) {
+    ZonedDateTime parsed = tryParse(text);
+    return parsed != null ? parsed : ZonedDateTime.parse(text);
+  }
+
+  private static ZonedDateTime tryParse(CharSequence text) {
+    int length = text.length();
+    if (length < 17
+        || text.charAt(4) != '-'
+        || text.charAt(7) != '-'
+        || text.charAt(10) != 'T'
+        || text.charAt(13) != ':') {
+      return null;
+    }
+    int year = digits(text, 0, 4);
+    int month = digits(text, 5, 2);
+    int day = digits(text, 8, 2);
+    int hour = digits(text, 11, 2);
+    int minute = digits(text, 14, 2);
+    int second = 0;
+    int nano = 0;
+    int position = 16;
+    if (text.charAt(position) == ':') {
+      second = digits(text, position + 1, 2);
+      position += 3;
+      if (position < length && text.charAt(position) == '.') {
+        int start = ++position;
+        while (position < length && position - start < NANO_SCALE.length) {
+          int digit = text.charAt(position) - '0';
+          if (digit < 0 || digit > 9) {
+            break;
+          }
+          nano += digit * NANO_SCALE[position - start];
+          position++;
+        }
+        if (position == start) {
+          return null;
+        }
+      }
+    }
+    if ((year | month | day | hour | minute | second) < 0 || position >= length) {
+      return null;
+    }
+
+    ZoneOffset offset;
+    char sign = text.charAt(position);
+    if (sign == 'Z' && position + 1 == length) {
+      offset = ZoneOffset.UTC;
+    } else if ((sign == '+' || sign == '-')
+        && position + 6 == length
+        && text.charAt(position + 3) == ':') {
+      int offsetHours = digits(text, position + 1, 2);
+      int offsetMinutes = digits(text, position + 4, 2);
+      if ((offsetHours | offsetMinutes) < 0) {
+        return null;
+      }
+      int direction = sign == '+' ? 1 : -1;
+      try {
+        offset = ZoneOffset.ofHoursMinutes(direction * offsetHours, direction * offsetMinutes);
+      } catch (DateTimeException e) {
+        return null;
+      }
+    } else {
+      return null;
+    }
+
+    try {
+      return ZonedDateTime.of(year, month, day, hour, minute, second, nano, offset);
+    } catch (DateTimeException e) {
+      return null;
+    }
+  }
+
+  private static int digits(CharSequence text, int start, int count) {
+    if (start + count > text.length()) {
+      return -1;
+    }
+    int value = 0;
+    for (int i = start; i < start + count; i++) {
+      int digit = text.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  /**
+   * Format a timestamp as an UTC instant, same as {@link DateTimeFormatter#ISO_INSTANT}.
+   *
+   * @param value the timestamp.
+   * @return the timestamp in UTC, for example {@code 2018-01-01T01:01:01.988Z}.
+   */
+  public static String formatInstant(ZonedDateTime value) {
+    LocalDateTime utc =
+        value.getOffset() == ZoneOffset.UTC
+            ? value.toLocalDateTime()
+            : LocalDateTime.ofEpochSecond(value.toEpochSecond(), value.getNano(), ZoneOffset.UTC);
+    if (utc.getYear() < 0 || utc.getYear() > 9999) {
+      return DateTimeFormatter.ISO_INSTANT.format(value);
+    }
+    char[] buffer = new char[30];
+    int position = writeDateTime(buffer, utc, true);
+    buffer[position++] = 'Z';
+    return new String(buffer, 0, position);
+  }
+
+  /**
+   * Format a timestamp with its offset, same as {@link ZonedDateTime#toString()}.
+   *
+   * @param value the timestamp.
+   * @return the local timestamp and its offset, for example {@code 2018-01-01T02:01:01.988+01:00}.
+   */
+  public static String formatWithOffset(ZonedDateTime value) {
+    if (!(value.getZone() instanceof ZoneOffset)
+        || value.getYear() < 0
+        || value.getYear() > 9999) {
+      return value.toString();
+    }
+    String offset = value.getOffset().getId();
+    char[] buffer = new char[29 + offset.length()];
+    int position = writeDateTime(buffer, value.toLocalDateTime(), false);
+    offset.getChars(0, offset.length(), buffer, position);
+    return new String(buffer, 0, position + offset.length());
+  }
+
+  private static int writeDateTime(char[] buffer, LocalDateTime value, boolean alwaysSeconds) {
+    int position = write(buffer, 0, value.getYear(), 4);
+    buffer[position++] = '-';
+    position = write(buffer, position, value.getMonthValue(), 2);
+    buffer[position++] = '-';
+    position = write(buffer, position, value.getDayOfMonth(), 2);
+    buffer[position++] = 'T';
+    position = write(buffer, position, value.getHour(), 2);
+    buffer[position++] = ':';
+    position = write(buffer, position, value.getMinute(), 2);
+    int second = value.getSecond();
+    int nano = value.getNano();
+    if (alwaysSeconds || second > 0 || nano > 0) {
+      buffer[position++] = ':';
+      position = write(buffer, position, second, 2);
+      if (nano > 0) {
+        buffer[position++] = '.';
+        if (nano % NANOS_PER_MILLI == 0) {
+          position = write(buffer, position, nano / NANOS_PER_MILLI, 3);
+        } else if (nano % NANOS_PER_MICRO == 0) {
+          position = write(buffer, position, nano / NANOS_PER_MICRO, 6);
+        } else {
+          position = write(buffer, position, nano, 9);
+        }
+      }
+    }
+    return position;
+  }
+
+  private static int write(char[] buffer, int position, int value, int width) {
+    for (int i = position + width - 1; i >= position; i--) {
+      buffer[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+    return position + width;
+  }
+}
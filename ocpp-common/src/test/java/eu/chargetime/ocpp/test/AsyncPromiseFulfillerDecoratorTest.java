@@ -0,0 +1,163 @@
+package eu.chargetime.ocpp.test;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import eu.chargetime.ocpp.AsyncPromiseFulfillerDecorator;
+import eu.chargetime.ocpp.PromiseFulfiller;
+import eu.chargetime.ocpp.model.Confirmation;
+import eu.chargetime.ocpp.model.TestRequest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class AsyncPromiseFulfillerDecoratorTest {
+
+  private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  public void fulfill_manyRequests_handledInOrder() throws Exception {
+    // Given
+    List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch done = new CountDownLatch(1000);
+    AsyncPromiseFulfillerDecorator sut =
+        new AsyncPromiseFulfillerDecorator(
+            (promise, eventHandler, request) -> {
+              handled.add(Integer.valueOf(request.getOcppMessageId()));
+              done.countDown();
+            },
+            pool);
+    List<Integer> expected = new ArrayList<>();
+
+    // When
+    for (int i = 0; i < 1000; i++) {
+      sut.fulfill(new CompletableFuture<>(), null, request(i));
+      expected.add(i);
+    }
+
+    // Then
+    assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+    pool.shutdown();
+    assertThat(pool.awaitTermination(10, TimeUnit.SECONDS), is(true));
+    assertThat(handled, is(expected));
+    assertThat(sut.getQueueDepth(), is(0));
+  }
+
+  @Test
+  public void fulfill_blockedSession_otherSessionProceeds() throws Exception {
+    // Given
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch otherHandled = new CountDownLatch(1);
+    AsyncPromiseFulfillerDecorator blocked =
+        new AsyncPromiseFulfillerDecorator(
+            (promise, eventHandler, request) -> {
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            },
+            pool);
+    AsyncPromiseFulfillerDecorator other =
+        new AsyncPromiseFulfillerDecorator(
+            (promise, eventHandler, request) -> otherHandled.countDown(), pool);
+
+    // When
+    blocked.fulfill(new CompletableFuture<>(), null, request(1));
+    blocked.fulfill(new CompletableFuture<>(), null, request(2));
+    other.fulfill(new CompletableFuture<>(), null, request(1));
+
+    // Then
+    assertThat(otherHandled.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(blocked.getQueueDepth(), is(2));
+    release.countDown();
+  }
+
+  @Test
+  public void fulfill_failingFulfiller_continuesWithNextRequest() throws Exception {
+    // Given
+    CountDownLatch done = new CountDownLatch(1);
+    PromiseFulfiller failing =
+        (promise, eventHandler, request) -> {
+          if ("1".equals(request.getOcppMessageId())) {
+            throw new IllegalStateException();
+          }
+          done.countDown();
+        };
+    AsyncPromiseFulfillerDecorator sut = new AsyncPromiseFulfillerDecorator(failing, pool);
+
+    // When
+    sut.fulfill(new CompletableFuture<Confirmation>(), null, request(1));
+    sut.fulfill(new CompletableFuture<Confirmation>(), null, request(2));
+
+    // Then
+    assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+  }
+
+  @Test
+  public void fulfill_fulfillerThrowsError_continuesWithNextRequest() throws Exception {
+    // Given
+    CountDownLatch done = new CountDownLatch(1);
+    PromiseFulfiller failing =
+        (promise, eventHandler, request) -> {
+          if ("1".equals(request.getOcppMessageId())) {
+            throw new AssertionError();
+          }
+          done.countDown();
+        };
+    AsyncPromiseFulfillerDecorator sut = new AsyncPromiseFulfillerDecorator(failing, pool);
+
+    // When
+    sut.fulfill(new CompletableFuture<Confirmation>(), null, request(1));
+    sut.fulfill(new CompletableFuture<Confirmation>(), null, request(2));
+
+    // Then
+    assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+    pool.shutdown();
+    assertThat(pool.awaitTermination(10, TimeUnit.SECONDS), is(true));
+    assertThat(sut.getQueueDepth(), is(0));
+  }
+
+  private static TestRequest request(int number) {
+    TestRequest request = new TestRequest();
+    request.setOcppMessageId(Integer.toString(number));
+    return request;
+  }
+}
@@ -0,0 +1,173 @@
+package eu.chargetime.ocpp.test;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import eu.chargetime.ocpp.AuthenticationException;
+import eu.chargetime.ocpp.CachingSessionAuthenticator;
+import eu.chargetime.ocpp.SessionAuthenticator;
+import eu.chargetime.ocpp.model.SessionInformation;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingSessionAuthenticatorTest {
+
+  private static final String PASSWORD = "0123456789abcdef";
+
+  private SessionAuthenticator delegate;
+  private CachingSessionAuthenticator authenticator;
+
+  @Before
+  public void setup() {
+    delegate = mock(SessionAuthenticator.class);
+    when(delegate.authenticate(any(), any(), any()))
+        .thenAnswer(invocation -> CompletableFuture.completedFuture(null));
+    authenticator = new CachingSessionAuthenticator(delegate, 1, TimeUnit.HOURS, 2);
+  }
+
+  @Test
+  public void authenticate_sameCredentialsAgain_acceptedWithoutDelegate() throws Exception {
+    // Given
+    authenticate("/ocpp/CP_1", "CP_1", PASSWORD).toCompletableFuture().get();
+
+    // When
+    CompletionStage<Void> again = authenticate("/ocpp/CP_1", "CP_1", PASSWORD);
+
+    // Then
+    assertThat(again.toCompletableFuture().isDone(), is(true));
+    verify(delegate, times(1)).authenticate(any(), anyString(), anyString());
+    assertThat(authenticator.getHitCount(), is(1L));
+    assertThat(authenticator.getMissCount(), is(1L));
+  }
+
+  @Test
+  public void authenticate_otherPassword_asksDelegate() throws Exception {
+    // Given
+    authenticate("/ocpp/CP_1", "CP_1", PASSWORD);
+
+    // When
+    authenticate("/ocpp/CP_1", "CP_1", "fedcba9876543210");
+
+    // Then
+    verify(delegate, times(2)).authenticate(any(), anyString(), anyString());
+    assertThat(authenticator.getHitCount(), is(0L));
+  }
+
+  @Test
+  public void authenticate_delegateRefused_isNotCached() throws Exception {
+    // Given
+    CompletableFuture<Void> refused = new CompletableFuture<>();
+    refused.completeExceptionally(new AuthenticationException(401, "Unknown"));
+    when(delegate.authenticate(any(), any(), any())).thenReturn(refused);
+    authenticate("/ocpp/CP_1", "CP_1", PASSWORD);
+
+    // When
+    CompletionStage<Void> again = authenticate("/ocpp/CP_1", "CP_1", PASSWORD);
+
+    // Then
+    assertThat(again.toCompletableFuture().isCompletedExceptionally(), is(true));
+    verify(delegate, times(2)).authenticate(any(), anyString(), anyString());
+    assertThat(authenticator.size(), is(0));
+  }
+
+  @Test
+  public void authenticate_entryExpired_asksDelegate() throws Exception {
+    // Given
+    authenticator = new CachingSessionAuthenticator(delegate, 1, TimeUnit.MILLISECONDS, 2);
+    authenticate("/ocpp/CP_1", "CP_1", PASSWORD);
+    Thread.sleep(10);
+
+    // When
+    authenticate("/ocpp/CP_1", "CP_1", PASSWORD);
+
+    // Then
+    verify(delegate, times(2)).authenticate(any(), anyString(), anyString());
+  }
+
+  @Test
+  public void authenticate_cacheFull_dropsLeastRecentlyUsed() throws Exception {
+    // Given
+    authenticate("/ocpp/CP_1", "CP_1", PASSWORD);
+    authenticate("/ocpp/CP_2", "CP_2", PASSWORD);
+    authenticate("/ocpp/CP_1", "CP_1", PASSWORD);
+
+    // When
+    authenticate("/ocpp/CP_3", "CP_3", PASSWORD);
+    authenticate("/ocpp/CP_1", "CP_1", PASSWORD);
+    authenticate("/ocpp/CP_2", "CP_2", PASSWORD);
+
+    // Then
+    assertThat(authenticator.size(), is(2));
+    assertThat(authenticator.getHitCount(), is(2L));
+    assertThat(authenticator.getMissCount(), is(4L));
+  }
+
+  @Test
+  public void invalidate_cachedIdentity_asksDelegateAgain() throws Exception {
+    // Given
+    authenticate("/ocpp/CP_1", "CP_1", PASSWORD);
+
+    // When
+    authenticator.invalidate("CP_1");
+    authenticate("/ocpp/CP_1", "CP_1", PASSWORD);
+
+    // Then
+    verify(delegate, times(2)).authenticate(any(), anyString(), anyString());
+  }
+
+  @Test
+  public void invalidate_whileAuthenticationPending_resultIsNotCached() throws Exception {
+    // Given
+    CompletableFuture<Void> pending = new CompletableFuture<>();
+    when(delegate.authenticate(any(), any(), any())).thenReturn(pending);
+    authenticate("/ocpp/CP_1", "CP_1", PASSWORD);
+
+    // When
+    authenticator.invalidate("CP_1");
+    pending.complete(null);
+
+    // Then
+    assertThat(authenticator.size(), is(0));
+    authenticate("/ocpp/CP_1", "CP_1", PASSWORD);
+    verify(delegate, times(2)).authenticate(any(), anyString(), anyString());
+  }
+
+  private CompletionStage<Void> authenticate(String identifier, String username, String password) {
+    SessionInformation information = new SessionInformation.Builder().Identifier(identifier).build();
+    return authenticator.authenticate(information, username, password);
+  }
+}
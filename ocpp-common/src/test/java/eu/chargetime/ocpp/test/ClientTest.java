@@ -65,6 +65,7 @@ public class ClientTest {
 
     when(featureRepository.findFeature(any())).thenReturn(Optional.of(feature));
     when(session.getFeatureRepository()).thenReturn(featureRepository);
+    lenient().when(promiseRepository.createPromise(any())).thenReturn(new CompletableFuture<>());
     client = new Client(session, promiseRepository);
   }
 
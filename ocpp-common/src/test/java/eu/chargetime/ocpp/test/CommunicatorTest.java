@@ -1,13 +1,19 @@
 package eu.chargetime.ocpp.test;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 import eu.chargetime.ocpp.*;
+import eu.chargetime.ocpp.model.CallErrorMessage;
+import eu.chargetime.ocpp.model.CallResultMessage;
 import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.ConfirmationCompletedHandler;
 import eu.chargetime.ocpp.model.Message;
 import eu.chargetime.ocpp.model.Request;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -94,7 +100,12 @@ public class CommunicatorTest {
 
           @Override
           protected Message parse(Object message) {
-            return null;
+            return message instanceof Message ? (Message) message : null;
+          }
+
+          @Override
+          protected String uniqueIdOf(Object call) {
+            return (String) call;
           }
         };
     communicator.accept(events);
@@ -129,6 +140,42 @@ public class CommunicatorTest {
     verify(events, times(1)).onError(eq(uniqueId), any(), any(), any());
   }
 
+  @Test
+  public void sendCallAsync_written_stageCompletes() throws Exception {
+    // Given
+    String uniqueId = "some id";
+    CompletableFuture<Void> written = new CompletableFuture<>();
+    when(receiver.sendAsync(uniqueId)).thenReturn(written);
+
+    // When
+    CompletableFuture<Void> result =
+        communicator.sendCallAsync(uniqueId, "some action", normalRequest).toCompletableFuture();
+
+    // Then
+    assertThat(result.isDone(), is(false));
+    written.complete(null);
+    assertThat(result.isDone(), is(true));
+    assertThat(result.isCompletedExceptionally(), is(false));
+  }
+
+  @Test
+  public void sendCallAsync_aNormalRequestAndWriteFailsNotConnected_onErrorIsCalled()
+      throws Exception {
+    // Given
+    String uniqueId = "some id";
+    CompletableFuture<Void> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new NotConnectedException());
+    when(receiver.sendAsync(uniqueId)).thenReturn(failed);
+
+    // When
+    CompletableFuture<Void> result =
+        communicator.sendCallAsync(uniqueId, "some action", normalRequest).toCompletableFuture();
+
+    // Then
+    assertThat(result.isCompletedExceptionally(), is(true));
+    verify(events, times(1)).onError(eq(uniqueId), any(), any(), any());
+  }
+
   @Test
   public void sendCall_transactionRelatedRequestsQueued_sendIsNotCalled() throws Exception {
     // Given
@@ -160,13 +207,85 @@ public class CommunicatorTest {
 
     // When
     communicator.sendCall(secondId, action, transactionRelatedRequest);
-    Thread.sleep(1100);
+    eventHandler.receivedMessage(callResult(firstId));
 
     // Then
     verify(receiver, times(2)).send(eq(firstId));
     verify(receiver, times(1)).send(eq(secondId));
   }
 
+  @Test
+  public void sendCall_queueNotEmpty_nextMessageWaitsForCallResult() throws Exception {
+    // Given
+    doThrow(new NotConnectedException()).when(receiver).send(anyString());
+    communicator.sendCall("first id", "some action", transactionRelatedRequest);
+    doNothing().when(receiver).send(anyString());
+
+    // When
+    communicator.sendCall("second id", "some action", transactionRelatedRequest);
+
+    // Then
+    verify(receiver, times(0)).send(eq("second id"));
+    assertThat(communicator.getTransactionReplayer().getInFlightCount(), is(1));
+  }
+
+  @Test
+  public void receivedMessage_callErrorForReplayedMessage_messageIsRetriedAfterBackoff()
+      throws Exception {
+    // Given
+    communicator.getTransactionReplayer().setBackoff(10, 10, TimeUnit.MILLISECONDS);
+    doThrow(new NotConnectedException()).when(receiver).send(anyString());
+    String uniqueId = "some id";
+    communicator.sendCall(uniqueId, "some action", transactionRelatedRequest);
+    doNothing().when(receiver).send(anyString());
+    eventHandler.connected();
+
+    // When
+    CallErrorMessage error = new CallErrorMessage();
+    error.setId(uniqueId);
+    error.setErrorCode("InternalError");
+    eventHandler.receivedMessage(error);
+    Thread.sleep(300);
+    eventHandler.receivedMessage(callResult(uniqueId));
+
+    // Then
+    verify(receiver, times(3)).send(eq(uniqueId));
+    assertThat(communicator.getTransactionReplayer().getRetryCount(), is(1L));
+    assertThat(communicator.getTransactionReplayer().getReplayedCount(), is(1L));
+    assertThat(communicator.getTransactionReplayer().getRemainingCount(), is(0));
+  }
+
+  @Test
+  public void receivedMessage_permanentCallErrorForReplayedMessage_messageIsDropped()
+      throws Exception {
+    // Given
+    doThrow(new NotConnectedException()).when(receiver).send(anyString());
+    communicator.sendCall("first id", "some action", transactionRelatedRequest);
+    communicator.sendCall("second id", "some action", transactionRelatedRequest);
+    doNothing().when(receiver).send(anyString());
+    eventHandler.connected();
+    clearInvocations(receiver);
+
+    // When
+    CallErrorMessage error = new CallErrorMessage();
+    error.setId("first id");
+    error.setErrorCode("FormationViolation");
+    eventHandler.receivedMessage(error);
+
+    // Then
+    verify(receiver, never()).send(eq("first id"));
+    verify(receiver, times(1)).send(eq("second id"));
+    assertThat(communicator.getTransactionReplayer().getRetryCount(), is(0L));
+    assertThat(communicator.getTransactionReplayer().getDroppedCount(), is(1L));
+    assertThat(communicator.getTransactionReplayer().getRemainingCount(), is(1));
+  }
+
+  private static CallResultMessage callResult(String uniqueId) {
+    CallResultMessage result = new CallResultMessage();
+    result.setId(uniqueId);
+    return result;
+  }
+
   @Test
   public void connected_transactionRelatedRequestsQueued_sendIsCalled() throws Exception {
     // Given
@@ -0,0 +1,174 @@
+package eu.chargetime.ocpp.test;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import eu.chargetime.ocpp.MappedFileTransactionQueue;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedFileTransactionQueueTest {
+
+  private static final int SEGMENT_SIZE = 256;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path directory;
+  private MappedFileTransactionQueue queue;
+
+  @Before
+  public void setup() throws Exception {
+    directory = folder.getRoot().toPath();
+    queue = new MappedFileTransactionQueue(directory, SEGMENT_SIZE);
+  }
+
+  @Test
+  public void add_severalCalls_peekedAndRemovedInOrder() {
+    // Given
+    queue.add("[2,\"1\",\"StartTransaction\",{}]");
+    queue.add(new byte[] {(byte) 0x9f, 2, 0x61, 0x32});
+
+    // When
+    Object first = queue.peek();
+    queue.remove();
+    Object second = queue.peek();
+    queue.remove();
+
+    // Then
+    assertThat(first, is("[2,\"1\",\"StartTransaction\",{}]"));
+    assertThat(second, is(new byte[] {(byte) 0x9f, 2, 0x61, 0x32}));
+    assertThat(queue.peek(), is(nullValue()));
+    assertThat(queue.isEmpty(), is(true));
+  }
+
+  @Test
+  public void reopen_callsNotRemoved_recoveredInOrder() throws Exception {
+    // Given
+    for (int i = 0; i < 20; i++) {
+      queue.add(call(i));
+    }
+    queue.remove();
+    queue.remove();
+    queue.close();
+
+    // When
+    MappedFileTransactionQueue reopened = new MappedFileTransactionQueue(directory, SEGMENT_SIZE);
+
+    // Then
+    assertThat(reopened.size(), is(18));
+    for (int i = 2; i < 20; i++) {
+      assertThat(reopened.peek(), is(call(i)));
+      reopened.remove();
+    }
+  }
+
+  @Test
+  public void remove_segmentsAcknowledged_deletesTheirFiles() throws Exception {
+    // Given
+    for (int i = 0; i < 50; i++) {
+      queue.add(call(i));
+    }
+    int segments = queue.getSegmentCount();
+
+    // When
+    for (int i = 0; i < 50; i++) {
+      queue.remove();
+    }
+
+    // Then
+    assertThat(segments > 1, is(true));
+    assertThat(queue.getSegmentCount(), is(1));
+    assertThat(segmentFiles(), is(1L));
+  }
+
+  @Test
+  public void reopen_tornRecord_recoversCallsBeforeIt() throws Exception {
+    // Given
+    queue.add(call(0));
+    queue.add(call(1));
+    queue.close();
+    Path segment;
+    try (Stream<Path> files = Files.list(directory)) {
+      segment = files.findFirst().get();
+    }
+    int second = 10 + call(0).length();
+    try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+      // corrupt the payload of the second call
+      file.seek(second + 12);
+      file.write('X');
+    }
+
+    // When
+    MappedFileTransactionQueue reopened = new MappedFileTransactionQueue(directory, SEGMENT_SIZE);
+    reopened.add(call(2));
+
+    // Then
+    assertThat(reopened.size(), is(2));
+    assertThat(reopened.peek(), is(call(0)));
+    reopened.remove();
+    assertThat(reopened.peek(), is(call(2)));
+  }
+
+  @Test
+  public void peek_indexAcrossSegments_getsCallAtIndex() {
+    // Given
+    for (int i = 0; i < 20; i++) {
+      queue.add(call(i));
+    }
+    queue.remove();
+
+    // When
+    Object call = queue.peek(15);
+
+    // Then
+    assertThat(call, is(call(16)));
+    assertThat(queue.peek(19), is(nullValue()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void add_callLargerThanSegment_throwsException() {
+    queue.add(new String(new char[SEGMENT_SIZE]).replace('\0', 'x'));
+  }
+
+  private static String call(int id) {
+    return "[2,\"" + id + "\",\"MeterValues\",{\"connectorId\":1}]";
+  }
+
+  private long segmentFiles() throws Exception {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.count();
+    }
+  }
+}
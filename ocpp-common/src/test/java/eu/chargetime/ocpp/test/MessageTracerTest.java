@@ -0,0 +1,120 @@
+package eu.chargetime.ocpp.test;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import eu.chargetime.ocpp.CapturedMessage;
+import eu.chargetime.ocpp.MessageTap;
+import eu.chargetime.ocpp.MessageTap.Direction;
+import eu.chargetime.ocpp.MessageTracer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import org.junit.After;
+import org.junit.Test;
+
+public class MessageTracerTest {
+
+  private final List<CapturedMessage> captured = new CopyOnWriteArrayList<>();
+  private MessageTracer tracer = new MessageTracer(captured::add, 16);
+
+  @After
+  public void close() {
+    tracer.close();
+  }
+
+  @Test
+  public void capture_close_messagesAreWrittenInOrder() {
+    // Given
+    MessageTap tap = tracer.tap("CP1");
+
+    // When
+    tap.capture(Direction.INBOUND, "1", "Heartbeat", "[2,\"1\",\"Heartbeat\",{}]");
+    tap.capture(Direction.OUTBOUND, "1", "Heartbeat", "[3,\"1\",{}]");
+    tracer.close();
+
+    // Then
+    assertThat(captured.size(), is(2));
+    assertThat(captured.get(0).getSession(), is("CP1"));
+    assertThat(captured.get(0).getText(), is("[2,\"1\",\"Heartbeat\",{}]"));
+    assertThat(captured.get(1).getDirection(), is(Direction.OUTBOUND));
+    assertThat(tracer.getWrittenCount(), is(2L));
+  }
+
+  @Test
+  public void tap_sessionFiltered_returnsNull() {
+    // Given
+    tracer.setSessionFilter(session -> session.startsWith("traced"));
+
+    // When
+    MessageTap tap = tracer.tap("CP1");
+
+    // Then
+    assertThat(tap, is(nullValue()));
+  }
+
+  @Test
+  public void capture_actionFilter_keepsResultsOfMatchingCalls() {
+    // Given
+    tracer.setActionFilter("RemoteStartTransaction"::equals);
+    MessageTap tap = tracer.tap("CP1");
+
+    // When
+    tap.capture(Direction.OUTBOUND, "1", "RemoteStartTransaction", "call 1");
+    tap.capture(Direction.OUTBOUND, "2", "Reset", "call 2");
+    tap.capture(Direction.INBOUND, "2", null, "result 2");
+    tap.capture(Direction.INBOUND, "1", null, "result 1");
+    tracer.close();
+
+    // Then
+    assertThat(captured.size(), is(2));
+    assertThat(captured.get(0).getText(), is("call 1"));
+    assertThat(captured.get(1).getText(), is("result 1"));
+  }
+
+  @Test
+  public void capture_ringFull_dropsMessages() throws Exception {
+    // Given
+    CountDownLatch release = new CountDownLatch(1);
+    tracer.close();
+    tracer = new MessageTracer(message -> release.await(), 4);
+    MessageTap tap = tracer.tap("CP1");
+
+    // When
+    for (int i = 0; i < 10; i++) {
+      tap.capture(Direction.INBOUND, Integer.toString(i), "Heartbeat", "frame");
+    }
+    release.countDown();
+    tracer.close();
+
+    // Then
+    assertThat(tracer.getWrittenCount() + tracer.getDroppedCount(), is(10L));
+    assertThat(tracer.getDroppedCount() >= 5, is(true));
+  }
+}
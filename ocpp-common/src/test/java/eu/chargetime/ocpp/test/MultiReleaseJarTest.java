@@ -0,0 +1,73 @@
+package eu.chargetime.ocpp.test;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import eu.chargetime.ocpp.RequestExecutors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Checks the Java 21 classes of the multi-release jar. Run by the test-java21 execution against
+ * the packaged jar on the JDK 21 toolchain, not by the default test run.
+ */
+public class MultiReleaseJarTest {
+
+  private ExecutorService executor;
+
+  @After
+  public void shutdown() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void isVirtualThreadSupported_java21ClassesLoaded_returnsTrue() {
+    assertThat(RequestExecutors.isVirtualThreadSupported(), is(true));
+  }
+
+  @Test
+  public void newBlockingHandlerExecutor_java21ClassesLoaded_runsOnVirtualThreads()
+      throws Exception {
+    // Given
+    executor = RequestExecutors.newBlockingHandlerExecutor(1);
+    CompletableFuture<Thread> thread = new CompletableFuture<>();
+
+    // When
+    executor.execute(() -> thread.complete(Thread.currentThread()));
+
+    // Then
+    Thread handler = thread.get(10, TimeUnit.SECONDS);
+    assertThat(handler.getName(), startsWith("ocpp-request-handler-"));
+    assertThat(Thread.class.getMethod("isVirtual").invoke(handler), is(true));
+  }
+}
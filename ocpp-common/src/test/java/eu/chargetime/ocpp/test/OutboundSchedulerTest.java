@@ -0,0 +1,229 @@
+package eu.chargetime.ocpp.test;
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import eu.chargetime.ocpp.OutboundScheduler;
+import eu.chargetime.ocpp.OutboundScheduler.Priority;
+import eu.chargetime.ocpp.model.Request;
+import eu.chargetime.ocpp.model.TestRequest;
+import eu.chargetime.ocpp.utilities.HashedWheelTimer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OutboundSchedulerTest {
+
+  private List<String> sent;
+  private OutboundScheduler scheduler;
+
+  @Before
+  public void setup() {
+    sent = new ArrayList<>();
+    scheduler = new OutboundScheduler(sender(sent::add));
+  }
+
+  @Test
+  public void submit_callUnanswered_holdsNextCallBack() {
+    // When
+    scheduler.submit("1", "Reset", new TestRequest());
+    scheduler.submit("2", "Reset", new TestRequest());
+
+    // Then
+    assertThat(sent, is(Arrays.asList("1")));
+    assertThat(scheduler.getQueueDepth(), is(1));
+    assertThat(scheduler.isCallInFlight(), is(true));
+  }
+
+  @Test
+  public void complete_unansweredCall_sendsNextCall() {
+    // Given
+    scheduler.submit("1", "Reset", new TestRequest());
+    scheduler.submit("2", "Reset", new TestRequest());
+
+    // When
+    boolean completed = scheduler.complete("1");
+
+    // Then
+    assertThat(completed, is(true));
+    assertThat(sent, is(Arrays.asList("1", "2")));
+    assertThat(scheduler.getQueueDepth(), is(0));
+    assertThat(scheduler.getSentCount(), is(2L));
+  }
+
+  @Test
+  public void complete_heldBackCall_dropsIt() {
+    // Given
+    scheduler.submit("1", "Reset", new TestRequest());
+    scheduler.submit("2", "Reset", new TestRequest());
+
+    // When
+    scheduler.complete("2");
+    scheduler.complete("1");
+
+    // Then
+    assertThat(sent, is(Arrays.asList("1")));
+    assertThat(scheduler.isCallInFlight(), is(false));
+  }
+
+  @Test
+  public void complete_unknownCall_keepsWaiting() {
+    // Given
+    scheduler.submit("1", "Reset", new TestRequest());
+    scheduler.submit("2", "Reset", new TestRequest());
+
+    // When
+    boolean completed = scheduler.complete("3");
+
+    // Then
+    assertThat(completed, is(false));
+    assertThat(sent, is(Arrays.asList("1")));
+  }
+
+  @Test
+  public void submit_mixedPriorities_sendsHighestPriorityFirst() {
+    // Given
+    scheduler.setPriority("DataTransfer", Priority.LOW);
+    scheduler.submit("1", "Reset", new TestRequest());
+    scheduler.submit("2", "GetConfiguration", new TestRequest());
+    scheduler.submit("3", "DataTransfer", new TestRequest());
+    scheduler.submit("4", "ClearCache", new TestRequest());
+    scheduler.submit("5", "RemoteStopTransaction", new TestRequest());
+
+    // When
+    for (int i = 1; i <= 5; i++) {
+      scheduler.complete(sent.get(sent.size() - 1));
+    }
+
+    // Then
+    assertThat(sent, is(Arrays.asList("1", "5", "4", "2", "3")));
+  }
+
+  @Test
+  public void submit_senderFailsCallRightAway_sendsNextCall() {
+    // Given
+    List<String> failed = new ArrayList<>();
+    scheduler =
+        new OutboundScheduler(
+            sender(
+                uniqueId -> {
+                  failed.add(uniqueId);
+                  scheduler.complete(uniqueId);
+                }));
+    scheduler.submit("1", "Reset", new TestRequest());
+
+    // When
+    scheduler.submit("2", "Reset", new TestRequest());
+
+    // Then
+    assertThat(failed, is(Arrays.asList("1", "2")));
+    assertThat(scheduler.isCallInFlight(), is(false));
+  }
+
+  @Test
+  public void reset_callUnanswered_sendsNextCall() {
+    // Given
+    scheduler.submit("1", "Reset", new TestRequest());
+    scheduler.submit("2", "Reset", new TestRequest());
+
+    // When
+    scheduler.reset();
+
+    // Then
+    assertThat(sent, is(Arrays.asList("1", "2")));
+  }
+
+  @Test
+  public void submit_callUnansweredPastInFlightTimeout_sendsNextCallOffTheTimerThread()
+      throws Exception {
+    // Given
+    HashedWheelTimer timer =
+        new HashedWheelTimer(
+            10, TimeUnit.MILLISECONDS, 8, runnable -> new Thread(runnable, "test-timer"));
+    List<String> written = new CopyOnWriteArrayList<>();
+    CompletableFuture<String> secondSentOn = new CompletableFuture<>();
+    scheduler =
+        new OutboundScheduler(
+                sender(
+                    uniqueId -> {
+                      written.add(uniqueId);
+                      if (uniqueId.equals("2")) {
+                        secondSentOn.complete(Thread.currentThread().getName());
+                      }
+                    }),
+                timer)
+            .setInFlightTimeout(50, TimeUnit.MILLISECONDS);
+    scheduler.submit("1", "Reset", new TestRequest());
+
+    // When
+    scheduler.submit("2", "Reset", new TestRequest());
+
+    // Then
+    assertThat(secondSentOn.get(5, TimeUnit.SECONDS), is(not("test-timer")));
+    assertThat(written, is(Arrays.asList("1", "2")));
+    assertThat(scheduler.getExpiredCount(), is(1L));
+    assertThat(scheduler.complete("1"), is(false));
+    timer.stop();
+  }
+
+  @Test
+  public void complete_beforeInFlightTimeout_nothingExpires() {
+    // Given
+    scheduler.submit("1", "Reset", new TestRequest());
+
+    // When
+    scheduler.complete("1");
+
+    // Then
+    assertThat(scheduler.getInFlightTimeout(TimeUnit.SECONDS), is(30L));
+    assertThat(scheduler.isCallInFlight(), is(false));
+    assertThat(scheduler.getExpiredCount(), is(0L));
+  }
+
+  /** A sender that records the id of each call it writes, replayed or not. */
+  private static OutboundScheduler.Sender sender(Consumer<String> written) {
+    return new OutboundScheduler.Sender() {
+      @Override
+      public void send(String uniqueId, String action, Request request) {
+        written.accept(uniqueId);
+      }
+
+      @Override
+      public void resend(String uniqueId, Object call) {
+        written.accept(uniqueId);
+      }
+    };
+  }
+}
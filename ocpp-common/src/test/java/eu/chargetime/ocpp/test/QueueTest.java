@@ -108,4 +108,81 @@ public class QueueTest {
     // Then
     assertThat(result, is(Optional.empty()));
   }
+
+  @Test
+  public void store_severalRequests_ticketsAreIncreasingNumbers() {
+    // Given
+    Request request = mock(Request.class);
+
+    // When
+    String first = queue.store(request);
+    String second = queue.store(request);
+
+    // Then
+    assertThat(prefixOf(second), equalTo(prefixOf(first)));
+    assertThat(counterOf(second), is(counterOf(first) + 1));
+  }
+
+  @Test
+  public void store_twoQueues_ticketsDoNotCollide() {
+    // Given
+    Request request = mock(Request.class);
+    Queue restarted = new Queue();
+
+    // When
+    String ticket = queue.store(request);
+    String other = restarted.store(request);
+
+    // Then
+    assertThat(other, not(equalTo(ticket)));
+    assertThat(restarted.restoreRequest(ticket), is(Optional.empty()));
+    assertThat(queue.restoreRequest(other), is(Optional.empty()));
+    assertThat(queue.size(), is(1));
+  }
+
+  @Test
+  public void turnInTicket_manyRequestsInFlight_eachRestoredOnce() {
+    // Given
+    int count = 1000;
+    Request[] requests = new Request[count];
+    String[] tickets = new String[count];
+    for (int i = 0; i < count; i++) {
+      requests[i] = mock(Request.class);
+      tickets[i] = queue.store(requests[i]);
+    }
+
+    // When, out of order so probe chains are shifted back on removal
+    for (int i = 0; i < count; i += 2) {
+      assertThat(queue.restoreRequest(tickets[i]).get(), equalTo(requests[i]));
+    }
+    for (int i = count - 1; i > 0; i -= 2) {
+      assertThat(queue.restoreRequest(tickets[i]).get(), equalTo(requests[i]));
+    }
+
+    // Then
+    assertThat(queue.size(), is(0));
+    assertThat(queue.restoreRequest(tickets[count - 1]), is(Optional.empty()));
+  }
+
+  @Test
+  public void turnInTicket_leadingZero_getNull() {
+    // Given
+    Request someRequest = mock(Request.class);
+    String ticket = queue.store(someRequest);
+
+    // When
+    Optional<Request> result = queue.restoreRequest(prefixOf(ticket) + "0" + counterOf(ticket));
+
+    // Then
+    assertThat(result, is(Optional.empty()));
+    assertThat(queue.size(), is(1));
+  }
+
+  private static String prefixOf(String ticket) {
+    return ticket.substring(0, ticket.indexOf('-') + 1);
+  }
+
+  private static long counterOf(String ticket) {
+    return Long.parseLong(ticket.substring(ticket.indexOf('-') + 1));
+  }
 }
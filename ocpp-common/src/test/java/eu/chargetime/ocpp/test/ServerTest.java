@@ -1,16 +1,30 @@
 package eu.chargetime.ocpp.test;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 import eu.chargetime.ocpp.*;
 import eu.chargetime.ocpp.feature.Feature;
+import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.Request;
 import eu.chargetime.ocpp.model.SessionInformation;
+import eu.chargetime.ocpp.utilities.HashedWheelTimer;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -52,6 +66,7 @@ public class ServerTest {
   private UUID sessionIndex;
 
   @Mock private Session session;
+  @Mock private Session otherSession;
   @Mock private Feature feature;
   @Mock private Listener listener;
   @Mock private ServerEvents serverEvents;
@@ -77,6 +92,7 @@ public class ServerTest {
 
     when(featureRepository.findFeature(any())).thenReturn(Optional.of(feature));
     when(session.getFeatureRepository()).thenReturn(featureRepository);
+    lenient().when(promiseRepository.createPromise(any())).thenReturn(new CompletableFuture<>());
     server = new Server(listener, promiseRepository);
   }
 
@@ -143,4 +159,308 @@ public class ServerTest {
     // Then
     verify(request, times(1)).validate();
   }
+
+  @Test
+  public void send_unansweredRequest_timesOutAndIsForgotten() throws Exception {
+    // Given
+    HashedWheelTimer timer =
+        new HashedWheelTimer(
+            10, TimeUnit.MILLISECONDS, 8, runnable -> new Thread(runnable, "test-timer"));
+    RequestTimeouts timeouts =
+        new RequestTimeouts(timer).setTimeout("Test", 50, TimeUnit.MILLISECONDS);
+    server.setRequestTimeouts(timeouts);
+    CompletableFuture<Confirmation> promise = new CompletableFuture<>();
+    when(feature.getAction()).thenReturn("Test");
+    when(session.storeRequest(request)).thenReturn("42");
+    when(promiseRepository.createPromise("42")).thenReturn(promise);
+    server.open(LOCALHOST, PORT, serverEvents);
+    listenerEvents.newSession(session, information);
+
+    // When
+    server.send(sessionIndex, request);
+    CompletableFuture<String> failedOn = new CompletableFuture<>();
+    promise.whenComplete((confirmation, t) -> failedOn.complete(Thread.currentThread().getName()));
+
+    // Then
+    assertThat(failedOn.get(5, TimeUnit.SECONDS), is(not("test-timer")));
+    try {
+      promise.get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(TimeoutException.class));
+    }
+    assertThat(promise.isCompletedExceptionally(), is(true));
+    verify(promiseRepository, timeout(5000)).removePromise("42");
+    verify(session, timeout(5000)).removeRequest("42");
+    assertThat(timeouts.getExpiredCount(), is(1L));
+    assertThat(timeouts.getPendingCount(), is(0L));
+    timer.stop();
+  }
+
+  @Test
+  public void send_promiseCancelled_requestIsForgotten() throws Exception {
+    // Given
+    CompletableFuture<Confirmation> promise = new CompletableFuture<>();
+    when(session.storeRequest(request)).thenReturn("42");
+    when(promiseRepository.createPromise("42")).thenReturn(promise);
+    server.open(LOCALHOST, PORT, serverEvents);
+    listenerEvents.newSession(session, information);
+    server.send(sessionIndex, request);
+
+    // When
+    promise.cancel(false);
+
+    // Then
+    verify(promiseRepository).removePromise("42");
+    verify(session).removeRequest("42");
+  }
+
+  @Test
+  public void send_byIdentity_isCommunicated() throws Exception {
+    // Given
+    when(information.getIdentifier()).thenReturn("/ocpp/CP_1");
+    server.open(LOCALHOST, PORT, serverEvents);
+    listenerEvents.newSession(session, information);
+
+    // When
+    server.send("CP_1", request);
+
+    // Then
+    assertThat(server.getSessionId("CP_1"), is(sessionIndex));
+    verify(session, times(1)).sendRequest(nullable(String.class), eq(request), nullable(String.class));
+  }
+
+  @Test
+  public void send_unknownIdentity_throwsNotConnected() {
+    // Given
+    server.open(LOCALHOST, PORT, serverEvents);
+
+    // When
+    try {
+      server.send("CP_1", request);
+      fail("Expected NotConnectedException");
+    } catch (Exception e) {
+      // Then
+      assertThat(e, instanceOf(NotConnectedException.class));
+    }
+    assertThat(server.getSessionId("CP_1"), is(nullValue()));
+  }
+
+  @Test
+  public void newSession_identityAlreadyConnected_keepsBothSessions() {
+    // Given
+    UUID otherId = UUID.randomUUID();
+    when(otherSession.getSessionId()).thenReturn(otherId);
+    when(information.getIdentifier()).thenReturn("/CP_1");
+    server.open(LOCALHOST, PORT, serverEvents);
+    listenerEvents.newSession(session, information);
+
+    // When
+    listenerEvents.newSession(otherSession, information);
+
+    // Then
+    verify(session, never()).close();
+    verify(otherSession, never()).close();
+    verify(serverEvents, times(2)).newSession(any(UUID.class), eq(information));
+    assertThat(server.getSessionId("CP_1"), is(otherId));
+  }
+
+  @Test
+  public void newSession_identityAlreadyConnectedWhenReplacing_replacesOpenSession() {
+    // Given
+    UUID otherId = UUID.randomUUID();
+    when(otherSession.getSessionId()).thenReturn(otherId);
+    when(information.getIdentifier()).thenReturn("/CP_1");
+    server.setDuplicateConnectionPolicy(DuplicateConnectionPolicy.REPLACE);
+    server.open(LOCALHOST, PORT, serverEvents);
+    listenerEvents.newSession(session, information);
+
+    // When
+    listenerEvents.newSession(otherSession, information);
+
+    // Then
+    verify(session, times(1)).close();
+    assertThat(server.getSessionId("CP_1"), is(otherId));
+  }
+
+  @Test
+  public void newSession_identityAlreadyConnectedWhenRejecting_refusesNewSession()
+      throws Exception {
+    // Given
+    when(information.getIdentifier()).thenReturn("/CP_1");
+    server.setDuplicateConnectionPolicy(DuplicateConnectionPolicy.REJECT);
+    server.open(LOCALHOST, PORT, serverEvents);
+    listenerEvents.newSession(session, information);
+
+    // When
+    try {
+      listenerEvents.authenticateSession(information, null, null);
+      fail("Expected AuthenticationException");
+    } catch (AuthenticationException e) {
+      assertThat(e.getErrorCode(), is(409));
+    }
+    listenerEvents.newSession(otherSession, information);
+
+    // Then
+    verify(otherSession, times(1)).close();
+    verify(session, never()).close();
+    verify(serverEvents, times(1)).newSession(any(UUID.class), eq(information));
+    assertThat(server.getSessionId("CP_1"), is(sessionIndex));
+  }
+
+  @Test
+  public void handleConnectionClosed_refusedDuplicate_isIgnored() throws Exception {
+    // Given
+    when(information.getIdentifier()).thenReturn("/CP_1");
+    server.setDuplicateConnectionPolicy(DuplicateConnectionPolicy.REJECT);
+    server.open(LOCALHOST, PORT, serverEvents);
+    listenerEvents.newSession(session, information);
+    SessionEvents[] refusedEvents = new SessionEvents[1];
+    doAnswer(invocation -> refusedEvents[0] = invocation.getArgument(0, SessionEvents.class))
+        .when(otherSession)
+        .accept(any());
+    listenerEvents.newSession(otherSession, information);
+
+    // When
+    refusedEvents[0].handleConnectionClosed();
+
+    // Then
+    verify(otherSession, never()).getSessionId();
+    verify(serverEvents, never()).lostSession(any());
+    assertThat(server.getSessionId("CP_1"), is(sessionIndex));
+  }
+
+  @Test
+  public void authenticateSessionAsync_authenticatorSet_completesWithAuthenticator()
+      throws Exception {
+    // Given
+    CompletableFuture<Void> authentication = new CompletableFuture<>();
+    server.setSessionAuthenticator((information, username, password) -> authentication);
+    server.open(LOCALHOST, PORT, serverEvents);
+
+    // When
+    CompletableFuture<Void> result =
+        listenerEvents.authenticateSessionAsync(information, "CP_1", "secret").toCompletableFuture();
+    boolean doneBefore = result.isDone();
+    authentication.complete(null);
+
+    // Then
+    assertThat(doneBefore, is(false));
+    assertThat(result.isDone(), is(true));
+    verify(serverEvents, never()).authenticateSession(any(), any(), any());
+  }
+
+  @Test
+  public void authenticateSessionAsync_identityAlreadyConnectedWhenRejecting_refusesUpFront()
+      throws Exception {
+    // Given
+    when(information.getIdentifier()).thenReturn("/CP_1");
+    SessionAuthenticator authenticator = mock(SessionAuthenticator.class);
+    server.setSessionAuthenticator(authenticator);
+    server.setDuplicateConnectionPolicy(DuplicateConnectionPolicy.REJECT);
+    server.open(LOCALHOST, PORT, serverEvents);
+    listenerEvents.newSession(session, information);
+
+    // When
+    CompletableFuture<Void> result =
+        listenerEvents.authenticateSessionAsync(information, null, null).toCompletableFuture();
+
+    // Then
+    try {
+      result.get();
+      fail("Expected AuthenticationException");
+    } catch (ExecutionException e) {
+      assertThat(((AuthenticationException) e.getCause()).getErrorCode(), is(409));
+    }
+    verify(authenticator, never()).authenticate(any(), any(), any());
+  }
+
+  @Test
+  public void connectionClosed_identityIsForgotten() {
+    // Given
+    when(information.getIdentifier()).thenReturn("/CP_1");
+    server.open(LOCALHOST, PORT, serverEvents);
+    listenerEvents.newSession(session, information);
+
+    // When
+    sessionEvents.handleConnectionClosed();
+
+    // Then
+    assertThat(server.getSessionId("CP_1"), is(nullValue()));
+    verify(serverEvents, times(1)).lostSession(sessionIndex);
+  }
+
+  @Test
+  public void broadcast_toSessions_sharesOnePackedPayload() throws Exception {
+    // Given
+    UUID otherId = UUID.randomUUID();
+    when(otherSession.getSessionId()).thenReturn(otherId);
+    when(otherSession.getFeatureRepository()).thenReturn(featureRepository);
+    when(promiseRepository.createPromise(any()))
+        .thenAnswer(invocation -> new CompletableFuture<>());
+    server.open(LOCALHOST, PORT, serverEvents);
+    listenerEvents.newSession(session, information);
+    listenerEvents.newSession(otherSession, information);
+    ArgumentCaptor<SharedPayload> sent = ArgumentCaptor.forClass(SharedPayload.class);
+    ArgumentCaptor<SharedPayload> otherSent = ArgumentCaptor.forClass(SharedPayload.class);
+
+    // When
+    BroadcastResult result =
+        server.broadcast(Arrays.asList(session.getSessionId(), otherId), request, 2);
+
+    // Then
+    verify(request, times(1)).validate();
+    verify(featureRepository, times(1)).findFeature(request);
+    verify(session, times(1))
+        .sendRequest(nullable(String.class), eq(request), nullable(String.class), sent.capture());
+    verify(otherSession, times(1))
+        .sendRequest(
+            nullable(String.class), eq(request), nullable(String.class), otherSent.capture());
+    assertThat(otherSent.getValue(), is(sent.getValue()));
+    assertThat(result.getPendingCount(), is(2));
+  }
+
+  @Test
+  public void broadcast_maxConcurrencyReached_holdsBackUntilAnswered() throws Exception {
+    // Given
+    UUID otherId = UUID.randomUUID();
+    CompletableFuture<Confirmation> firstPromise = new CompletableFuture<>();
+    when(otherSession.getSessionId()).thenReturn(otherId);
+    when(otherSession.getFeatureRepository()).thenReturn(featureRepository);
+    when(promiseRepository.createPromise(any()))
+        .thenReturn(firstPromise)
+        .thenAnswer(invocation -> new CompletableFuture<>());
+    server.open(LOCALHOST, PORT, serverEvents);
+    listenerEvents.newSession(session, information);
+    listenerEvents.newSession(otherSession, information);
+    BroadcastResult result =
+        server.broadcast(Arrays.asList(session.getSessionId(), otherId), request, 1);
+    verify(otherSession, never()).sendRequest(any(), any(), any(), any());
+
+    // When
+    Confirmation confirmation = mock(Confirmation.class);
+    firstPromise.complete(confirmation);
+
+    // Then
+    verify(otherSession, times(1))
+        .sendRequest(
+            nullable(String.class), eq(request), nullable(String.class), any(SharedPayload.class));
+    assertThat(result.getResult(session.getSessionId()).get(), is(confirmation));
+    assertThat(result.getConfirmedCount(), is(1));
+    assertThat(result.getPendingCount(), is(1));
+  }
+
+  @Test
+  public void broadcast_unknownSession_failsWithoutSending() throws Exception {
+    // Given
+    UUID unknownId = UUID.randomUUID();
+    server.open(LOCALHOST, PORT, serverEvents);
+
+    // When
+    BroadcastResult result = server.broadcast(Arrays.asList(unknownId), request, 10);
+
+    // Then
+    assertThat(result.isDone(), is(true));
+    assertThat(result.getFailedCount(), is(1));
+    assertThat(result.getFailures().get(unknownId), instanceOf(NotConnectedException.class));
+  }
 }
@@ -1,20 +1,24 @@
 package eu.chargetime.ocpp.test;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.*;
 
 import eu.chargetime.ocpp.*;
 import eu.chargetime.ocpp.feature.Feature;
+import eu.chargetime.ocpp.feature.PassThroughFeature;
 import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.Request;
 import eu.chargetime.ocpp.model.RequestWithId;
 import eu.chargetime.ocpp.model.TestRequest;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -158,7 +162,7 @@ public class SessionTest {
     doAnswer(invocation -> invocation.getArgument(0, CompletableFuture.class).complete(null))
         .when(fulfiller)
         .fulfill(any(), any(), any());
-    when(communicator.unpackPayload(any(), any())).thenReturn(new TestRequest());
+    when(communicator.unpackValidPayload(any(), any())).thenReturn(new TestRequest());
 
     // When
     eventHandler.onCall(someId, null, null);
@@ -184,7 +188,7 @@ public class SessionTest {
                 invocation.getArgument(0, CompletableFuture.class).complete(aConfirmation))
         .when(fulfiller)
         .fulfill(any(), any(), any());
-    when(communicator.unpackPayload(any(), any())).thenReturn(new TestRequest());
+    when(communicator.unpackValidPayload(any(), any())).thenReturn(new TestRequest());
 
     // When
     eventHandler.onCall(someId, null, null);
@@ -194,6 +198,26 @@ public class SessionTest {
     verify(communicator, times(1)).sendCallResult(anyString(), nullable(String.class), eq(aConfirmation));
   }
 
+  @Test
+  public void completePendingPromise_completedTwice_sendsOneCallResult() throws Exception {
+    // Given
+    String someId = "Some id";
+    Confirmation aConfirmation = mock(Confirmation.class);
+    doReturn(Confirmation.class).when(feature).getConfirmationType();
+    when(communicator.unpackValidPayload(any(), any())).thenReturn(new TestRequest());
+    eventHandler.onCall(someId, "some action", null);
+
+    // When
+    boolean first = session.completePendingPromise(someId, aConfirmation);
+    boolean second = session.completePendingPromise(someId, aConfirmation);
+
+    // Then
+    assertThat(first, is(true));
+    assertThat(second, is(false));
+    verify(communicator, times(1)).sendCallResult(someId, "some action", aConfirmation);
+    verify(featureRepository, times(1)).findFeature(any());
+  }
+
   @Test
   public void onCall_callbackThrowsException_callSendCallResult() throws Exception {
     // Given
@@ -205,7 +229,7 @@ public class SessionTest {
                     .completeExceptionally(new Exception()))
         .when(fulfiller)
         .fulfill(any(), any(), any());
-    when(communicator.unpackPayload(any(), any())).thenReturn(new TestRequest());
+    when(communicator.unpackValidPayload(any(), any())).thenReturn(new TestRequest());
 
     // When
     eventHandler.onCall(someId, null, null);
@@ -237,4 +261,148 @@ public class SessionTest {
     // TODO uniqueid should not be nullable
     verify(communicator, times(1)).sendCallError(eq(someId), nullable(String.class), anyString(), anyString());
   }
+
+  @Test
+  public void onCall_passThroughFeature_dispatchesUnboundRequest() throws Exception {
+    // Given
+    String someId = "Some id";
+    String somePayload = "{\"key\":\"value\"}";
+    doReturn(TestRequest.class).when(feature).getRequestType();
+    when(featureRepository.findFeature(any()))
+        .thenReturn(Optional.of(new PassThroughFeature<>(feature, (session, request) -> null)));
+    ArgumentCaptor<Request> request = ArgumentCaptor.forClass(Request.class);
+
+    // When
+    eventHandler.onCall(someId, null, somePayload);
+
+    // Then
+    verify(fulfiller, times(1)).fulfill(any(), any(), request.capture());
+    verify(communicator, never()).unpackValidPayload(any(), any());
+    LazyRequest<?> lazyRequest = (LazyRequest<?>) request.getValue();
+    assertThat(lazyRequest.getRawPayload(), equalTo(somePayload));
+    assertThat(lazyRequest.getOcppMessageId(), equalTo(someId));
+    assertThat(lazyRequest.isBound(), equalTo(false));
+  }
+
+  @Test
+  public void lazyRequest_get_bindsOnce() throws Exception {
+    // Given
+    TestRequest bound = new TestRequest();
+    doReturn(TestRequest.class).when(feature).getRequestType();
+    when(featureRepository.findFeature(any()))
+        .thenReturn(Optional.of(new PassThroughFeature<>(feature, (session, request) -> null)));
+    when(communicator.unpackValidPayload(any(), any())).thenReturn(bound);
+    ArgumentCaptor<Request> request = ArgumentCaptor.forClass(Request.class);
+    eventHandler.onCall("Some id", null, "{}");
+    verify(fulfiller).fulfill(any(), any(), request.capture());
+    LazyRequest<?> lazyRequest = (LazyRequest<?>) request.getValue();
+
+    // When
+    Object first = lazyRequest.get();
+    Object second = lazyRequest.get();
+
+    // Then
+    assertThat(first, equalTo(bound));
+    assertThat(second, equalTo(bound));
+    verify(communicator, times(1)).unpackValidPayload(eq("{}"), eq(TestRequest.class));
+  }
+
+  @Test
+  public void lazyRequest_invalidPayload_getThrowsOccurrenceConstraintViolation() throws Exception {
+    // Given
+    doReturn(TestRequest.class).when(feature).getRequestType();
+    when(featureRepository.findFeature(any()))
+        .thenReturn(Optional.of(new PassThroughFeature<>(feature, (session, request) -> null)));
+    when(communicator.unpackValidPayload(any(), any()))
+        .thenThrow(new OccurenceConstraintException());
+    ArgumentCaptor<Request> request = ArgumentCaptor.forClass(Request.class);
+    eventHandler.onCall("Some id", null, "{}");
+    verify(fulfiller).fulfill(any(), any(), request.capture());
+    LazyRequest<?> lazyRequest = (LazyRequest<?>) request.getValue();
+
+    // When
+    CallErrorException error = null;
+    try {
+      lazyRequest.get();
+    } catch (CallErrorException ex) {
+      error = ex;
+    }
+
+    // Then
+    assertThat(error.getErrorCode(), equalTo("OccurenceConstraintViolation"));
+    assertThat(lazyRequest.validate(), equalTo(false));
+  }
+
+  @Test
+  public void onCall_callbackThrowsCallError_callSendCallErrorWithItsCode() throws Exception {
+    // Given
+    String someId = "Some id";
+    doAnswer(
+            invocation ->
+                invocation
+                    .getArgument(0, CompletableFuture.class)
+                    .completeExceptionally(
+                        new CompletionException(
+                            new CallErrorException("FormationViolation", "Some error", null))))
+        .when(fulfiller)
+        .fulfill(any(), any(), any());
+    when(communicator.unpackValidPayload(any(), any())).thenReturn(new TestRequest());
+
+    // When
+    eventHandler.onCall(someId, null, null);
+
+    // Then
+    verify(communicator, times(1))
+        .sendCallError(eq(someId), nullable(String.class), eq("FormationViolation"), eq("Some error"));
+  }
+
+  @Test
+  public void onCall_strictDecoding_unpacksStrictPayload() throws Exception {
+    // Given
+    String someId = "Some id";
+    when(featureRepository.isStrictDecoding()).thenReturn(true);
+    when(communicator.unpackStrictPayload(any(), any())).thenReturn(new TestRequest());
+
+    // When
+    eventHandler.onCall(someId, null, "{}");
+
+    // Then
+    verify(communicator, times(1)).unpackStrictPayload(eq("{}"), any());
+    verify(communicator, never()).unpackValidPayload(any(), any());
+    verify(fulfiller, times(1)).fulfill(any(), any(), any());
+  }
+
+  @Test
+  public void sendRequest_earlierRequestUnanswered_sendsAfterCallResult() {
+    // Given
+    Request first = mock(Request.class);
+    Request second = mock(Request.class);
+    when(communicator.sendCall("1", "Reset", first)).thenReturn(true);
+    session.sendRequest("Reset", first, "1");
+
+    // When
+    session.sendRequest("Reset", second, "2");
+
+    // Then
+    verify(communicator, never()).sendCall("2", "Reset", second);
+    eventHandler.onCallResult("1", "Reset", null);
+    verify(communicator, times(1)).sendCall("2", "Reset", second);
+    assertThat(session.getOutboundScheduler().get().getSentCount(), is(2L));
+  }
+
+  @Test
+  public void sendRequest_earlierRequestStoredOffline_sendsRightAway() {
+    // Given
+    Request first = mock(Request.class);
+    Request second = mock(Request.class);
+    when(communicator.sendCall("1", "StartTransaction", first)).thenReturn(false);
+    session.sendRequest("StartTransaction", first, "1");
+
+    // When
+    session.sendRequest("Reset", second, "2");
+
+    // Then
+    verify(communicator, times(1)).sendCall("2", "Reset", second);
+    assertThat(session.getOutboundScheduler().get().isCallInFlight(), is(false));
+  }
 }
@@ -28,12 +28,16 @@ package eu.chargetime.ocpp.test;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import eu.chargetime.ocpp.SessionEvents;
 import eu.chargetime.ocpp.SimplePromiseFulfiller;
 import eu.chargetime.ocpp.UnsupportedFeatureException;
 import eu.chargetime.ocpp.model.Confirmation;
+import eu.chargetime.ocpp.model.Request;
 import java.util.concurrent.CompletableFuture;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -67,4 +71,39 @@ public class SimpleRequestDispatcherTest {
     // Then
     assertThat(result[0], is(expectedException));
   }
+
+  @Test
+  public void fulfill_stageFails_completesWithException() throws Exception {
+    // Given
+    RuntimeException expectedException = new RuntimeException();
+    CompletableFuture<Confirmation> handled = new CompletableFuture<>();
+    handled.completeExceptionally(expectedException);
+    when(eventsMock.handleRequestAsync(any())).thenReturn(handled);
+    CompletableFuture<Confirmation> promise = new CompletableFuture<>();
+
+    // When
+    sut.fulfill(promise, eventsMock, null);
+
+    // Then
+    assertThat(promise.isCompletedExceptionally(), is(true));
+    verify(eventsMock, never()).handleRequest(any());
+  }
+
+  @Test
+  public void fulfill_stageCompletesLater_completesRequestWithConfirmation() throws Exception {
+    // Given
+    CompletableFuture<Confirmation> handled = new CompletableFuture<>();
+    when(eventsMock.handleRequestAsync(any())).thenReturn(handled);
+    Request request = mock(Request.class);
+    when(request.getOcppMessageId()).thenReturn("some id");
+    Confirmation confirmation = mock(Confirmation.class);
+
+    // When
+    sut.fulfill(new CompletableFuture<>(), eventsMock, request);
+
+    // Then
+    verify(eventsMock, never()).asyncCompleteRequest(any(), any());
+    handled.complete(confirmation);
+    verify(eventsMock).asyncCompleteRequest("some id", confirmation);
+  }
 }
@@ -0,0 +1,174 @@
+package eu.chargetime.ocpp.test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import eu.chargetime.ocpp.*;
+import eu.chargetime.ocpp.feature.Feature;
+import eu.chargetime.ocpp.model.CallResultMessage;
+import eu.chargetime.ocpp.model.Confirmation;
+import eu.chargetime.ocpp.model.Message;
+import eu.chargetime.ocpp.model.Request;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+@RunWith(MockitoJUnitRunner.class)
+public class TransactionQueueRestartTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Mock private Receiver offlineRadio;
+  @Mock private Receiver radio;
+  @Mock private Request transactionRequest;
+  @Mock private Request liveRequest;
+  @Mock private Confirmation confirmation;
+  @Mock private Feature feature;
+  @Mock private IFeatureRepository featureRepository;
+  @Mock private PromiseFulfiller fulfiller;
+  @Mock private SessionEvents offlineEvents;
+  @Mock private SessionEvents events;
+
+  private Path directory;
+  private RadioEvents radioEvents;
+
+  @Before
+  public void setup() throws Exception {
+    directory = folder.getRoot().toPath();
+    doAnswer(invocation -> radioEvents = invocation.getArgument(0, RadioEvents.class))
+        .when(radio)
+        .accept(any());
+  }
+
+  @Test
+  public void restart_replayedAndLiveCallsInFlight_resultsCompleteOnlyTheirOwnCall()
+      throws Exception {
+    // Given a transaction call queued while offline, before the restart
+    when(transactionRequest.transactionRelated()).thenReturn(true);
+    doThrow(new NotConnectedException()).when(offlineRadio).send(any());
+    MappedFileTransactionQueue offlineQueue = new MappedFileTransactionQueue(directory);
+    Session offline =
+        new Session(
+            communicator(offlineRadio, offlineQueue), new Queue(), fulfiller, featureRepository);
+    offline.accept(offlineEvents);
+    String replayedId = offline.storeRequest(transactionRequest);
+    offline.sendRequest("StartTransaction", transactionRequest, replayedId);
+    offlineQueue.close();
+
+    // And after the restart, the replayed call and a live call both pending
+    MappedFileTransactionQueue transactionQueue = new MappedFileTransactionQueue(directory);
+    Session session =
+        new Session(
+            communicator(radio, transactionQueue), new Queue(), fulfiller, featureRepository);
+    session.accept(events);
+    radioEvents.connected();
+    String liveId = session.storeRequest(liveRequest);
+    session.sendRequest("Heartbeat", liveRequest, liveId);
+    doReturn(Optional.of(feature)).when(featureRepository).findFeature(liveRequest);
+    doReturn(Confirmation.class).when(feature).getConfirmationType();
+    when(confirmation.validate()).thenReturn(true);
+    verify(radio, never()).send(liveId);
+
+    // When
+    radioEvents.receivedMessage(result(replayedId));
+
+    // Then the live call was held back until the replayed one was answered
+    InOrder order = inOrder(radio);
+    order.verify(radio).send(replayedId);
+    order.verify(radio).send(liveId);
+    assertThat(liveId, is(not(replayedId)));
+    assertThat(transactionQueue.isEmpty(), is(true));
+    verify(events, never()).handleConfirmation(any(), any());
+    verify(radio, never()).send("InternalError:" + replayedId);
+
+    // When
+    radioEvents.receivedMessage(result(liveId));
+
+    // Then
+    verify(events).handleConfirmation(eq(liveId), eq(confirmation));
+    transactionQueue.close();
+  }
+
+  private Communicator communicator(Receiver receiver, TransactionQueue transactionQueue) {
+    return new Communicator(receiver, transactionQueue) {
+      @Override
+      public <T> T unpackPayload(Object payload, Class<T> type) {
+        return type.cast(confirmation);
+      }
+
+      @Override
+      public Object packPayload(Object payload) {
+        return null;
+      }
+
+      @Override
+      protected Object makeCallResult(String uniqueId, String action, Object payload) {
+        return null;
+      }
+
+      @Override
+      protected Object makeCall(String uniqueId, String action, Object payload) {
+        return uniqueId;
+      }
+
+      @Override
+      protected Object makeCallError(
+          String uniqueId, String action, String errorCode, String errorDescription) {
+        return errorCode + ":" + uniqueId;
+      }
+
+      @Override
+      protected Message parse(Object message) {
+        return message instanceof Message ? (Message) message : null;
+      }
+
+      @Override
+      protected String uniqueIdOf(Object call) {
+        return (String) call;
+      }
+    };
+  }
+
+  private static Message result(String uniqueId) {
+    Message message = new CallResultMessage();
+    message.setId(uniqueId);
+    return message;
+  }
+}
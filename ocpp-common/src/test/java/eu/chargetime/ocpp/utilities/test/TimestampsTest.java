@@ -0,0 +1,135 @@
+package eu.chargetime.ocpp.utilities.test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import eu.chargetime.ocpp.utilities.Timestamps;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+import org.junit.Test;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+public class TimestampsTest {
+
+  private static final String[] VALID = {
+    "2018-01-01T01:01:01.988Z",
+    "2018-01-01T01:01:01Z",
+    "2018-01-01T01:01Z",
+    "2018-01-01T01:01:01.9Z",
+    "2018-01-01T01:01:01.123456Z",
+    "2018-01-01T01:01:01.123456789Z",
+    "2018-01-01T01:01:01.100+02:00",
+    "2018-01-01T01:01:01-05:30",
+    "2018-01-01T01:01:01-00:00",
+    "2020-02-29T23:59:59.999+14:00",
+    "0001-01-01T00:00:00Z",
+    "2018-01-01T01:01:01+01:00[Europe/Paris]",
+    "+12018-01-01T01:01:01Z",
+    "2018-01-01t01:01:01z"
+  };
+
+  private static final String[] INVALID = {
+    "",
+    "2018-01-01",
+    "2018-01-01T01:01:01",
+    "2018-13-01T01:01:01Z",
+    "2019-02-29T01:01:01Z",
+    "2018-01-01T24:00:00Z",
+    "2018-01-01T01:01:01.Z",
+    "2018-01-01T01:01:01.1234567891Z",
+    "2018-01-01T01:01:01+19:00",
+    "2018-01-01T01:01:01+01:60",
+    "2018-01-01T01:01:01Zjunk",
+    "2018-0a-01T01:01:01Z"
+  };
+
+  @Test
+  public void parse_validTimestamps_sameAsJdk() {
+    for (String text : VALID) {
+      assertThat(text, Timestamps.parse(text), equalTo(ZonedDateTime.parse(text)));
+    }
+  }
+
+  @Test
+  public void parse_invalidTimestamps_throwsLikeJdk() {
+    for (String text : INVALID) {
+      String expected = null;
+      try {
+        ZonedDateTime.parse(text);
+      } catch (DateTimeParseException e) {
+        expected = e.getMessage();
+      }
+
+      String actual = null;
+      try {
+        Timestamps.parse(text);
+      } catch (DateTimeParseException e) {
+        actual = e.getMessage();
+      }
+
+      assertThat(text, actual, equalTo(expected));
+    }
+  }
+
+  @Test
+  public void format_randomTimestamps_sameAsJdk() {
+    Random random = new Random(42);
+    ZoneId[] zones = {
+      ZoneOffset.UTC, ZoneOffset.ofHours(2), ZoneOffset.ofHoursMinutes(-5, -30), ZoneId.of("Europe/Oslo")
+    };
+    int[] nanos = {0, 0, 988_000_000, 123_456_000, 123_456_789};
+    for (int i = 0; i < 10_000; i++) {
+      ZonedDateTime value =
+          ZonedDateTime.of(
+              random.nextInt(10_000),
+              1 + random.nextInt(12),
+              1 + random.nextInt(28),
+              random.nextInt(24),
+              random.nextInt(60),
+              random.nextInt(3) == 0 ? 0 : random.nextInt(60),
+              nanos[random.nextInt(nanos.length)],
+              zones[random.nextInt(zones.length)]);
+
+      assertThat(Timestamps.formatInstant(value), equalTo(DateTimeFormatter.ISO_INSTANT.format(value)));
+      assertThat(Timestamps.formatWithOffset(value), equalTo(value.toString()));
+      assertThat(Timestamps.parse(Timestamps.formatWithOffset(value)), equalTo(value));
+    }
+  }
+
+  @Test
+  public void format_yearOutsideFourDigits_sameAsJdk() {
+    ZonedDateTime value = ZonedDateTime.of(12018, 1, 1, 1, 1, 1, 0, ZoneOffset.UTC);
+
+    assertThat(Timestamps.formatInstant(value), equalTo(DateTimeFormatter.ISO_INSTANT.format(value)));
+    assertThat(Timestamps.formatWithOffset(value), equalTo(value.toString()));
+  }
+}
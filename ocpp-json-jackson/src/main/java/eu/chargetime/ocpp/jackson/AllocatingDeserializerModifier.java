@@ -0,0 +1,114 @@
+package eu.chargetime.ocpp.jackson;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerBuilder;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.ValueInstantiator;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Lets Jackson bind models without a no-argument constructor. Like Gson, such models are allocated
+ * without running a constructor and their fields are set afterwards.
+ */
+class AllocatingDeserializerModifier extends BeanDeserializerModifier {
+
+  private static final Object UNSAFE;
+  private static final Method ALLOCATE_INSTANCE;
+
+  static {
+    Object unsafe = null;
+    Method allocateInstance = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      unsafe = theUnsafe.get(null);
+      allocateInstance = unsafeClass.getMethod("allocateInstance", Class.class);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // not available on this JVM, models need a no-argument constructor
+    }
+    UNSAFE = unsafe;
+    ALLOCATE_INSTANCE = allocateInstance;
+  }
+
+  /**
+   * Create an instance without running any of its constructors.
+   *
+   * @param type the type to allocate.
+   * @return a new instance with all fields set to their default value.
+   * @throws ReflectiveOperationException the instance could not be allocated.
+   */
+  static Object allocate(Class<?> type) throws ReflectiveOperationException {
+    if (ALLOCATE_INSTANCE == null) {
+      throw new InstantiationException("Unable to allocate " + type.getName());
+    }
+    return ALLOCATE_INSTANCE.invoke(UNSAFE, type);
+  }
+
+  @Override
+  public BeanDeserializerBuilder updateBuilder(
+      DeserializationConfig config, BeanDescription description, BeanDeserializerBuilder builder) {
+    ValueInstantiator instantiator = builder.getValueInstantiator();
+    Class<?> type = description.getBeanClass();
+    if (ALLOCATE_INSTANCE != null
+        && instantiator != null
+        && !instantiator.canInstantiate()
+        && !type.isInterface()
+        && !Modifier.isAbstract(type.getModifiers())) {
+      builder.setValueInstantiator(new AllocatingInstantiator(type));
+    }
+    return builder;
+  }
+
+  private static class AllocatingInstantiator extends ValueInstantiator.Base {
+
+    AllocatingInstantiator(Class<?> type) {
+      super(type);
+    }
+
+    @Override
+    public boolean canCreateUsingDefault() {
+      return true;
+    }
+
+    @Override
+    public Object createUsingDefault(DeserializationContext context) throws IOException {
+      try {
+        return allocate(getValueClass());
+      } catch (ReflectiveOperationException e) {
+        return context.handleInstantiationProblem(getValueClass(), null, e);
+      }
+    }
+  }
+}
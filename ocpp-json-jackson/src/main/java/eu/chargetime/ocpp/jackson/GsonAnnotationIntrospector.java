@@ -0,0 +1,116 @@
+package eu.chargetime.ocpp.jackson;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.PropertyName;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.google.gson.annotations.SerializedName;
+import eu.chargetime.ocpp.model.Exclude;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Maps the Gson annotations used by the models to their Jackson meaning. */
+class GsonAnnotationIntrospector extends JacksonAnnotationIntrospector {
+
+  @Override
+  public PropertyName findNameForSerialization(Annotated annotated) {
+    SerializedName name = annotated.getAnnotation(SerializedName.class);
+    return name != null
+        ? PropertyName.construct(name.value())
+        : super.findNameForSerialization(annotated);
+  }
+
+  @Override
+  public PropertyName findNameForDeserialization(Annotated annotated) {
+    SerializedName name = annotated.getAnnotation(SerializedName.class);
+    return name != null
+        ? PropertyName.construct(name.value())
+        : super.findNameForDeserialization(annotated);
+  }
+
+  @Override
+  public List<PropertyName> findPropertyAliases(Annotated annotated) {
+    SerializedName name = annotated.getAnnotation(SerializedName.class);
+    if (name == null || name.alternate().length == 0) {
+      return super.findPropertyAliases(annotated);
+    }
+    List<PropertyName> aliases = new ArrayList<>();
+    for (String alternate : name.alternate()) {
+      aliases.add(PropertyName.construct(alternate));
+    }
+    return aliases;
+  }
+
+  /** Gson only skips excluded fields when writing, they are still read. */
+  @Override
+  public JsonProperty.Access findPropertyAccess(Annotated annotated) {
+    if (annotated.hasAnnotation(Exclude.class)) {
+      return JsonProperty.Access.WRITE_ONLY;
+    }
+    return super.findPropertyAccess(annotated);
+  }
+
+  /** Gson writes the fields of a class before the fields of its superclasses. */
+  @Override
+  public String[] findSerializationPropertyOrder(AnnotatedClass annotatedClass) {
+    List<String> order = new ArrayList<>();
+    for (Class<?> type = annotatedClass.getRawType();
+        type != null && type != Object.class;
+        type = type.getSuperclass()) {
+      for (Field field : type.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+          continue;
+        }
+        SerializedName name = field.getAnnotation(SerializedName.class);
+        order.add(name != null ? name.value() : field.getName());
+      }
+    }
+    return order.toArray(new String[0]);
+  }
+
+  @Override
+  public String[] findEnumValues(Class<?> enumType, Enum<?>[] enumValues, String[] names) {
+    for (int i = 0; i < enumValues.length; i++) {
+      try {
+        SerializedName name =
+            enumType.getField(enumValues[i].name()).getAnnotation(SerializedName.class);
+        if (name != null) {
+          names[i] = name.value();
+        }
+      } catch (NoSuchFieldException e) {
+        // constant bodies make the constant an anonymous subclass, keep the default name
+      }
+    }
+    return super.findEnumValues(enumType, enumValues, names);
+  }
+}
@@ -0,0 +1,78 @@
+package eu.chargetime.ocpp.jackson;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.CharacterEscapes;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * Escapes strings like Gson does with HTML escaping disabled: control characters use lower-case
+ * unicode escapes and the line and paragraph separators are escaped as well.
+ */
+class GsonCharacterEscapes extends CharacterEscapes {
+
+  private static final SerializableString[] CONTROL_ESCAPES = new SerializableString[0x20];
+  private static final SerializableString LINE_SEPARATOR = new SerializedString("\\u2028");
+  private static final SerializableString PARAGRAPH_SEPARATOR = new SerializedString("\\u2029");
+
+  static {
+    for (int i = 0; i < CONTROL_ESCAPES.length; i++) {
+      CONTROL_ESCAPES[i] = new SerializedString(String.format("\\u%04x", i));
+    }
+  }
+
+  private final int[] asciiEscapes;
+
+  GsonCharacterEscapes() {
+    asciiEscapes = standardAsciiEscapesForJSON();
+    for (int i = 0; i < CONTROL_ESCAPES.length; i++) {
+      if (asciiEscapes[i] == ESCAPE_STANDARD) {
+        asciiEscapes[i] = ESCAPE_CUSTOM;
+      }
+    }
+  }
+
+  @Override
+  public int[] getEscapeCodesForAscii() {
+    return asciiEscapes;
+  }
+
+  @Override
+  public SerializableString getEscapeSequence(int ch) {
+    if (ch < CONTROL_ESCAPES.length) {
+      return CONTROL_ESCAPES[ch];
+    }
+    if (ch == 0x2028) {
+      return LINE_SEPARATOR;
+    }
+    if (ch == 0x2029) {
+      return PARAGRAPH_SEPARATOR;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,131 @@
+package eu.chargetime.ocpp.jackson;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+import eu.chargetime.ocpp.JSONPayload;
+import eu.chargetime.ocpp.PayloadCodec;
+import eu.chargetime.ocpp.utilities.Timestamps;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.ZonedDateTime;
+
+/**
+ * {@link PayloadCodec} backed by Jackson. It produces the same JSON as {@link
+ * eu.chargetime.ocpp.GsonPayloadCodec}: models are bound through their fields, Gson's {@code
+ * SerializedName} and {@link eu.chargetime.ocpp.model.Exclude} annotations are honored, fields are
+ * written in Gson's order, null values are left out and dates are written as ISO-8601 instants.
+ *
+ * <p>Select it with {@code JSONConfiguration.get().setParameter(
+ * JSONConfiguration.PAYLOAD_CODEC_PARAMETER, new JacksonPayloadCodec())}.
+ */
+public class JacksonPayloadCodec implements PayloadCodec {
+
+  private final ObjectMapper mapper;
+
+  public JacksonPayloadCodec() {
+    SimpleModule module = new SimpleModule("OCPP");
+    module.addSerializer(ZonedDateTime.class, new ZonedDateTimeSerializer());
+    module.addDeserializer(ZonedDateTime.class, new ZonedDateTimeDeserializer());
+    module.setDeserializerModifier(new AllocatingDeserializerModifier());
+
+    mapper = new ObjectMapper();
+    mapper.setAnnotationIntrospector(new GsonAnnotationIntrospector());
+    mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE);
+    mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+    mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+    mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    mapper.enable(DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL);
+    mapper.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    mapper.getFactory().setCharacterEscapes(new GsonCharacterEscapes());
+    mapper.registerModule(module);
+  }
+
+  @Override
+  public <T> T decode(String payload, Class<T> type) throws IOException {
+    return mapper.readValue(payload, type);
+  }
+
+  /** Bind the payload straight from the message. */
+  @Override
+  public <T> T decode(JSONPayload payload, Class<T> type) throws IOException {
+    return mapper.readValue(payload.reader(), type);
+  }
+
+  @Override
+  public void encode(Object payload, Writer writer) throws IOException {
+    mapper.writeValue(writer, payload);
+  }
+
+  @Override
+  public String encode(Object payload) {
+    try {
+      return mapper.writeValueAsString(payload);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to encode " + payload.getClass().getName(), e);
+    }
+  }
+
+  private static class ZonedDateTimeSerializer extends StdScalarSerializer<ZonedDateTime> {
+
+    ZonedDateTimeSerializer() {
+      super(ZonedDateTime.class);
+    }
+
+    @Override
+    public void serialize(ZonedDateTime value, JsonGenerator generator, SerializerProvider provider)
+        throws IOException {
+      generator.writeString(Timestamps.formatInstant(value));
+    }
+  }
+
+  private static class ZonedDateTimeDeserializer extends StdScalarDeserializer<ZonedDateTime> {
+
+    ZonedDateTimeDeserializer() {
+      super(ZonedDateTime.class);
+    }
+
+    @Override
+    public ZonedDateTime deserialize(JsonParser parser, DeserializationContext context)
+        throws IOException {
+      return Timestamps.parse(parser.getValueAsString());
+    }
+  }
+}
@@ -0,0 +1,230 @@
+package eu.chargetime.ocpp.jackson;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+
+import eu.chargetime.ocpp.GsonPayloadCodec;
+import eu.chargetime.ocpp.PayloadCodec;
+import eu.chargetime.ocpp.model.Exclude;
+import eu.chargetime.ocpp.model.Validatable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.junit.Test;
+
+/**
+ * Conformance test of {@link JacksonPayloadCodec} against the default {@link GsonPayloadCodec}:
+ * every OCPP 1.6 and 2.0.1 model must be encoded to the same JSON and decode to the same model.
+ */
+public class PayloadCodecConformanceTest {
+
+  private static final String[] MODEL_PACKAGES = {
+    "eu.chargetime.ocpp.model.core",
+    "eu.chargetime.ocpp.model.firmware",
+    "eu.chargetime.ocpp.model.localauthlist",
+    "eu.chargetime.ocpp.model.remotetrigger",
+    "eu.chargetime.ocpp.model.reservation",
+    "eu.chargetime.ocpp.model.securityext",
+    "eu.chargetime.ocpp.model.securityext.types",
+    "eu.chargetime.ocpp.model.smartcharging",
+    "eu.chargetime.ocpp.v201.model.messages",
+    "eu.chargetime.ocpp.v201.model.types"
+  };
+
+  private static final String SAMPLE_STRING = "id \"1\"\\\n\t\u0001 é€";
+  private static final ZonedDateTime SAMPLE_DATE = ZonedDateTime.parse("2020-01-02T03:04:05.678Z");
+  private static final int MAX_DEPTH = 4;
+
+  private final PayloadCodec gson = new GsonPayloadCodec();
+  private final PayloadCodec jackson = new JacksonPayloadCodec();
+
+  @Test
+  public void encode_allModels_sameJson() throws Exception {
+    for (Class<?> type : modelTypes()) {
+      Object sample = sample(type, 0);
+
+      assertThat(type.getName(), jackson.encode(sample), equalTo(gson.encode(sample)));
+    }
+  }
+
+  @Test
+  public void decode_allModels_sameModel() throws Exception {
+    for (Class<?> type : modelTypes()) {
+      String json = gson.encode(sample(type, 0));
+
+      Object expected = gson.decode(json, type);
+      Object actual = jackson.decode(json, type);
+
+      assertThat(type.getName(), gson.encode(actual), equalTo(gson.encode(expected)));
+      assertThat(type.getName(), validation(actual), equalTo(validation(expected)));
+    }
+  }
+
+  @Test
+  public void decode_emptyObject_sameValidation() throws Exception {
+    for (Class<?> type : modelTypes()) {
+      Object expected = gson.decode("{}", type);
+      Object actual = jackson.decode("{}", type);
+
+      assertThat(type.getName(), gson.encode(actual), equalTo(gson.encode(expected)));
+      assertThat(type.getName(), validation(actual), equalTo(validation(expected)));
+    }
+  }
+
+  @Test
+  public void decode_unknownProperty_isIgnored() throws Exception {
+    for (Class<?> type : modelTypes()) {
+      String json = "{\"unknownProperty\":[1,{\"a\":null}]}";
+
+      assertThat(
+          type.getName(),
+          gson.encode(jackson.decode(json, type)),
+          equalTo(gson.encode(gson.decode(json, type))));
+    }
+  }
+
+  private static String validation(Object model) {
+    if (!(model instanceof Validatable)) {
+      return "n/a";
+    }
+    try {
+      return String.valueOf(((Validatable) model).validate());
+    } catch (RuntimeException e) {
+      return e.getClass().getName();
+    }
+  }
+
+  private static Object sample(Class<?> type, int depth) throws Exception {
+    if (type == String.class || type == Object.class) {
+      return SAMPLE_STRING;
+    }
+    if (type == Integer.class || type == int.class) {
+      return 7;
+    }
+    if (type == Long.class || type == long.class) {
+      return 7L;
+    }
+    if (type == Double.class || type == double.class) {
+      return 1.5;
+    }
+    if (type == Boolean.class || type == boolean.class) {
+      return true;
+    }
+    if (type == ZonedDateTime.class) {
+      return SAMPLE_DATE;
+    }
+    if (type.isEnum()) {
+      Object[] constants = type.getEnumConstants();
+      return constants[constants.length - 1];
+    }
+    if (type.isArray()) {
+      Object array = Array.newInstance(type.getComponentType(), 1);
+      Array.set(array, 0, sample(type.getComponentType(), depth + 1));
+      return array;
+    }
+    if (depth > MAX_DEPTH
+        || type.isInterface()
+        || Modifier.isAbstract(type.getModifiers())
+        || !type.getName().startsWith("eu.chargetime.ocpp")) {
+      return null;
+    }
+    Object model = AllocatingDeserializerModifier.allocate(type);
+    for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+      for (Field field : current.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers)
+            || Modifier.isTransient(modifiers)
+            || field.isSynthetic()
+            || field.isAnnotationPresent(Exclude.class)) {
+          continue;
+        }
+        field.setAccessible(true);
+        field.set(model, sample(field.getType(), depth + 1));
+      }
+    }
+    return model;
+  }
+
+  private static List<Class<?>> modelTypes() throws IOException, ClassNotFoundException {
+    List<Class<?>> types = new ArrayList<>();
+    ClassLoader loader = PayloadCodecConformanceTest.class.getClassLoader();
+    for (String packageName : MODEL_PACKAGES) {
+      List<String> names = new ArrayList<>();
+      String path = packageName.replace('.', '/');
+      Enumeration<URL> resources = loader.getResources(path);
+      while (resources.hasMoreElements()) {
+        URL resource = resources.nextElement();
+        if ("jar".equals(resource.getProtocol())) {
+          JarURLConnection connection = (JarURLConnection) resource.openConnection();
+          try (JarFile jar = connection.getJarFile()) {
+            for (JarEntry entry : Collections.list(jar.entries())) {
+              String name = entry.getName();
+              if (name.startsWith(path + "/") && name.indexOf('/', path.length() + 1) < 0) {
+                names.add(name.substring(path.length() + 1));
+              }
+            }
+          }
+        } else {
+          String[] files = new File(URLDecoder.decode(resource.getFile(), "UTF-8")).list();
+          if (files != null) {
+            Collections.addAll(names, files);
+          }
+        }
+      }
+      for (String name : names) {
+        if (!name.endsWith(".class") || name.contains("$") || name.startsWith("package-info")) {
+          continue;
+        }
+        Class<?> type =
+            Class.forName(packageName + "." + name.substring(0, name.length() - ".class".length()));
+        if (!type.isEnum()
+            && !type.isInterface()
+            && !Modifier.isAbstract(type.getModifiers())
+            && !type.isAnnotation()) {
+          types.add(type);
+        }
+      }
+    }
+    assertFalse(types.isEmpty());
+    return types;
+  }
+}
@@ -0,0 +1,110 @@
+package eu.chargetime.ocpp.netty;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import eu.chargetime.ocpp.NotConnectedException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Writes messages to a WebSocket channel. Netty queues writes made off the event loop, so any
+ * thread may write, and the flush consolidation in the pipeline shares a flush between the frames
+ * of a burst.
+ */
+final class ChannelFrames {
+
+  private ChannelFrames() {}
+
+  /**
+   * Write a message, a byte array as a binary frame or anything else as a text frame.
+   *
+   * @param channel the channel, null if there is none.
+   * @param message the message.
+   * @return completes when the frame is written to the socket.
+   * @throws NotConnectedException the channel isn't open.
+   */
+  static CompletableFuture<Void> write(Channel channel, Object message)
+      throws NotConnectedException {
+    WebSocketFrame frame =
+        message instanceof byte[]
+            ? new BinaryWebSocketFrame(Unpooled.wrappedBuffer((byte[]) message))
+            : new TextWebSocketFrame(message.toString());
+    return write(channel, frame);
+  }
+
+  /**
+   * Write a UTF-8 encoded text frame. The text is copied before this method returns.
+   *
+   * @param channel the channel, null if there is none.
+   * @param text the encoded text, from its position to its limit.
+   * @return completes when the frame is written to the socket.
+   * @throws NotConnectedException the channel isn't open.
+   */
+  static CompletableFuture<Void> writeText(Channel channel, ByteBuffer text)
+      throws NotConnectedException {
+    if (!isActive(channel)) {
+      throw new NotConnectedException();
+    }
+    ByteBuf copy = channel.alloc().buffer(text.remaining());
+    copy.writeBytes(text.duplicate());
+    return write(channel, new TextWebSocketFrame(copy));
+  }
+
+  private static CompletableFuture<Void> write(Channel channel, WebSocketFrame frame)
+      throws NotConnectedException {
+    if (!isActive(channel)) {
+      frame.release();
+      throw new NotConnectedException();
+    }
+    CompletableFuture<Void> written = new CompletableFuture<>();
+    channel
+        .writeAndFlush(frame)
+        .addListener(
+            (ChannelFuture future) -> {
+              if (future.isSuccess()) {
+                written.complete(null);
+              } else if (!future.channel().isActive()) {
+                written.completeExceptionally(new NotConnectedException());
+              } else {
+                written.completeExceptionally(future.cause());
+              }
+            });
+    return written;
+  }
+
+  private static boolean isActive(Channel channel) {
+    return channel != null && channel.isActive();
+  }
+}
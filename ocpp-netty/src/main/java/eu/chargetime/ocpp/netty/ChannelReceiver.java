@@ -0,0 +1,104 @@
+package eu.chargetime.ocpp.netty;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import eu.chargetime.ocpp.NotConnectedException;
+import eu.chargetime.ocpp.RadioEvents;
+import eu.chargetime.ocpp.Receiver;
+import eu.chargetime.ocpp.TextFrameRadio;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** The {@link Receiver} of a connection accepted by a {@link NettyWebSocketListener}. */
+final class ChannelReceiver implements Receiver, TextFrameRadio {
+
+  private final Channel channel;
+  private final AtomicBoolean disconnected = new AtomicBoolean();
+  private volatile RadioEvents events;
+
+  ChannelReceiver(Channel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * Hand a received message to the session. Called on the event loop of the channel.
+   *
+   * @param message the text or the bytes of a binary message.
+   */
+  void relay(Object message) {
+    events.receivedMessage(message);
+  }
+
+  @Override
+  public void accept(RadioEvents events) {
+    this.events = events;
+  }
+
+  /** Close the connection, the session learns of it once. */
+  @Override
+  public void disconnect() {
+    if (channel.isActive()) {
+      channel.writeAndFlush(new CloseWebSocketFrame()).addListener(ChannelFutureListener.CLOSE);
+    }
+    RadioEvents radioEvents = events;
+    if (disconnected.compareAndSet(false, true) && radioEvents != null) {
+      radioEvents.disconnected();
+    }
+  }
+
+  @Override
+  public void send(Object message) throws NotConnectedException {
+    ChannelFrames.write(channel, message);
+  }
+
+  @Override
+  public CompletionStage<Void> sendAsync(Object message) {
+    try {
+      return ChannelFrames.write(channel, message);
+    } catch (NotConnectedException ex) {
+      CompletableFuture<Void> failed = new CompletableFuture<>();
+      failed.completeExceptionally(ex);
+      return failed;
+    }
+  }
+
+  @Override
+  public void send(ByteBuffer frame) throws NotConnectedException {
+    ChannelFrames.writeText(channel, frame);
+  }
+
+  @Override
+  public boolean isClosed() {
+    return !channel.isActive();
+  }
+}
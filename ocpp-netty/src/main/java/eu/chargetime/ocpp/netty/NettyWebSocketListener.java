@@ -0,0 +1,668 @@
+package eu.chargetime.ocpp.netty;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import eu.chargetime.ocpp.AuthenticationException;
+import eu.chargetime.ocpp.CBORCommunicator;
+import eu.chargetime.ocpp.Communicator;
+import eu.chargetime.ocpp.HandshakeAdmission;
+import eu.chargetime.ocpp.ISession;
+import eu.chargetime.ocpp.ISessionFactory;
+import eu.chargetime.ocpp.JSONCommunicator;
+import eu.chargetime.ocpp.JSONConfiguration;
+import eu.chargetime.ocpp.Listener;
+import eu.chargetime.ocpp.ListenerEvents;
+import eu.chargetime.ocpp.MessageTracer;
+import eu.chargetime.ocpp.ProtocolVersion;
+import eu.chargetime.ocpp.model.SessionInformation;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketCloseStatus;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketServerHandshaker;
+import io.netty.handler.codec.http.websocketx.WebSocketServerHandshakerFactory;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.JdkSslContext;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Listener} on Netty, using the native epoll transport on Linux and NIO elsewhere. It
+ * accepts the same charge points as the {@code WebSocketListener}: sub protocol negotiation, basic
+ * authentication through {@link ListenerEvents#authenticateSessionAsync}, WSS, and a plain HTTP GET
+ * answered as a health check. A handshake still being authenticated doesn't hold up its event
+ * loop, it is answered once the authentication completes.
+ *
+ * <p>Use it with a {@link eu.chargetime.ocpp.Server}, or hand it to a {@code JSONServer}:
+ *
+ * <pre>{@code
+ * new JSONServer(coreProfile, configuration,
+ *     sessionFactory -> new NettyWebSocketListener(sessionFactory, configuration, "ocpp1.6", ""));
+ * }</pre>
+ *
+ * <p>Sub protocols are offered in order of preference. An empty sub protocol accepts a client that
+ * offers none of the others, the connection then has no sub protocol. A handshake offering none of
+ * the sub protocols is refused.
+ */
+public class NettyWebSocketListener implements Listener {
+  private static final Logger logger = LoggerFactory.getLogger(NettyWebSocketListener.class);
+
+  private static final int TIMEOUT_IN_MILLIS = 10000;
+  private static final int DEFAULT_WORKER_COUNT = 0;
+  private static final int ACCEPT_BACKLOG = 1024;
+  private static final int MAX_HANDSHAKE_BYTES = 8192;
+
+  /** Largest message accepted, over all the frames it is fragmented into. */
+  static final int MAX_MESSAGE_BYTES = 4 * 1024 * 1024;
+
+  private static final int OCPPJ_CP_MIN_PASSWORD_LENGTH = 16;
+  private static final int OCPPJ_CP_MAX_PASSWORD_LENGTH = 40;
+  private static final int OCPP2J_CP_MIN_PASSWORD_LENGTH = 16;
+  private static final int OCPP2J_CP_MAX_PASSWORD_LENGTH = 40;
+
+  private static final String HTTP_HEADER_PROXIED_ADDRESS = "X-Forwarded-For";
+  private static final byte[] HEALTH_CHECK_CONTENT =
+      "<h1>OCPP-J Websocket OK</h1>".getBytes(StandardCharsets.US_ASCII);
+
+  /** Creates the session of a new connection. */
+  public interface SessionCreator {
+
+    /**
+     * Create a session.
+     *
+     * @param communicator the communicator of the connection.
+     * @param protocolVersion the negotiated version, null if the sub protocol is none of them.
+     * @return the session.
+     */
+    ISession createSession(Communicator communicator, ProtocolVersion protocolVersion);
+  }
+
+  private final SessionCreator sessionCreator;
+  private final JSONConfiguration configuration;
+  private final HandshakeAdmission admission;
+  private final List<String> subProtocols;
+  private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+  private final ChannelGroup webSockets = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+  private volatile SslContext sslContext;
+  private volatile EventLoopGroup bossGroup;
+  private volatile EventLoopGroup workerGroup;
+  private volatile Channel serverChannel;
+  private volatile boolean closed = true;
+  private boolean handleRequestAsync;
+
+  /**
+   * Create a listener whose sessions come from a session factory.
+   *
+   * @param sessionFactory creates the session of each connection.
+   * @param configuration network configuration.
+   * @param subProtocols the accepted sub protocols, in order of preference.
+   */
+  public NettyWebSocketListener(
+      ISessionFactory sessionFactory, JSONConfiguration configuration, String... subProtocols) {
+    this(
+        (communicator, protocolVersion) -> sessionFactory.createSession(communicator),
+        configuration,
+        subProtocols);
+  }
+
+  /**
+   * Create a listener whose sessions depend on the negotiated version, such as the sessions of a
+   * {@code MultiProtocolSessionFactory}.
+   *
+   * @param sessionCreator creates the session of each connection.
+   * @param configuration network configuration.
+   * @param subProtocols the accepted sub protocols, in order of preference.
+   */
+  public NettyWebSocketListener(
+      SessionCreator sessionCreator, JSONConfiguration configuration, String... subProtocols) {
+    this.sessionCreator = sessionCreator;
+    this.configuration = configuration;
+    this.admission = configuration.getParameter(JSONConfiguration.HANDSHAKE_ADMISSION_PARAMETER);
+    this.subProtocols = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(subProtocols)));
+  }
+
+  /**
+   * Accept WSS connections only.
+   *
+   * @param sslContext the server context.
+   * @throws IllegalStateException the listener is already open.
+   */
+  public void enableWSS(SslContext sslContext) {
+    if (!sslContext.isServer()) {
+      throw new IllegalArgumentException("The SSL context is not a server context");
+    }
+    if (serverChannel != null) {
+      throw new IllegalStateException("Cannot enable WSS on already running server");
+    }
+    this.sslContext = sslContext;
+  }
+
+  /**
+   * Accept WSS connections only.
+   *
+   * @param sslContext the JDK SSL context of the server.
+   * @throws IllegalStateException the listener is already open.
+   */
+  public void enableWSS(SSLContext sslContext) {
+    enableWSS(new JdkSslContext(sslContext, false, ClientAuth.NONE));
+  }
+
+  @Override
+  public void open(String hostname, int port, ListenerEvents handler) {
+    bossGroup = Transports.newEventLoopGroup(1, "ocpp-netty-acceptor");
+    workerGroup =
+        Transports.newEventLoopGroup(
+            configuration.getParameter(
+                JSONConfiguration.WEBSOCKET_WORKER_COUNT, DEFAULT_WORKER_COUNT),
+            "ocpp-netty-worker");
+
+    ServerBootstrap bootstrap =
+        new ServerBootstrap()
+            .group(bossGroup, workerGroup)
+            .channel(Transports.serverChannelType())
+            .option(ChannelOption.SO_BACKLOG, ACCEPT_BACKLOG)
+            .option(
+                ChannelOption.SO_REUSEADDR,
+                configuration.getParameter(JSONConfiguration.REUSE_ADDR_PARAMETER, true))
+            .childOption(
+                ChannelOption.TCP_NODELAY,
+                configuration.getParameter(JSONConfiguration.TCP_NO_DELAY_PARAMETER, false))
+            .childHandler(
+                new ChannelInitializer<SocketChannel>() {
+                  @Override
+                  protected void initChannel(SocketChannel channel) {
+                    channels.add(channel);
+                    ChannelPipeline pipeline = channel.pipeline();
+                    SslContext ssl = sslContext;
+                    if (ssl != null) {
+                      pipeline.addLast(ssl.newHandler(channel.alloc()));
+                    }
+                    pipeline.addLast(
+                        new HttpServerCodec(),
+                        new HttpObjectAggregator(MAX_HANDSHAKE_BYTES),
+                        new HandshakeHandler(handler));
+                  }
+                });
+
+    ChannelFuture bind = bootstrap.bind(hostname, port).awaitUninterruptibly();
+    if (!bind.isSuccess()) {
+      shutdownEventLoops();
+      throw new IllegalStateException(
+          "Failed to bind to " + hostname + ":" + port, bind.cause());
+    }
+    serverChannel = bind.channel();
+    closed = false;
+    logger.debug("Server socket bound ({})", Transports.isEpoll() ? "epoll" : "nio");
+  }
+
+  /**
+   * The port the listener is bound to, useful when opened on port 0.
+   *
+   * @return the port, -1 if the listener isn't open.
+   */
+  public int getPort() {
+    Channel channel = serverChannel;
+    return channel == null ? -1 : ((InetSocketAddress) channel.localAddress()).getPort();
+  }
+
+  @Override
+  public void close() {
+    Channel channel = serverChannel;
+    if (channel == null) {
+      return;
+    }
+
+    try {
+      channel.close().awaitUninterruptibly(TIMEOUT_IN_MILLIS);
+      webSockets
+          .writeAndFlush(new CloseWebSocketFrame(WebSocketCloseStatus.ENDPOINT_UNAVAILABLE))
+          .awaitUninterruptibly(TIMEOUT_IN_MILLIS);
+      channels.close().awaitUninterruptibly(TIMEOUT_IN_MILLIS);
+    } finally {
+      shutdownEventLoops();
+      closed = true;
+      serverChannel = null;
+    }
+  }
+
+  private void shutdownEventLoops() {
+    bossGroup.shutdownGracefully(0, TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+    workerGroup
+        .shutdownGracefully(0, TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS)
+        .awaitUninterruptibly(TIMEOUT_IN_MILLIS);
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public void setAsyncRequestHandler(boolean async) {
+    this.handleRequestAsync = async;
+  }
+
+  /**
+   * Pick the first of our sub protocols the client offers.
+   *
+   * @param offered the value of the Sec-WebSocket-Protocol header, null if absent.
+   * @return the sub protocol, empty for none, or null if the handshake is refused.
+   */
+  String selectSubProtocol(String offered) {
+    if (subProtocols.isEmpty()) {
+      return "";
+    }
+    List<String> offers = new ArrayList<>();
+    if (offered != null) {
+      for (String offer : offered.split(",")) {
+        offers.add(offer.trim());
+      }
+    }
+    for (String subProtocol : subProtocols) {
+      if (subProtocol.isEmpty() || offers.contains(subProtocol)) {
+        return subProtocol;
+      }
+    }
+    return null;
+  }
+
+  private Communicator createCommunicator(ChannelReceiver receiver, String subProtocol) {
+    if (CBORCommunicator.isCBORSubProtocol(subProtocol)) {
+      return new CBORCommunicator(receiver, true);
+    }
+    return new JSONCommunicator(receiver, true, JSONCommunicator.codecOf(configuration));
+  }
+
+  /** Answers a health check, or authenticates and upgrades a WebSocket handshake. */
+  private final class HandshakeHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    private final ListenerEvents handler;
+
+    HandshakeHandler(ListenerEvents handler) {
+      this.handler = handler;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+      if (!request.decoderResult().isSuccess()) {
+        respond(ctx, HttpResponseStatus.BAD_REQUEST);
+        return;
+      }
+      if (!request.headers().contains(HttpHeaderNames.UPGRADE)) {
+        if (HttpMethod.GET.equals(request.method())
+            && configuration.getParameter(JSONConfiguration.HTTP_HEALTH_CHECK_ENABLED, true)) {
+          logger.debug("On HTTP Request, for heathcheck");
+          FullHttpResponse response =
+              new DefaultFullHttpResponse(
+                  HttpVersion.HTTP_1_1,
+                  HttpResponseStatus.OK,
+                  Unpooled.wrappedBuffer(HEALTH_CHECK_CONTENT));
+          response.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.TEXT_HTML);
+          send(ctx, response);
+        } else {
+          respond(ctx, HttpResponseStatus.BAD_REQUEST);
+        }
+        return;
+      }
+
+      String subProtocol =
+          selectSubProtocol(request.headers().get(HttpHeaderNames.SEC_WEBSOCKET_PROTOCOL));
+      if (subProtocol == null) {
+        logger.debug("No sub protocol accepted for {}", request.uri());
+        respond(ctx, HttpResponseStatus.BAD_REQUEST);
+        return;
+      }
+      ProtocolVersion protocolVersion =
+          ProtocolVersion.fromSubProtocolName(CBORCommunicator.ocppSubProtocolName(subProtocol));
+      InetSocketAddress address = (InetSocketAddress) ctx.channel().remoteAddress();
+
+      if (admission != null) {
+        int retryAfter = admission.tryAdmit(address.getAddress());
+        if (retryAfter != HandshakeAdmission.ADMITTED) {
+          FullHttpResponse response =
+              new DefaultFullHttpResponse(
+                  HttpVersion.HTTP_1_1,
+                  HttpResponseStatus.SERVICE_UNAVAILABLE,
+                  Unpooled.EMPTY_BUFFER);
+          response.headers().setInt(HttpHeaderNames.RETRY_AFTER, retryAfter);
+          send(ctx, response);
+          return;
+        }
+      }
+      CompletableFuture<HttpResponseStatus> authentication =
+          authenticate(request, address, protocolVersion).toCompletableFuture();
+      if (authentication.isDone()) {
+        if (admission != null) {
+          admission.release();
+        }
+        upgrade(ctx, request, subProtocol, protocolVersion, authentication.join());
+        return;
+      }
+
+      // answered on the event loop once authenticated, the channel reads nothing meanwhile
+      request.retain();
+      ctx.channel().config().setAutoRead(false);
+      authentication.whenComplete(
+          (refusal, ignored) -> {
+            if (admission != null) {
+              admission.release();
+            }
+            try {
+              ctx.executor()
+                  .execute(
+                      () -> {
+                        try {
+                          if (ctx.channel().isActive()) {
+                            upgrade(ctx, request, subProtocol, protocolVersion, refusal);
+                          }
+                        } finally {
+                          request.release();
+                          ctx.channel().config().setAutoRead(true);
+                        }
+                      });
+            } catch (RejectedExecutionException e) {
+              // the listener is closing
+              request.release();
+            }
+          });
+    }
+
+    /** Answer an authenticated handshake, and open a session if it was accepted. */
+    private void upgrade(
+        ChannelHandlerContext ctx,
+        FullHttpRequest request,
+        String subProtocol,
+        ProtocolVersion protocolVersion,
+        HttpResponseStatus refusal) {
+      if (refusal != null) {
+        respond(ctx, refusal);
+        return;
+      }
+
+      InetSocketAddress address = (InetSocketAddress) ctx.channel().remoteAddress();
+      WebSocketServerHandshaker handshaker =
+          new WebSocketServerHandshakerFactory(
+                  webSocketUrl(request),
+                  subProtocol.isEmpty() ? null : subProtocol,
+                  false,
+                  MAX_MESSAGE_BYTES)
+              .newHandshaker(request);
+      if (handshaker == null) {
+        WebSocketServerHandshakerFactory.sendUnsupportedVersionResponse(ctx.channel());
+        return;
+      }
+      // the response is queued before anything the new session sends
+      handshaker
+          .handshake(ctx.channel(), request)
+          .addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+
+      String proxiedAddress = request.headers().get(HTTP_HEADER_PROXIED_ADDRESS);
+      logger.debug(
+          "New web-socket connection opened from address: {} proxied for: {}",
+          address,
+          proxiedAddress);
+
+      SessionInformation information =
+          new SessionInformation.Builder()
+              .Identifier(request.uri())
+              .InternetAddress(address)
+              .ProtocolVersion(protocolVersion)
+              .ProxiedAddress(proxiedAddress)
+              .build();
+
+      ChannelReceiver receiver = new ChannelReceiver(ctx.channel());
+      ctx.pipeline()
+          .addLast(
+              new IdleStateHandler(
+                  configuration.getParameter(JSONConfiguration.PING_INTERVAL_PARAMETER, 60),
+                  0,
+                  0),
+              new WebSocketFrameAggregator(MAX_MESSAGE_BYTES),
+              new FlushConsolidationHandler(),
+              new FrameHandler(receiver, handshaker, information.getIdentifier()));
+      ctx.pipeline().remove(this);
+      webSockets.add(ctx.channel());
+
+      Communicator communicator = createCommunicator(receiver, subProtocol);
+      MessageTracer tracer = configuration.getParameter(JSONConfiguration.MESSAGE_TRACER_PARAMETER);
+      if (tracer != null) {
+        communicator.setMessageTap(tracer.tap(information.getIdentifier()));
+      }
+      handler.newSession(sessionCreator.createSession(communicator, protocolVersion), information);
+    }
+
+    /** @return a stage completing with the status to refuse the handshake with, null to accept. */
+    private CompletionStage<HttpResponseStatus> authenticate(
+        FullHttpRequest request, InetSocketAddress address, ProtocolVersion protocolVersion) {
+      SessionInformation information =
+          new SessionInformation.Builder()
+              .Identifier(request.uri())
+              .InternetAddress(address)
+              .ProtocolVersion(protocolVersion)
+              .build();
+
+      String username = null;
+      String password = null;
+      String authorization = request.headers().get(HttpHeaderNames.AUTHORIZATION);
+      if (authorization != null) {
+        if (authorization.toLowerCase().startsWith("basic")) {
+          // Authorization: Basic base64credentials
+          String base64Credentials = authorization.substring("Basic".length()).trim();
+          byte[] credDecoded;
+          try {
+            credDecoded = Base64.getDecoder().decode(base64Credentials);
+          } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(HttpResponseStatus.UNAUTHORIZED);
+          }
+          // split credentials on username and password
+          for (int i = 0; i < credDecoded.length; i++) {
+            if (credDecoded[i] == ':') {
+              username = new String(Arrays.copyOfRange(credDecoded, 0, i), StandardCharsets.UTF_8);
+              if (i + 1 < credDecoded.length) {
+                password =
+                    new String(
+                        Arrays.copyOfRange(credDecoded, i + 1, credDecoded.length),
+                        StandardCharsets.UTF_8);
+              }
+              break;
+            }
+          }
+        }
+        if (!isValidPasswordLength(password, protocolVersion)) {
+          return CompletableFuture.completedFuture(HttpResponseStatus.UNAUTHORIZED);
+        }
+      }
+
+      try {
+        return handler
+            .authenticateSessionAsync(information, username, password)
+            .handle((accepted, failure) -> failure == null ? null : refusalOf(failure));
+      } catch (Exception e) {
+        return CompletableFuture.completedFuture(HttpResponseStatus.UNAUTHORIZED);
+      }
+    }
+
+    private HttpResponseStatus refusalOf(Throwable failure) {
+      if (failure instanceof CompletionException && failure.getCause() != null) {
+        failure = failure.getCause();
+      }
+      if (failure instanceof AuthenticationException) {
+        return HttpResponseStatus.valueOf(((AuthenticationException) failure).getErrorCode());
+      }
+      return HttpResponseStatus.UNAUTHORIZED;
+    }
+
+    private boolean isValidPasswordLength(String password, ProtocolVersion protocolVersion) {
+      if (password == null) {
+        return false;
+      }
+      if (protocolVersion == ProtocolVersion.OCPP2_0_1) {
+        return password.length()
+                >= configuration.getParameter(
+                    JSONConfiguration.OCPP2J_CP_MIN_PASSWORD_LENGTH, OCPP2J_CP_MIN_PASSWORD_LENGTH)
+            && password.length()
+                <= configuration.getParameter(
+                    JSONConfiguration.OCPP2J_CP_MAX_PASSWORD_LENGTH, OCPP2J_CP_MAX_PASSWORD_LENGTH);
+      }
+      return password.length()
+              >= configuration.getParameter(
+                  JSONConfiguration.OCPPJ_CP_MIN_PASSWORD_LENGTH, OCPPJ_CP_MIN_PASSWORD_LENGTH)
+          && password.length()
+              <= configuration.getParameter(
+                  JSONConfiguration.OCPPJ_CP_MAX_PASSWORD_LENGTH, OCPPJ_CP_MAX_PASSWORD_LENGTH);
+    }
+
+    private String webSocketUrl(FullHttpRequest request) {
+      String scheme = sslContext != null ? "wss" : "ws";
+      return scheme + "://" + request.headers().get(HttpHeaderNames.HOST) + request.uri();
+    }
+
+    private void respond(ChannelHandlerContext ctx, HttpResponseStatus status) {
+      send(ctx, new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, Unpooled.EMPTY_BUFFER));
+    }
+
+    private void send(ChannelHandlerContext ctx, FullHttpResponse response) {
+      response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+      response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+      ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      logger.debug("Handshake failed", cause);
+      ctx.close();
+    }
+  }
+
+  /** Relays the messages of an open connection and pings it when it is idle. */
+  private final class FrameHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
+
+    private final ChannelReceiver receiver;
+    private final WebSocketServerHandshaker handshaker;
+    private final String resourceDescriptor;
+    private boolean awaitingPong;
+
+    FrameHandler(
+        ChannelReceiver receiver, WebSocketServerHandshaker handshaker, String resourceDescriptor) {
+      this.receiver = receiver;
+      this.handshaker = handshaker;
+      this.resourceDescriptor = resourceDescriptor;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame frame) {
+      awaitingPong = false;
+      if (frame instanceof TextWebSocketFrame) {
+        receiver.relay(((TextWebSocketFrame) frame).text());
+      } else if (frame instanceof BinaryWebSocketFrame) {
+        receiver.relay(ByteBufUtil.getBytes(frame.content()));
+      } else if (frame instanceof PingWebSocketFrame) {
+        ctx.writeAndFlush(new PongWebSocketFrame(frame.content().retain()));
+      } else if (frame instanceof CloseWebSocketFrame) {
+        handshaker.close(ctx.channel(), (CloseWebSocketFrame) frame.retain());
+      }
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object event) throws Exception {
+      if (event instanceof IdleStateEvent
+          && ((IdleStateEvent) event).state() == IdleState.READER_IDLE) {
+        if (awaitingPong) {
+          logger.debug("Connection lost (resource descriptor: {})", resourceDescriptor);
+          ctx.close();
+        } else {
+          awaitingPong = true;
+          ctx.writeAndFlush(new PingWebSocketFrame());
+        }
+        return;
+      }
+      super.userEventTriggered(ctx, event);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      logger.debug("On connection close (resource descriptor: {})", resourceDescriptor);
+      receiver.disconnect();
+      super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      logger.error("On error (resource descriptor: " + resourceDescriptor + ") triggered:", cause);
+      ctx.close();
+    }
+  }
+}
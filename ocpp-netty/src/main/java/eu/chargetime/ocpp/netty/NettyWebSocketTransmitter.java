@@ -0,0 +1,379 @@
+package eu.chargetime.ocpp.netty;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import eu.chargetime.ocpp.JSONConfiguration;
+import eu.chargetime.ocpp.NotConnectedException;
+import eu.chargetime.ocpp.RadioEvents;
+import eu.chargetime.ocpp.TextFrameRadio;
+import eu.chargetime.ocpp.Transmitter;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketClientHandshaker;
+import io.netty.handler.codec.http.websocketx.WebSocketClientHandshakerFactory;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketVersion;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.JdkSslContext;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.net.ssl.SSLContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Transmitter} on Netty, the charge point side of a {@link NettyWebSocketListener}. All
+ * transmitters share one event loop group of daemon threads, so a process simulating many charge
+ * points doesn't need a thread per connection.
+ */
+public class NettyWebSocketTransmitter implements Transmitter, TextFrameRadio {
+  private static final Logger logger = LoggerFactory.getLogger(NettyWebSocketTransmitter.class);
+
+  public static final String WSS_SCHEME = "wss";
+
+  private static final int TIMEOUT_IN_MILLIS = 10000;
+  private static final int MAX_HANDSHAKE_BYTES = 8192;
+
+  private final JSONConfiguration configuration;
+  private final String subProtocols;
+  private volatile boolean closed = true;
+  private volatile Channel connection;
+  private volatile Channel webSocket;
+  private SslContext sslContext;
+
+  /**
+   * Create a transmitter.
+   *
+   * @param configuration network configuration.
+   * @param subProtocols the offered sub protocols, in order of preference.
+   */
+  public NettyWebSocketTransmitter(JSONConfiguration configuration, String... subProtocols) {
+    this.configuration = configuration;
+    this.subProtocols = subProtocols.length == 0 ? null : String.join(",", subProtocols);
+  }
+
+  /**
+   * Connect over WSS, required for wss:// URIs.
+   *
+   * @param sslContext the client context.
+   * @throws IllegalStateException the transmitter is already connected.
+   */
+  public void enableWSS(SslContext sslContext) {
+    if (!sslContext.isClient()) {
+      throw new IllegalArgumentException("The SSL context is not a client context");
+    }
+    if (connection != null) {
+      throw new IllegalStateException("Cannot enable WSS on already connected client");
+    }
+    this.sslContext = sslContext;
+  }
+
+  /**
+   * Connect over WSS, required for wss:// URIs.
+   *
+   * @param sslContext the JDK SSL context of the client.
+   * @throws IllegalStateException the transmitter is already connected.
+   */
+  public void enableWSS(SSLContext sslContext) {
+    enableWSS(new JdkSslContext(sslContext, true, ClientAuth.NONE));
+  }
+
+  @Override
+  public void connect(String uri, RadioEvents events) {
+    final URI resource = URI.create(uri);
+    boolean secure = WSS_SCHEME.equals(resource.getScheme());
+    if (secure && sslContext == null) {
+      throw new IllegalStateException("sslContext must be set to support " + WSS_SCHEME + " scheme");
+    }
+    String host = resource.getHost();
+    int port = resource.getPort() != -1 ? resource.getPort() : (secure ? 443 : 80);
+
+    WebSocketClientHandshaker handshaker =
+        WebSocketClientHandshakerFactory.newHandshaker(
+            resource,
+            WebSocketVersion.V13,
+            subProtocols,
+            false,
+            authorizationHeaders(),
+            NettyWebSocketListener.MAX_MESSAGE_BYTES);
+    FrameHandler frameHandler = new FrameHandler(events);
+
+    Bootstrap bootstrap =
+        new Bootstrap()
+            .group(SharedEventLoop.GROUP)
+            .channel(Transports.channelType())
+            .option(
+                ChannelOption.SO_REUSEADDR,
+                configuration.getParameter(JSONConfiguration.REUSE_ADDR_PARAMETER, false))
+            .option(
+                ChannelOption.TCP_NODELAY,
+                configuration.getParameter(JSONConfiguration.TCP_NO_DELAY_PARAMETER, false))
+            .handler(
+                new ChannelInitializer<SocketChannel>() {
+                  @Override
+                  protected void initChannel(SocketChannel channel) {
+                    ChannelPipeline pipeline = channel.pipeline();
+                    if (secure) {
+                      pipeline.addLast(sslContext.newHandler(channel.alloc(), host, port));
+                    }
+                    pipeline.addLast(
+                        new HttpClientCodec(),
+                        new HttpObjectAggregator(MAX_HANDSHAKE_BYTES),
+                        new WebSocketClientProtocolHandler(handshaker),
+                        new WebSocketFrameAggregator(NettyWebSocketListener.MAX_MESSAGE_BYTES),
+                        new IdleStateHandler(
+                            configuration.getParameter(
+                                JSONConfiguration.PING_INTERVAL_PARAMETER, 60),
+                            0,
+                            0),
+                        new FlushConsolidationHandler(),
+                        frameHandler);
+                  }
+                });
+    int connectTimeout =
+        configuration.getParameter(JSONConfiguration.CONNECT_TIMEOUT_IN_MS_PARAMETER, 0);
+    if (connectTimeout > 0) {
+      bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout);
+    }
+
+    boolean isNonBlocking = isNonBlockingParameterSet();
+    logger.debug("Trying to connect to: {}{}", resource, isNonBlocking ? "" : " [blocking]");
+
+    connection = bootstrap.connect(host, port).addListener((ChannelFutureListener) frameHandler::connectAttempted).channel();
+    if (isNonBlocking) {
+      closed = false;
+      return;
+    }
+    try {
+      frameHandler.handshaken.get(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+      closed = false;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      logger.warn("Connecting interrupted");
+    } catch (ExecutionException | TimeoutException ex) {
+      logger.warn("Connecting failed", ex);
+    }
+  }
+
+  private HttpHeaders authorizationHeaders() {
+    HttpHeaders httpHeaders = new DefaultHttpHeaders();
+    String username = configuration.getParameter(JSONConfiguration.USERNAME_PARAMETER);
+    Object password = configuration.getParameter(JSONConfiguration.PASSWORD_PARAMETER);
+    byte[] credentials = null;
+    if (username != null && password != null) {
+      byte[] user = (username + ":").getBytes(StandardCharsets.UTF_8);
+      if (password instanceof String) {
+        credentials = (username + ":" + password).getBytes(StandardCharsets.UTF_8);
+      } else if (password instanceof byte[]) {
+        byte[] secret = (byte[]) password;
+        credentials = new byte[user.length + secret.length];
+        System.arraycopy(user, 0, credentials, 0, user.length);
+        System.arraycopy(secret, 0, credentials, user.length, secret.length);
+      }
+    }
+    if (credentials != null) {
+      httpHeaders.set(
+          HttpHeaderNames.AUTHORIZATION,
+          "Basic " + Base64.getEncoder().encodeToString(credentials));
+    }
+    return httpHeaders;
+  }
+
+  private boolean isNonBlockingParameterSet() {
+    Object rawParam = configuration.getParameter(JSONConfiguration.CONNECT_NON_BLOCKING_PARAMETER);
+    return rawParam instanceof Boolean ? (Boolean) rawParam : false;
+  }
+
+  @Override
+  public void disconnect() {
+    Channel channel = connection;
+    if (channel == null) {
+      return;
+    }
+
+    boolean isNonBlocking = isNonBlockingParameterSet();
+    logger.debug("Disconnecting{}", isNonBlocking ? "" : " [blocking]");
+    try {
+      if (webSocket != null && channel.isActive()) {
+        channel.writeAndFlush(new CloseWebSocketFrame()).addListener(ChannelFutureListener.CLOSE);
+      } else {
+        channel.close();
+      }
+      if (!isNonBlocking) {
+        channel.closeFuture().awaitUninterruptibly(TIMEOUT_IN_MILLIS);
+      }
+    } finally {
+      connection = null;
+      webSocket = null;
+      closed = true;
+    }
+  }
+
+  @Override
+  public void send(Object request) throws NotConnectedException {
+    ChannelFrames.write(webSocket, request);
+  }
+
+  /**
+   * Send a message, sharing a flush with the messages sent while it waits to be written.
+   *
+   * @param request the message to send.
+   * @return completes when the message is written to the socket.
+   */
+  @Override
+  public CompletionStage<Void> sendAsync(Object request) {
+    try {
+      return ChannelFrames.write(webSocket, request);
+    } catch (NotConnectedException ex) {
+      CompletableFuture<Void> failed = new CompletableFuture<>();
+      failed.completeExceptionally(ex);
+      return failed;
+    }
+  }
+
+  @Override
+  public void send(ByteBuffer frame) throws NotConnectedException {
+    ChannelFrames.writeText(webSocket, frame);
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /** Relays the events of a connection to its session. */
+  private final class FrameHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
+
+    private final RadioEvents events;
+    private final AtomicBoolean disconnected = new AtomicBoolean();
+    final CompletableFuture<Void> handshaken = new CompletableFuture<>();
+    private boolean awaitingPong;
+
+    FrameHandler(RadioEvents events) {
+      this.events = events;
+    }
+
+    void connectAttempted(ChannelFuture future) {
+      if (!future.isSuccess()) {
+        logger.error("On error triggered caused by:", future.cause());
+        handshaken.completeExceptionally(future.cause());
+        disconnected();
+      }
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object event) throws Exception {
+      if (event == WebSocketClientProtocolHandler.ClientHandshakeStateEvent.HANDSHAKE_COMPLETE) {
+        logger.debug("On connection open");
+        webSocket = ctx.channel();
+        events.connected();
+        handshaken.complete(null);
+      } else if (event instanceof IdleStateEvent
+          && ((IdleStateEvent) event).state() == IdleState.READER_IDLE) {
+        if (awaitingPong) {
+          logger.debug("Connection lost");
+          ctx.close();
+        } else {
+          awaitingPong = true;
+          ctx.writeAndFlush(new PingWebSocketFrame());
+        }
+      } else {
+        super.userEventTriggered(ctx, event);
+      }
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame frame) {
+      awaitingPong = false;
+      if (frame instanceof TextWebSocketFrame) {
+        events.receivedMessage(((TextWebSocketFrame) frame).text());
+      } else if (frame instanceof BinaryWebSocketFrame) {
+        events.receivedMessage(ByteBufUtil.getBytes(frame.content()));
+      }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      logger.debug("On connection close");
+      handshaken.completeExceptionally(new NotConnectedException());
+      disconnected();
+      super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      logger.error("On error triggered:", cause);
+      handshaken.completeExceptionally(cause);
+      ctx.close();
+    }
+
+    private void disconnected() {
+      if (disconnected.compareAndSet(false, true)) {
+        events.disconnected();
+      }
+    }
+  }
+
+  private static final class SharedEventLoop {
+    static final EventLoopGroup GROUP = Transports.newEventLoopGroup(0, "ocpp-netty-client");
+  }
+}
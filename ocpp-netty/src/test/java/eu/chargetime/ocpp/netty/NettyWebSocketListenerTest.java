@@ -0,0 +1,326 @@
+package eu.chargetime.ocpp.netty;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import eu.chargetime.ocpp.AuthenticationException;
+import eu.chargetime.ocpp.Client;
+import eu.chargetime.ocpp.ClientEvents;
+import eu.chargetime.ocpp.FeatureRepository;
+import eu.chargetime.ocpp.HandshakeAdmission;
+import eu.chargetime.ocpp.ISessionFactory;
+import eu.chargetime.ocpp.JSONClient;
+import eu.chargetime.ocpp.JSONCommunicator;
+import eu.chargetime.ocpp.JSONConfiguration;
+import eu.chargetime.ocpp.JSONServer;
+import eu.chargetime.ocpp.PromiseRepository;
+import eu.chargetime.ocpp.RadioEvents;
+import eu.chargetime.ocpp.ServerEvents;
+import eu.chargetime.ocpp.SessionFactory;
+import eu.chargetime.ocpp.feature.profile.ClientCoreEventHandler;
+import eu.chargetime.ocpp.feature.profile.ClientCoreProfile;
+import eu.chargetime.ocpp.feature.profile.ServerCoreEventHandler;
+import eu.chargetime.ocpp.feature.profile.ServerCoreProfile;
+import eu.chargetime.ocpp.model.Confirmation;
+import eu.chargetime.ocpp.model.SessionInformation;
+import eu.chargetime.ocpp.model.core.BootNotificationConfirmation;
+import eu.chargetime.ocpp.model.core.BootNotificationRequest;
+import eu.chargetime.ocpp.model.core.RegistrationStatus;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class NettyWebSocketListenerTest {
+
+  private static final String LOCALHOST = "127.0.0.1";
+
+  private ServerCoreEventHandler coreEventHandler;
+  private ServerEvents serverEvents;
+  private JSONServer server;
+  private NettyWebSocketListener listener;
+
+  @Before
+  public void setup() {
+    coreEventHandler = mock(ServerCoreEventHandler.class);
+    when(coreEventHandler.handleBootNotificationRequest(any(), any()))
+        .thenReturn(
+            new BootNotificationConfirmation(ZonedDateTime.now(), 60, RegistrationStatus.Accepted));
+    serverEvents = mock(ServerEvents.class);
+    JSONConfiguration configuration = JSONConfiguration.get();
+    server =
+        new JSONServer(
+            new ServerCoreProfile(coreEventHandler),
+            configuration,
+            sessionFactory ->
+                listener =
+                    new NettyWebSocketListener(sessionFactory, configuration, "ocpp1.6", ""));
+    server.open(LOCALHOST, 0, serverEvents);
+  }
+
+  @After
+  public void teardown() {
+    server.close();
+  }
+
+  @Test
+  public void open_jsonClient_bootNotificationIsConfirmed() throws Exception {
+    // Given
+    JSONClient client =
+        new JSONClient(new ClientCoreProfile(mock(ClientCoreEventHandler.class)), "CP_1");
+    client.connect(url(), mock(ClientEvents.class));
+
+    // When
+    Confirmation confirmation =
+        client
+            .send(new BootNotificationRequest("vendor", "model"))
+            .toCompletableFuture()
+            .get(5, TimeUnit.SECONDS);
+    client.disconnect();
+
+    // Then
+    assertThat(confirmation, instanceOf(BootNotificationConfirmation.class));
+    ArgumentCaptor<SessionInformation> information =
+        ArgumentCaptor.forClass(SessionInformation.class);
+    verify(serverEvents).newSession(any(UUID.class), information.capture());
+    assertThat(information.getValue().getIdentifier(), equalTo("/CP_1"));
+    verify(serverEvents, timeout(5000)).lostSession(any(UUID.class));
+  }
+
+  @Test
+  public void open_nettyTransmitter_bootNotificationIsConfirmed() throws Exception {
+    // Given
+    NettyWebSocketTransmitter transmitter =
+        new NettyWebSocketTransmitter(JSONConfiguration.get(), "ocpp1.6");
+    FeatureRepository featureRepository = new FeatureRepository();
+    featureRepository.addFeatureProfile(new ClientCoreProfile(mock(ClientCoreEventHandler.class)));
+    Client client =
+        new Client(
+            new SessionFactory(featureRepository)
+                .createSession(new JSONCommunicator(transmitter)),
+            new PromiseRepository());
+    client.connect(url() + "/CP_2", mock(ClientEvents.class));
+
+    // When
+    Confirmation confirmation =
+        client
+            .send(new BootNotificationRequest("vendor", "model"))
+            .toCompletableFuture()
+            .get(5, TimeUnit.SECONDS);
+    client.disconnect();
+
+    // Then
+    assertThat(confirmation, instanceOf(BootNotificationConfirmation.class));
+    verify(coreEventHandler).handleBootNotificationRequest(any(UUID.class), any());
+    verify(serverEvents, timeout(5000)).lostSession(any(UUID.class));
+  }
+
+  @Test
+  public void open_authenticationRefused_noSession() throws Exception {
+    // Given
+    doThrow(new AuthenticationException(401, "unknown charge point"))
+        .when(serverEvents)
+        .authenticateSession(any(), any(), any());
+    NettyWebSocketTransmitter transmitter =
+        new NettyWebSocketTransmitter(JSONConfiguration.get(), "ocpp1.6");
+
+    // When
+    transmitter.connect(url() + "/CP_3", mock(RadioEvents.class));
+
+    // Then
+    assertThat(transmitter.isClosed(), is(true));
+    verify(serverEvents).authenticateSession(any(), eq(null), eq(null));
+    verify(serverEvents, timeout(1000).times(0)).newSession(any(), any());
+  }
+
+  @Test
+  public void open_authenticationPending_answeredOnceAuthenticated() throws Exception {
+    // Given
+    CompletableFuture<Void> authentication = new CompletableFuture<>();
+    CountDownLatch authenticating = new CountDownLatch(1);
+    server.setSessionAuthenticator(
+        (information, username, password) -> {
+          authenticating.countDown();
+          return authentication;
+        });
+    CompletableFuture<String> response =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return handshake(listener.getPort());
+              } catch (Exception e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    assertThat(authenticating.await(5, TimeUnit.SECONDS), is(true));
+
+    // When
+    boolean answeredBefore = response.isDone();
+    authentication.complete(null);
+
+    // Then
+    assertThat(answeredBefore, is(false));
+    assertThat(response.get(5, TimeUnit.SECONDS), startsWith("HTTP/1.1 101"));
+    verify(serverEvents, timeout(5000)).newSession(any(UUID.class), any());
+    verify(serverEvents, never()).authenticateSession(any(), any(), any());
+  }
+
+  @Test
+  public void open_httpGet_answersHealthCheck() throws Exception {
+    // Given
+    HttpURLConnection connection =
+        (HttpURLConnection) new URL("http://" + LOCALHOST + ":" + listener.getPort() + "/")
+            .openConnection();
+
+    // When
+    int status = connection.getResponseCode();
+
+    // Then
+    assertThat(status, equalTo(200));
+  }
+
+  @Test
+  public void open_handshakeRateSpent_answers503WithRetryAfter() throws Exception {
+    // Given
+    HandshakeAdmission admission = new HandshakeAdmission().setGlobalRate(0.01, 1);
+    JSONConfiguration configuration =
+        JSONConfiguration.get()
+            .setParameter(JSONConfiguration.HANDSHAKE_ADMISSION_PARAMETER, admission);
+    NettyWebSocketListener[] admitting = new NettyWebSocketListener[1];
+    JSONServer admittingServer =
+        new JSONServer(
+            new ServerCoreProfile(coreEventHandler),
+            configuration,
+            sessionFactory ->
+                admitting[0] =
+                    new NettyWebSocketListener(sessionFactory, configuration, "ocpp1.6"));
+    configuration.setParameter(JSONConfiguration.HANDSHAKE_ADMISSION_PARAMETER, null);
+    admittingServer.open(LOCALHOST, 0, serverEvents);
+    try {
+      String admitted = handshake(admitting[0].getPort());
+
+      // When
+      String refused = handshake(admitting[0].getPort());
+
+      // Then
+      assertThat(admitted, startsWith("HTTP/1.1 101"));
+      assertThat(refused, startsWith("HTTP/1.1 503"));
+      assertThat(refused.toLowerCase(), containsString("retry-after: 100"));
+      assertThat(admission.getRejectedGlobalRateCount(), is(1L));
+    } finally {
+      admittingServer.close();
+    }
+  }
+
+  @Test
+  public void selectSubProtocol_prefersOwnOrder() {
+    // Given
+    NettyWebSocketListener subject =
+        new NettyWebSocketListener(
+            mock(ISessionFactory.class),
+            JSONConfiguration.get(),
+            "ocpp2.0.1",
+            "ocpp1.6");
+
+    // Then
+    assertThat(subject.selectSubProtocol("ocpp1.6, ocpp2.0.1"), equalTo("ocpp2.0.1"));
+    assertThat(subject.selectSubProtocol("ocpp1.6"), equalTo("ocpp1.6"));
+    assertThat(subject.selectSubProtocol("ocpp1.5"), nullValue());
+    assertThat(subject.selectSubProtocol(null), nullValue());
+  }
+
+  @Test
+  public void selectSubProtocol_emptySubProtocol_acceptsAnyClient() {
+    // Then
+    assertThat(listener.selectSubProtocol("ocpp1.5"), equalTo(""));
+    assertThat(listener.selectSubProtocol(null), equalTo(""));
+    assertThat(listener.selectSubProtocol("ocpp1.6"), equalTo("ocpp1.6"));
+  }
+
+  /** Send a WebSocket upgrade request and read the head of the response. */
+  private static String handshake(int port) throws Exception {
+    try (Socket socket = new Socket(LOCALHOST, port)) {
+      socket.setSoTimeout(5000);
+      OutputStream out = socket.getOutputStream();
+      out.write(
+          ("GET /CP_1 HTTP/1.1\r\n"
+                  + "Host: "
+                  + LOCALHOST
+                  + "\r\n"
+                  + "Upgrade: websocket\r\n"
+                  + "Connection: Upgrade\r\n"
+                  + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                  + "Sec-WebSocket-Version: 13\r\n"
+                  + "Sec-WebSocket-Protocol: ocpp1.6\r\n"
+                  + "\r\n")
+              .getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+
+      BufferedReader in =
+          new BufferedReader(
+              new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+      StringBuilder head = new StringBuilder();
+      String line;
+      while ((line = in.readLine()) != null && !line.isEmpty()) {
+        head.append(line).append("\r\n");
+      }
+      return head.toString();
+    }
+  }
+
+  private String url() {
+    return "ws://" + LOCALHOST + ":" + listener.getPort();
+  }
+}
@@ -30,6 +30,7 @@ import eu.chargetime.ocpp.feature.profile.Profile;
 import eu.chargetime.ocpp.feature.profile.ServerCoreProfile;
 import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.Request;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.UUID;
 import java.util.concurrent.CompletionStage;
@@ -101,6 +102,13 @@ public class JSONTestServer implements IServerAPI {
     return server.send(session, request);
   }
 
+  @Override
+  public BroadcastResult broadcast(
+      Collection<UUID> sessionIndexes, Request request, int maxConcurrency)
+      throws OccurenceConstraintException {
+    return server.broadcast(sessionIndexes, request, maxConcurrency);
+  }
+
   @Override
   public boolean asyncCompleteRequest(UUID sessionIndex, String uniqueId, Confirmation confirmation) throws NotConnectedException, UnsupportedFeatureException, OccurenceConstraintException {
     return server.asyncCompleteRequest(sessionIndex, uniqueId, confirmation);
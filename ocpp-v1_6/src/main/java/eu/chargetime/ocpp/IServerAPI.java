@@ -28,6 +28,7 @@ package eu.chargetime.ocpp;
 import eu.chargetime.ocpp.feature.profile.Profile;
 import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.Request;
+import java.util.Collection;
 import java.util.UUID;
 import java.util.concurrent.CompletionStage;
 
@@ -47,6 +48,18 @@ public interface IServerAPI {
   CompletionStage<Confirmation> send(UUID sessionIndex, Request request)
       throws OccurenceConstraintException, UnsupportedFeatureException, NotConnectedException;
 
+  /**
+   * Send the same request to many sessions, validating and packing it once.
+   *
+   * @param sessionIndexes the sessions to send to.
+   * @param request the request, it must not change until the broadcast is done.
+   * @param maxConcurrency the number of sessions that may have the request unanswered at once.
+   * @return the result of every session.
+   * @throws OccurenceConstraintException if the request isn't valid.
+   */
+  BroadcastResult broadcast(Collection<UUID> sessionIndexes, Request request, int maxConcurrency)
+      throws OccurenceConstraintException;
+
   boolean asyncCompleteRequest(UUID sessionIndex, String uniqueId, Confirmation confirmation)
       throws NotConnectedException, UnsupportedFeatureException, OccurenceConstraintException;
 }
@@ -53,6 +53,7 @@ public class JSONClient implements IClientAPI {
   private final FeatureRepository featureRepository;
   private final Client client;
   private final String identity;
+  private final TransactionReplayer transactionReplayer;
 
   public JSONClient(ClientCoreProfile coreProfile) {
     this(coreProfile, null);
@@ -69,13 +70,35 @@ public class JSONClient implements IClientAPI {
   public JSONClient(
       ClientCoreProfile coreProfile, String identity, JSONConfiguration configuration) {
     this.identity = identity;
+    boolean cborFraming =
+        configuration.getParameter(JSONConfiguration.CBOR_FRAMING_PARAMETER, false);
+    String subProtocol = cborFraming ? CBORCommunicator.subProtocolName("ocpp1.6") : "ocpp1.6";
     draftOcppOnly =
-        new Draft_6455(Collections.emptyList(), Collections.singletonList(new Protocol("ocpp1.6")));
+        new Draft_6455(Collections.emptyList(), Collections.singletonList(new Protocol(subProtocol)));
     transmitter = new WebSocketTransmitter(configuration, draftOcppOnly);
-    JSONCommunicator communicator = new JSONCommunicator(transmitter);
+    TransactionQueue transactionQueue =
+        configuration.getParameter(
+            JSONConfiguration.TRANSACTION_QUEUE_PARAMETER, new MemoryTransactionQueue());
+    Communicator communicator =
+        cborFraming
+            ? new CBORCommunicator(transmitter, transactionQueue)
+            : new JSONCommunicator(
+                transmitter, transactionQueue, JSONCommunicator.codecOf(configuration));
+    MessageTracer tracer = configuration.getParameter(JSONConfiguration.MESSAGE_TRACER_PARAMETER);
+    if (tracer != null) {
+      communicator.setMessageTap(tracer.tap(identity));
+    }
+    transactionReplayer = communicator.getTransactionReplayer();
+    if (transactionReplayer != null) {
+      transactionReplayer.setWindow(
+          configuration.getParameter(JSONConfiguration.TRANSACTION_REPLAY_WINDOW_PARAMETER, 1));
+    }
     featureRepository = new FeatureRepository();
     ISession session = new SessionFactory(featureRepository).createSession(communicator);
     client = new Client(session, new PromiseRepository());
+    client.setRequestTimeouts(
+        configuration.getParameter(
+            JSONConfiguration.REQUEST_TIMEOUTS_PARAMETER, client.getRequestTimeouts()));
     featureRepository.addFeatureProfile(coreProfile);
   }
 
@@ -190,4 +213,14 @@ public class JSONClient implements IClientAPI {
   public UUID getSessionId() {
     return client.getSessionId();
   }
+
+  /**
+   * Get the replayer of transaction-related requests queued while offline, to follow its progress
+   * or tune its timeout and backoff.
+   *
+   * @return the {@link TransactionReplayer} of the client, null if requests aren't queued.
+   */
+  public TransactionReplayer getTransactionReplayer() {
+    return transactionReplayer;
+  }
 }
@@ -33,9 +33,13 @@ import eu.chargetime.ocpp.wss.BaseWssFactoryBuilder;
 import eu.chargetime.ocpp.wss.WssFactoryBuilder;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
 import javax.net.ssl.SSLContext;
 import org.java_websocket.drafts.Draft;
 import org.java_websocket.drafts.Draft_6455;
@@ -49,9 +53,10 @@ public class JSONServer implements IServerAPI {
   private static final Logger logger = LoggerFactory.getLogger(JSONServer.class);
 
   public final Draft draftOcppOnly;
-  private final WebSocketListener listener;
+  private final Listener listener;
   private final Server server;
   private final FeatureRepository featureRepository;
+  private final SessionFactory sessionFactory;
   private JSONConfiguration jsonConfiguration;
 
   /**
@@ -61,21 +66,47 @@ public class JSONServer implements IServerAPI {
    * @param configuration network configuration for a json server.
    */
   public JSONServer(ServerCoreProfile coreProfile, JSONConfiguration configuration) {
+    this(coreProfile, configuration, null);
+  }
+
+  /**
+   * The core feature profile is required as a minimum. The constructor creates a server on the
+   * given listener, such as the listener of the netty module.
+   *
+   * @param coreProfile implementation of the core feature profile.
+   * @param configuration network configuration for a json server.
+   * @param listenerFactory creates the listener from the session factory of the server, null for
+   *     the WebSocket listener.
+   */
+  public JSONServer(
+      ServerCoreProfile coreProfile,
+      JSONConfiguration configuration,
+      Function<ISessionFactory, Listener> listenerFactory) {
     featureRepository = new FeatureRepository();
-    SessionFactory sessionFactory = new SessionFactory(featureRepository);
+    sessionFactory = new SessionFactory(featureRepository);
+    sessionFactory.setRequestExecutor(
+        configuration.getParameter(JSONConfiguration.REQUEST_EXECUTOR_PARAMETER));
 
     ArrayList<IProtocol> protocols = new ArrayList<>();
+    if (configuration.getParameter(JSONConfiguration.CBOR_FRAMING_PARAMETER, false)) {
+      protocols.add(new Protocol(CBORCommunicator.subProtocolName("ocpp1.6")));
+    }
     protocols.add(new Protocol("ocpp1.6"));
     protocols.add(new Protocol(""));
     draftOcppOnly = new Draft_6455(Collections.emptyList(), protocols);
 
-    if(configuration.getParameter(JSONConfiguration.HTTP_HEALTH_CHECK_ENABLED, true)) {
+    if (listenerFactory != null) {
+      this.listener = listenerFactory.apply(sessionFactory);
+    } else if(configuration.getParameter(JSONConfiguration.HTTP_HEALTH_CHECK_ENABLED, true)) {
       logger.info("JSONServer 1.6 with HttpHealthCheckDraft");
       this.listener = new WebSocketListener(sessionFactory, configuration, draftOcppOnly, new Draft_HttpHealthCheck());
     } else {
       this.listener = new WebSocketListener(sessionFactory, configuration, draftOcppOnly);
     }
     server = new Server(this.listener, new PromiseRepository());
+    server.setRequestTimeouts(
+        configuration.getParameter(
+            JSONConfiguration.REQUEST_TIMEOUTS_PARAMETER, server.getRequestTimeouts()));
     featureRepository.addFeatureProfile(coreProfile);
   }
 
@@ -130,10 +161,14 @@ public class JSONServer implements IServerAPI {
    * @return instance of {@link JSONServer}
    * @throws IllegalStateException in case if the server is already connected
    * @throws IllegalStateException in case {@code wssFactoryBuilder} not initialized properly
+   * @throws IllegalStateException in case the server was created on another listener
    */
   public JSONServer enableWSS(WssFactoryBuilder wssFactoryBuilder) {
     wssFactoryBuilder.verify();
-    listener.enableWSS(wssFactoryBuilder);
+    if (!(listener instanceof WebSocketListener)) {
+      throw new IllegalStateException("WSS of " + listener.getClass().getName() + " is set on it");
+    }
+    ((WebSocketListener) listener).enableWSS(wssFactoryBuilder);
     return this;
   }
 
@@ -152,6 +187,36 @@ public class JSONServer implements IServerAPI {
     server.closeSession(session);
   }
 
+  /**
+   * Get the number of requests from a charge point waiting to be handled.
+   *
+   * @param session the session of the charge point.
+   * @return the queue depth of the session, 0 if the session is not found.
+   */
+  public int getQueueDepth(UUID session) {
+    return server.getQueueDepth(session);
+  }
+
+  /**
+   * Get the scheduler of requests to a charge point.
+   *
+   * @param session the session of the charge point.
+   * @return the {@link OutboundScheduler} of the session, empty if the session is not found.
+   */
+  public Optional<OutboundScheduler> getOutboundScheduler(UUID session) {
+    return server.getOutboundScheduler(session);
+  }
+
+  /**
+   * Set the executor requests from charge points are handled on, for sessions opened after this
+   * call. Use {@link RequestExecutors#newBlockingHandlerExecutor(int)} if the handlers block.
+   *
+   * @param requestExecutor the executor, null for the pool shared by all servers.
+   */
+  public void setRequestExecutor(ExecutorService requestExecutor) {
+    sessionFactory.setRequestExecutor(requestExecutor);
+  }
+
   @Override
   public void open(String host, int port, ServerEvents serverEvents) {
     logger.info("Feature repository: {}", featureRepository);
@@ -174,6 +239,71 @@ public class JSONServer implements IServerAPI {
     return server.send(session, request);
   }
 
+  @Override
+  public BroadcastResult broadcast(
+      Collection<UUID> sessionIndexes, Request request, int maxConcurrency)
+      throws OccurenceConstraintException {
+    return server.broadcast(sessionIndexes, request, maxConcurrency);
+  }
+
+  /**
+   * Send the same request to every connected charge point, validating and packing it once.
+   *
+   * @param request the request, it must not change until the broadcast is done.
+   * @param maxConcurrency the number of charge points that may have the request unanswered at once.
+   * @return the result of every charge point connected when called.
+   * @throws OccurenceConstraintException if the request isn't valid.
+   */
+  public BroadcastResult broadcast(Request request, int maxConcurrency)
+      throws OccurenceConstraintException {
+    return server.broadcast(request, maxConcurrency);
+  }
+
+  /**
+   * Send a request to a charge point by its charge box identity.
+   *
+   * @param identity the charge box identity, the last segment of the URL it connected to.
+   * @param request the request.
+   * @return completes with the confirmation of the charge point.
+   * @throws NotConnectedException no session is open for the identity.
+   */
+  public CompletionStage<Confirmation> send(String identity, Request request)
+      throws OccurenceConstraintException, UnsupportedFeatureException, NotConnectedException {
+    return server.send(identity, request);
+  }
+
+  /**
+   * Get the session of a charge point by its charge box identity.
+   *
+   * @param identity the charge box identity, the last segment of the URL it connected to.
+   * @return the session index, null if no session is open for the identity.
+   */
+  public UUID getSessionId(String identity) {
+    return server.getSessionId(identity);
+  }
+
+  /**
+   * Set what happens when a charge point connects while a session with the same identity is
+   * open. By default a second session is opened and both are kept.
+   *
+   * @param duplicateConnectionPolicy the policy.
+   */
+  public void setDuplicateConnectionPolicy(DuplicateConnectionPolicy duplicateConnectionPolicy) {
+    server.setDuplicateConnectionPolicy(duplicateConnectionPolicy);
+  }
+
+  /**
+   * Authenticate handshakes with an asynchronous authenticator instead of {@link
+   * ServerEvents#authenticateSession}. The handshake is answered once the authenticator completes,
+   * without blocking the other connections of the listener. Wrap it in a {@link
+   * CachingSessionAuthenticator} to spare the credential store when charge points reconnect.
+   *
+   * @param sessionAuthenticator the authenticator, null to use the server events again.
+   */
+  public void setSessionAuthenticator(SessionAuthenticator sessionAuthenticator) {
+    server.setSessionAuthenticator(sessionAuthenticator);
+  }
+
   @Override
   public boolean asyncCompleteRequest(UUID sessionIndex, String uniqueId, Confirmation confirmation) throws NotConnectedException, UnsupportedFeatureException, OccurenceConstraintException {
     return server.asyncCompleteRequest(sessionIndex, uniqueId, confirmation);
@@ -245,6 +245,11 @@ public class SOAPCommunicator extends Communicator {
     toHeader.setValue(toUrl);
   }
 
+  @Override
+  protected String uniqueIdOf(Object call) {
+    return new SOAPParser((SOAPMessage) call).getElementValue(HEADER_MESSAGEID);
+  }
+
   @Override
   protected Message parse(Object message) {
     Message output = null;
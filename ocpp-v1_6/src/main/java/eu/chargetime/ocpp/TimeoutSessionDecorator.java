@@ -30,6 +30,7 @@ import eu.chargetime.ocpp.model.Request;
 import eu.chargetime.ocpp.model.core.BootNotificationConfirmation;
 import eu.chargetime.ocpp.model.core.RegistrationStatus;
 import eu.chargetime.ocpp.utilities.TimeoutTimer;
+import java.util.Optional;
 import java.util.UUID;
 
 public class TimeoutSessionDecorator implements ISession {
@@ -92,6 +93,16 @@ public class TimeoutSessionDecorator implements ISession {
     this.session.sendRequest(action, payload, uuid);
   }
 
+  @Override
+  public void sendRequest(String action, Request payload, String uuid, SharedPayload shared) {
+    this.session.sendRequest(action, payload, uuid, shared);
+  }
+
+  @Override
+  public void removeRequest(String uniqueId) {
+    this.session.removeRequest(uniqueId);
+  }
+
   @Override
   public boolean completePendingPromise(String id, Confirmation confirmation) throws UnsupportedFeatureException, OccurenceConstraintException {
     return this.session.completePendingPromise(id, confirmation);
@@ -102,6 +113,16 @@ public class TimeoutSessionDecorator implements ISession {
     this.session.close();
   }
 
+  @Override
+  public int getQueueDepth() {
+    return this.session.getQueueDepth();
+  }
+
+  @Override
+  public Optional<OutboundScheduler> getOutboundScheduler() {
+    return this.session.getOutboundScheduler();
+  }
+
   private SessionEvents createEventHandler(SessionEvents eventHandler) {
     return new SessionEvents() {
       @Override
@@ -111,7 +132,7 @@ public class TimeoutSessionDecorator implements ISession {
       }
 
       @Override
-      public synchronized Confirmation handleRequest(Request request)
+      public Confirmation handleRequest(Request request)
           throws UnsupportedFeatureException {
         resetTimer();
         Confirmation confirmation = eventHandler.handleRequest(request);
@@ -0,0 +1,63 @@
+package eu.chargetime.ocpp.feature.profile;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import eu.chargetime.ocpp.model.core.*;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Asynchronous variant of {@link ServerCoreEventHandler}, for handlers backed by non-blocking
+ * services. No thread is held while a request is in flight; the confirmation is sent back when the
+ * returned stage completes. Complete a stage exceptionally with a {@link
+ * eu.chargetime.ocpp.CallErrorException} to reply with a CallError.
+ */
+public interface AsyncServerCoreEventHandler {
+  CompletionStage<AuthorizeConfirmation> handleAuthorizeRequest(
+      UUID sessionIndex, AuthorizeRequest request);
+
+  CompletionStage<BootNotificationConfirmation> handleBootNotificationRequest(
+      UUID sessionIndex, BootNotificationRequest request);
+
+  CompletionStage<DataTransferConfirmation> handleDataTransferRequest(
+      UUID sessionIndex, DataTransferRequest request);
+
+  CompletionStage<HeartbeatConfirmation> handleHeartbeatRequest(
+      UUID sessionIndex, HeartbeatRequest request);
+
+  CompletionStage<MeterValuesConfirmation> handleMeterValuesRequest(
+      UUID sessionIndex, MeterValuesRequest request);
+
+  CompletionStage<StartTransactionConfirmation> handleStartTransactionRequest(
+      UUID sessionIndex, StartTransactionRequest request);
+
+  CompletionStage<StatusNotificationConfirmation> handleStatusNotificationRequest(
+      UUID sessionIndex, StatusNotificationRequest request);
+
+  CompletionStage<StopTransactionConfirmation> handleStopTransactionRequest(
+      UUID sessionIndex, StopTransactionRequest request);
+}
@@ -32,12 +32,25 @@ import eu.chargetime.ocpp.model.Request;
 import eu.chargetime.ocpp.model.core.*;
 import java.util.HashSet;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 public class ServerCoreProfile implements Profile {
 
   private ServerCoreEventHandler handler;
+  private AsyncServerCoreEventHandler asyncHandler;
   private HashSet<Feature> features;
 
+  /**
+   * Create the profile with a handler that returns confirmations once they are ready.
+   *
+   * @param asyncHandler handler of the requests from charge points.
+   */
+  public ServerCoreProfile(AsyncServerCoreEventHandler asyncHandler) {
+    this((ServerCoreEventHandler) null);
+    this.asyncHandler = asyncHandler;
+  }
+
   public ServerCoreProfile(ServerCoreEventHandler handler) {
     this.handler = handler;
 
@@ -67,6 +80,9 @@ public class ServerCoreProfile implements Profile {
 
   @Override
   public Confirmation handleRequest(UUID sessionIndex, Request request) {
+    if (asyncHandler != null) {
+      return handleRequestAsync(sessionIndex, request).toCompletableFuture().join();
+    }
     Confirmation result = null;
 
     if (request instanceof AuthorizeRequest) {
@@ -94,6 +110,45 @@ public class ServerCoreProfile implements Profile {
     return result;
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public CompletionStage<Confirmation> handleRequestAsync(UUID sessionIndex, Request request) {
+    if (asyncHandler == null) {
+      return Profile.super.handleRequestAsync(sessionIndex, request);
+    }
+    CompletionStage<? extends Confirmation> result = null;
+
+    if (request instanceof AuthorizeRequest) {
+      result = asyncHandler.handleAuthorizeRequest(sessionIndex, (AuthorizeRequest) request);
+    } else if (request instanceof BootNotificationRequest) {
+      result =
+          asyncHandler.handleBootNotificationRequest(
+              sessionIndex, (BootNotificationRequest) request);
+    } else if (request instanceof DataTransferRequest) {
+      result = asyncHandler.handleDataTransferRequest(sessionIndex, (DataTransferRequest) request);
+    } else if (request instanceof HeartbeatRequest) {
+      result = asyncHandler.handleHeartbeatRequest(sessionIndex, (HeartbeatRequest) request);
+    } else if (request instanceof MeterValuesRequest) {
+      result = asyncHandler.handleMeterValuesRequest(sessionIndex, (MeterValuesRequest) request);
+    } else if (request instanceof StartTransactionRequest) {
+      result =
+          asyncHandler.handleStartTransactionRequest(
+              sessionIndex, (StartTransactionRequest) request);
+    } else if (request instanceof StatusNotificationRequest) {
+      result =
+          asyncHandler.handleStatusNotificationRequest(
+              sessionIndex, (StatusNotificationRequest) request);
+    } else if (request instanceof StopTransactionRequest) {
+      result =
+          asyncHandler.handleStopTransactionRequest(sessionIndex, (StopTransactionRequest) request);
+    }
+
+    // The stage is only read from, so it can be widened to the confirmation supertype.
+    return result != null
+        ? (CompletionStage<Confirmation>) result
+        : CompletableFuture.completedFuture(null);
+  }
+
   /**
    * Create a {@link ChangeAvailabilityRequest} with required values.
    *
@@ -27,10 +27,12 @@
 @XmlJavaTypeAdapters({
   @XmlJavaTypeAdapter(type = ZonedDateTime.class, value = ZonedDateTimeAdapter.class),
 })
+@GenerateTypeAdapters
 @XmlSchema(elementFormDefault = XmlNsForm.QUALIFIED, namespace = "urn://Ocpp/Cs/2015/10/")
 package eu.chargetime.ocpp.model.core;
 
 import eu.chargetime.ocpp.ZonedDateTimeAdapter;
+import eu.chargetime.ocpp.model.GenerateTypeAdapters;
 
 import javax.xml.bind.annotation.XmlNsForm;
 import javax.xml.bind.annotation.XmlSchema;
@@ -27,12 +27,14 @@
 @XmlJavaTypeAdapters({
   @XmlJavaTypeAdapter(type = ZonedDateTime.class, value = ZonedDateTimeAdapter.class),
 })
+@GenerateTypeAdapters
 @XmlSchema(
     elementFormDefault = javax.xml.bind.annotation.XmlNsForm.QUALIFIED,
     namespace = "urn://Ocpp/Cs/2015/10/")
 package eu.chargetime.ocpp.model.smartcharging;
 
 import eu.chargetime.ocpp.ZonedDateTimeAdapter;
+import eu.chargetime.ocpp.model.GenerateTypeAdapters;
 
 import javax.xml.bind.annotation.XmlSchema;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
@@ -4,15 +4,20 @@ import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import eu.chargetime.ocpp.feature.*;
+import eu.chargetime.ocpp.feature.profile.AsyncServerCoreEventHandler;
 import eu.chargetime.ocpp.feature.profile.ServerCoreEventHandler;
 import eu.chargetime.ocpp.feature.profile.ServerCoreProfile;
+import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.core.*;
 import java.time.ZonedDateTime;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -80,6 +85,27 @@ public class ServerCoreProfileTest extends ProfileTest {
     verify(handler, times(1)).handleAuthorizeRequest(eq(sessionId), eq(request));
   }
 
+  @Test
+  public void handleRequestAsync_anAsyncHandler_completesWithTheHandlersConfirmation() {
+    // Given
+    AuthorizeRequest request = new AuthorizeRequest("idTag");
+    UUID sessionId = UUID.randomUUID();
+    CompletableFuture<AuthorizeConfirmation> authorized = new CompletableFuture<>();
+    AsyncServerCoreEventHandler asyncHandler = mock(AsyncServerCoreEventHandler.class);
+    when(asyncHandler.handleAuthorizeRequest(sessionId, request)).thenReturn(authorized);
+    ServerCoreProfile asyncCore = new ServerCoreProfile(asyncHandler);
+
+    // When
+    CompletableFuture<Confirmation> result =
+        asyncCore.handleRequestAsync(sessionId, request).toCompletableFuture();
+
+    // Then
+    assertThat(result.isDone(), is(false));
+    AuthorizeConfirmation confirmation = new AuthorizeConfirmation();
+    authorized.complete(confirmation);
+    assertThat(result.join(), is(confirmation));
+  }
+
   @Test
   public void getFeatureList_containsBootNotificatonFeature() {
     // When
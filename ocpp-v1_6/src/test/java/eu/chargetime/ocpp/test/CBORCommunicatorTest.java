@@ -0,0 +1,258 @@
+package eu.chargetime.ocpp.test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.*;
+
+import eu.chargetime.ocpp.CBORCommunicator;
+import eu.chargetime.ocpp.CommunicatorEvents;
+import eu.chargetime.ocpp.JSONCommunicator;
+import eu.chargetime.ocpp.RadioEvents;
+import eu.chargetime.ocpp.Transmitter;
+import eu.chargetime.ocpp.model.TestModel;
+import eu.chargetime.ocpp.model.core.BootNotificationConfirmation;
+import eu.chargetime.ocpp.model.core.BootNotificationRequest;
+import eu.chargetime.ocpp.model.core.DataTransferRequest;
+import eu.chargetime.ocpp.model.core.MeterValue;
+import eu.chargetime.ocpp.model.core.MeterValuesRequest;
+import eu.chargetime.ocpp.model.core.RegistrationStatus;
+import eu.chargetime.ocpp.model.core.SampledValue;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+/*
+ChargeTime.eu - Java-OCA-OCPP
+
+MIT License
+
+Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+@RunWith(MockitoJUnitRunner.class)
+public class CBORCommunicatorTest {
+  private CBORCommunicator communicator;
+
+  @Mock private Transmitter transmitter;
+  @Mock private CommunicatorEvents events;
+
+  @Before
+  public void setup() {
+    communicator = new CBORCommunicator(transmitter);
+  }
+
+  @Test
+  public void packPayload_testModel_unpacksToEqualValues() throws Exception {
+    // Given
+    TestModel model = new TestModel();
+    model.setStringTest("Some string é€");
+    model.setCalendarTest(ZonedDateTime.parse("2016-04-28T07:16:11.988Z"));
+    model.setIntegerTest(-1337);
+    model.setIntTest(70000);
+    model.setLongTest(5000000000L);
+    model.setGenericLongTest(-5000000000L);
+    model.setDoubleTest(13.37);
+    model.setGenericDoubleTest(0.5);
+    model.setBooleanTest(false);
+    model.setGenericBoleanTest(true);
+    model.setObjectTest(new TestModel());
+    model.setArrayTest(new Integer[] {1, 24, 256, 65536});
+
+    // When
+    TestModel result =
+        communicator.unpackPayload(communicator.packPayload(model), TestModel.class);
+
+    // Then
+    assertThat(result.getStringTest(), equalTo(model.getStringTest()));
+    assertThat(result.getCalendarTest().compareTo(model.getCalendarTest()), is(0));
+    assertThat(result.getIntegerTest(), equalTo(-1337));
+    assertThat(result.getIntTest(), equalTo(70000));
+    assertThat(result.getLongTest(), equalTo(5000000000L));
+    assertThat(result.getGenericLongTest(), equalTo(-5000000000L));
+    assertThat(result.getDoubleTest(), equalTo(13.37));
+    assertThat(result.getGenericDoubleTest(), equalTo(0.5));
+    assertThat(result.getBooleanTest(), is(false));
+    assertThat(result.isGenericBoleanTest(), is(true));
+    assertThat(result.getObjectTest(), instanceOf(TestModel.class));
+    assertThat(result.getArrayTest(), equalTo(model.getArrayTest()));
+  }
+
+  @Test
+  public void packPayload_meterValuesRequest_unpacksArraysOfObjects() throws Exception {
+    // Given
+    SampledValue energy = new SampledValue("12345");
+    energy.setMeasurand("Energy.Active.Import.Register");
+    SampledValue power = new SampledValue("11000");
+    power.setMeasurand("Power.Active.Import");
+    MeterValuesRequest request = new MeterValuesRequest(1);
+    request.setMeterValue(
+        new MeterValue[] {
+          new MeterValue(
+              ZonedDateTime.parse("2018-01-01T01:01:01.988Z"),
+              new SampledValue[] {energy, power}),
+          new MeterValue(
+              ZonedDateTime.parse("2018-01-01T01:02:01.988Z"), new SampledValue[] {energy})
+        });
+
+    // When
+    MeterValuesRequest result =
+        communicator.unpackPayload(communicator.packPayload(request), MeterValuesRequest.class);
+
+    // Then
+    assertThat(result.validate(), is(true));
+    assertThat(result.getMeterValue().length, is(2));
+    assertThat(result.getMeterValue()[0].getSampledValue()[1].getValue(), equalTo("11000"));
+    assertThat(
+        result.getMeterValue()[0].getSampledValue()[1].getMeasurand(),
+        equalTo("Power.Active.Import"));
+    assertThat(result.getMeterValue()[1].getSampledValue()[0].getValue(), equalTo("12345"));
+  }
+
+  @Test
+  public void packPayload_bootNotificationRequest_isSmallerThanJson() {
+    // Given
+    BootNotificationRequest request = new BootNotificationRequest("VendorX", "SingleSocketCharger");
+    String json = (String) new JSONCommunicator(transmitter).packPayload(request);
+
+    // When
+    byte[] payload = (byte[]) communicator.packPayload(request);
+
+    // Then
+    assertThat(payload.length < json.length(), is(true));
+  }
+
+  @Test
+  public void receivedMessage_callFromOtherEncoder_payloadUnpacksToRequest() throws Exception {
+    // Given a definite length encoding, as other CBOR encoders would produce
+    ByteArrayOutputStream message = new ByteArrayOutputStream();
+    message.write(0x84);
+    message.write(0x02);
+    writeText(message, "42");
+    writeText(message, "BootNotification");
+    message.write(0xa2);
+    writeText(message, "chargePointVendor");
+    writeText(message, "VendorX");
+    writeText(message, "chargePointModel");
+    writeText(message, "SingleSocketCharger");
+    RadioEvents radioEvents = connect();
+
+    // When
+    radioEvents.receivedMessage(message.toByteArray());
+
+    // Then
+    ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+    verify(events, times(1)).onCall(eq("42"), eq("BootNotification"), payload.capture());
+    BootNotificationRequest request =
+        communicator.unpackPayload(payload.getValue(), BootNotificationRequest.class);
+    assertThat(request.getChargePointVendor(), equalTo("VendorX"));
+    assertThat(request.getChargePointModel(), equalTo("SingleSocketCharger"));
+  }
+
+  @Test
+  public void sendCallResult_receivedByPeer_payloadUnpacksToConfirmation() throws Exception {
+    // Given
+    BootNotificationConfirmation confirmation = new BootNotificationConfirmation();
+    confirmation.setCurrentTime(ZonedDateTime.parse("2016-04-28T06:41:13.720Z"));
+    confirmation.setInterval(300);
+    confirmation.setStatus(RegistrationStatus.Accepted);
+    RadioEvents radioEvents = connect();
+
+    // When
+    communicator.sendCallResult("42", "BootNotification", confirmation);
+    radioEvents.receivedMessage(sentMessage());
+
+    // Then
+    ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+    verify(events, times(1)).onCallResult(eq("42"), any(), payload.capture());
+    BootNotificationConfirmation result =
+        communicator.unpackPayload(payload.getValue(), BootNotificationConfirmation.class);
+    assertThat(result.getCurrentTime().compareTo(confirmation.getCurrentTime()), is(0));
+    assertThat(result.getInterval(), is(300));
+    assertThat(result.getStatus(), is(RegistrationStatus.Accepted));
+  }
+
+  @Test
+  public void sendCallError_receivedByPeer_relaysError() throws Exception {
+    // Given
+    RadioEvents radioEvents = connect();
+
+    // When
+    communicator.sendCallError("42", null, "NotImplemented", "Unknown \"action\"");
+    radioEvents.receivedMessage(sentMessage());
+
+    // Then
+    verify(events, times(1)).onError("42", "NotImplemented", "Unknown \"action\"", "{}");
+  }
+
+  @Test
+  public void receivedMessage_truncatedMessage_sendsRpcFrameworkError() throws Exception {
+    // Given
+    RadioEvents radioEvents = connect();
+    communicator.sendCall("42", "DataTransfer", new DataTransferRequest("VendorX"));
+    byte[] call = sentMessage();
+    reset(transmitter);
+
+    // When
+    radioEvents.receivedMessage(Arrays.copyOf(call, call.length - 4));
+
+    // Then
+    verify(events, never()).onCall(anyString(), anyString(), any());
+    verify(transmitter, times(1)).send(ArgumentMatchers.any(byte[].class));
+  }
+
+  @Test
+  public void subProtocolName_ocpp16_roundTrips() {
+    // When
+    String subProtocol = CBORCommunicator.subProtocolName("ocpp1.6");
+
+    // Then
+    assertThat(subProtocol, equalTo("ocpp1.6+cbor"));
+    assertThat(CBORCommunicator.isCBORSubProtocol(subProtocol), is(true));
+    assertThat(CBORCommunicator.isCBORSubProtocol("ocpp1.6"), is(false));
+    assertThat(CBORCommunicator.ocppSubProtocolName(subProtocol), equalTo("ocpp1.6"));
+  }
+
+  private byte[] sentMessage() throws Exception {
+    ArgumentCaptor<Object> message = ArgumentCaptor.forClass(Object.class);
+    verify(transmitter, atLeastOnce()).send(message.capture());
+    return (byte[]) message.getValue();
+  }
+
+  private RadioEvents connect() {
+    communicator.connect("ws://localhost", events);
+    ArgumentCaptor<RadioEvents> radioEvents = ArgumentCaptor.forClass(RadioEvents.class);
+    verify(transmitter).connect(anyString(), radioEvents.capture());
+    return radioEvents.getValue();
+  }
+
+  private static void writeText(ByteArrayOutputStream out, String text) {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    out.write(0x60 | bytes.length);
+    out.write(bytes, 0, bytes.length);
+  }
+}
@@ -0,0 +1,124 @@
+package eu.chargetime.ocpp.test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import eu.chargetime.ocpp.GeneratedTypeAdapter;
+import eu.chargetime.ocpp.model.core.BootNotificationRequest;
+import eu.chargetime.ocpp.model.core.GeneratedTypeAdapterFactory;
+import eu.chargetime.ocpp.model.core.Location;
+import eu.chargetime.ocpp.model.core.MeterValue;
+import eu.chargetime.ocpp.model.core.MeterValuesRequest;
+import eu.chargetime.ocpp.model.core.SampledValue;
+import java.time.ZonedDateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ChargeTime.eu - Java-OCA-OCPP
+
+MIT License
+
+Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+public class GeneratedTypeAdapterFactoryTest {
+
+  private Gson reflective;
+  private Gson generated;
+
+  @Before
+  public void setup() {
+    JsonSerializer<ZonedDateTime> dateSerializer =
+        (src, typeOfSrc, context) -> new JsonPrimitive(src.toString());
+    reflective = new GsonBuilder().registerTypeAdapter(ZonedDateTime.class, dateSerializer).create();
+    generated =
+        new GsonBuilder()
+            .registerTypeAdapter(ZonedDateTime.class, dateSerializer)
+            .registerTypeAdapterFactory(new GeneratedTypeAdapterFactory())
+            .create();
+  }
+
+  @Test
+  public void getAdapter_modelInAnnotatedPackage_returnsGeneratedAdapter() {
+    assertThat(
+        generated.getAdapter(BootNotificationRequest.class),
+        instanceOf(GeneratedTypeAdapter.class));
+  }
+
+  @Test
+  public void toJson_bootNotificationRequest_matchesReflectiveOutput() {
+    BootNotificationRequest request = new BootNotificationRequest("vendor", "model");
+    request.setChargePointSerialNumber("serial");
+
+    assertThat(generated.toJson(request), equalTo(reflective.toJson(request)));
+  }
+
+  @Test
+  public void toJson_excludedField_isNotWritten() {
+    BootNotificationRequest request = new BootNotificationRequest("vendor", "model");
+    request.setOcppMessageId("excluded");
+
+    assertThat(generated.toJson(request), not(containsString("ocppMessageId")));
+  }
+
+  @Test
+  public void toJson_nestedModels_matchesReflectiveOutput() {
+    SampledValue sampledValue = new SampledValue("42");
+    sampledValue.setLocation(Location.Outlet);
+    MeterValuesRequest request = new MeterValuesRequest(1);
+    request.setTransactionId(7);
+    request.setMeterValue(
+        new MeterValue[] {new MeterValue(null, new SampledValue[] {sampledValue})});
+
+    assertThat(generated.toJson(request), equalTo(reflective.toJson(request)));
+  }
+
+  @Test
+  public void fromJson_bootNotificationRequest_bindsFieldsAndSkipsUnknown() {
+    String json =
+        "{\"unknown\":{\"nested\":[1,2]},\"chargePointVendor\":\"vendor\","
+            + "\"chargePointModel\":\"model\",\"firmwareVersion\":null}";
+
+    BootNotificationRequest request = generated.fromJson(json, BootNotificationRequest.class);
+
+    assertThat(request, equalTo(reflective.fromJson(json, BootNotificationRequest.class)));
+    assertThat(request.getChargePointVendor(), equalTo("vendor"));
+    assertThat(request.getFirmwareVersion(), nullValue());
+  }
+
+  @Test
+  public void fromJson_nestedModels_roundTrips() {
+    SampledValue sampledValue = new SampledValue("42");
+    sampledValue.setLocation(Location.Outlet);
+    MeterValuesRequest request = new MeterValuesRequest(1);
+    request.setMeterValue(
+        new MeterValue[] {new MeterValue(null, new SampledValue[] {sampledValue})});
+
+    MeterValuesRequest result =
+        generated.fromJson(generated.toJson(request), MeterValuesRequest.class);
+
+    assertThat(result, equalTo(request));
+  }
+}
@@ -0,0 +1,239 @@
+package eu.chargetime.ocpp.test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import eu.chargetime.ocpp.HandshakeAdmission;
+import eu.chargetime.ocpp.JSONConfiguration;
+import eu.chargetime.ocpp.JSONServer;
+import eu.chargetime.ocpp.ServerEvents;
+import eu.chargetime.ocpp.feature.profile.ServerCoreEventHandler;
+import eu.chargetime.ocpp.feature.profile.ServerCoreProfile;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Test;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+public class HandshakeAdmissionTest {
+
+  private static final String LOCALHOST = "127.0.0.1";
+
+  private JSONServer server;
+
+  @After
+  public void teardown() {
+    JSONConfiguration.get().setParameter(JSONConfiguration.HANDSHAKE_ADMISSION_PARAMETER, null);
+    if (server != null) {
+      server.close();
+    }
+  }
+
+  @Test
+  public void tryAdmit_globalBurstSpent_rejectsWithRetryAfter() throws Exception {
+    // Given
+    HandshakeAdmission admission = new HandshakeAdmission().setGlobalRate(0.5, 2);
+    InetAddress source = InetAddress.getByName("10.0.0.1");
+
+    // When
+    int first = admission.tryAdmit(source);
+    int second = admission.tryAdmit(source);
+    int third = admission.tryAdmit(source);
+
+    // Then
+    assertThat(first, is(HandshakeAdmission.ADMITTED));
+    assertThat(second, is(HandshakeAdmission.ADMITTED));
+    assertThat(third, is(2));
+    assertThat(admission.getAdmittedCount(), is(2L));
+    assertThat(admission.getRejectedGlobalRateCount(), is(1L));
+  }
+
+  @Test
+  public void tryAdmit_sourceBurstSpent_otherSourcesAreAdmitted() throws Exception {
+    // Given
+    HandshakeAdmission admission = new HandshakeAdmission().setSourceRate(0.01, 1);
+    InetAddress storming = InetAddress.getByName("10.0.0.1");
+    InetAddress other = InetAddress.getByName("10.0.0.2");
+    admission.tryAdmit(storming);
+
+    // When
+    int again = admission.tryAdmit(storming);
+    int otherSource = admission.tryAdmit(other);
+
+    // Then
+    assertThat(again, is(100));
+    assertThat(otherSource, is(HandshakeAdmission.ADMITTED));
+    assertThat(admission.getRejectedSourceRateCount(), is(1L));
+    assertThat(admission.getSourceCount(), is(2));
+  }
+
+  @Test
+  public void tryAdmit_sourceTableFullOfBusySources_rejectsNewSource() throws Exception {
+    // Given
+    HandshakeAdmission admission =
+        new HandshakeAdmission().setSourceRate(0.01, 1).setMaxSources(1);
+    admission.tryAdmit(InetAddress.getByName("10.0.0.1"));
+
+    // When
+    int newSource = admission.tryAdmit(InetAddress.getByName("10.0.0.2"));
+
+    // Then
+    assertThat(newSource, is(1));
+    assertThat(admission.getRejectedSourceLimitCount(), is(1L));
+    assertThat(admission.getSourceCount(), is(1));
+  }
+
+  @Test
+  public void tryAdmit_sourceTableFull_forgetsLeastRecentlySeenIdleSource() throws Exception {
+    // Given
+    HandshakeAdmission admission =
+        new HandshakeAdmission().setSourceRate(1000, 1).setMaxSources(2);
+    InetAddress first = InetAddress.getByName("10.0.0.1");
+    InetAddress second = InetAddress.getByName("10.0.0.2");
+    admission.tryAdmit(first);
+    admission.tryAdmit(second);
+    Thread.sleep(10);
+    admission.tryAdmit(first);
+    Thread.sleep(10);
+
+    // When
+    int newSource = admission.tryAdmit(InetAddress.getByName("10.0.0.3"));
+    int firstAgain = admission.tryAdmit(first);
+
+    // Then
+    assertThat(newSource, is(HandshakeAdmission.ADMITTED));
+    assertThat(firstAgain, is(HandshakeAdmission.ADMITTED));
+    assertThat(admission.getRejectedSourceLimitCount(), is(0L));
+    assertThat(admission.getSourceCount(), is(2));
+  }
+
+  @Test
+  public void tryAdmit_tooManyInProgress_admitsAgainOnceReleased() throws Exception {
+    // Given
+    HandshakeAdmission admission = new HandshakeAdmission().setMaxInProgress(1);
+    admission.tryAdmit(null);
+
+    // When
+    int whileBusy = admission.tryAdmit(null);
+    admission.release();
+    int afterRelease = admission.tryAdmit(null);
+
+    // Then
+    assertThat(whileBusy, is(1));
+    assertThat(afterRelease, is(HandshakeAdmission.ADMITTED));
+    assertThat(admission.getRejectedInProgressCount(), is(1L));
+    assertThat(admission.getInProgress(), is(1));
+  }
+
+  @Test
+  public void handshake_rateSpent_answers503WithRetryAfter() throws Exception {
+    // Given
+    HandshakeAdmission admission = new HandshakeAdmission().setGlobalRate(0.01, 1);
+    JSONConfiguration configuration =
+        JSONConfiguration.get()
+            .setParameter(JSONConfiguration.HANDSHAKE_ADMISSION_PARAMETER, admission);
+    server =
+        new JSONServer(new ServerCoreProfile(mock(ServerCoreEventHandler.class)), configuration);
+    int port = freePort();
+    server.open(LOCALHOST, port, mock(ServerEvents.class));
+    String admitted = handshake(port);
+
+    // When
+    String refused = handshake(port);
+
+    // Then
+    assertThat(admitted, startsWith("HTTP/1.1 101"));
+    assertThat(refused, startsWith("HTTP/1.1 503"));
+    assertThat(refused, containsString("Retry-After: 100"));
+    assertThat(admission.getInProgress(), is(0));
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  /** Send a WebSocket upgrade request and read the head of the response. */
+  private static String handshake(int port) throws Exception {
+    try (Socket socket = connect(port)) {
+      OutputStream out = socket.getOutputStream();
+      out.write(
+          ("GET /CP_1 HTTP/1.1\r\n"
+                  + "Host: "
+                  + LOCALHOST
+                  + ":"
+                  + port
+                  + "\r\n"
+                  + "Upgrade: websocket\r\n"
+                  + "Connection: Upgrade\r\n"
+                  + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                  + "Sec-WebSocket-Version: 13\r\n"
+                  + "Sec-WebSocket-Protocol: ocpp1.6\r\n"
+                  + "\r\n")
+              .getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+
+      BufferedReader in =
+          new BufferedReader(
+              new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+      StringBuilder head = new StringBuilder();
+      String line;
+      while ((line = in.readLine()) != null && !line.isEmpty()) {
+        head.append(line).append("\r\n");
+      }
+      return head.toString();
+    }
+  }
+
+  /** The listener binds in the background, so the first connections may be refused. */
+  private static Socket connect(int port) throws Exception {
+    for (int attempt = 0; ; attempt++) {
+      try {
+        Socket socket = new Socket(LOCALHOST, port);
+        socket.setSoTimeout(5000);
+        return socket;
+      } catch (ConnectException e) {
+        if (attempt == 50) {
+          throw e;
+        }
+        Thread.sleep(100);
+      }
+    }
+  }
+}
@@ -5,19 +5,35 @@ import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.*;
 
+import eu.chargetime.ocpp.CommunicatorEvents;
+import eu.chargetime.ocpp.GsonPayloadCodec;
 import eu.chargetime.ocpp.JSONCommunicator;
+import eu.chargetime.ocpp.JSONPayload;
+import eu.chargetime.ocpp.MemoryTransactionQueue;
+import eu.chargetime.ocpp.RadioEvents;
+import eu.chargetime.ocpp.TextFrameRadio;
 import eu.chargetime.ocpp.Transmitter;
 import eu.chargetime.ocpp.model.TestModel;
 import eu.chargetime.ocpp.model.core.BootNotificationConfirmation;
 import eu.chargetime.ocpp.model.core.BootNotificationRequest;
+import eu.chargetime.ocpp.model.core.DataTransferConfirmation;
+import eu.chargetime.ocpp.model.core.DataTransferStatus;
 import eu.chargetime.ocpp.model.core.RegistrationStatus;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -54,6 +70,7 @@ public class JSONCommunicatorTest {
   private JSONCommunicator communicator;
 
   @Mock private Transmitter transmitter;
+  @Mock private CommunicatorEvents events;
 
   @Before
   public void setup() {
@@ -316,6 +333,186 @@ public class JSONCommunicatorTest {
     verify(transmitter, times(1)).send(anyString());
   }
 
+  @Test
+  public void receivedMessage_call_payloadUnpacksToRequest() throws Exception {
+    // Given
+    String message =
+        "[2,\"42\",\"BootNotification\",{\"chargePointVendor\":\"VendorX\",\"chargePointModel\":\"SingleSocketCharger\"}]";
+    RadioEvents radioEvents = connect();
+
+    // When
+    radioEvents.receivedMessage(message);
+
+    // Then
+    ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+    verify(events, times(1)).onCall(eq("42"), eq("BootNotification"), payload.capture());
+    BootNotificationRequest request =
+        communicator.unpackPayload(payload.getValue(), BootNotificationRequest.class);
+    assertThat(request.getChargePointVendor(), equalTo("VendorX"));
+    assertThat(request.getChargePointModel(), equalTo("SingleSocketCharger"));
+  }
+
+  @Test
+  public void receivedMessage_callWithSpacing_payloadIsBoundFromTheMessage() throws Exception {
+    // Given
+    String payloadText =
+        "{\"chargePointVendor\":\"VendorX\",\"chargePointModel\":\"SingleSocketCharger\"}";
+    String message = "[2, \"42\", \"BootNotification\", " + payloadText + " ]";
+    RadioEvents radioEvents = connect();
+
+    // When
+    radioEvents.receivedMessage(message);
+
+    // Then
+    ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+    verify(events, times(1)).onCall(eq("42"), eq("BootNotification"), payload.capture());
+    assertThat(payload.getValue(), instanceOf(JSONPayload.class));
+    assertThat(payload.getValue().toString(), equalTo(payloadText));
+    BootNotificationRequest valid =
+        communicator.unpackValidPayload(payload.getValue(), BootNotificationRequest.class);
+    BootNotificationRequest strict =
+        communicator.unpackStrictPayload(payload.getValue(), BootNotificationRequest.class);
+    assertThat(valid.getChargePointVendor(), equalTo("VendorX"));
+    assertThat(strict.getChargePointModel(), equalTo("SingleSocketCharger"));
+  }
+
+  @Test
+  public void receivedMessage_callError_relaysErrorWithRawPayload() throws Exception {
+    // Given
+    String message = "[4,\"42\",\"NotImplemented\",\"Unknown action\",{\"key\":1}]";
+    RadioEvents radioEvents = connect();
+
+    // When
+    radioEvents.receivedMessage(message);
+
+    // Then
+    verify(events, times(1)).onError("42", "NotImplemented", "Unknown action", "{\"key\":1}");
+  }
+
+  @Test
+  public void receivedMessage_malformedMessage_sendsRpcFrameworkError() throws Exception {
+    // Given
+    RadioEvents radioEvents = connect();
+
+    // When
+    radioEvents.receivedMessage("[2,\"42\",\"BootNotification\"");
+
+    // Then
+    verify(events, never()).onCall(anyString(), anyString(), any());
+    verify(transmitter, times(1)).send(ArgumentMatchers.startsWith("[4,\"42\",\"RpcFrameworkError\""));
+  }
+
+  @Test
+  public void connected_callQueued_replayedCallIsAcknowledgedById() throws Exception {
+    // Given
+    MemoryTransactionQueue queue = new MemoryTransactionQueue();
+    queue.add("[2,\"42\",\"StartTransaction\",{}]");
+    communicator = new JSONCommunicator(transmitter, queue, new GsonPayloadCodec());
+    RadioEvents radioEvents = connect();
+    radioEvents.connected();
+
+    // When
+    radioEvents.receivedMessage("[3,\"42\",{}]");
+
+    // Then
+    assertThat(communicator.getTransactionReplayer().getReplayedCount(), is(1L));
+    assertThat(queue.isEmpty(), is(true));
+  }
+
+  @Test
+  public void connected_malformedCallQueued_noCallErrorIsSent() throws Exception {
+    // Given
+    MemoryTransactionQueue queue = new MemoryTransactionQueue();
+    queue.add("[2,\"42\",\"StartTransaction\"");
+    communicator = new JSONCommunicator(transmitter, queue, new GsonPayloadCodec());
+    RadioEvents radioEvents = connect();
+
+    // When
+    radioEvents.connected();
+
+    // Then
+    verify(transmitter, times(1)).send("[2,\"42\",\"StartTransaction\"");
+    verify(transmitter, never()).send(ArgumentMatchers.startsWith("[4,"));
+  }
+
+  @Test
+  public void sendCallResult_textFrameRadio_sendsEncodedFrame() throws Exception {
+    // Given
+    BootNotificationConfirmation confirmation = new BootNotificationConfirmation();
+    confirmation.setCurrentTime(createDateTimeInMillis(1461825673720L));
+    confirmation.setInterval(300);
+    confirmation.setStatus(RegistrationStatus.Accepted);
+    List<String> frames = useTextFrameRadio();
+
+    // When
+    communicator.sendCallResult("42", "BootNotification", confirmation);
+
+    // Then
+    assertThat(
+        frames,
+        equalTo(
+            Collections.singletonList(
+                "[3,\"42\",{\"currentTime\":\"2016-04-28T06:41:13.720Z\",\"interval\":300,\"status\":\"Accepted\"}]")));
+  }
+
+  @Test
+  public void sendCallResult_largeNonAsciiPayload_matchesStringEncoding() throws Exception {
+    // Given
+    StringBuilder data = new StringBuilder();
+    while (data.length() < 20000) {
+      data.append("abc\u00e9\u20ac\ud83d\ude00\"");
+    }
+    DataTransferConfirmation confirmation = new DataTransferConfirmation(DataTransferStatus.Accepted);
+    confirmation.setData(data.toString());
+    String expected = "[3,\"42\"," + communicator.packPayload(confirmation) + "]";
+    List<String> frames = useTextFrameRadio();
+
+    // When
+    communicator.sendCallResult("42", "DataTransfer", confirmation);
+    communicator.sendCallResult("42", "DataTransfer", confirmation);
+
+    // Then
+    assertThat(frames, equalTo(Arrays.asList(expected, expected)));
+  }
+
+  @Test
+  public void sendCallError_textFrameRadio_sendsEncodedFrame() throws Exception {
+    // Given
+    List<String> frames = useTextFrameRadio();
+
+    // When
+    communicator.sendCallError("42", null, "NotImplemented", "Unknown \"action\"");
+
+    // Then
+    assertThat(
+        frames,
+        equalTo(
+            Collections.singletonList(
+                "[4,\"42\",\"NotImplemented\",\"Unknown \\\"action\\\"\",{}]")));
+  }
+
+  private List<String> useTextFrameRadio() throws Exception {
+    Transmitter radio = mock(Transmitter.class, withSettings().extraInterfaces(TextFrameRadio.class));
+    List<String> frames = new ArrayList<>();
+    doAnswer(
+            invocation -> {
+              ByteBuffer frame = invocation.getArgument(0);
+              frames.add(StandardCharsets.UTF_8.decode(frame).toString());
+              return null;
+            })
+        .when((TextFrameRadio) radio)
+        .send(ArgumentMatchers.any(ByteBuffer.class));
+    communicator = new JSONCommunicator(radio);
+    return frames;
+  }
+
+  private RadioEvents connect() {
+    communicator.connect("ws://localhost", events);
+    ArgumentCaptor<RadioEvents> radioEvents = ArgumentCaptor.forClass(RadioEvents.class);
+    verify(transmitter).connect(anyString(), radioEvents.capture());
+    return radioEvents.getValue();
+  }
+
   private ZonedDateTime createDateTimeInMillis(long dateInMillis) {
     return Instant.ofEpochMilli(dateInMillis).atOffset(ZoneOffset.UTC).toZonedDateTime();
   }
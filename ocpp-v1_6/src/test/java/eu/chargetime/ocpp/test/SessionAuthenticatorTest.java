@@ -0,0 +1,199 @@
+package eu.chargetime.ocpp.test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import eu.chargetime.ocpp.AuthenticationException;
+import eu.chargetime.ocpp.JSONConfiguration;
+import eu.chargetime.ocpp.JSONServer;
+import eu.chargetime.ocpp.ServerEvents;
+import eu.chargetime.ocpp.feature.profile.ServerCoreEventHandler;
+import eu.chargetime.ocpp.feature.profile.ServerCoreProfile;
+import eu.chargetime.ocpp.model.SessionInformation;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Copyright (C) 2016-2018 Thomas Volden <tv@chargetime.eu>
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+
+public class SessionAuthenticatorTest {
+
+  private static final String LOCALHOST = "127.0.0.1";
+
+  private final CompletableFuture<Void> slowAuthentication = new CompletableFuture<>();
+  private final CountDownLatch slowAuthenticationStarted = new CountDownLatch(1);
+  private ServerEvents serverEvents;
+  private JSONServer server;
+  private int port;
+
+  @Before
+  public void setup() throws Exception {
+    // a single worker, so a blocking authentication would hold up every handshake
+    JSONConfiguration configuration =
+        JSONConfiguration.get().setParameter(JSONConfiguration.WEBSOCKET_WORKER_COUNT, 1);
+    server =
+        new JSONServer(new ServerCoreProfile(mock(ServerCoreEventHandler.class)), configuration);
+    server.setSessionAuthenticator(
+        (information, username, password) -> {
+          if (!information.getIdentifier().endsWith("SLOW")) {
+            return CompletableFuture.completedFuture(null);
+          }
+          slowAuthenticationStarted.countDown();
+          return slowAuthentication;
+        });
+    serverEvents = mock(ServerEvents.class);
+    port = freePort();
+    server.open(LOCALHOST, port, serverEvents);
+  }
+
+  @After
+  public void teardown() {
+    JSONConfiguration.get().setParameter(JSONConfiguration.WEBSOCKET_WORKER_COUNT, null);
+    server.close();
+  }
+
+  @Test
+  public void handshake_authenticationPending_otherHandshakesAreAnswered() throws Exception {
+    // Given
+    try (Socket slow = connect(port)) {
+      sendHandshake(slow, "CP_SLOW");
+      assertThat(slowAuthenticationStarted.await(5, TimeUnit.SECONDS), is(true));
+
+      // When
+      String fast = handshake("CP_FAST");
+      slowAuthentication.complete(null);
+
+      // Then
+      assertThat(fast, startsWith("HTTP/1.1 101"));
+      assertThat(readResponse(slow), startsWith("HTTP/1.1 101"));
+      verify(serverEvents, timeout(5000).times(2))
+          .newSession(any(UUID.class), any(SessionInformation.class));
+    }
+  }
+
+  @Test
+  public void handshake_authenticationRefused_answersWithErrorCode() throws Exception {
+    // Given
+    try (Socket slow = connect(port)) {
+      sendHandshake(slow, "CP_SLOW");
+      assertThat(slowAuthenticationStarted.await(5, TimeUnit.SECONDS), is(true));
+
+      // the single worker is done with the slow handshake once it answers another one
+      handshake("CP_FAST");
+
+      // When
+      slowAuthentication.completeExceptionally(new AuthenticationException(403, "Unknown"));
+
+      // Then
+      assertThat(readResponse(slow), startsWith("HTTP/1.1 403"));
+      assertThat(slow.getInputStream().read(), is(-1));
+      // only the session of CP_FAST
+      verify(serverEvents, times(1)).newSession(any(UUID.class), any(SessionInformation.class));
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private String handshake(String identity) throws Exception {
+    try (Socket socket = connect(port)) {
+      sendHandshake(socket, identity);
+      return readResponse(socket);
+    }
+  }
+
+  /** Send a WebSocket upgrade request. */
+  private void sendHandshake(Socket socket, String identity) throws IOException {
+    OutputStream out = socket.getOutputStream();
+    out.write(
+        ("GET /"
+                + identity
+                + " HTTP/1.1\r\n"
+                + "Host: "
+                + LOCALHOST
+                + ":"
+                + port
+                + "\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                + "Sec-WebSocket-Version: 13\r\n"
+                + "Sec-WebSocket-Protocol: ocpp1.6\r\n"
+                + "\r\n")
+            .getBytes(StandardCharsets.US_ASCII));
+    out.flush();
+  }
+
+  /** Read the head of the response, byte by byte to leave the rest of the stream unread. */
+  private static String readResponse(Socket socket) throws IOException {
+    StringBuilder head = new StringBuilder();
+    int c;
+    while ((c = socket.getInputStream().read()) != -1) {
+      head.append((char) c);
+      if (head.length() >= 4 && head.lastIndexOf("\r\n\r\n") == head.length() - 4) {
+        break;
+      }
+    }
+    return head.toString();
+  }
+
+  /** The listener binds in the background, so the first connections may be refused. */
+  private static Socket connect(int port) throws Exception {
+    for (int attempt = 0; ; attempt++) {
+      try {
+        Socket socket = new Socket(LOCALHOST, port);
+        socket.setSoTimeout(5000);
+        return socket;
+      } catch (ConnectException e) {
+        if (attempt == 50) {
+          throw e;
+        }
+        Thread.sleep(100);
+      }
+    }
+  }
+}
@@ -64,6 +64,10 @@ public class MultiProtocolFeatureRepository implements IFeatureRepository {
     }
   }
 
+  public void setStrictDecoding(ProtocolVersion protocolVersion, boolean strictDecoding) {
+    getFeatureRepository(protocolVersion).setStrictDecoding(strictDecoding);
+  }
+
   /* methods used by the server */
 
   public FeatureRepository getFeatureRepository(ProtocolVersion protocolVersion) {
@@ -92,6 +96,12 @@ public class MultiProtocolFeatureRepository implements IFeatureRepository {
     return featureRepository != null ? featureRepository.findFeature(needle) : Optional.empty();
   }
 
+  @Override
+  public boolean isStrictDecoding() {
+    IFeatureRepository featureRepository = selectedFeatureRepository;
+    return featureRepository != null && featureRepository.isStrictDecoding();
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
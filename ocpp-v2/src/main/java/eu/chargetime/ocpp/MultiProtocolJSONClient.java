@@ -88,16 +88,30 @@ public class MultiProtocolJSONClient implements IMultiProtocolClientAPI {
       List<ProtocolVersion> protocolVersions, String identity, JSONConfiguration configuration) {
     this.identity = identity;
     featureRepository = new MultiProtocolFeatureRepository(protocolVersions);
+    boolean cborFraming =
+        configuration.getParameter(JSONConfiguration.CBOR_FRAMING_PARAMETER, false);
     List<IProtocol> inputProtocols = new ArrayList<>(protocolVersions.size());
     for (ProtocolVersion protocolVersion : protocolVersions) {
-      inputProtocols.add(new Protocol(protocolVersion.getSubProtocolName()));
+      String subProtocol = protocolVersion.getSubProtocolName();
+      inputProtocols.add(
+          new Protocol(cborFraming ? CBORCommunicator.subProtocolName(subProtocol) : subProtocol));
     }
     Draft draft = new Draft_6455(Collections.emptyList(), inputProtocols);
     transmitter = new MultiProtocolWebSocketTransmitter(featureRepository, configuration, draft);
-    JSONCommunicator communicator = new JSONCommunicator(transmitter, false);
+    Communicator communicator =
+        cborFraming
+            ? new CBORCommunicator(transmitter, false)
+            : new JSONCommunicator(transmitter, false, JSONCommunicator.codecOf(configuration));
+    MessageTracer tracer = configuration.getParameter(JSONConfiguration.MESSAGE_TRACER_PARAMETER);
+    if (tracer != null) {
+      communicator.setMessageTap(tracer.tap(identity));
+    }
     ISessionFactory sessionFactory = new MultiProtocolSessionFactory(featureRepository);
     ISession session = sessionFactory.createSession(communicator);
     client = new Client(session, new PromiseRepository());
+    client.setRequestTimeouts(
+        configuration.getParameter(
+            JSONConfiguration.REQUEST_TIMEOUTS_PARAMETER, client.getRequestTimeouts()));
   }
 
   /**
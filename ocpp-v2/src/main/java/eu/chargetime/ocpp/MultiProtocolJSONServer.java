@@ -35,10 +35,13 @@ import eu.chargetime.ocpp.wss.BaseWssFactoryBuilder;
 import eu.chargetime.ocpp.wss.WssFactoryBuilder;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
 import javax.net.ssl.SSLContext;
 import org.java_websocket.drafts.Draft;
 import org.java_websocket.drafts.Draft_6455;
@@ -55,6 +58,7 @@ public class MultiProtocolJSONServer implements IMultiProtocolServerAPI {
   private final MultiProtocolWebSocketListener listener;
   private final Server server;
   private final MultiProtocolFeatureRepository featureRepository;
+  private final MultiProtocolSessionFactory sessionFactory;
 
   /**
    * The constructor creates WS-ready server.
@@ -65,10 +69,18 @@ public class MultiProtocolJSONServer implements IMultiProtocolServerAPI {
   public MultiProtocolJSONServer(
       List<ProtocolVersion> protocolVersions, JSONConfiguration configuration) {
     featureRepository = new MultiProtocolFeatureRepository(protocolVersions);
-    MultiProtocolSessionFactory sessionFactory = new MultiProtocolSessionFactory(featureRepository);
+    sessionFactory = new MultiProtocolSessionFactory(featureRepository);
+    sessionFactory.setRequestExecutor(
+        configuration.getParameter(JSONConfiguration.REQUEST_EXECUTOR_PARAMETER));
 
-    List<IProtocol> protocols = new ArrayList<>(protocolVersions.size());
+    boolean cborFraming =
+        configuration.getParameter(JSONConfiguration.CBOR_FRAMING_PARAMETER, false);
+    List<IProtocol> protocols = new ArrayList<>(protocolVersions.size() * 2);
     for (ProtocolVersion protocolVersion : protocolVersions) {
+      if (cborFraming) {
+        protocols.add(
+            new Protocol(CBORCommunicator.subProtocolName(protocolVersion.getSubProtocolName())));
+      }
       protocols.add(new Protocol(protocolVersion.getSubProtocolName()));
     }
     Draft draft = new Draft_6455(Collections.emptyList(), protocols);
@@ -82,6 +94,9 @@ public class MultiProtocolJSONServer implements IMultiProtocolServerAPI {
       listener = new MultiProtocolWebSocketListener(sessionFactory, configuration, draft);
     }
     server = new Server(listener, new PromiseRepository());
+    server.setRequestTimeouts(
+        configuration.getParameter(
+            JSONConfiguration.REQUEST_TIMEOUTS_PARAMETER, server.getRequestTimeouts()));
   }
 
   /**
@@ -173,6 +188,36 @@ public class MultiProtocolJSONServer implements IMultiProtocolServerAPI {
     server.closeSession(session);
   }
 
+  /**
+   * Get the number of requests from a charging station waiting to be handled.
+   *
+   * @param session the session of the charging station.
+   * @return the queue depth of the session, 0 if the session is not found.
+   */
+  public int getQueueDepth(UUID session) {
+    return server.getQueueDepth(session);
+  }
+
+  /**
+   * Get the scheduler of requests to a charge point.
+   *
+   * @param session the session of the charge point.
+   * @return the {@link OutboundScheduler} of the session, empty if the session is not found.
+   */
+  public Optional<OutboundScheduler> getOutboundScheduler(UUID session) {
+    return server.getOutboundScheduler(session);
+  }
+
+  /**
+   * Set the executor requests from charge points are handled on, for sessions opened after this
+   * call. Use {@link RequestExecutors#newBlockingHandlerExecutor(int)} if the handlers block.
+   *
+   * @param requestExecutor the executor, null for the pool shared by all servers.
+   */
+  public void setRequestExecutor(ExecutorService requestExecutor) {
+    sessionFactory.setRequestExecutor(requestExecutor);
+  }
+
   @Override
   public void open(String host, int port, ServerEvents serverEvents) {
     logger.info("Feature repository: {}", featureRepository);
@@ -195,6 +240,71 @@ public class MultiProtocolJSONServer implements IMultiProtocolServerAPI {
     return server.send(session, request);
   }
 
+  @Override
+  public BroadcastResult broadcast(
+      Collection<UUID> sessionIndexes, Request request, int maxConcurrency)
+      throws OccurenceConstraintException {
+    return server.broadcast(sessionIndexes, request, maxConcurrency);
+  }
+
+  /**
+   * Send the same request to every connected charge point, validating and packing it once.
+   *
+   * @param request the request, it must not change until the broadcast is done.
+   * @param maxConcurrency the number of charge points that may have the request unanswered at once.
+   * @return the result of every charge point connected when called.
+   * @throws OccurenceConstraintException if the request isn't valid.
+   */
+  public BroadcastResult broadcast(Request request, int maxConcurrency)
+      throws OccurenceConstraintException {
+    return server.broadcast(request, maxConcurrency);
+  }
+
+  /**
+   * Send a request to a charge point by its charge box identity.
+   *
+   * @param identity the charge box identity, the last segment of the URL it connected to.
+   * @param request the request.
+   * @return completes with the confirmation of the charge point.
+   * @throws NotConnectedException no session is open for the identity.
+   */
+  public CompletionStage<Confirmation> send(String identity, Request request)
+      throws OccurenceConstraintException, UnsupportedFeatureException, NotConnectedException {
+    return server.send(identity, request);
+  }
+
+  /**
+   * Get the session of a charge point by its charge box identity.
+   *
+   * @param identity the charge box identity, the last segment of the URL it connected to.
+   * @return the session index, null if no session is open for the identity.
+   */
+  public UUID getSessionId(String identity) {
+    return server.getSessionId(identity);
+  }
+
+  /**
+   * Set what happens when a charge point connects while a session with the same identity is
+   * open. By default a second session is opened and both are kept.
+   *
+   * @param duplicateConnectionPolicy the policy.
+   */
+  public void setDuplicateConnectionPolicy(DuplicateConnectionPolicy duplicateConnectionPolicy) {
+    server.setDuplicateConnectionPolicy(duplicateConnectionPolicy);
+  }
+
+  /**
+   * Authenticate handshakes with an asynchronous authenticator instead of {@link
+   * ServerEvents#authenticateSession}. The handshake is answered once the authenticator completes,
+   * without blocking the other connections of the listener. Wrap it in a {@link
+   * CachingSessionAuthenticator} to spare the credential store when charge points reconnect.
+   *
+   * @param sessionAuthenticator the authenticator, null to use the server events again.
+   */
+  public void setSessionAuthenticator(SessionAuthenticator sessionAuthenticator) {
+    server.setSessionAuthenticator(sessionAuthenticator);
+  }
+
   @Override
   public boolean asyncCompleteRequest(UUID sessionIndex, String uniqueId, Confirmation confirmation)
       throws NotConnectedException, UnsupportedFeatureException, OccurenceConstraintException {
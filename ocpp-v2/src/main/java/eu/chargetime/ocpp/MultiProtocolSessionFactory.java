@@ -27,15 +27,27 @@
 
 package eu.chargetime.ocpp;
 
+import java.util.concurrent.ExecutorService;
+
 public class MultiProtocolSessionFactory implements ISessionFactory {
 
   private final MultiProtocolFeatureRepository multiProtocolFeatureRepository;
+  private volatile ExecutorService requestExecutor;
 
   public MultiProtocolSessionFactory(
       MultiProtocolFeatureRepository multiProtocolFeatureRepository) {
     this.multiProtocolFeatureRepository = multiProtocolFeatureRepository;
   }
 
+  /**
+   * Set the executor new sessions fulfill incoming requests on.
+   *
+   * @param requestExecutor the executor, null for the pool shared by all sessions.
+   */
+  public void setRequestExecutor(ExecutorService requestExecutor) {
+    this.requestExecutor = requestExecutor;
+  }
+
   /**
    * Creates a client session
    *
@@ -49,7 +61,7 @@ public class MultiProtocolSessionFactory implements ISessionFactory {
   @Override
   public ISession createSession(Communicator communicator) {
     AsyncPromiseFulfillerDecorator promiseFulfiller =
-        new AsyncPromiseFulfillerDecorator(new SimplePromiseFulfiller());
+        new AsyncPromiseFulfillerDecorator(new SimplePromiseFulfiller(), requestExecutor);
     return new Session(communicator, new Queue(), promiseFulfiller, multiProtocolFeatureRepository);
   }
 
@@ -66,7 +78,7 @@ public class MultiProtocolSessionFactory implements ISessionFactory {
     IFeatureRepository featureRepository =
         multiProtocolFeatureRepository.getFeatureRepository(protocolVersion);
     AsyncPromiseFulfillerDecorator promiseFulfiller =
-        new AsyncPromiseFulfillerDecorator(new SimplePromiseFulfiller());
+        new AsyncPromiseFulfillerDecorator(new SimplePromiseFulfiller(), requestExecutor);
     return new Session(communicator, new Queue(), promiseFulfiller, featureRepository);
   }
 }
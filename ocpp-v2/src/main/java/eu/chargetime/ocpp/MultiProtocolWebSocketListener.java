@@ -31,16 +31,19 @@ import eu.chargetime.ocpp.model.SessionInformation;
 import eu.chargetime.ocpp.wss.WssFactoryBuilder;
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import org.java_websocket.WebSocket;
 import org.java_websocket.drafts.Draft;
 import org.java_websocket.drafts.Draft_6455;
 import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
 import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.handshake.ServerHandshakeBuilder;
 import org.java_websocket.server.WebSocketServer;
@@ -66,6 +69,7 @@ public class MultiProtocolWebSocketListener implements Listener {
   private final List<Draft> drafts;
 
   private final JSONConfiguration configuration;
+  private final HandshakeAdmission admission;
   private final Map<WebSocket, WebSocketReceiver> sockets;
   private volatile WebSocketServer server;
   private WssFactoryBuilder wssFactoryBuilder;
@@ -78,7 +82,8 @@ public class MultiProtocolWebSocketListener implements Listener {
       Draft... drafts) {
     this.sessionFactory = sessionFactory;
     this.configuration = configuration;
-    this.drafts = Arrays.asList(drafts);
+    this.admission = configuration.getParameter(JSONConfiguration.HANDSHAKE_ADMISSION_PARAMETER);
+    this.drafts = Draft_AdmissionControl.wrap(Arrays.asList(drafts));
     this.sockets = new ConcurrentHashMap<>();
   }
 
@@ -97,6 +102,15 @@ public class MultiProtocolWebSocketListener implements Listener {
               webSocket.close(Draft_HttpHealthCheck.HTTP_HEALTH_CHECK_CLOSE_CODE);
               return;
             }
+            if (Draft_AdmissionControl.isRefused(webSocket)) {
+              webSocket.close(Draft_AdmissionControl.HANDSHAKE_REFUSED_CLOSE_CODE);
+              return;
+            }
+            Draft_AdmissionControl.whenAuthenticated(
+                this, webSocket, () -> openSession(webSocket, clientHandshake));
+          }
+
+          private void openSession(WebSocket webSocket, ClientHandshake clientHandshake) {
             String protocol = webSocket.getProtocol().toString();
             logger.debug(
                 "On connection open (resource descriptor: {}, protocol: {})",
@@ -106,6 +120,8 @@ public class MultiProtocolWebSocketListener implements Listener {
             WebSocketReceiver receiver =
                 new WebSocketReceiver(
                     new WebSocketReceiverEvents() {
+                      private final FrameWriter writer = new FrameWriter(webSocket);
+
                       @Override
                       public boolean isClosed() {
                         return closed;
@@ -118,13 +134,43 @@ public class MultiProtocolWebSocketListener implements Listener {
 
                       @Override
                       public void relay(String message) {
-                        webSocket.send(message);
+                        relayQuietly(message);
+                      }
+
+                      @Override
+                      public void relay(ByteBuffer message) {
+                        try {
+                          writer.writeText(message);
+                        } catch (NotConnectedException ex) {
+                          throw new WebsocketNotConnectedException();
+                        }
+                      }
+
+                      @Override
+                      public void relay(byte[] message) {
+                        relayQuietly(message);
+                      }
+
+                      @Override
+                      public CompletionStage<Void> relayAsync(Object message)
+                          throws NotConnectedException {
+                        return writer.write(message);
+                      }
+
+                      private void relayQuietly(Object message) {
+                        try {
+                          writer.write(message);
+                        } catch (NotConnectedException ex) {
+                          throw new WebsocketNotConnectedException();
+                        }
                       }
                     });
 
             sockets.put(webSocket, receiver);
 
-            ProtocolVersion protocolVersion = ProtocolVersion.fromSubProtocolName(protocol);
+            ProtocolVersion protocolVersion =
+                ProtocolVersion.fromSubProtocolName(
+                    CBORCommunicator.ocppSubProtocolName(protocol));
             String proxiedAddress = clientHandshake.getFieldValue(HTTP_HEADER_PROXIED_ADDRESS);
 
             logger.debug(
@@ -140,71 +186,101 @@ public class MultiProtocolWebSocketListener implements Listener {
                     .ProxiedAddress(proxiedAddress)
                     .build();
 
+            Communicator communicator =
+                CBORCommunicator.isCBORSubProtocol(protocol)
+                    ? new CBORCommunicator(receiver, true)
+                    : new JSONCommunicator(receiver, true, JSONCommunicator.codecOf(configuration));
+            MessageTracer tracer =
+                configuration.getParameter(JSONConfiguration.MESSAGE_TRACER_PARAMETER);
+            if (tracer != null) {
+              communicator.setMessageTap(tracer.tap(information.getIdentifier()));
+            }
             handler.newSession(
-                sessionFactory.createSession(new JSONCommunicator(receiver), protocolVersion),
-                information);
+                sessionFactory.createSession(communicator, protocolVersion), information);
           }
 
           @Override
           public ServerHandshakeBuilder onWebsocketHandshakeReceivedAsServer(
               WebSocket webSocket, Draft draft, ClientHandshake clientHandshake)
               throws InvalidDataException {
-            ProtocolVersion protocolVersion;
-            if (draft instanceof Draft_6455) {
-              String protocol = ((Draft_6455) draft).getProtocol().toString();
-              protocolVersion = ProtocolVersion.fromSubProtocolName(protocol);
-            } else {
-              protocolVersion = null;
+            boolean controlled = admission != null && !(draft instanceof Draft_HttpHealthCheck);
+            if (controlled && !Draft_AdmissionControl.admit(admission, webSocket, draft)) {
+              // refused before any authentication work, answered with 503
+              return super.onWebsocketHandshakeReceivedAsServer(webSocket, draft, clientHandshake);
             }
+            boolean deferred = false;
+            try {
+              ProtocolVersion protocolVersion;
+              if (draft instanceof Draft_6455) {
+                String protocol = ((Draft_6455) draft).getProtocol().toString();
+                protocolVersion =
+                    ProtocolVersion.fromSubProtocolName(
+                        CBORCommunicator.ocppSubProtocolName(protocol));
+              } else {
+                protocolVersion = null;
+              }
 
-            SessionInformation information =
-                new SessionInformation.Builder()
-                    .Identifier(clientHandshake.getResourceDescriptor())
-                    .InternetAddress(webSocket.getRemoteSocketAddress())
-                    .ProtocolVersion(protocolVersion)
-                    .build();
-
-            String username = null;
-            String password = null;
-            if (clientHandshake.hasFieldValue("Authorization")) {
-              String authorization = clientHandshake.getFieldValue("Authorization");
-              if (authorization != null && authorization.toLowerCase().startsWith("basic")) {
-                // Authorization: Basic base64credentials
-                String base64Credentials = authorization.substring("Basic".length()).trim();
-                byte[] credDecoded = Base64.getDecoder().decode(base64Credentials);
-                // split credentials on username and password
-                for (int i = 0; i < credDecoded.length; i++) {
-                  if (credDecoded[i] == ':') {
-                    username =
-                        new String(Arrays.copyOfRange(credDecoded, 0, i), StandardCharsets.UTF_8);
-                    if (i + 1 < credDecoded.length) {
-                      password = new String(Arrays.copyOfRange(credDecoded, i + 1, credDecoded.length));
+              SessionInformation information =
+                  new SessionInformation.Builder()
+                      .Identifier(clientHandshake.getResourceDescriptor())
+                      .InternetAddress(webSocket.getRemoteSocketAddress())
+                      .ProtocolVersion(protocolVersion)
+                      .build();
+
+              String username = null;
+              String password = null;
+              if (clientHandshake.hasFieldValue("Authorization")) {
+                String authorization = clientHandshake.getFieldValue("Authorization");
+                if (authorization != null && authorization.toLowerCase().startsWith("basic")) {
+                  // Authorization: Basic base64credentials
+                  String base64Credentials = authorization.substring("Basic".length()).trim();
+                  byte[] credDecoded = Base64.getDecoder().decode(base64Credentials);
+                  // split credentials on username and password
+                  for (int i = 0; i < credDecoded.length; i++) {
+                    if (credDecoded[i] == ':') {
+                      username =
+                          new String(Arrays.copyOfRange(credDecoded, 0, i), StandardCharsets.UTF_8);
+                      if (i + 1 < credDecoded.length) {
+                        password = new String(Arrays.copyOfRange(credDecoded, i + 1, credDecoded.length));
+                      }
+                      break;
                     }
-                    break;
                   }
                 }
+                if (protocolVersion == null || protocolVersion == ProtocolVersion.OCPP1_6) {
+                  if (password == null
+                      || password.length() < configuration.getParameter(JSONConfiguration.OCPPJ_CP_MIN_PASSWORD_LENGTH, OCPPJ_CP_MIN_PASSWORD_LENGTH)
+                      || password.length() > configuration.getParameter(JSONConfiguration.OCPPJ_CP_MAX_PASSWORD_LENGTH, OCPPJ_CP_MAX_PASSWORD_LENGTH))
+                    throw new InvalidDataException(401, "Invalid password length");
+                } else {
+                  if (password == null
+                      || password.length() < configuration.getParameter(JSONConfiguration.OCPP2J_CP_MIN_PASSWORD_LENGTH, OCPP2J_CP_MIN_PASSWORD_LENGTH)
+                      || password.length() > configuration.getParameter(JSONConfiguration.OCPP2J_CP_MAX_PASSWORD_LENGTH, OCPP2J_CP_MAX_PASSWORD_LENGTH))
+                    throw new InvalidDataException(401, "Invalid password length");
+                }
               }
-              if (protocolVersion == null || protocolVersion == ProtocolVersion.OCPP1_6) {
-                if (password == null
-                    || password.length() < configuration.getParameter(JSONConfiguration.OCPPJ_CP_MIN_PASSWORD_LENGTH, OCPPJ_CP_MIN_PASSWORD_LENGTH)
-                    || password.length() > configuration.getParameter(JSONConfiguration.OCPPJ_CP_MAX_PASSWORD_LENGTH, OCPPJ_CP_MAX_PASSWORD_LENGTH))
-                  throw new InvalidDataException(401, "Invalid password length");
+
+              CompletionStage<Void> authentication;
+              try {
+                authentication = handler.authenticateSessionAsync(information, username, password);
+              } catch (Exception e) {
+                throw new InvalidDataException(401, e.getMessage());
+              }
+              // answered when the authentication completes, without holding up this worker
+              deferred = Draft_AdmissionControl.defer(draft, authentication);
+              if (deferred) {
+                if (controlled) {
+                  authentication.whenComplete((ignored, failure) -> admission.release());
+                }
               } else {
-                if (password == null
-                    || password.length() < configuration.getParameter(JSONConfiguration.OCPP2J_CP_MIN_PASSWORD_LENGTH, OCPP2J_CP_MIN_PASSWORD_LENGTH)
-                    || password.length() > configuration.getParameter(JSONConfiguration.OCPP2J_CP_MAX_PASSWORD_LENGTH, OCPP2J_CP_MAX_PASSWORD_LENGTH))
-                  throw new InvalidDataException(401, "Invalid password length");
+                Draft_AdmissionControl.awaitAuthentication(authentication);
+              }
+              return super.onWebsocketHandshakeReceivedAsServer(webSocket, draft, clientHandshake);
+            } finally {
+              if (controlled && !deferred) {
+                admission.release();
               }
             }
-
-            try {
-              handler.authenticateSession(information, username, password);
-            } catch (AuthenticationException e) {
-              throw new InvalidDataException(e.getErrorCode(), e.getMessage());
-            } catch (Exception e) {
-              throw new InvalidDataException(401, e.getMessage());
-            }
-            return super.onWebsocketHandshakeReceivedAsServer(webSocket, draft, clientHandshake);
           }
 
           @Override
@@ -217,6 +293,7 @@ public class MultiProtocolWebSocketListener implements Listener {
                 remote);
 
             if (code == Draft_HttpHealthCheck.HTTP_HEALTH_CHECK_CLOSE_CODE) return;
+            if (code == Draft_AdmissionControl.HANDSHAKE_REFUSED_CLOSE_CODE) return;
 
             WebSocketReceiver receiver = sockets.get(webSocket);
             if (receiver != null) {
@@ -232,6 +309,13 @@ public class MultiProtocolWebSocketListener implements Listener {
             sockets.get(webSocket).relay(message);
           }
 
+          @Override
+          public void onMessage(WebSocket webSocket, ByteBuffer message) {
+            byte[] bytes = new byte[message.remaining()];
+            message.get(bytes);
+            sockets.get(webSocket).relay(bytes);
+          }
+
           @Override
           public void onError(WebSocket webSocket, Exception ex) {
             String resourceDescriptor =
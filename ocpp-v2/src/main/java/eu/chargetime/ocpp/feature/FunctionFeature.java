@@ -30,6 +30,7 @@ import eu.chargetime.ocpp.feature.function.Function;
 import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.Request;
 import java.util.UUID;
+import java.util.concurrent.CompletionStage;
 
 public abstract class FunctionFeature implements Feature {
 
@@ -54,4 +55,16 @@ public abstract class FunctionFeature implements Feature {
   public Confirmation handleRequest(UUID sessionIndex, Request request) {
     return function.handleRequest(sessionIndex, request);
   }
+
+  /**
+   * Calls {@link Function} to handle a {@link Request} asynchronously.
+   *
+   * @param sessionIndex source of the request.
+   * @param request the {@link Request} to be handled.
+   * @return completes with the {@link Confirmation} to be send back.
+   */
+  @Override
+  public CompletionStage<Confirmation> handleRequestAsync(UUID sessionIndex, Request request) {
+    return function.handleRequestAsync(sessionIndex, request);
+  }
 }
@@ -32,6 +32,8 @@ import eu.chargetime.ocpp.feature.FunctionFeature;
 import eu.chargetime.ocpp.model.Confirmation;
 import eu.chargetime.ocpp.model.Request;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /** Interface used for Feature Profiles. */
 public interface Function {
@@ -51,4 +53,16 @@ public interface Function {
    * @return the {@link Confirmation} to be send.
    */
   Confirmation handleRequest(UUID sessionIndex, Request request);
+
+  /**
+   * Handle {@link Request} without holding a thread until its {@link Confirmation} is ready.
+   * Defaults to {@link #handleRequest(UUID, Request)}.
+   *
+   * @param sessionIndex source of the request.
+   * @param request the {@link Request} to be handled.
+   * @return completes with the {@link Confirmation} to be send.
+   */
+  default CompletionStage<Confirmation> handleRequestAsync(UUID sessionIndex, Request request) {
+    return CompletableFuture.completedFuture(handleRequest(sessionIndex, request));
+  }
 }
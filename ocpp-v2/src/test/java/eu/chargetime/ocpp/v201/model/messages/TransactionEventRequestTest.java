@@ -0,0 +1,146 @@
+package eu.chargetime.ocpp.v201.model.messages;
+
+/*
+   ChargeTime.eu - Java-OCA-OCPP
+
+   MIT License
+
+   Permission is hereby granted, free of charge, to any person obtaining a copy
+   of this software and associated documentation files (the "Software"), to deal
+   in the Software without restriction, including without limitation the rights
+   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+   copies of the Software, and to permit persons to whom the Software is
+   furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in all
+   copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+   SOFTWARE.
+*/
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import eu.chargetime.ocpp.GsonPayloadCodec;
+import eu.chargetime.ocpp.OccurenceConstraintException;
+import eu.chargetime.ocpp.PayloadCodec;
+import org.junit.Test;
+
+/** unit tests for validating and strictly decoding OCPP 2.0.1 TransactionEventRequest */
+public class TransactionEventRequestTest {
+
+  private static final String VALID =
+      "{\"eventType\":\"Updated\",\"timestamp\":\"2023-01-01T00:00:00Z\","
+          + "\"triggerReason\":\"MeterValuePeriodic\",\"seqNo\":1,"
+          + "\"transactionInfo\":{\"transactionId\":\"tx-1\"},"
+          + "\"evse\":{\"id\":1,\"connectorId\":1},"
+          + "\"meterValue\":[{\"timestamp\":\"2023-01-01T00:00:00Z\","
+          + "\"sampledValue\":[{\"value\":1.5},{\"value\":2.5}]}]}";
+
+  private final PayloadCodec codec = new GsonPayloadCodec();
+
+  @Test
+  public void decodeValid_validPayload_returnsModel() throws Exception {
+    TransactionEventRequest request = codec.decodeValid(VALID, TransactionEventRequest.class);
+
+    assertThat(request.getTransactionInfo().getTransactionId(), equalTo("tx-1"));
+    assertThat(request.getMeterValue()[0].getSampledValue().length, equalTo(2));
+  }
+
+  @Test
+  public void decodeValid_agreesWithValidate() throws Exception {
+    String[] payloads = {
+      VALID,
+      VALID.replace("\"seqNo\":1,", ""),
+      VALID.replace("\"tx-1\"", "\"" + repeat('x', 37) + "\""),
+      VALID.replace("{\"transactionId\":\"tx-1\"}", "{}"),
+      VALID.replace("\"evse\":{\"id\":1,\"connectorId\":1}", "\"evse\":{\"connectorId\":1}"),
+      VALID.replace("[{\"value\":1.5},{\"value\":2.5}]", "[]"),
+      VALID.replace("{\"value\":2.5}", "{}"),
+      VALID.replace("[{\"value\":1.5},{\"value\":2.5}]", "[{\"value\":1.5}]"),
+    };
+
+    for (String payload : payloads) {
+      // the nested validators cache per array length, so check each payload twice
+      for (int i = 0; i < 2; i++) {
+        boolean expected = codec.decode(payload, TransactionEventRequest.class).validate();
+        assertThat(payload, isValid(payload), equalTo(expected));
+      }
+    }
+  }
+
+  @Test
+  public void decodeValid_invalidNestedModel_throwsOccurenceConstraintException()
+      throws Exception {
+    Exception error = null;
+    try {
+      codec.decodeValid(
+          VALID.replace("{\"transactionId\":\"tx-1\"}", "{}"), TransactionEventRequest.class);
+    } catch (Exception ex) {
+      error = ex;
+    }
+
+    assertThat(error, instanceOf(OccurenceConstraintException.class));
+  }
+
+  @Test
+  public void decodeStrict_validPayload_returnsModel() throws Exception {
+    String payload =
+        VALID.replace(
+            "\"evse\":{", "\"evse\":{\"customData\":{\"vendorId\":\"v\",\"extra\":[1]},");
+
+    TransactionEventRequest request = codec.decodeStrict(payload, TransactionEventRequest.class);
+
+    assertThat(request.getEvse().getCustomData().getVendorId(), equalTo("v"));
+  }
+
+  @Test
+  public void decodeStrict_mistypedOrUndeclaredValues_areRejected() throws Exception {
+    String[] payloads = {
+      VALID.replace("\"seqNo\":1", "\"seqNo\":\"1\""),
+      VALID.replace("\"tx-1\"", "1"),
+      VALID.replace("{\"value\":2.5}", "{\"value\":\"2.5\"}"),
+      VALID.replace("\"seqNo\":1,", "\"seqNo\":1,\"offline\":\"true\","),
+      VALID.replace("\"Updated\"", "\"Paused\""),
+      VALID.replace("\"seqNo\":1,", "\"seqNo\":1,\"unknown\":1,"),
+      VALID.replace("\"connectorId\":1", "\"connectorId\":1,\"unknown\":1"),
+      VALID.replace("\"seqNo\":1,", "\"seqNo\":1,\"offline\":null,"),
+    };
+
+    for (String payload : payloads) {
+      // lenient decoding binds these
+      codec.decode(payload, TransactionEventRequest.class);
+      Exception error = null;
+      try {
+        codec.decodeStrict(payload, TransactionEventRequest.class);
+      } catch (Exception ex) {
+        error = ex;
+      }
+      assertThat(payload, error, instanceOf(RuntimeException.class));
+    }
+  }
+
+  private boolean isValid(String payload) throws Exception {
+    try {
+      codec.decodeValid(payload, TransactionEventRequest.class);
+      return true;
+    } catch (OccurenceConstraintException ex) {
+      return false;
+    }
+  }
+
+  private static String repeat(char c, int count) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      builder.append(c);
+    }
+    return builder.toString();
+  }
+}
@@ -67,7 +67,8 @@ public class JSONClient implements IClientAPI {
     draftOcppOnly =
         new Draft_6455(Collections.emptyList(), Collections.singletonList(new Protocol("ocpp1.6")));
     transmitter = new WebSocketTransmitter(configuration, draftOcppOnly);
-    JSONCommunicator communicator = new JSONCommunicator(transmitter);
+    JSONCommunicator communicator =
+        new JSONCommunicator(transmitter, true, JSONCommunicator.codecOf(configuration));
     featureRepository = new FeatureRepository();
     ISession session = new SessionFactory(featureRepository).createSession(communicator);
     client = new Client(session, new PromiseRepository());